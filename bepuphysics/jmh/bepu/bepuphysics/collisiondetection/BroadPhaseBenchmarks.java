@@ -0,0 +1,93 @@
+package bepu.bepuphysics.collisiondetection;
+
+import bepu.bepuutilities.math.Vector3Double;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares broad phase strategies on a crowd: agents of similar size walking across a flat area, packed densely enough that most agents
+ * have a few neighbors. Each invocation moves every agent, updates the broad phase and collects the frame's pairs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadPhaseBenchmarks {
+    private static final double AGENT_RADIUS = 0.4;
+    private static final double STEP_LENGTH = 0.02;
+
+    @Param({ "4096", "32768" })
+    public int agentCount;
+
+    @Param({ "tree", "grid" })
+    public String strategy;
+
+    private BroadPhase broadPhase;
+    private double[] positions;
+    private double[] headings;
+    private double areaSize;
+    private int pairCount;
+    private final IBroadPhaseOverlapHandler counter = (a, b) -> pairCount++;
+    private final Vector3Double min = new Vector3Double();
+    private final Vector3Double max = new Vector3Double();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(5);
+        //About one agent per two square units.
+        areaSize = Math.sqrt(agentCount * 2.0);
+        positions = new double[agentCount * 2];
+        headings = new double[agentCount];
+        broadPhase = new BroadPhase(agentCount, 1);
+        for (int i = 0; i < agentCount; i++) {
+            positions[i * 2] = random.nextDouble() * areaSize;
+            positions[i * 2 + 1] = random.nextDouble() * areaSize;
+            headings[i] = random.nextDouble() * Math.PI * 2;
+            computeBounds(i);
+            broadPhase.addActive(i, min, max);
+        }
+        if (strategy.equals("grid")) {
+            broadPhase.setStrategy(new HashGridBroadPhaseStrategy(AGENT_RADIUS * 2));
+        }
+    }
+
+    @Benchmark
+    public void step(Blackhole blackhole) {
+        for (int i = 0; i < agentCount; i++) {
+            double x = positions[i * 2] + Math.cos(headings[i]) * STEP_LENGTH;
+            double z = positions[i * 2 + 1] + Math.sin(headings[i]) * STEP_LENGTH;
+            //Wrap around the area so the density stays constant.
+            positions[i * 2] = x < 0 ? x + areaSize : x >= areaSize ? x - areaSize : x;
+            positions[i * 2 + 1] = z < 0 ? z + areaSize : z >= areaSize ? z - areaSize : z;
+            computeBounds(i);
+            broadPhase.updateActiveBounds(i, min, max);
+        }
+        broadPhase.update();
+        pairCount = 0;
+        broadPhase.getOverlaps(counter);
+        blackhole.consume(pairCount);
+    }
+
+    private void computeBounds(int agent) {
+        double x = positions[agent * 2];
+        double z = positions[agent * 2 + 1];
+        min.set(x - AGENT_RADIUS, 0, z - AGENT_RADIUS);
+        max.set(x + AGENT_RADIUS, 1.8, z + AGENT_RADIUS);
+    }
+}
@@ -0,0 +1,456 @@
+package bepu.bepuphysics.harness;
+
+import bepu.bepuphysics.BodyDescription;
+import bepu.bepuphysics.BodyInertia;
+import bepu.bepuphysics.PoseHistory;
+import bepu.bepuphysics.Simulation;
+import bepu.bepuphysics.collidables.Box;
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuphysics.collidables.ShapeBatch;
+import bepu.bepuphysics.collidables.Sphere;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuphysics.trees.ILeafHandler;
+import bepu.bepuphysics.trees.IRayLeafTester;
+import bepu.bepuphysics.trees.Tree;
+import bepu.bepuutilities.ContainmentType;
+import bepu.bepuutilities.math.BoundingBox;
+import bepu.bepuutilities.math.BoundingSphere;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+import bepu.bepuutilities.memory.IdPool;
+import bepu.bepuutilities.memory.QuaternionPool;
+import bepu.bepuutilities.memory.Vector3Pool;
+import bepu.bepuutilities.threading.ThreadDispatcher;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks that hot paths don't allocate once they've warmed up. Each check runs its operation until the JIT has compiled it and any pools
+ * and buffers have grown to their working size, then measures the bytes allocated by the threads involved over several rounds of iterations.
+ * A check fails if any round allocated anything, so a stray {@code new} on a path that only runs now and then fails the build as surely as
+ * one that runs every iteration.
+ * <p>
+ * Operations always pass preallocated results; the {@code result == null} convenience paths allocate by design and aren't checked. Time
+ * steps are checked twice: once on the calling thread with sleeping disabled, so every stage runs on the same contacts every frame, and once
+ * on a thread dispatcher while islands keep falling asleep and being woken, counting the dispatcher's workers' allocations too.
+ * <p>
+ * Usage: {@code AllocationChecker [--filter <substring>]}. Exits with status 1 if any check allocates.
+ */
+public class AllocationChecker {
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int MEASURED_ITERATIONS = 10000;
+    private static final int ROUNDS = 5;
+    private static final int STEP_WARMUP = 600;
+    private static final int MEASURED_STEPS = 100;
+    private static final int SLEEP_WAKE_STACKS = 8;
+    private static final int STEPS_BETWEEN_WAKES = 20;
+    //One full cycle of waking every stack per round.
+    private static final int SLEEP_WAKE_STEPS = SLEEP_WAKE_STACKS * STEPS_BETWEEN_WAKES;
+    private static final int SLEEP_WAKE_WARMUP = 3000;
+    //Rounds disturbed by the JIT are measured again, up to this many times per check.
+    private static final int MAX_REPEATED_ROUNDS = 50;
+
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+    private final long[] callingThread = {Thread.currentThread().threadId()};
+    private String filter;
+    private int failureCount;
+    //Written by the checks so the JIT can't discard their work.
+    private double sink;
+    private int leafCount;
+
+    public static void main(String[] args) {
+        AllocationChecker checker = new AllocationChecker();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--filter") && i + 1 < args.length) {
+                checker.filter = args[++i];
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + args[i] + ".");
+            }
+        }
+        if (!checker.threads.isCurrentThreadCpuTimeSupported() || !checker.threads.isThreadAllocatedMemorySupported()) {
+            System.err.println("Thread allocation measurement is not supported by this JVM.");
+            System.exit(1);
+        }
+        checker.threads.setThreadAllocatedMemoryEnabled(true);
+        checker.run();
+        if (checker.failureCount > 0) {
+            System.err.println(checker.failureCount + " allocation check(s) failed.");
+            System.exit(1);
+        }
+        System.err.println("All allocation checks passed.");
+    }
+
+    private void run() {
+        checkPoseTransforms();
+        checkPools();
+        checkBoundsTests();
+        checkIdPoolChurn();
+        checkShapeAddRemove();
+        checkTreeQueries();
+        checkTimesteps();
+        checkThreadedSleepWake();
+    }
+
+    private void checkPoseTransforms() {
+        RigidPose a = new RigidPose(new Vector3Double(1, 2, 3));
+        QuaternionDouble.createFromAxisAngle(new Vector3Double(Math.sqrt(0.5), Math.sqrt(0.5), 0), 0.7, a.getOrientation());
+        RigidPose b = new RigidPose(new Vector3Double(-2, 0.5, 4));
+        QuaternionDouble.createFromAxisAngle(new Vector3Double(0, 1, 0), -1.3, b.getOrientation());
+        RigidPose combined = new RigidPose(new Vector3Double());
+        RigidPose inverse = new RigidPose(new Vector3Double());
+        QuaternionDouble concatenated = new QuaternionDouble();
+        QuaternionDouble conjugate = new QuaternionDouble();
+        Vector3Double point = new Vector3Double(0.25, -1, 2);
+        Vector3Double transformed = new Vector3Double();
+        Vector3Double restored = new Vector3Double();
+        check("pose transforms", () -> {
+            point.x += 1e-9;
+            RigidPose.transform(point, a, transformed);
+            RigidPose.transformByInverse(transformed, a, restored);
+            RigidPose.MultiplyWithoutOverlap(a, b, combined);
+            RigidPose.invert(combined, inverse);
+            a.getOrientation().concatenateWithoutOverlap(b.getOrientation(), concatenated).normalizeLocal();
+            concatenated.conjugate(conjugate).transformWithoutOverlap(point, transformed);
+            sink += restored.x + inverse.getPosition().y + transformed.z;
+        });
+    }
+
+    private void checkPools() {
+        Vector3Pool vectors = Vector3Pool.getInstance();
+        QuaternionPool quaternions = QuaternionPool.getInstance();
+        check("vector and quaternion pools", () -> {
+            Vector3Double v = vectors.take();
+            QuaternionDouble q = quaternions.take();
+            v.set(1, 2, 3);
+            q.set(0, 0, 0, 1);
+            sink += q.transform(v, v).y;
+            quaternions.release(q);
+            vectors.release(v);
+        });
+    }
+
+    private void checkBoundsTests() {
+        Random random = new Random(5);
+        int boxCount = 64;
+        BoundingBox[] boxes = new BoundingBox[boxCount];
+        for (int i = 0; i < boxCount; i++) {
+            double x = random.nextDouble() * 10;
+            double y = random.nextDouble() * 10;
+            double z = random.nextDouble() * 10;
+            boxes[i] = new BoundingBox(new Vector3Double(x, y, z), new Vector3Double(x + 2, y + 2, z + 2));
+        }
+        BoundingSphere sphere = new BoundingSphere(new Vector3Double(5, 5, 5), 3);
+        BoundingBox merged = new BoundingBox();
+        BoundingBox fromPoints = new BoundingBox();
+        BoundingBox fromSphere = new BoundingBox();
+        double[] points = new double[3 * 16];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextDouble() * 10;
+        }
+        check("bounds tests", () -> {
+            int overlapCount = 0;
+            for (int i = 0; i < boxCount; i++) {
+                BoundingBox box = boxes[i];
+                BoundingBox next = boxes[(i + 1) & (boxCount - 1)];
+                if (BoundingBox.isIntersecting(box, next)) {
+                    overlapCount++;
+                }
+                if (BoundingBox.isIntersecting(box.min, box.max, next.min, next.max)) {
+                    overlapCount++;
+                }
+                if (box.intersects(sphere)) {
+                    overlapCount++;
+                }
+                if (box.contains(next) != ContainmentType.DISJOINT) {
+                    overlapCount++;
+                }
+                BoundingBox.createMerged(box, next, merged);
+                BoundingBox.createMerged(box.min, box.max, next.min, next.max, merged.min, merged.max);
+            }
+            BoundingBox.createFromPoints(points, 0, 16, fromPoints);
+            BoundingBox.createFromSphere(sphere, fromSphere);
+            sink += overlapCount + merged.max.x + fromPoints.min.y + fromSphere.max.z;
+        });
+    }
+
+    private void checkIdPoolChurn() {
+        IdPool pool = new IdPool(16);
+        int batchSize = 64;
+        int[] ids = new int[batchSize];
+        int[] releaseOrder = new int[batchSize];
+        Random random = new Random(7);
+        for (int i = 0; i < batchSize; i++) {
+            releaseOrder[i] = i;
+        }
+        for (int i = batchSize - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = releaseOrder[i];
+            releaseOrder[i] = releaseOrder[j];
+            releaseOrder[j] = swap;
+        }
+        check("id pool churn", () -> {
+            for (int i = 0; i < batchSize; i++) {
+                ids[i] = pool.take();
+            }
+            for (int i = 0; i < batchSize; i++) {
+                pool.release(ids[releaseOrder[i]]);
+            }
+            pool.take(batchSize, ids);
+            pool.release(ids, 0, batchSize);
+        });
+    }
+
+    private void checkShapeAddRemove() {
+        Simulation simulation = new Simulation();
+        //Typed indices are immutable objects, so the batch level calls are the allocation free path.
+        TypedIndex boxType = simulation.getShapes().add(new Box(1, 1, 1));
+        TypedIndex sphereType = simulation.getShapes().add(new Sphere(0.5));
+        ShapeBatch boxes = simulation.getShapes().get(boxType.getType());
+        ShapeBatch spheres = simulation.getShapes().get(sphereType.getType());
+        int batchSize = 32;
+        Box[] boxShapes = new Box[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            boxShapes[i] = new Box(1 + i * 0.1, 1, 1);
+        }
+        Sphere sphere = new Sphere(1);
+        int[] indices = new int[batchSize];
+        check("shape add and remove", () -> {
+            for (int i = 0; i < batchSize; i++) {
+                indices[i] = spheres.add(sphere);
+            }
+            for (int i = batchSize - 1; i >= 0; i--) {
+                spheres.remove(indices[i]);
+            }
+            boxes.add(boxShapes, 0, batchSize, indices);
+            boxes.remove(indices, 0, batchSize);
+        });
+    }
+
+    private void checkTreeQueries() {
+        Random random = new Random(11);
+        int leafTarget = 1024;
+        Tree tree = new Tree(leafTarget);
+        Vector3Double min = new Vector3Double();
+        Vector3Double max = new Vector3Double();
+        for (int i = 0; i < leafTarget; i++) {
+            min.set(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100);
+            max.set(min.x + 1, min.y + 1, min.z + 1);
+            tree.add(min, max);
+        }
+        ILeafHandler counter = leafIndex -> leafCount++;
+        IRayLeafTester rayTester = (leafIndex, maximumT) -> maximumT;
+        Vector3Double queryMin = new Vector3Double(40, 40, 40);
+        Vector3Double queryMax = new Vector3Double(60, 60, 60);
+        Vector3Double origin = new Vector3Double(-1, 50, 50);
+        Vector3Double direction = new Vector3Double(1, 0.01, 0.02);
+        int[] moved = new int[1];
+        check("tree queries and refits", () -> {
+            leafCount = 0;
+            tree.getOverlaps(queryMin, queryMax, counter);
+            sink += tree.rayCast(origin, direction, 200, rayTester);
+            int leaf = moved[0]++ & (leafTarget - 1);
+            tree.getBounds(leaf, min, max);
+            min.x += 0.01;
+            max.x += 0.01;
+            tree.updateBounds(leaf, min, max);
+            sink += leafCount;
+        });
+    }
+
+    private void checkTimesteps() {
+        Simulation simulation = new Simulation();
+        simulation.getPoseIntegrator().setGravity(new Vector3Double(0, -10, 0));
+        TypedIndex ground = simulation.getShapes().add(new Box(60, 1, 60));
+        TypedIndex box = simulation.getShapes().add(new Box(1, 1, 1));
+        TypedIndex ball = simulation.getShapes().add(new Sphere(0.5));
+        BodyDescription description = new BodyDescription().setShape(ground);
+        description.getPose().getPosition().set(0, -0.5, 0);
+        simulation.getBodies().add(description);
+        BodyInertia boxInertia = new BodyInertia().setBox(1, 1, 1, 1);
+        BodyInertia ballInertia = new BodyInertia().setSphere(1, 0.5);
+        //Bodies never sleep, so every stage of the step keeps running on the same contacts once the stacks have settled.
+        for (int pyramid = 0; pyramid < 4; pyramid++) {
+            for (int row = 0; row < 6; row++) {
+                for (int column = 0; column < 6 - row; column++) {
+                    boolean isBall = row == 5;
+                    description = new BodyDescription().setShape(isBall ? ball : box).setInertia(isBall ? ballInertia : boxInertia)
+                            .setSleepThreshold(-1);
+                    description.getPose().getPosition().set((column - (6 - row) * 0.5) * 1.05, 0.5 + row, (pyramid - 2) * 4);
+                    simulation.getBodies().add(description);
+                }
+            }
+        }
+        simulation.getSolver().setSubstepCount(2);
+        PoseHistory history = simulation.getPoseHistory().setRecording(true);
+        check("full time steps", STEP_WARMUP, MEASURED_STEPS, () -> simulation.timestep(1 / 60.0));
+
+        int[] handles = new int[history.getHandleCapacity()];
+        int handleCount = 0;
+        for (int handle = 0; handle < handles.length; handle += 2) {
+            if (history.hasHistory(handle)) {
+                handles[handleCount++] = handle;
+            }
+        }
+        int sampledCount = handleCount;
+        double[] positions = new double[history.getHandleCapacity() * 3];
+        double[] orientations = new double[history.getHandleCapacity() * 4];
+        RigidPose pose = new RigidPose(new Vector3Double());
+        double[] offset = {0};
+        check("pose history sampling", () -> {
+            offset[0] = offset[0] > 0.5 ? 0 : offset[0] + 0.001;
+            double time = history.getLatestTime() - offset[0];
+            history.sampleAll(time, positions, orientations);
+            history.sample(time, handles, sampledCount, positions, orientations);
+            history.sample(time, handles[0], pose);
+            sink += positions[0] + orientations[0] + pose.getPosition().y;
+        });
+    }
+
+    private void checkThreadedSleepWake() {
+        String name = "threaded time steps with sleeping and waking";
+        if (isFiltered(name)) {
+            return;
+        }
+        Simulation simulation = new Simulation();
+        simulation.getPoseIntegrator().setGravity(new Vector3Double(0, -10, 0));
+        TypedIndex ground = simulation.getShapes().add(new Box(80, 1, 80));
+        TypedIndex box = simulation.getShapes().add(new Box(1, 1, 1));
+        BodyDescription description = new BodyDescription().setShape(ground);
+        description.getPose().getPosition().set(0, -0.5, 0);
+        simulation.getBodies().add(description);
+        BodyInertia boxInertia = new BodyInertia().setBox(1, 1, 1, 1);
+        //Separate stacks are separate islands that come to rest and sleep. One is woken every few steps, settles and falls asleep again before
+        //its turn comes around, so every round of the check repeats the same cycle of sleeping and waking.
+        int[] wokenBodies = new int[SLEEP_WAKE_STACKS];
+        for (int stack = 0; stack < SLEEP_WAKE_STACKS; stack++) {
+            for (int level = 0; level < 1 + stack % 3; level++) {
+                description = new BodyDescription().setShape(box).setInertia(boxInertia);
+                description.getPose().getPosition().set((stack - SLEEP_WAKE_STACKS * 0.5) * 4, 0.5 + level, 0);
+                wokenBodies[stack] = simulation.getBodies().add(description);
+            }
+        }
+        //Islands going to sleep and waking change the static tree, so publishing snapshots also covers the reuse of retired static copies.
+        simulation.getSnapshots().setPublishing(true);
+        ThreadDispatcher dispatcher = new ThreadDispatcher(Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
+        simulation.setThreadDispatcher(dispatcher);
+        long[] threadIds = getThreadIds(dispatcher);
+        int[] step = {0};
+        int[] activeCount = {simulation.getBodies().getActiveSet().getCount()};
+        int[] activeCountChanges = {0};
+        check(name, SLEEP_WAKE_WARMUP, SLEEP_WAKE_STEPS, threadIds, () -> {
+            if (++step[0] % STEPS_BETWEEN_WAKES == 0) {
+                simulation.getAwakener().awakenBody(wokenBodies[step[0] / STEPS_BETWEEN_WAKES % SLEEP_WAKE_STACKS]);
+            }
+            simulation.timestep(1 / 60.0);
+            int count = simulation.getBodies().getActiveSet().getCount();
+            if (count != activeCount[0]) {
+                activeCount[0] = count;
+                activeCountChanges[0]++;
+            }
+        });
+        dispatcher.dispose();
+        //Guard against the scene drifting into a state where nothing sleeps or wakes, which would quietly stop covering those paths.
+        if (activeCountChanges[0] < ROUNDS * SLEEP_WAKE_STEPS / (STEPS_BETWEEN_WAKES * 2)) {
+            fail(name + ": islands only slept or woke " + activeCountChanges[0] + " times.");
+        }
+    }
+
+    /**
+     * Gets the ids of the calling thread and of a dispatcher's workers.
+     */
+    private long[] getThreadIds(ThreadDispatcher dispatcher) {
+        long[] threadIds = new long[dispatcher.getThreadCount()];
+        threadIds[0] = Thread.currentThread().threadId();
+        for (int workerIndex = 1; workerIndex < threadIds.length; workerIndex++) {
+            threadIds[workerIndex] = dispatcher.getWorkerThreadId(workerIndex);
+        }
+        return threadIds;
+    }
+
+    private void check(String name, Runnable operation) {
+        check(name, WARMUP_ITERATIONS, MEASURED_ITERATIONS, operation);
+    }
+
+    private void check(String name, int warmupIterations, int measuredIterations, Runnable operation) {
+        check(name, warmupIterations, measuredIterations, callingThread, operation);
+    }
+
+    private boolean isFiltered(String name) {
+        return filter != null && !name.contains(filter);
+    }
+
+    private void check(String name, int warmupIterations, int measuredIterations, long[] threadIds, Runnable operation) {
+        if (isFiltered(name)) {
+            return;
+        }
+        //Reading the counters can itself allocate on some JVMs; whatever an empty round reports is subtracted.
+        long baseline = measure(WARMUP_ITERATIONS, 1, threadIds, () -> { });
+        long allocated = Math.max(0, measure(warmupIterations, measuredIterations, threadIds, operation) - baseline);
+        if (allocated > 0) {
+            fail(String.format(Locale.ROOT, "%s: worst round allocated %d bytes over %d iterations (%.2f bytes per iteration)",
+                    name, allocated, measuredIterations, allocated / (double) measuredIterations));
+        } else {
+            System.err.println("ok     " + name);
+        }
+    }
+
+    private void fail(String message) {
+        failureCount++;
+        System.err.println("FAILED " + message);
+    }
+
+    /**
+     * Measures the bytes a set of threads allocates while the current thread runs an operation, after warming it up. Compiling and
+     * deoptimizing allocate on the threads that trigger them, so a round during which the JIT was busy and something was allocated is
+     * measured again rather than counted.
+     * <p>
+     * Tiered compilation also allocates a few bytes now and then on threads entering freshly compiled code, and a compilation that short
+     * doesn't move the total compilation time, which is kept in milliseconds. One allocating round per check is therefore measured again
+     * without any sign of the JIT. A steady state allocation shows up every round, so it still fails the check in the next one.
+     *
+     * @return Largest allocation of any measured round.
+     */
+    private long measure(int warmupIterations, int measuredIterations, long[] threadIds, Runnable operation) {
+        for (int i = 0; i < warmupIterations; i++) {
+            operation.run();
+        }
+        long worst = 0;
+        int repeatedRounds = 0;
+        boolean unexplainedRoundRepeated = false;
+        for (int round = 0; round < ROUNDS; round++) {
+            long compilationTime = getCompilationTime();
+            long before = getAllocatedBytes(threadIds);
+            for (int i = 0; i < measuredIterations; i++) {
+                operation.run();
+            }
+            long allocated = getAllocatedBytes(threadIds) - before;
+            if (allocated > 0 && repeatedRounds < MAX_REPEATED_ROUNDS) {
+                boolean compiled = getCompilationTime() != compilationTime;
+                if (compiled || !unexplainedRoundRepeated) {
+                    unexplainedRoundRepeated |= !compiled;
+                    repeatedRounds++;
+                    round--;
+                    continue;
+                }
+            }
+            worst = Math.max(worst, allocated);
+        }
+        return worst;
+    }
+
+    private long getCompilationTime() {
+        return compilation.isCompilationTimeMonitoringSupported() ? compilation.getTotalCompilationTime() : 0;
+    }
+
+    private long getAllocatedBytes(long[] threadIds) {
+        long total = 0;
+        for (long threadId : threadIds) {
+            total += threads.getThreadAllocatedBytes(threadId);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,82 @@
+package bepu.bepuphysics.harness;
+
+import bepu.bepuphysics.BodyDescription;
+import bepu.bepuphysics.BodyInertia;
+import bepu.bepuphysics.Simulation;
+import bepu.bepuphysics.collidables.Box;
+import bepu.bepuphysics.collidables.Sphere;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuutilities.math.Vector3Double;
+
+import java.util.Locale;
+
+/**
+ * Checks that continuous collision detection stops fast bodies at thin obstacles. Each case fires a continuous sphere at a thin kinematic
+ * wall, far faster than the wall is thick per frame, and fails if the sphere's center ever gets past the wall's near face or if the sphere
+ * is still moving through the wall once it has hit it. Cases cover one and several solver substeps, since substeps change how much of the
+ * frame is integrated before collision detection runs.
+ * <p>
+ * Usage: {@code ContinuousCollisionChecker}. Exits with status 1 if any case lets the sphere through.
+ */
+public class ContinuousCollisionChecker {
+    private static final double DT = 1 / 60.0;
+    private static final int STEPS = 60;
+    private static final double WALL_X = 3;
+    private static final double WALL_THICKNESS = 0.1;
+    private static final double RADIUS = 0.05;
+    //Penetration the solver may leave behind; far less than the distance a tunnelling sphere covers in one frame.
+    private static final double TOLERANCE = 0.02;
+
+    private int failureCount;
+
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            throw new IllegalArgumentException("Unknown argument " + args[0] + ".");
+        }
+        ContinuousCollisionChecker checker = new ContinuousCollisionChecker();
+        for (int substepCount : new int[]{1, 2, 4}) {
+            checker.checkSphereAgainstWall(300, substepCount);
+            checker.checkSphereAgainstWall(1000, substepCount);
+        }
+        if (checker.failureCount > 0) {
+            System.err.println(checker.failureCount + " continuous collision check(s) failed.");
+            System.exit(1);
+        }
+        System.err.println("All continuous collision checks passed.");
+    }
+
+    private void checkSphereAgainstWall(double speed, int substepCount) {
+        String name = String.format(Locale.ROOT, "sphere at %.0f m/s, %d substep(s)", speed, substepCount);
+        Simulation simulation = new Simulation();
+        simulation.getSolver().setSubstepCount(substepCount);
+        TypedIndex wall = simulation.getShapes().add(new Box(WALL_THICKNESS, 10, 10));
+        TypedIndex sphere = simulation.getShapes().add(new Sphere(RADIUS));
+        BodyDescription description = new BodyDescription().setShape(wall);
+        description.getPose().getPosition().set(WALL_X, 0, 0);
+        simulation.getBodies().add(description);
+        description = new BodyDescription().setShape(sphere).setInertia(new BodyInertia().setSphere(1, RADIUS)).setContinuous(true);
+        description.getVelocity().getLinear().set(speed, 0, 0);
+        int handle = simulation.getBodies().add(description);
+
+        //The sphere's center can get no closer to the wall's center than this while the sphere is on the near side.
+        double limit = WALL_X - WALL_THICKNESS * 0.5 - RADIUS + TOLERANCE;
+        double furthest = Double.NEGATIVE_INFINITY;
+        for (int step = 0; step < STEPS; step++) {
+            simulation.timestep(DT);
+            furthest = Math.max(furthest, simulation.getBodies().getPose(handle).getPosition().x);
+        }
+        Vector3Double linear = simulation.getBodies().getVelocity(handle).getLinear();
+        if (furthest > limit) {
+            fail(String.format(Locale.ROOT, "%s: sphere reached x = %.3f, past the wall's near face at %.3f", name, furthest, limit));
+        } else if (linear.x > TOLERANCE / DT) {
+            fail(String.format(Locale.ROOT, "%s: sphere still moving into the wall at %.3f m/s", name, linear.x));
+        } else {
+            System.err.println("ok     " + name);
+        }
+    }
+
+    private void fail(String message) {
+        failureCount++;
+        System.err.println("FAILED " + message);
+    }
+}
@@ -0,0 +1,64 @@
+package bepu.bepuphysics.harness;
+
+import bepu.bepuphysics.Simulation;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Input events applied before one step: velocity changes of bodies, identified by their index in the scene's creation order.
+ */
+public class InputFrame {
+    private int[] bodyIndices = new int[16];
+    private double[] velocityChanges = new double[48];
+    private int count;
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getBodyIndex(int eventIndex) {
+        return bodyIndices[eventIndex];
+    }
+
+    public double getVelocityChange(int eventIndex, int axis) {
+        return velocityChanges[eventIndex * 3 + axis];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public void add(int bodyIndex, double x, double y, double z) {
+        if (count == bodyIndices.length) {
+            int[] newBodyIndices = new int[count * 2];
+            System.arraycopy(bodyIndices, 0, newBodyIndices, 0, count);
+            bodyIndices = newBodyIndices;
+            double[] newVelocityChanges = new double[count * 6];
+            System.arraycopy(velocityChanges, 0, newVelocityChanges, 0, count * 3);
+            velocityChanges = newVelocityChanges;
+        }
+        bodyIndices[count] = bodyIndex;
+        velocityChanges[count * 3] = x;
+        velocityChanges[count * 3 + 1] = y;
+        velocityChanges[count * 3 + 2] = z;
+        count++;
+    }
+
+    /**
+     * Applies every event to the simulation, waking sleeping bodies so that the change takes effect.
+     *
+     * @param simulation Simulation to modify.
+     * @param scene Scene that created the simulation's bodies.
+     */
+    public void apply(Simulation simulation, Scene scene) {
+        for (int i = 0; i < count; i++) {
+            int handle = scene.getBodyHandle(bodyIndices[i]);
+            if (!simulation.getBodies().isActive(handle)) {
+                simulation.getAwakener().awakenBody(handle);
+            }
+            Vector3Double linear = simulation.getBodies().getVelocity(handle).getLinear();
+            linear.x += velocityChanges[i * 3];
+            linear.y += velocityChanges[i * 3 + 1];
+            linear.z += velocityChanges[i * 3 + 2];
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package bepu.bepuphysics.harness;
+
+import bepu.bepuphysics.BodyInertia;
+import bepu.bepuphysics.Simulation;
+import bepu.bepuphysics.collidables.Box;
+import bepu.bepuphysics.collidables.Sphere;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * A large block of boxes and spheres dropped into a walled pit, where it collapses into a pile. Produces many pairs that change every frame
+ * while the pile settles.
+ */
+public class PileScene extends Scene {
+    private static final int COLUMNS = 16;
+    private static final int LAYERS = 16;
+
+    @Override
+    public String getName() {
+        return "pile";
+    }
+
+    @Override
+    public void create(Simulation simulation) {
+        simulation.getPoseIntegrator().setGravity(new Vector3Double(0, -10, 0));
+        TypedIndex ground = simulation.getShapes().add(new Box(40, 1, 40));
+        TypedIndex wallX = simulation.getShapes().add(new Box(1, 20, 40));
+        TypedIndex wallZ = simulation.getShapes().add(new Box(40, 20, 1));
+        TypedIndex box = simulation.getShapes().add(new Box(0.9, 0.9, 0.9));
+        TypedIndex sphere = simulation.getShapes().add(new Sphere(0.45));
+        BodyInertia boxInertia = new BodyInertia().setBox(1, 0.9, 0.9, 0.9);
+        BodyInertia sphereInertia = new BodyInertia().setSphere(1, 0.45);
+        addKinematic(simulation, ground, 0, -0.5, 0);
+        addKinematic(simulation, wallX, -20.5, 10, 0);
+        addKinematic(simulation, wallX, 20.5, 10, 0);
+        addKinematic(simulation, wallZ, 0, 10, -20.5);
+        addKinematic(simulation, wallZ, 0, 10, 20.5);
+        for (int layer = 0; layer < LAYERS; layer++) {
+            for (int i = 0; i < COLUMNS; i++) {
+                for (int j = 0; j < COLUMNS; j++) {
+                    double x = (i - COLUMNS * 0.5) * 1.1 + (layer & 1) * 0.3;
+                    double z = (j - COLUMNS * 0.5) * 1.1;
+                    double y = 4 + layer * 1.1;
+                    if (((i + j + layer) & 1) == 0) {
+                        addDynamic(simulation, box, boxInertia, x, y, z);
+                    } else {
+                        addDynamic(simulation, sphere, sphereInertia, x, y, z);
+                    }
+                }
+            }
+        }
+    }
+}
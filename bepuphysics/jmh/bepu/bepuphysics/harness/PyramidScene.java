@@ -0,0 +1,39 @@
+package bepu.bepuphysics.harness;
+
+import bepu.bepuphysics.BodyInertia;
+import bepu.bepuphysics.Simulation;
+import bepu.bepuphysics.collidables.Box;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Rows of box pyramids resting on a kinematic ground. Deep stacks stress the solver's convergence and warm starting.
+ */
+public class PyramidScene extends Scene {
+    private static final int PYRAMID_COUNT = 20;
+    private static final int BASE_WIDTH = 12;
+
+    @Override
+    public String getName() {
+        return "pyramids";
+    }
+
+    @Override
+    public void create(Simulation simulation) {
+        simulation.getPoseIntegrator().setGravity(new Vector3Double(0, -10, 0));
+        TypedIndex ground = simulation.getShapes().add(new Box(200, 1, 200));
+        TypedIndex box = simulation.getShapes().add(new Box(1, 1, 1));
+        BodyInertia inertia = new BodyInertia().setBox(1, 1, 1, 1);
+        addKinematic(simulation, ground, 0, -0.5, 0);
+        for (int pyramid = 0; pyramid < PYRAMID_COUNT; pyramid++) {
+            double z = (pyramid - PYRAMID_COUNT * 0.5) * 4;
+            for (int row = 0; row < BASE_WIDTH; row++) {
+                int rowWidth = BASE_WIDTH - row;
+                for (int column = 0; column < rowWidth; column++) {
+                    double x = (column - rowWidth * 0.5) * 1.05;
+                    addDynamic(simulation, box, inertia, x, 0.5 + row, z);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package bepu.bepuphysics.harness;
+
+import bepu.bepuphysics.BodyInertia;
+import bepu.bepuphysics.Simulation;
+import bepu.bepuphysics.collidables.Box;
+import bepu.bepuphysics.collidables.Capsule;
+import bepu.bepuphysics.collidables.CollidableReference;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuphysics.constraints.BallSocket;
+import bepu.bepuutilities.math.Vector3Double;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A crowd of ragdolls standing on a kinematic ground and being shoved around. Every ragdoll is ten bodies held together by ball sockets;
+ * parts of the same ragdoll don't collide with each other. Exercises joints, contacts between many small bodies and island waking.
+ */
+public class RagdollCrowdScene extends Scene {
+    private static final int CROWD_WIDTH = 16;
+    private static final int PARTS_PER_RAGDOLL = 10;
+    private static final int PUSH_INTERVAL = 20;
+    private static final int PUSHES = 8;
+
+    //Ragdoll index of each body handle, or -1 for bodies that aren't part of a ragdoll.
+    private int[] ragdollIndices = new int[0];
+    private final BallSocket joint = new BallSocket();
+    private final Vector3Double offset = new Vector3Double();
+
+    @Override
+    public String getName() {
+        return "ragdolls";
+    }
+
+    @Override
+    public void create(Simulation simulation) {
+        simulation.getPoseIntegrator().setGravity(new Vector3Double(0, -10, 0));
+        TypedIndex ground = simulation.getShapes().add(new Box(200, 1, 200));
+        TypedIndex pelvisShape = simulation.getShapes().add(new Box(0.5, 0.3, 0.3));
+        TypedIndex torsoShape = simulation.getShapes().add(new Box(0.6, 0.6, 0.3));
+        TypedIndex headShape = simulation.getShapes().add(new Box(0.3, 0.3, 0.3));
+        TypedIndex armShape = simulation.getShapes().add(new Capsule(0.08, 0.3));
+        TypedIndex legShape = simulation.getShapes().add(new Capsule(0.1, 0.4));
+        BodyInertia pelvisInertia = new BodyInertia().setBox(8, 0.5, 0.3, 0.3);
+        BodyInertia torsoInertia = new BodyInertia().setBox(15, 0.6, 0.6, 0.3);
+        BodyInertia headInertia = new BodyInertia().setBox(4, 0.3, 0.3, 0.3);
+        BodyInertia armInertia = new BodyInertia().setBox(2, 0.16, 0.46, 0.16);
+        BodyInertia legInertia = new BodyInertia().setBox(5, 0.2, 0.6, 0.2);
+        addKinematic(simulation, ground, 0, -0.5, 0);
+
+        int ragdollCount = CROWD_WIDTH * CROWD_WIDTH;
+        ragdollIndices = new int[getBodyCount() + ragdollCount * PARTS_PER_RAGDOLL + 1];
+        Arrays.fill(ragdollIndices, -1);
+        for (int ragdoll = 0; ragdoll < ragdollCount; ragdoll++) {
+            double x = (ragdoll % CROWD_WIDTH - CROWD_WIDTH * 0.5) * 1.5;
+            double z = (ragdoll / CROWD_WIDTH - CROWD_WIDTH * 0.5) * 1.5;
+            int pelvis = addPart(simulation, ragdoll, pelvisShape, pelvisInertia, x, 1.15, z);
+            int torso = addPart(simulation, ragdoll, torsoShape, torsoInertia, x, 1.6, z);
+            int head = addPart(simulation, ragdoll, headShape, headInertia, x, 2.1, z);
+            connect(simulation, pelvis, torso, x, 1.3, z);
+            connect(simulation, torso, head, x, 1.925, z);
+            for (int side = -1; side <= 1; side += 2) {
+                double armX = x + side * 0.42;
+                int upperArm = addPart(simulation, ragdoll, armShape, armInertia, armX, 1.65, z);
+                int lowerArm = addPart(simulation, ragdoll, armShape, armInertia, armX, 1.19, z);
+                connect(simulation, torso, upperArm, armX, 1.88, z);
+                connect(simulation, upperArm, lowerArm, armX, 1.42, z);
+                double legX = x + side * 0.15;
+                int thigh = addPart(simulation, ragdoll, legShape, legInertia, legX, 0.7, z);
+                int shin = addPart(simulation, ragdoll, legShape, legInertia, legX, 0.1 + 0.2 + 0.1, z);
+                connect(simulation, pelvis, thigh, legX, 1.0, z);
+                connect(simulation, thigh, shin, legX, 0.55, z);
+            }
+        }
+        simulation.getBroadPhase().setPairFilter(this::allowPair);
+    }
+
+    private int addPart(Simulation simulation, int ragdoll, TypedIndex shape, BodyInertia inertia, double x, double y, double z) {
+        int handle = addDynamic(simulation, shape, inertia, x, y, z);
+        if (handle >= ragdollIndices.length) {
+            int oldLength = ragdollIndices.length;
+            ragdollIndices = Arrays.copyOf(ragdollIndices, Math.max(handle + 1, oldLength * 2));
+            Arrays.fill(ragdollIndices, oldLength, ragdollIndices.length, -1);
+        }
+        ragdollIndices[handle] = ragdoll;
+        return handle;
+    }
+
+    private void connect(Simulation simulation, int a, int b, double x, double y, double z) {
+        Vector3Double positionA = simulation.getBodies().getPose(a).getPosition();
+        Vector3Double positionB = simulation.getBodies().getPose(b).getPosition();
+        joint.setLocalOffsetA(offset.set(x - positionA.x, y - positionA.y, z - positionA.z));
+        joint.setLocalOffsetB(offset.set(x - positionB.x, y - positionB.y, z - positionB.z));
+        simulation.getSolver().add(a, b, joint);
+    }
+
+    private boolean allowPair(int collidableA, int collidableB) {
+        int ragdollA = ragdollIndices[CollidableReference.getHandle(collidableA)];
+        return ragdollA < 0 || ragdollA != ragdollIndices[CollidableReference.getHandle(collidableB)];
+    }
+
+    @Override
+    public void createInput(int step, Random random, InputFrame input) {
+        if (step % PUSH_INTERVAL != 0) {
+            return;
+        }
+        int ragdollCount = CROWD_WIDTH * CROWD_WIDTH;
+        for (int i = 0; i < PUSHES; i++) {
+            //Body 0 is the ground; each ragdoll's pelvis is its first part.
+            int pelvis = 1 + random.nextInt(ragdollCount) * PARTS_PER_RAGDOLL;
+            double angle = random.nextDouble() * 2 * Math.PI;
+            input.add(pelvis, Math.cos(angle) * 3, 0, Math.sin(angle) * 3);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package bepu.bepuphysics.harness;
+
+import bepu.bepuphysics.Simulation;
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Reads a recording written by {@link RecordingWriter} and compares recorded poses against a simulation replaying the recorded input.
+ */
+public class RecordingReader implements Closeable {
+    private final DataInputStream in;
+    private final String sceneName;
+    private final int stepCount;
+    private final double dt;
+    private final int poseInterval;
+    private final int bodyCount;
+
+    private double maximumPositionError;
+    private double maximumOrientationError;
+    private int comparedFrames;
+    private int mismatchedFrames;
+    private int firstMismatchStep = -1;
+
+    public RecordingReader(String path) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+        if (in.readInt() != RecordingWriter.MAGIC) {
+            throw new IOException(path + " is not a scene recording.");
+        }
+        int version = in.readInt();
+        if (version != RecordingWriter.FORMAT_VERSION) {
+            throw new IOException("Unsupported recording format version " + version + ".");
+        }
+        sceneName = in.readUTF();
+        stepCount = in.readInt();
+        dt = in.readDouble();
+        poseInterval = in.readInt();
+        bodyCount = in.readInt();
+    }
+
+    public String getSceneName() {
+        return sceneName;
+    }
+
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    public double getDt() {
+        return dt;
+    }
+
+    public int getBodyCount() {
+        return bodyCount;
+    }
+
+    public void readInput(InputFrame input) throws IOException {
+        input.clear();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int bodyIndex = in.readInt();
+            input.add(bodyIndex, in.readDouble(), in.readDouble(), in.readDouble());
+        }
+    }
+
+    /**
+     * Compares the simulation's poses against the recording if the step is on the pose interval.
+     *
+     * @param step Index of the step that just ran.
+     * @param simulation Simulation after the step.
+     * @param scene Scene that created the simulation's bodies.
+     */
+    public void comparePoses(int step, Simulation simulation, Scene scene) throws IOException {
+        if ((step + 1) % poseInterval != 0) {
+            return;
+        }
+        boolean mismatch = false;
+        for (int i = 0; i < bodyCount; i++) {
+            RigidPose pose = simulation.getBodies().getPose(scene.getBodyHandle(i));
+            Vector3Double position = pose.getPosition();
+            QuaternionDouble orientation = pose.getOrientation();
+            double positionError = Math.max(Math.abs(position.x - in.readDouble()),
+                    Math.max(Math.abs(position.y - in.readDouble()), Math.abs(position.z - in.readDouble())));
+            double orientationError = Math.max(Math.max(Math.abs(orientation.getX() - in.readDouble()), Math.abs(orientation.getY() - in.readDouble())),
+                    Math.max(Math.abs(orientation.getZ() - in.readDouble()), Math.abs(orientation.getW() - in.readDouble())));
+            maximumPositionError = Math.max(maximumPositionError, positionError);
+            maximumOrientationError = Math.max(maximumOrientationError, orientationError);
+            mismatch |= positionError != 0 || orientationError != 0;
+        }
+        comparedFrames++;
+        if (mismatch) {
+            mismatchedFrames++;
+            if (firstMismatchStep < 0) {
+                firstMismatchStep = step;
+            }
+        }
+    }
+
+    public double getMaximumPositionError() {
+        return maximumPositionError;
+    }
+
+    public double getMaximumOrientationError() {
+        return maximumOrientationError;
+    }
+
+    public int getComparedFrames() {
+        return comparedFrames;
+    }
+
+    public int getMismatchedFrames() {
+        return mismatchedFrames;
+    }
+
+    /**
+     * Gets the first step whose poses differed from the recording in any bit.
+     *
+     * @return Index of the first mismatching step, or -1 if every compared frame matched exactly.
+     */
+    public int getFirstMismatchStep() {
+        return firstMismatchStep;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
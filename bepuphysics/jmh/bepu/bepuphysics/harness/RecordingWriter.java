@@ -0,0 +1,79 @@
+package bepu.bepuphysics.harness;
+
+import bepu.bepuphysics.Simulation;
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes a recording of a scene run: the input applied before every step and, every few steps, the pose of every body.
+ * <p>
+ * Layout, big endian: magic, format version, scene name, step count, time step duration, pose interval and body count. Then for every step
+ * the number of input events, the events as a body index and three velocity change components, and, on steps where
+ * {@code (step + 1) % poseInterval == 0}, position and orientation of every body in scene order.
+ */
+public class RecordingWriter implements Closeable {
+    static final int MAGIC = 0x42505352;
+    static final int FORMAT_VERSION = 1;
+
+    private final DataOutputStream out;
+    private final int poseInterval;
+
+    public RecordingWriter(String path, Scene scene, int stepCount, double dt, int poseInterval) throws IOException {
+        this.poseInterval = poseInterval;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(scene.getName());
+        out.writeInt(stepCount);
+        out.writeDouble(dt);
+        out.writeInt(poseInterval);
+        out.writeInt(scene.getBodyCount());
+    }
+
+    public void writeInput(InputFrame input) throws IOException {
+        out.writeInt(input.getCount());
+        for (int i = 0; i < input.getCount(); i++) {
+            out.writeInt(input.getBodyIndex(i));
+            out.writeDouble(input.getVelocityChange(i, 0));
+            out.writeDouble(input.getVelocityChange(i, 1));
+            out.writeDouble(input.getVelocityChange(i, 2));
+        }
+    }
+
+    /**
+     * Writes the poses of every body if the step is on the pose interval.
+     *
+     * @param step Index of the step that just ran.
+     * @param simulation Simulation after the step.
+     * @param scene Scene that created the simulation's bodies.
+     */
+    public void writePoses(int step, Simulation simulation, Scene scene) throws IOException {
+        if ((step + 1) % poseInterval != 0) {
+            return;
+        }
+        for (int i = 0; i < scene.getBodyCount(); i++) {
+            RigidPose pose = simulation.getBodies().getPose(scene.getBodyHandle(i));
+            Vector3Double position = pose.getPosition();
+            QuaternionDouble orientation = pose.getOrientation();
+            out.writeDouble(position.x);
+            out.writeDouble(position.y);
+            out.writeDouble(position.z);
+            out.writeDouble(orientation.getX());
+            out.writeDouble(orientation.getY());
+            out.writeDouble(orientation.getZ());
+            out.writeDouble(orientation.getW());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
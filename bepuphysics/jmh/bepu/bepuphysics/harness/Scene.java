@@ -0,0 +1,89 @@
+package bepu.bepuphysics.harness;
+
+import bepu.bepuphysics.BodyDescription;
+import bepu.bepuphysics.BodyInertia;
+import bepu.bepuphysics.Simulation;
+import bepu.bepuphysics.collidables.TypedIndex;
+
+import java.util.Random;
+
+/**
+ * A canonical scene for the {@link SceneHarness}. Scenes add their bodies in a fixed order, so the index of a body in that order identifies
+ * it across runs and builds; recordings and inputs refer to bodies by that index rather than by handle.
+ */
+public abstract class Scene {
+    private int[] bodyHandles = new int[256];
+    private int bodyCount;
+
+    public abstract String getName();
+
+    /**
+     * Adds the scene's bodies and constraints to an empty simulation.
+     *
+     * @param simulation Simulation to populate.
+     */
+    public abstract void create(Simulation simulation);
+
+    /**
+     * Generates the input applied before a step. Inputs must only depend on the step and the random source so that runs can be replayed.
+     *
+     * @param step Index of the step about to run.
+     * @param random Random source seeded identically for every run of the scene.
+     * @param input Frame to add input events to. Cleared before the call.
+     */
+    public void createInput(int step, Random random, InputFrame input) {
+    }
+
+    public int getBodyCount() {
+        return bodyCount;
+    }
+
+    public int getBodyHandle(int bodyIndex) {
+        return bodyHandles[bodyIndex];
+    }
+
+    protected int addBody(Simulation simulation, BodyDescription description) {
+        int handle = simulation.getBodies().add(description);
+        if (bodyCount == bodyHandles.length) {
+            int[] newBodyHandles = new int[bodyCount * 2];
+            System.arraycopy(bodyHandles, 0, newBodyHandles, 0, bodyCount);
+            bodyHandles = newBodyHandles;
+        }
+        bodyHandles[bodyCount++] = handle;
+        return handle;
+    }
+
+    protected int addKinematic(Simulation simulation, TypedIndex shape, double x, double y, double z) {
+        BodyDescription description = new BodyDescription().setShape(shape);
+        description.getPose().getPosition().set(x, y, z);
+        return addBody(simulation, description);
+    }
+
+    protected int addDynamic(Simulation simulation, TypedIndex shape, BodyInertia inertia, double x, double y, double z) {
+        BodyDescription description = new BodyDescription().setShape(shape).setInertia(inertia);
+        description.getPose().getPosition().set(x, y, z);
+        return addBody(simulation, description);
+    }
+
+    /**
+     * Creates a scene by name.
+     *
+     * @param name One of {@code pyramids}, {@code pile}, {@code ragdolls} or {@code terrain}.
+     *
+     * @return New scene without bodies.
+     */
+    public static Scene create(String name) {
+        switch (name) {
+            case "pyramids":
+                return new PyramidScene();
+            case "pile":
+                return new PileScene();
+            case "ragdolls":
+                return new RagdollCrowdScene();
+            case "terrain":
+                return new TerrainScene();
+            default:
+                throw new IllegalArgumentException("Unknown scene " + name + ".");
+        }
+    }
+}
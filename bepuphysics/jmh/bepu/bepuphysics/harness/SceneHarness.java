@@ -0,0 +1,238 @@
+package bepu.bepuphysics.harness;
+
+import bepu.bepuphysics.Simulation;
+import bepu.bepuphysics.TimestepProfiler;
+import bepu.bepuutilities.threading.ThreadDispatcher;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Runs whole-frame benchmarks of canonical scenes and records or replays scene runs. Results are printed as JSON for regression tracking.
+ * <p>
+ * Benchmarks run every selected scene at 1 to N threads. After a warmup, they measure wall clock time per stage of the time step, throughput
+ * in body steps per second, and bytes allocated per step by all threads.
+ * <p>
+ * A recording stores the input applied before every step and periodic poses of every body. Replaying feeds the recorded input to a fresh
+ * scene and compares poses bit for bit, so runs can be compared across builds. Recording and replay run on one thread; with several
+ * threads, the order in which new pairs are discovered depends on scheduling and results are not reproducible.
+ * <p>
+ * Usage: {@code SceneHarness [--scenes pyramids,pile,ragdolls,terrain] [--steps 2000] [--warmup 200] [--threads N] [--dt 0.016666]
+ * [--output results.json]}, {@code SceneHarness --record file --scenes <scene> [--steps 2000] [--pose-interval 10]} or
+ * {@code SceneHarness --replay file [--tolerance 0] [--output result.json]}. Replay exits with status 1 if poses diverge by more than the
+ * tolerance.
+ */
+public class SceneHarness {
+    private static final long INPUT_SEED = 42;
+
+    private String[] scenes = { "pyramids", "pile", "ragdolls", "terrain" };
+    private int steps = 2000;
+    private int warmup = 200;
+    private int maximumThreadCount = Runtime.getRuntime().availableProcessors();
+    private double dt = 1 / 60.0;
+    private int poseInterval = 10;
+    private double tolerance;
+    private String output;
+    private String recordPath;
+    private String replayPath;
+
+    public static void main(String[] args) throws IOException {
+        SceneHarness harness = new SceneHarness();
+        harness.parse(args);
+        if (harness.replayPath != null) {
+            System.exit(harness.replay() ? 0 : 1);
+        } else if (harness.recordPath != null) {
+            harness.record();
+        } else {
+            harness.benchmark();
+        }
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--scenes":
+                    scenes = value.split(",");
+                    break;
+                case "--steps":
+                    steps = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    maximumThreadCount = Integer.parseInt(value);
+                    break;
+                case "--dt":
+                    dt = Double.parseDouble(value);
+                    break;
+                case "--pose-interval":
+                    poseInterval = Integer.parseInt(value);
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(value);
+                    break;
+                case "--output":
+                    output = value;
+                    break;
+                case "--record":
+                    recordPath = value;
+                    break;
+                case "--replay":
+                    replayPath = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument " + args[i] + ".");
+            }
+            i++;
+        }
+    }
+
+    private void benchmark() throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        StringBuilder json = new StringBuilder();
+        json.append("{\"steps\":").append(steps).append(",\"warmup\":").append(warmup).append(",\"dt\":").append(format(dt));
+        json.append(",\"results\":[");
+        boolean first = true;
+        for (String sceneName : scenes) {
+            for (int threadCount = 1; threadCount <= maximumThreadCount; threadCount++) {
+                Scene scene = Scene.create(sceneName);
+                Simulation simulation = new Simulation();
+                scene.create(simulation);
+                ThreadDispatcher dispatcher = threadCount > 1 ? new ThreadDispatcher(threadCount) : null;
+                simulation.setThreadDispatcher(dispatcher);
+                Random random = new Random(INPUT_SEED);
+                InputFrame input = new InputFrame();
+                for (int step = 0; step < warmup; step++) {
+                    step(simulation, scene, step, random, input);
+                }
+                TimestepProfiler profiler = new TimestepProfiler();
+                simulation.setProfiler(profiler);
+                long allocatedBefore = totalAllocatedBytes(threads);
+                long start = System.nanoTime();
+                for (int step = warmup; step < warmup + steps; step++) {
+                    step(simulation, scene, step, random, input);
+                }
+                long elapsed = System.nanoTime() - start;
+                long allocated = totalAllocatedBytes(threads) - allocatedBefore;
+                if (dispatcher != null) {
+                    dispatcher.dispose();
+                }
+                double seconds = elapsed * 1e-9;
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                json.append("{\"scene\":\"").append(sceneName).append('"');
+                json.append(",\"threads\":").append(threadCount);
+                json.append(",\"bodies\":").append(scene.getBodyCount());
+                json.append(",\"activeBodies\":").append(simulation.getBodies().getActiveSet().getCount());
+                json.append(",\"seconds\":").append(format(seconds));
+                json.append(",\"bodyStepsPerSecond\":").append(format(scene.getBodyCount() * (double) steps / seconds));
+                json.append(",\"allocatedBytesPerStep\":").append(format(allocated / (double) steps));
+                json.append(",\"stageMicrosecondsPerStep\":{");
+                for (int i = 0; i < TimestepProfiler.Stage.getCount(); i++) {
+                    TimestepProfiler.Stage stage = TimestepProfiler.Stage.fromOrdinal(i);
+                    if (i > 0) {
+                        json.append(',');
+                    }
+                    json.append('"').append(stage.name().toLowerCase(Locale.ROOT)).append("\":")
+                            .append(format(profiler.getStageNanos(stage) * 1e-3 / profiler.getTimestepCount()));
+                }
+                json.append("}}");
+                System.err.printf(Locale.ROOT, "%s, %d threads: %.1f body steps/s%n", sceneName, threadCount, scene.getBodyCount() * (double) steps / seconds);
+            }
+        }
+        json.append("]}");
+        write(json);
+    }
+
+    private void record() throws IOException {
+        Scene scene = Scene.create(scenes[0]);
+        Simulation simulation = new Simulation();
+        scene.create(simulation);
+        Random random = new Random(INPUT_SEED);
+        InputFrame input = new InputFrame();
+        try (RecordingWriter writer = new RecordingWriter(recordPath, scene, steps, dt, poseInterval)) {
+            for (int step = 0; step < steps; step++) {
+                input.clear();
+                scene.createInput(step, random, input);
+                writer.writeInput(input);
+                input.apply(simulation, scene);
+                simulation.timestep(dt);
+                writer.writePoses(step, simulation, scene);
+            }
+        }
+        System.err.println("Recorded " + steps + " steps of " + scene.getName() + " to " + recordPath + ".");
+    }
+
+    private boolean replay() throws IOException {
+        StringBuilder json = new StringBuilder();
+        boolean passed;
+        try (RecordingReader reader = new RecordingReader(replayPath)) {
+            Scene scene = Scene.create(reader.getSceneName());
+            Simulation simulation = new Simulation();
+            scene.create(simulation);
+            if (scene.getBodyCount() != reader.getBodyCount()) {
+                throw new IOException("Recording has " + reader.getBodyCount() + " bodies, but the scene creates " + scene.getBodyCount() + ".");
+            }
+            InputFrame input = new InputFrame();
+            for (int step = 0; step < reader.getStepCount(); step++) {
+                reader.readInput(input);
+                input.apply(simulation, scene);
+                simulation.timestep(reader.getDt());
+                reader.comparePoses(step, simulation, scene);
+            }
+            passed = reader.getMaximumPositionError() <= tolerance && reader.getMaximumOrientationError() <= tolerance;
+            json.append("{\"replay\":\"").append(replayPath.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            json.append(",\"scene\":\"").append(reader.getSceneName()).append('"');
+            json.append(",\"steps\":").append(reader.getStepCount());
+            json.append(",\"comparedFrames\":").append(reader.getComparedFrames());
+            json.append(",\"mismatchedFrames\":").append(reader.getMismatchedFrames());
+            json.append(",\"firstMismatchStep\":").append(reader.getFirstMismatchStep());
+            json.append(",\"maximumPositionError\":").append(format(reader.getMaximumPositionError()));
+            json.append(",\"maximumOrientationError\":").append(format(reader.getMaximumOrientationError()));
+            json.append(",\"passed\":").append(passed).append('}');
+        }
+        write(json);
+        return passed;
+    }
+
+    private void step(Simulation simulation, Scene scene, int step, Random random, InputFrame input) {
+        input.clear();
+        scene.createInput(step, random, input);
+        input.apply(simulation, scene);
+        simulation.timestep(dt);
+    }
+
+    private static long totalAllocatedBytes(com.sun.management.ThreadMXBean threads) {
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            //Threads that died between the two calls report -1.
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6g", value);
+    }
+
+    private void write(StringBuilder json) throws IOException {
+        if (output == null) {
+            System.out.println(json);
+        } else {
+            try (Writer writer = new FileWriter(output)) {
+                writer.write(json.toString());
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+}
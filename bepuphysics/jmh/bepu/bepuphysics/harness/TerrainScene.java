@@ -0,0 +1,66 @@
+package bepu.bepuphysics.harness;
+
+import bepu.bepuphysics.BodyInertia;
+import bepu.bepuphysics.Simulation;
+import bepu.bepuphysics.collidables.Box;
+import bepu.bepuphysics.collidables.Capsule;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuutilities.math.Vector3Double;
+
+import java.util.Random;
+
+/**
+ * Debris raining onto rolling terrain and being kicked back up now and then. The narrow phase has no mesh tester yet, so the terrain is a
+ * height field of kinematic box columns; that keeps the shape of the workload, a large static surface under many small dynamic bodies.
+ */
+public class TerrainScene extends Scene {
+    private static final int TERRAIN_WIDTH = 48;
+    private static final int DEBRIS_COUNT = 1536;
+    private static final int KICK_INTERVAL = 60;
+    private static final int KICKS = 16;
+
+    private int firstDebris;
+
+    @Override
+    public String getName() {
+        return "terrain";
+    }
+
+    @Override
+    public void create(Simulation simulation) {
+        simulation.getPoseIntegrator().setGravity(new Vector3Double(0, -10, 0));
+        TypedIndex column = simulation.getShapes().add(new Box(1, 4, 1));
+        for (int i = 0; i < TERRAIN_WIDTH; i++) {
+            for (int j = 0; j < TERRAIN_WIDTH; j++) {
+                double height = Math.sin(i * 0.25) * Math.cos(j * 0.2) * 1.5;
+                addKinematic(simulation, column, i - TERRAIN_WIDTH * 0.5, height - 2, j - TERRAIN_WIDTH * 0.5);
+            }
+        }
+        TypedIndex box = simulation.getShapes().add(new Box(0.5, 0.5, 0.5));
+        TypedIndex capsule = simulation.getShapes().add(new Capsule(0.2, 0.5));
+        BodyInertia boxInertia = new BodyInertia().setBox(1, 0.5, 0.5, 0.5);
+        BodyInertia capsuleInertia = new BodyInertia().setBox(1, 0.4, 0.9, 0.4);
+        firstDebris = getBodyCount();
+        Random random = new Random(5);
+        for (int i = 0; i < DEBRIS_COUNT; i++) {
+            double x = (random.nextDouble() - 0.5) * (TERRAIN_WIDTH - 4);
+            double z = (random.nextDouble() - 0.5) * (TERRAIN_WIDTH - 4);
+            double y = 3 + random.nextDouble() * 12;
+            if ((i & 1) == 0) {
+                addDynamic(simulation, box, boxInertia, x, y, z);
+            } else {
+                addDynamic(simulation, capsule, capsuleInertia, x, y, z);
+            }
+        }
+    }
+
+    @Override
+    public void createInput(int step, Random random, InputFrame input) {
+        if (step % KICK_INTERVAL != KICK_INTERVAL - 1) {
+            return;
+        }
+        for (int i = 0; i < KICKS; i++) {
+            input.add(firstDebris + random.nextInt(DEBRIS_COUNT), random.nextDouble() - 0.5, 5, random.nextDouble() - 0.5);
+        }
+    }
+}
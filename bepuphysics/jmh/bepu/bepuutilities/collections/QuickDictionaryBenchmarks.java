@@ -0,0 +1,96 @@
+package bepu.bepuutilities.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the primitive open addressing dictionary against {@link HashMap} on the access pattern of the pair cache: a frame's worth of
+ * lookups of mostly existing keys, and a rebuild from scratch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuickDictionaryBenchmarks {
+    @Param({ "1024", "65536" })
+    public int size;
+
+    private long[] keys;
+    private long[] queries;
+    private LongIntQuickDictionary quickDictionary;
+    private HashMap<Long, Integer> hashMap;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(5);
+        keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            //Pair-like keys: two small handles packed into a long.
+            keys[i] = ((long) random.nextInt(size * 4) << 32) | random.nextInt(size * 4);
+        }
+        queries = new long[size];
+        for (int i = 0; i < size; i++) {
+            //One in eight lookups misses.
+            queries[i] = (i & 7) == 0 ? keys[i] + 1 : keys[random.nextInt(size)];
+        }
+        quickDictionary = new LongIntQuickDictionary(size);
+        hashMap = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            quickDictionary.add(keys[i], i);
+            hashMap.putIfAbsent(keys[i], i);
+        }
+    }
+
+    @Benchmark
+    public void lookupQuickDictionary(Blackhole blackhole) {
+        int sum = 0;
+        for (long query : queries) {
+            sum += quickDictionary.get(query, 0);
+        }
+        blackhole.consume(sum);
+    }
+
+    @Benchmark
+    public void lookupHashMap(Blackhole blackhole) {
+        int sum = 0;
+        for (long query : queries) {
+            sum += hashMap.getOrDefault(query, 0);
+        }
+        blackhole.consume(sum);
+    }
+
+    @Benchmark
+    public void rebuildQuickDictionary(Blackhole blackhole) {
+        quickDictionary.fastClear();
+        for (int i = 0; i < keys.length; i++) {
+            quickDictionary.add(keys[i], i);
+        }
+        blackhole.consume(quickDictionary.getCount());
+    }
+
+    @Benchmark
+    public void rebuildHashMap(Blackhole blackhole) {
+        hashMap.clear();
+        for (int i = 0; i < keys.length; i++) {
+            hashMap.putIfAbsent(keys[i], i);
+        }
+        blackhole.consume(hashMap.size());
+    }
+}
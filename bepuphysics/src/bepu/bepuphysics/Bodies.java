@@ -0,0 +1,491 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.collidables.Collidable;
+import bepu.bepuphysics.collidables.CollidableMobility;
+import bepu.bepuphysics.collidables.CollidableReference;
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuphysics.collidables.ShapeBatch;
+import bepu.bepuphysics.collidables.Shapes;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuphysics.collisiondetection.BroadPhase;
+import bepu.bepuutilities.math.Vector3Double;
+import bepu.bepuutilities.memory.IdPool;
+import bepu.bepuutilities.memory.Vector3Pool;
+
+/**
+ * Collection of all allocated bodies. Bodies are referred to externally by handles, which stay fixed while the body's
+ * storage location moves between the active set and the inactive sets.
+ */
+public class Bodies {
+    private final Shapes shapes;
+    private final BroadPhase broadPhase;
+    private IslandAwakener awakener;
+
+    //Set 0 is the active set. Released sets are kept around so that sleeping islands can reuse their storage.
+    private BodySet[] sets;
+    private final IdPool setIdPool;
+    private final IdPool handlePool;
+    private int[] handleToSet;
+    private int[] handleToIndex;
+
+    public Bodies(Shapes shapes, BroadPhase broadPhase, int initialBodyCapacity, int initialIslandCapacity) {
+        this.shapes = shapes;
+        this.broadPhase = broadPhase;
+        sets = new BodySet[Math.max(2, initialIslandCapacity + 1)];
+        setIdPool = new IdPool(Math.max(1, initialIslandCapacity));
+        int activeSetIndex = setIdPool.take();
+        assert activeSetIndex == 0;
+        sets[0] = new BodySet(initialBodyCapacity);
+        handlePool = new IdPool(Math.max(1, initialBodyCapacity));
+        handleToSet = new int[Math.max(1, initialBodyCapacity)];
+        handleToIndex = new int[Math.max(1, initialBodyCapacity)];
+        java.util.Arrays.fill(handleToSet, -1);
+    }
+
+    void initialize(IslandAwakener awakener) {
+        this.awakener = awakener;
+    }
+
+    public Shapes getShapes() {
+        return shapes;
+    }
+
+    public BroadPhase getBroadPhase() {
+        return broadPhase;
+    }
+
+    public BodySet getActiveSet() {
+        return sets[0];
+    }
+
+    /**
+     * Gets a body set by index. Set 0 is the active set; other indices may refer to unallocated sets.
+     *
+     * @param setIndex Index of the set.
+     *
+     * @return The set, or null if the index was never allocated.
+     */
+    public BodySet getSet(int setIndex) {
+        return sets[setIndex];
+    }
+
+    /**
+     * Gets the exclusive upper bound on allocated set indices.
+     *
+     * @return Number of set slots that could contain bodies.
+     */
+    public int getSetSpan() {
+        return setIdPool.getHighestPossiblyClaimedId() + 1;
+    }
+
+    /**
+     * Gets the exclusive upper bound on body handles that the handle mappings can currently hold.
+     *
+     * @return Capacity of the handle mappings.
+     */
+    public int getHandleCapacity() {
+        return handleToSet.length;
+    }
+
+    public boolean bodyExists(int handle) {
+        return handle >= 0 && handle < handleToSet.length && handleToSet[handle] >= 0;
+    }
+
+    /**
+     * Gets the index of the set containing a body. 0 means the body is active.
+     *
+     * @param handle Handle of the body.
+     *
+     * @return Index of the set containing the body.
+     */
+    public int getSetIndex(int handle) {
+        assert bodyExists(handle);
+        return handleToSet[handle];
+    }
+
+    /**
+     * Gets the index of a body within its set.
+     *
+     * @param handle Handle of the body.
+     *
+     * @return Index of the body in its set.
+     */
+    public int getIndex(int handle) {
+        assert bodyExists(handle);
+        return handleToIndex[handle];
+    }
+
+    public boolean isActive(int handle) {
+        return getSetIndex(handle) == 0;
+    }
+
+    public RigidPose getPose(int handle) {
+        return sets[handleToSet[handle]].poses[handleToIndex[handle]];
+    }
+
+    public BodyVelocity getVelocity(int handle) {
+        return sets[handleToSet[handle]].velocities[handleToIndex[handle]];
+    }
+
+    public BodyInertia getInertia(int handle) {
+        return sets[handleToSet[handle]].inertias[handleToIndex[handle]];
+    }
+
+    public Collidable getCollidable(int handle) {
+        return sets[handleToSet[handle]].collidables[handleToIndex[handle]];
+    }
+
+    public BodyActivity getActivity(int handle) {
+        return sets[handleToSet[handle]].activity[handleToIndex[handle]];
+    }
+
+    /**
+     * Changes which collidables a body can collide with. Pairs the new filter rejects are dropped by the pair cache once they go stale.
+     *
+     * @param handle Handle of the body.
+     * @param collisionFilter Packed {@link bepu.bepuphysics.collisiondetection.CollisionFilter}.
+     */
+    public void setCollisionFilter(int handle, long collisionFilter) {
+        Collidable collidable = getCollidable(handle);
+        collidable.setCollisionFilter(collisionFilter);
+        int broadPhaseIndex = collidable.getBroadPhaseIndex();
+        if (broadPhaseIndex >= 0) {
+            if (handleToSet[handle] == 0) {
+                broadPhase.setActiveFilter(broadPhaseIndex, collisionFilter);
+            } else {
+                broadPhase.setStaticFilter(broadPhaseIndex, collisionFilter);
+            }
+        }
+    }
+
+    /**
+     * Adds a new active body to the simulation.
+     *
+     * @param description Description of the body to add.
+     *
+     * @return Handle of the created body.
+     */
+    public int add(BodyDescription description) {
+        int handle = handlePool.take();
+        ensureHandleCapacity(handle + 1);
+        BodySet active = sets[0];
+        int index = active.add(description, handle);
+        handleToSet[handle] = 0;
+        handleToIndex[handle] = index;
+        TypedIndex shape = description.getShape();
+        if (shape != null && shape.exists()) {
+            Vector3Double min = Vector3Pool.getInstance().take();
+            Vector3Double max = Vector3Pool.getInstance().take();
+            computeBounds(active, index, min, max);
+            Collidable collidable = active.collidables[index];
+            collidable.setBroadPhaseIndex(broadPhase.addActive(CollidableReference.create(CollidableMobility.DYNAMIC, handle), collidable.getCollisionFilter(), min, max));
+            Vector3Pool.getInstance().release(min);
+            Vector3Pool.getInstance().release(max);
+        }
+        return handle;
+    }
+
+    /**
+     * Removes a body from the simulation. Sleeping bodies are woken, along with their island, before removal.
+     * Any constraints connected to the body must be removed first.
+     *
+     * @param handle Handle of the body to remove.
+     */
+    public void remove(int handle) {
+        assert bodyExists(handle) : "Body must exist to be removed.";
+        if (handleToSet[handle] > 0) {
+            awakener.awakenBody(handle);
+        }
+        BodySet active = sets[0];
+        int index = handleToIndex[handle];
+        assert active.constraintCounts[index] == 0 : "Remove a body's constraints before removing the body.";
+        int broadPhaseIndex = active.collidables[index].getBroadPhaseIndex();
+        if (broadPhaseIndex >= 0) {
+            removeActiveLeaf(broadPhaseIndex);
+        }
+        removeFromActiveSet(index);
+        handleToSet[handle] = -1;
+        handlePool.release(handle);
+    }
+
+    /**
+     * Computes the world space bounds of a body's collidable, including its speculative margin.
+     *
+     * @param set Set containing the body.
+     * @param index Index of the body in the set.
+     * @param min Minimum of the body's bounds.
+     * @param max Maximum of the body's bounds.
+     */
+    public void computeBounds(BodySet set, int index, Vector3Double min, Vector3Double max) {
+        RigidPose pose = set.poses[index];
+        Collidable collidable = set.collidables[index];
+        TypedIndex shape = collidable.getShape();
+        shapes.get(shape.getType()).computeCachedBounds(shape.getIndex(), pose.getOrientation(), min, max);
+        double margin = collidable.getSpeculativeMargin();
+        Vector3Double position = pose.getPosition();
+        min.set(min.x + position.x - margin, min.y + position.y - margin, min.z + position.z - margin);
+        max.set(max.x + position.x + margin, max.y + position.y + margin, max.z + position.z + margin);
+    }
+
+    /**
+     * Recomputes the bounds of an active body and pushes them into the broad phase.
+     *
+     * @param index Index of the body in the active set.
+     */
+    public void updateBounds(int index) {
+        Vector3Double min = Vector3Pool.getInstance().take();
+        Vector3Double max = Vector3Pool.getInstance().take();
+        updateBounds(index, min, max);
+        Vector3Pool.getInstance().release(min);
+        Vector3Pool.getInstance().release(max);
+    }
+
+    /**
+     * Recomputes the bounds of an active body and pushes them into the broad phase. Different bodies can be updated from different threads.
+     *
+     * @param index Index of the body in the active set.
+     * @param min Scratch vector owned by the calling thread.
+     * @param max Scratch vector owned by the calling thread.
+     */
+    public void updateBounds(int index, Vector3Double min, Vector3Double max) {
+        updateBounds(index, 0, min, max);
+    }
+
+    /**
+     * Recomputes the bounds of an active body that has just been integrated over a time step and pushes them into the broad phase.
+     * Bounds of continuous collidables also cover the body's motion during the step. Different bodies can be updated from different threads.
+     *
+     * @param index Index of the body in the active set.
+     * @param dt Duration of the time step the body was integrated over.
+     * @param min Scratch vector owned by the calling thread.
+     * @param max Scratch vector owned by the calling thread.
+     */
+    public void updateBounds(int index, double dt, Vector3Double min, Vector3Double max) {
+        updateBounds(index, dt, 0, min, max);
+    }
+
+    /**
+     * Recomputes the bounds of an active body that has just been integrated over part of a frame and pushes them into the broad phase.
+     * Bounds of continuous collidables also cover the body's motion over the whole frame: back to its start, and on to its end at the
+     * current velocity. Different bodies can be updated from different threads.
+     *
+     * @param index Index of the body in the active set.
+     * @param elapsedDt Duration the body was integrated over since the start of the frame.
+     * @param remainingDt Duration left in the frame after the integrated part.
+     * @param min Scratch vector owned by the calling thread.
+     * @param max Scratch vector owned by the calling thread.
+     */
+    public void updateBounds(int index, double elapsedDt, double remainingDt, Vector3Double min, Vector3Double max) {
+        BodySet active = sets[0];
+        Collidable collidable = active.collidables[index];
+        int broadPhaseIndex = collidable.getBroadPhaseIndex();
+        if (broadPhaseIndex >= 0) {
+            computeBounds(active, index, min, max);
+            if (collidable.isContinuous() && elapsedDt + remainingDt > 0) {
+                expandBoundsByVelocity(active, index, elapsedDt, remainingDt, min, max);
+            }
+            broadPhase.updateActiveBounds(broadPhaseIndex, min, max);
+        }
+    }
+
+    /**
+     * Expands a body's bounds at the end of a time step so that they also contain the body at the start of the step. The bounds at the
+     * start are the end bounds moved back by the linear displacement, merged with the end bounds; rotation can move the surface by at
+     * most the angular speed times the shape's maximum radius, and never more than the shape's angular expansion.
+     *
+     * @param set Set containing the body.
+     * @param index Index of the body in the set.
+     * @param dt Duration of the time step.
+     * @param min Minimum of the body's bounds at the end of the step. Expanded in place.
+     * @param max Maximum of the body's bounds at the end of the step. Expanded in place.
+     */
+    public void expandBoundsByVelocity(BodySet set, int index, double dt, Vector3Double min, Vector3Double max) {
+        expandBoundsByVelocity(set, index, dt, 0, min, max);
+    }
+
+    /**
+     * Expands a body's bounds so that they contain the body over an interval around its current pose: back by one duration and forward by
+     * another, moving at its current velocity. Rotation can move the surface by at most the angular speed times the shape's maximum radius,
+     * and never more than the shape's angular expansion.
+     *
+     * @param set Set containing the body.
+     * @param index Index of the body in the set.
+     * @param elapsedDt Duration to cover before the current pose.
+     * @param remainingDt Duration to cover after the current pose.
+     * @param min Minimum of the body's bounds at its current pose. Expanded in place.
+     * @param max Maximum of the body's bounds at its current pose. Expanded in place.
+     */
+    public void expandBoundsByVelocity(BodySet set, int index, double elapsedDt, double remainingDt, Vector3Double min, Vector3Double max) {
+        BodyVelocity velocity = set.velocities[index];
+        Vector3Double linear = velocity.getLinear();
+        TypedIndex shape = set.collidables[index].getShape();
+        ShapeBatch batch = shapes.get(shape.getType());
+        double angularDisplacement = Math.min(velocity.getAngular().length() * (elapsedDt + remainingDt) * batch.getMaximumRadius(shape.getIndex()),
+                batch.getAngularExpansion(shape.getIndex()));
+        //The box translated back covers the start and the box translated forward covers the end; along each axis one of them only ever
+        //moves the side facing away from the motion, and the other the side facing into it.
+        double backX = -linear.x * elapsedDt, backY = -linear.y * elapsedDt, backZ = -linear.z * elapsedDt;
+        double forwardX = linear.x * remainingDt, forwardY = linear.y * remainingDt, forwardZ = linear.z * remainingDt;
+        min.set(min.x + Math.min(0, Math.min(backX, forwardX)) - angularDisplacement,
+                min.y + Math.min(0, Math.min(backY, forwardY)) - angularDisplacement,
+                min.z + Math.min(0, Math.min(backZ, forwardZ)) - angularDisplacement);
+        max.set(max.x + Math.max(0, Math.max(backX, forwardX)) + angularDisplacement,
+                max.y + Math.max(0, Math.max(backY, forwardY)) + angularDisplacement,
+                max.z + Math.max(0, Math.max(backZ, forwardZ)) + angularDisplacement);
+    }
+
+    void addConstraintReference(int bodyHandle, int constraintHandle) {
+        sets[handleToSet[bodyHandle]].addConstraint(handleToIndex[bodyHandle], constraintHandle);
+    }
+
+    void removeConstraintReference(int bodyHandle, int constraintHandle) {
+        sets[handleToSet[bodyHandle]].removeConstraint(handleToIndex[bodyHandle], constraintHandle);
+    }
+
+    /**
+     * Allocates an inactive set able to hold the given number of bodies.
+     *
+     * @param capacity Number of bodies the set must be able to hold.
+     *
+     * @return Index of the allocated set.
+     */
+    int allocateSet(int capacity) {
+        int setIndex = setIdPool.take();
+        if (setIndex >= sets.length) {
+            BodySet[] newSets = new BodySet[sets.length * 2];
+            System.arraycopy(sets, 0, newSets, 0, sets.length);
+            sets = newSets;
+        }
+        if (sets[setIndex] == null) {
+            sets[setIndex] = new BodySet(capacity);
+        } else {
+            sets[setIndex].ensureCapacity(capacity);
+        }
+        return setIndex;
+    }
+
+    /**
+     * Returns an emptied inactive set to the pool. Its storage is kept for later islands.
+     *
+     * @param setIndex Index of the set to release.
+     */
+    void releaseSet(int setIndex) {
+        assert setIndex > 0 : "The active set cannot be released.";
+        sets[setIndex].clear();
+        setIdPool.release(setIndex);
+    }
+
+    /**
+     * Moves a body from the active set into an inactive set, carrying its broad phase leaf from the active tree into the static tree.
+     *
+     * @param handle Handle of the active body.
+     * @param targetSetIndex Index of the inactive set to move the body into.
+     */
+    void moveToInactiveSet(int handle, int targetSetIndex) {
+        BodySet active = sets[0];
+        BodySet target = sets[targetSetIndex];
+        int index = handleToIndex[handle];
+        Collidable collidable = active.collidables[index];
+        int broadPhaseIndex = collidable.getBroadPhaseIndex();
+        if (broadPhaseIndex >= 0) {
+            Vector3Double min = Vector3Pool.getInstance().take();
+            Vector3Double max = Vector3Pool.getInstance().take();
+            broadPhase.getActiveBounds(broadPhaseIndex, min, max);
+            removeActiveLeaf(broadPhaseIndex);
+            collidable.setBroadPhaseIndex(broadPhase.addStatic(CollidableReference.create(CollidableMobility.DYNAMIC, handle), collidable.getCollisionFilter(), min, max));
+            Vector3Pool.getInstance().release(min);
+            Vector3Pool.getInstance().release(max);
+        }
+        int targetIndex = target.addFrom(active, index);
+        removeFromActiveSet(index);
+        handleToSet[handle] = targetSetIndex;
+        handleToIndex[handle] = targetIndex;
+    }
+
+    /**
+     * Moves a body from an inactive set back into the active set, carrying its broad phase leaf from the static tree into the active tree.
+     * The inactive set is left untouched; the caller releases it once all of its bodies have been moved.
+     *
+     * @param setIndex Index of the inactive set containing the body.
+     * @param index Index of the body in the inactive set.
+     */
+    void moveToActiveSet(int setIndex, int index) {
+        BodySet source = sets[setIndex];
+        BodySet active = sets[0];
+        int handle = source.indexToHandle[index];
+        int activeIndex = active.addFrom(source, index);
+        Collidable collidable = active.collidables[activeIndex];
+        int broadPhaseIndex = collidable.getBroadPhaseIndex();
+        if (broadPhaseIndex >= 0) {
+            Vector3Double min = Vector3Pool.getInstance().take();
+            Vector3Double max = Vector3Pool.getInstance().take();
+            broadPhase.getStaticBounds(broadPhaseIndex, min, max);
+            if (broadPhase.removeStaticAt(broadPhaseIndex)) {
+                updateStaticLeafIndex(broadPhase.getStaticLeaf(broadPhaseIndex), broadPhaseIndex);
+            }
+            collidable.setBroadPhaseIndex(broadPhase.addActive(CollidableReference.create(CollidableMobility.DYNAMIC, handle), collidable.getCollisionFilter(), min, max));
+            Vector3Pool.getInstance().release(min);
+            Vector3Pool.getInstance().release(max);
+        }
+        active.activity[activeIndex].reset();
+        handleToSet[handle] = 0;
+        handleToIndex[handle] = activeIndex;
+    }
+
+    private void removeActiveLeaf(int broadPhaseIndex) {
+        if (broadPhase.removeActiveAt(broadPhaseIndex)) {
+            int movedHandle = CollidableReference.getHandle(broadPhase.getActiveLeaf(broadPhaseIndex));
+            sets[0].collidables[handleToIndex[movedHandle]].setBroadPhaseIndex(broadPhaseIndex);
+        }
+    }
+
+    private void updateStaticLeafIndex(int collidable, int broadPhaseIndex) {
+        if (CollidableReference.isBody(collidable)) {
+            int handle = CollidableReference.getHandle(collidable);
+            sets[handleToSet[handle]].collidables[handleToIndex[handle]].setBroadPhaseIndex(broadPhaseIndex);
+        }
+    }
+
+    /**
+     * Exchanges two active bodies' slots. Handles are unaffected, and objects obtained for either body keep referring to it.
+     *
+     * @param a Index of the first body in the active set.
+     * @param b Index of the second body in the active set.
+     */
+    void swapActiveBodies(int a, int b) {
+        BodySet active = sets[0];
+        active.swapSlots(a, b);
+        handleToIndex[active.indexToHandle[a]] = a;
+        handleToIndex[active.indexToHandle[b]] = b;
+    }
+
+    private void removeFromActiveSet(int index) {
+        BodySet active = sets[0];
+        if (active.removeAt(index)) {
+            handleToIndex[active.indexToHandle[index]] = index;
+        }
+    }
+
+    /**
+     * Ensures that the active set can hold at least the given number of bodies.
+     *
+     * @param capacity Number of active bodies to preallocate space for.
+     */
+    public void ensureActiveCapacity(int capacity) {
+        sets[0].ensureCapacity(capacity);
+    }
+
+    private void ensureHandleCapacity(int capacity) {
+        if (capacity > handleToSet.length) {
+            int newCapacity = Math.max(capacity, handleToSet.length * 2);
+            int oldCapacity = handleToSet.length;
+            int[] newHandleToSet = new int[newCapacity];
+            System.arraycopy(handleToSet, 0, newHandleToSet, 0, oldCapacity);
+            java.util.Arrays.fill(newHandleToSet, oldCapacity, newCapacity, -1);
+            handleToSet = newHandleToSet;
+            int[] newHandleToIndex = new int[newCapacity];
+            System.arraycopy(handleToIndex, 0, newHandleToIndex, 0, oldCapacity);
+            handleToIndex = newHandleToIndex;
+        }
+    }
+}
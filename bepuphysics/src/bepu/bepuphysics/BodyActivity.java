@@ -0,0 +1,84 @@
+package bepu.bepuphysics;
+
+/**
+ * Tracks how long a body has been moving slowly enough to be considered for sleeping.
+ */
+public class BodyActivity {
+    private double sleepThreshold;
+    private int minimumTimestepsUnderThreshold;
+    private int timestepsUnderThresholdCount;
+    private boolean sleepCandidate;
+
+    /**
+     * Gets the threshold of squared velocity under which the body is allowed to go to sleep.
+     * Setting this to a negative value guarantees the body cannot go to sleep without user action.
+     *
+     * @return Squared velocity threshold.
+     */
+    public double getSleepThreshold() {
+        return sleepThreshold;
+    }
+
+    public void setSleepThreshold(double sleepThreshold) {
+        this.sleepThreshold = sleepThreshold;
+    }
+
+    /**
+     * Gets the number of time steps that the body must be under the sleep threshold before the body becomes a sleep candidate.
+     *
+     * @return Minimum number of time steps under the threshold.
+     */
+    public int getMinimumTimestepsUnderThreshold() {
+        return minimumTimestepsUnderThreshold;
+    }
+
+    public void setMinimumTimestepsUnderThreshold(int minimumTimestepsUnderThreshold) {
+        this.minimumTimestepsUnderThreshold = minimumTimestepsUnderThreshold;
+    }
+
+    public int getTimestepsUnderThresholdCount() {
+        return timestepsUnderThresholdCount;
+    }
+
+    /**
+     * Gets whether the body has been slow for long enough that the island sleeper may put it to sleep.
+     *
+     * @return True if the body is a candidate for sleeping; otherwise false.
+     */
+    public boolean isSleepCandidate() {
+        return sleepCandidate;
+    }
+
+    /**
+     * Updates the activity with the body's latest squared velocity.
+     *
+     * @param velocitySquared Sum of the squared linear and angular speeds of the body.
+     */
+    public void update(double velocitySquared) {
+        if (velocitySquared < sleepThreshold) {
+            if (timestepsUnderThresholdCount < minimumTimestepsUnderThreshold) {
+                timestepsUnderThresholdCount++;
+            }
+            sleepCandidate = timestepsUnderThresholdCount >= minimumTimestepsUnderThreshold;
+        } else {
+            timestepsUnderThresholdCount = 0;
+            sleepCandidate = false;
+        }
+    }
+
+    /**
+     * Clears the accumulated time under the threshold, for example when a body wakes up.
+     */
+    public void reset() {
+        timestepsUnderThresholdCount = 0;
+        sleepCandidate = false;
+    }
+
+    public BodyActivity set(BodyActivity other) {
+        this.sleepThreshold = other.sleepThreshold;
+        this.minimumTimestepsUnderThreshold = other.minimumTimestepsUnderThreshold;
+        this.timestepsUnderThresholdCount = other.timestepsUnderThresholdCount;
+        this.sleepCandidate = other.sleepCandidate;
+        return this;
+    }
+}
@@ -0,0 +1,118 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuphysics.collisiondetection.CollisionFilter;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Describes a body's state to be added to the simulation.
+ */
+public class BodyDescription {
+    private final RigidPose pose = new RigidPose(Vector3Double.ZERO);
+    private final BodyVelocity velocity = new BodyVelocity();
+    private final BodyInertia inertia = new BodyInertia();
+    private TypedIndex shape;
+    private double speculativeMargin = 0.1;
+    private double sleepThreshold = 0.01;
+    private int minimumTimestepsUnderThreshold = 32;
+    private boolean continuous;
+    private long collisionFilter = CollisionFilter.DEFAULT;
+
+    public RigidPose getPose() {
+        return pose;
+    }
+
+    public BodyVelocity getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * Gets the inertia of the body. Bodies are kinematic unless their inertia is set.
+     *
+     * @return Inertia of the body.
+     */
+    public BodyInertia getInertia() {
+        return inertia;
+    }
+
+    public BodyDescription setInertia(BodyInertia inertia) {
+        this.inertia.set(inertia);
+        return this;
+    }
+
+    /**
+     * Gets the shape used by the body. A null or nonexistent index creates a body without a collidable.
+     *
+     * @return Typed index of the body's shape.
+     */
+    public TypedIndex getShape() {
+        return shape;
+    }
+
+    public BodyDescription setShape(TypedIndex shape) {
+        this.shape = shape;
+        return this;
+    }
+
+    public double getSpeculativeMargin() {
+        return speculativeMargin;
+    }
+
+    public BodyDescription setSpeculativeMargin(double speculativeMargin) {
+        this.speculativeMargin = speculativeMargin;
+        return this;
+    }
+
+    /**
+     * Gets the threshold of squared velocity under which the body is allowed to go to sleep.
+     *
+     * @return Squared velocity threshold.
+     */
+    public double getSleepThreshold() {
+        return sleepThreshold;
+    }
+
+    public BodyDescription setSleepThreshold(double sleepThreshold) {
+        this.sleepThreshold = sleepThreshold;
+        return this;
+    }
+
+    /**
+     * Gets whether the body uses continuous collision detection. Only fast, small bodies like projectiles need it; everything else is
+     * cheaper with discrete detection.
+     *
+     * @return True if the body uses continuous collision detection; otherwise false.
+     */
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    public BodyDescription setContinuous(boolean continuous) {
+        this.continuous = continuous;
+        return this;
+    }
+
+    /**
+     * Gets the packed groups and mask of the body's collidable. By default bodies belong to the first group and collide with every group.
+     *
+     * @return Packed {@link CollisionFilter}.
+     */
+    public long getCollisionFilter() {
+        return collisionFilter;
+    }
+
+    public BodyDescription setCollisionFilter(long collisionFilter) {
+        this.collisionFilter = collisionFilter;
+        return this;
+    }
+
+    public int getMinimumTimestepsUnderThreshold() {
+        return minimumTimestepsUnderThreshold;
+    }
+
+    public BodyDescription setMinimumTimestepsUnderThreshold(int minimumTimestepsUnderThreshold) {
+        this.minimumTimestepsUnderThreshold = minimumTimestepsUnderThreshold;
+        return this;
+    }
+}
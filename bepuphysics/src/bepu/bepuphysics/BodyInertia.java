@@ -0,0 +1,122 @@
+package bepu.bepuphysics;
+
+/**
+ * Inverse mass and inverse local inertia tensor of a body. A body with zero inverse mass and zero inverse inertia is kinematic: constraints
+ * cannot change its velocity, and it can be shared by any number of constraints in the same solver batch.
+ */
+public class BodyInertia {
+    private double inverseMass;
+    //Symmetric inverse inertia tensor in the body's local space, stored as its lower triangle.
+    private double inverseInertiaXX;
+    private double inverseInertiaYX;
+    private double inverseInertiaYY;
+    private double inverseInertiaZX;
+    private double inverseInertiaZY;
+    private double inverseInertiaZZ;
+
+    public double getInverseMass() {
+        return inverseMass;
+    }
+
+    public BodyInertia setInverseMass(double inverseMass) {
+        this.inverseMass = inverseMass;
+        return this;
+    }
+
+    public double getInverseInertiaXX() {
+        return inverseInertiaXX;
+    }
+
+    public double getInverseInertiaYX() {
+        return inverseInertiaYX;
+    }
+
+    public double getInverseInertiaYY() {
+        return inverseInertiaYY;
+    }
+
+    public double getInverseInertiaZX() {
+        return inverseInertiaZX;
+    }
+
+    public double getInverseInertiaZY() {
+        return inverseInertiaZY;
+    }
+
+    public double getInverseInertiaZZ() {
+        return inverseInertiaZZ;
+    }
+
+    /**
+     * Sets the inverse local inertia tensor from its lower triangle.
+     *
+     * @return This inertia.
+     */
+    public BodyInertia setInverseInertia(double xx, double yx, double yy, double zx, double zy, double zz) {
+        inverseInertiaXX = xx;
+        inverseInertiaYX = yx;
+        inverseInertiaYY = yy;
+        inverseInertiaZX = zx;
+        inverseInertiaZY = zy;
+        inverseInertiaZZ = zz;
+        return this;
+    }
+
+    /**
+     * Gets whether the body is kinematic, meaning that it has infinite mass and inertia.
+     *
+     * @return True if both the inverse mass and the inverse inertia are zero; otherwise false.
+     */
+    public boolean isKinematic() {
+        return inverseMass == 0 && inverseInertiaXX == 0 && inverseInertiaYX == 0 && inverseInertiaYY == 0 &&
+                inverseInertiaZX == 0 && inverseInertiaZY == 0 && inverseInertiaZZ == 0;
+    }
+
+    /**
+     * Makes the body kinematic.
+     *
+     * @return This inertia.
+     */
+    public BodyInertia setKinematic() {
+        inverseMass = 0;
+        return setInverseInertia(0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Sets the inertia of a solid sphere.
+     *
+     * @param mass Mass of the sphere.
+     * @param radius Radius of the sphere.
+     *
+     * @return This inertia.
+     */
+    public BodyInertia setSphere(double mass, double radius) {
+        inverseMass = 1 / mass;
+        double inverse = 1 / (0.4 * mass * radius * radius);
+        return setInverseInertia(inverse, 0, inverse, 0, 0, inverse);
+    }
+
+    /**
+     * Sets the inertia of a solid box.
+     *
+     * @param mass Mass of the box.
+     * @param width Size of the box along its local X axis.
+     * @param height Size of the box along its local Y axis.
+     * @param length Size of the box along its local Z axis.
+     *
+     * @return This inertia.
+     */
+    public BodyInertia setBox(double mass, double width, double height, double length) {
+        inverseMass = 1 / mass;
+        double x2 = width * width;
+        double y2 = height * height;
+        double z2 = length * length;
+        return setInverseInertia(12 / (mass * (y2 + z2)), 0, 12 / (mass * (x2 + z2)), 0, 0, 12 / (mass * (x2 + y2)));
+    }
+
+    public BodyInertia set(BodyInertia other) {
+        inverseMass = other.inverseMass;
+        return setInverseInertia(other.inverseInertiaXX, other.inverseInertiaYX, other.inverseInertiaYY,
+                other.inverseInertiaZX, other.inverseInertiaZY, other.inverseInertiaZZ);
+    }
+}
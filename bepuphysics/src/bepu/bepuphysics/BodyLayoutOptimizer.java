@@ -0,0 +1,133 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuutilities.collections.RadixSorter;
+import bepu.bepuutilities.math.MortonCode;
+import bepu.bepuutilities.threading.IChunkBody;
+import bepu.bepuutilities.threading.IThreadDispatcher;
+
+/**
+ * Gradually sorts the active set by the Morton code of body positions, so that bodies close in space also sit close in memory and stages
+ * walking the active set in order touch related data together.
+ * <p>
+ * At the start of each sweep the active bodies are sorted by code, and the handle that belongs in each slot is remembered. Every frame
+ * the next window of slots is then filled with those bodies, so any one frame moves only a bounded number of bodies and the sort is
+ * amortized over the whole sweep. Bodies that were added during a sweep wait for the next one, and bodies that left the active set are
+ * skipped. Slot objects move along with their bodies, just as when a body is removed, so objects obtained from {@link Bodies} keep
+ * referring to the same body.
+ */
+public class BodyLayoutOptimizer {
+    //Ten bits per axis keeps the sort at four passes; finer codes wouldn't change memory order noticeably.
+    private static final int BITS_PER_AXIS = 10;
+    private static final int CODES_PER_CHUNK = 1024;
+
+    private final Bodies bodies;
+    private final RadixSorter sorter = new RadixSorter();
+
+    private double optimizedFractionPerFrame = 0.05;
+    //Number of slots covered by the current sweep, and the first slot of the next window.
+    private int sweepCount;
+    private int windowStart;
+
+    private long[] codes = new long[0];
+    //Handle of the body that belongs in each slot. Holds active indices while the sweep's sort runs.
+    private int[] targetHandles = new int[0];
+
+    //State of the code computation being dispatched.
+    private double minX, minY, minZ;
+    private double inverseSpanX, inverseSpanY, inverseSpanZ;
+    private final IChunkBody computeCodesChunk = this::computeCodes;
+
+    public BodyLayoutOptimizer(Bodies bodies) {
+        this.bodies = bodies;
+    }
+
+    /**
+     * Gets the fraction of the active set whose slots are filled with their sorted bodies each frame. Zero disables optimization.
+     *
+     * @return Fraction of active slots optimized per frame.
+     */
+    public double getOptimizedFractionPerFrame() {
+        return optimizedFractionPerFrame;
+    }
+
+    public void setOptimizedFractionPerFrame(double optimizedFractionPerFrame) {
+        this.optimizedFractionPerFrame = optimizedFractionPerFrame;
+    }
+
+    /**
+     * Moves the next window of active slots toward spatial order, sorting the active set first if a new sweep starts.
+     *
+     * @param dispatcher Dispatcher to compute and sort codes with. If null, the calling thread does all of the work.
+     */
+    public void update(IThreadDispatcher dispatcher) {
+        BodySet active = bodies.getActiveSet();
+        int count = active.getCount();
+        if (count < 2 || optimizedFractionPerFrame <= 0) {
+            sweepCount = windowStart = 0;
+            return;
+        }
+        if (windowStart >= sweepCount) {
+            startSweep(active, count, dispatcher);
+        }
+        int windowSize = Math.min(sweepCount - windowStart, (int) Math.ceil(sweepCount * optimizedFractionPerFrame));
+        int end = Math.min(windowStart + windowSize, count);
+        for (int slot = windowStart; slot < end; slot++) {
+            int handle = targetHandles[slot];
+            if (!bodies.bodyExists(handle) || !bodies.isActive(handle)) {
+                continue;
+            }
+            int currentSlot = bodies.getIndex(handle);
+            if (currentSlot != slot) {
+                bodies.swapActiveBodies(slot, currentSlot);
+            }
+        }
+        windowStart += windowSize;
+    }
+
+    private void startSweep(BodySet active, int count, IThreadDispatcher dispatcher) {
+        if (codes.length < count) {
+            int capacity = Math.max(count, codes.length * 2);
+            codes = new long[capacity];
+            targetHandles = new int[capacity];
+        }
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        minX = minY = minZ = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            RigidPose pose = active.poses[i];
+            minX = Math.min(minX, pose.getPosition().x);
+            minY = Math.min(minY, pose.getPosition().y);
+            minZ = Math.min(minZ, pose.getPosition().z);
+            maxX = Math.max(maxX, pose.getPosition().x);
+            maxY = Math.max(maxY, pose.getPosition().y);
+            maxZ = Math.max(maxZ, pose.getPosition().z);
+        }
+        inverseSpanX = maxX > minX ? 1 / (maxX - minX) : 0;
+        inverseSpanY = maxY > minY ? 1 / (maxY - minY) : 0;
+        inverseSpanZ = maxZ > minZ ? 1 / (maxZ - minZ) : 0;
+        if (dispatcher == null) {
+            computeCodes(0, count, 0);
+        } else {
+            dispatcher.forEachChunk(count, CODES_PER_CHUNK, computeCodesChunk);
+        }
+        sorter.sort(codes, targetHandles, count, 3 * BITS_PER_AXIS, dispatcher);
+        //Indices shift as windows are filled, so the targets are remembered by handle.
+        for (int i = 0; i < count; i++) {
+            targetHandles[i] = active.getHandle(targetHandles[i]);
+        }
+        sweepCount = count;
+        windowStart = 0;
+    }
+
+    private void computeCodes(int start, int end, int workerIndex) {
+        RigidPose[] poses = bodies.getActiveSet().poses;
+        for (int i = start; i < end; i++) {
+            RigidPose pose = poses[i];
+            codes[i] = MortonCode.encode(
+                    MortonCode.quantize(pose.getPosition().x, minX, inverseSpanX, BITS_PER_AXIS),
+                    MortonCode.quantize(pose.getPosition().y, minY, inverseSpanY, BITS_PER_AXIS),
+                    MortonCode.quantize(pose.getPosition().z, minZ, inverseSpanZ, BITS_PER_AXIS));
+            targetHandles[i] = i;
+        }
+    }
+}
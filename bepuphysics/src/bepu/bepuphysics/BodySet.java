@@ -0,0 +1,257 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.collidables.Collidable;
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Stores a group of bodies. Set 0 holds the active bodies; every other set holds one sleeping island.
+ * Slots are filled with reusable objects, so removing a body swaps references instead of allocating.
+ */
+public class BodySet {
+    RigidPose[] poses;
+    BodyVelocity[] velocities;
+    BodyInertia[] inertias;
+    Collidable[] collidables;
+    BodyActivity[] activity;
+    int[] indexToHandle;
+    //Handles of the constraints connected to each body.
+    int[][] constraints;
+    int[] constraintCounts;
+    int count;
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return poses.length;
+    }
+
+    public RigidPose getPose(int index) {
+        return poses[index];
+    }
+
+    public BodyVelocity getVelocity(int index) {
+        return velocities[index];
+    }
+
+    public BodyInertia getInertia(int index) {
+        return inertias[index];
+    }
+
+    public Collidable getCollidable(int index) {
+        return collidables[index];
+    }
+
+    public BodyActivity getActivity(int index) {
+        return activity[index];
+    }
+
+    public int getHandle(int index) {
+        return indexToHandle[index];
+    }
+
+    public int getConstraintCount(int index) {
+        return constraintCounts[index];
+    }
+
+    public int getConstraintHandle(int index, int constraintIndex) {
+        return constraints[index][constraintIndex];
+    }
+
+    public BodySet(int initialCapacity) {
+        poses = new RigidPose[0];
+        velocities = new BodyVelocity[0];
+        inertias = new BodyInertia[0];
+        collidables = new Collidable[0];
+        activity = new BodyActivity[0];
+        indexToHandle = new int[0];
+        constraints = new int[0][];
+        constraintCounts = new int[0];
+        internalResize(Math.max(1, initialCapacity));
+    }
+
+    /**
+     * Ensures that the set can hold at least the given number of bodies without resizing.
+     *
+     * @param capacity Number of bodies to preallocate space for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > poses.length) {
+            internalResize(Math.max(capacity, poses.length * 2));
+        }
+    }
+
+    int add(BodyDescription description, int handle) {
+        int index = allocate(handle);
+        poses[index].set(description.getPose());
+        velocities[index].set(description.getVelocity());
+        inertias[index].set(description.getInertia());
+        Collidable collidable = collidables[index];
+        collidable.setShape(description.getShape());
+        collidable.setSpeculativeMargin(description.getSpeculativeMargin());
+        collidable.setContinuous(description.isContinuous());
+        collidable.setCollisionFilter(description.getCollisionFilter());
+        collidable.setBroadPhaseIndex(-1);
+        BodyActivity bodyActivity = activity[index];
+        bodyActivity.setSleepThreshold(description.getSleepThreshold());
+        bodyActivity.setMinimumTimestepsUnderThreshold(description.getMinimumTimestepsUnderThreshold());
+        bodyActivity.reset();
+        return index;
+    }
+
+    /**
+     * Copies a body from another set into this set.
+     *
+     * @param source Set containing the body to copy.
+     * @param sourceIndex Index of the body in the source set.
+     *
+     * @return Index of the body in this set.
+     */
+    int addFrom(BodySet source, int sourceIndex) {
+        int index = allocate(source.indexToHandle[sourceIndex]);
+        poses[index].set(source.poses[sourceIndex]);
+        velocities[index].set(source.velocities[sourceIndex]);
+        inertias[index].set(source.inertias[sourceIndex]);
+        collidables[index].set(source.collidables[sourceIndex]);
+        activity[index].set(source.activity[sourceIndex]);
+        //The constraint list is handed over rather than copied; the source slot is about to be removed.
+        int[] list = constraints[index];
+        constraints[index] = source.constraints[sourceIndex];
+        constraintCounts[index] = source.constraintCounts[sourceIndex];
+        source.constraints[sourceIndex] = list;
+        source.constraintCounts[sourceIndex] = 0;
+        return index;
+    }
+
+    /**
+     * Removes a body from the set by moving the last body into its slot.
+     *
+     * @param index Index of the body to remove.
+     *
+     * @return True if a body was moved into the removed index; its handle can be found with {@link #getHandle(int)}.
+     */
+    boolean removeAt(int index) {
+        int last = --count;
+        constraintCounts[index] = 0;
+        if (index == last) {
+            return false;
+        }
+        swap(poses, index, last);
+        swap(velocities, index, last);
+        swap(inertias, index, last);
+        swap(collidables, index, last);
+        swap(activity, index, last);
+        swap(constraints, index, last);
+        indexToHandle[index] = indexToHandle[last];
+        constraintCounts[index] = constraintCounts[last];
+        constraintCounts[last] = 0;
+        return true;
+    }
+
+    /**
+     * Exchanges the bodies in two slots. As with removal, the slot objects move along with their bodies, so objects obtained for either
+     * body keep referring to it.
+     *
+     * @param a Index of the first body.
+     * @param b Index of the second body.
+     */
+    void swapSlots(int a, int b) {
+        swap(poses, a, b);
+        swap(velocities, a, b);
+        swap(inertias, a, b);
+        swap(collidables, a, b);
+        swap(activity, a, b);
+        swap(constraints, a, b);
+        int handle = indexToHandle[a];
+        indexToHandle[a] = indexToHandle[b];
+        indexToHandle[b] = handle;
+        int constraintCount = constraintCounts[a];
+        constraintCounts[a] = constraintCounts[b];
+        constraintCounts[b] = constraintCount;
+    }
+
+    void addConstraint(int index, int constraintHandle) {
+        int[] list = constraints[index];
+        int constraintCount = constraintCounts[index];
+        if (constraintCount == list.length) {
+            int[] newList = new int[Math.max(4, list.length * 2)];
+            System.arraycopy(list, 0, newList, 0, constraintCount);
+            constraints[index] = list = newList;
+        }
+        list[constraintCount] = constraintHandle;
+        constraintCounts[index] = constraintCount + 1;
+    }
+
+    void removeConstraint(int index, int constraintHandle) {
+        int[] list = constraints[index];
+        int last = constraintCounts[index] - 1;
+        for (int i = 0; i <= last; i++) {
+            if (list[i] == constraintHandle) {
+                list[i] = list[last];
+                constraintCounts[index] = last;
+                return;
+            }
+        }
+        assert false : "Constraint " + constraintHandle + " is not connected to the body at index " + index + ".";
+    }
+
+    void clear() {
+        for (int i = 0; i < count; i++) {
+            constraintCounts[i] = 0;
+        }
+        count = 0;
+    }
+
+    private int allocate(int handle) {
+        ensureCapacity(count + 1);
+        int index = count++;
+        indexToHandle[index] = handle;
+        constraintCounts[index] = 0;
+        return index;
+    }
+
+    private static <T> void swap(T[] array, int a, int b) {
+        T temp = array[a];
+        array[a] = array[b];
+        array[b] = temp;
+    }
+
+    private void internalResize(int newCapacity) {
+        int oldCapacity = poses.length;
+        assert newCapacity > oldCapacity : "Body sets only grow.";
+        RigidPose[] newPoses = new RigidPose[newCapacity];
+        BodyVelocity[] newVelocities = new BodyVelocity[newCapacity];
+        BodyInertia[] newInertias = new BodyInertia[newCapacity];
+        Collidable[] newCollidables = new Collidable[newCapacity];
+        BodyActivity[] newActivity = new BodyActivity[newCapacity];
+        int[][] newConstraints = new int[newCapacity][];
+        System.arraycopy(poses, 0, newPoses, 0, oldCapacity);
+        System.arraycopy(velocities, 0, newVelocities, 0, oldCapacity);
+        System.arraycopy(inertias, 0, newInertias, 0, oldCapacity);
+        System.arraycopy(collidables, 0, newCollidables, 0, oldCapacity);
+        System.arraycopy(activity, 0, newActivity, 0, oldCapacity);
+        System.arraycopy(constraints, 0, newConstraints, 0, oldCapacity);
+        for (int i = oldCapacity; i < newCapacity; i++) {
+            newPoses[i] = new RigidPose(Vector3Double.ZERO);
+            newVelocities[i] = new BodyVelocity();
+            newInertias[i] = new BodyInertia();
+            newCollidables[i] = new Collidable();
+            newActivity[i] = new BodyActivity();
+            newConstraints[i] = new int[0];
+        }
+        poses = newPoses;
+        velocities = newVelocities;
+        inertias = newInertias;
+        collidables = newCollidables;
+        activity = newActivity;
+        constraints = newConstraints;
+        int[] newIndexToHandle = new int[newCapacity];
+        System.arraycopy(indexToHandle, 0, newIndexToHandle, 0, oldCapacity);
+        indexToHandle = newIndexToHandle;
+        int[] newConstraintCounts = new int[newCapacity];
+        System.arraycopy(constraintCounts, 0, newConstraintCounts, 0, oldCapacity);
+        constraintCounts = newConstraintCounts;
+    }
+}
@@ -0,0 +1,36 @@
+package bepu.bepuphysics;
+
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Linear and angular velocity of a body.
+ */
+public class BodyVelocity {
+    private final Vector3Double linear = new Vector3Double();
+    private final Vector3Double angular = new Vector3Double();
+
+    public Vector3Double getLinear() {
+        return linear;
+    }
+
+    public Vector3Double getAngular() {
+        return angular;
+    }
+
+    public BodyVelocity set(Vector3Double linear, Vector3Double angular) {
+        this.linear.set(linear);
+        this.angular.set(angular);
+        return this;
+    }
+
+    public BodyVelocity set(BodyVelocity other) {
+        this.linear.set(other.linear);
+        this.angular.set(other.angular);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return linear + ", " + angular;
+    }
+}
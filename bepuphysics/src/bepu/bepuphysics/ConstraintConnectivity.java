@@ -0,0 +1,109 @@
+package bepu.bepuphysics;
+
+import bepu.bepuutilities.memory.IdPool;
+
+/**
+ * Tracks which bodies each constraint connects. The island sleeper walks these connections to find groups of bodies that must sleep and wake together.
+ */
+public class ConstraintConnectivity {
+    public static final int MAXIMUM_BODIES_PER_CONSTRAINT = 4;
+
+    private final Bodies bodies;
+    private final IslandAwakener awakener;
+    private final IdPool handlePool;
+    private int[] bodyHandles;
+    //0 marks an unallocated constraint handle.
+    private int[] bodyCounts;
+
+    public ConstraintConnectivity(Bodies bodies, IslandAwakener awakener, int initialCapacity) {
+        this.bodies = bodies;
+        this.awakener = awakener;
+        int capacity = Math.max(1, initialCapacity);
+        handlePool = new IdPool(capacity);
+        bodyHandles = new int[capacity * MAXIMUM_BODIES_PER_CONSTRAINT];
+        bodyCounts = new int[capacity];
+    }
+
+    public boolean constraintExists(int constraintHandle) {
+        return constraintHandle >= 0 && constraintHandle < bodyCounts.length && bodyCounts[constraintHandle] > 0;
+    }
+
+    public int getBodyCount(int constraintHandle) {
+        return bodyCounts[constraintHandle];
+    }
+
+    public int getBodyHandle(int constraintHandle, int bodyIndexInConstraint) {
+        assert bodyIndexInConstraint < bodyCounts[constraintHandle];
+        return bodyHandles[constraintHandle * MAXIMUM_BODIES_PER_CONSTRAINT + bodyIndexInConstraint];
+    }
+
+    /**
+     * Connects two bodies. Sleeping bodies are woken so that the constraint's whole island is active.
+     *
+     * @param bodyHandleA Handle of the first body.
+     * @param bodyHandleB Handle of the second body.
+     *
+     * @return Handle of the constraint.
+     */
+    public int add(int bodyHandleA, int bodyHandleB) {
+        int constraintHandle = allocate(2);
+        int start = constraintHandle * MAXIMUM_BODIES_PER_CONSTRAINT;
+        bodyHandles[start] = bodyHandleA;
+        bodyHandles[start + 1] = bodyHandleB;
+        connect(constraintHandle);
+        return constraintHandle;
+    }
+
+    /**
+     * Connects a group of bodies. Sleeping bodies are woken so that the constraint's whole island is active.
+     *
+     * @param handles Handles of the bodies to connect.
+     * @param count Number of handles to read from the array.
+     *
+     * @return Handle of the constraint.
+     */
+    public int add(int[] handles, int count) {
+        assert count > 0 && count <= MAXIMUM_BODIES_PER_CONSTRAINT : "Constraints must connect between 1 and " + MAXIMUM_BODIES_PER_CONSTRAINT + " bodies.";
+        int constraintHandle = allocate(count);
+        System.arraycopy(handles, 0, bodyHandles, constraintHandle * MAXIMUM_BODIES_PER_CONSTRAINT, count);
+        connect(constraintHandle);
+        return constraintHandle;
+    }
+
+    public void remove(int constraintHandle) {
+        assert constraintExists(constraintHandle) : "Constraint must exist to be removed.";
+        int start = constraintHandle * MAXIMUM_BODIES_PER_CONSTRAINT;
+        for (int i = 0; i < bodyCounts[constraintHandle]; i++) {
+            bodies.removeConstraintReference(bodyHandles[start + i], constraintHandle);
+        }
+        bodyCounts[constraintHandle] = 0;
+        handlePool.release(constraintHandle);
+    }
+
+    private int allocate(int bodyCount) {
+        int constraintHandle = handlePool.take();
+        if (constraintHandle >= bodyCounts.length) {
+            int newCapacity = bodyCounts.length * 2;
+            int[] newBodyCounts = new int[newCapacity];
+            System.arraycopy(bodyCounts, 0, newBodyCounts, 0, bodyCounts.length);
+            bodyCounts = newBodyCounts;
+            int[] newBodyHandles = new int[newCapacity * MAXIMUM_BODIES_PER_CONSTRAINT];
+            System.arraycopy(bodyHandles, 0, newBodyHandles, 0, bodyHandles.length);
+            bodyHandles = newBodyHandles;
+        }
+        bodyCounts[constraintHandle] = bodyCount;
+        return constraintHandle;
+    }
+
+    private void connect(int constraintHandle) {
+        int start = constraintHandle * MAXIMUM_BODIES_PER_CONSTRAINT;
+        int count = bodyCounts[constraintHandle];
+        for (int i = 0; i < count; i++) {
+            int bodyHandle = bodyHandles[start + i];
+            if (!bodies.isActive(bodyHandle)) {
+                awakener.awakenBody(bodyHandle);
+            }
+            bodies.addConstraintReference(bodyHandle, constraintHandle);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.collisiondetection.BroadPhase;
+import bepu.bepuphysics.constraints.Solver;
+
+/**
+ * Wakes sleeping islands. Islands touched during a frame are queued and then woken together, so the active set and the active tree
+ * are resized at most once no matter how many islands wake up. A woken island's constraints go back to the solver's batches.
+ */
+public class IslandAwakener {
+    private final Bodies bodies;
+    private final BroadPhase broadPhase;
+    private Solver solver;
+    private int[] queuedSets;
+    private int queuedCount;
+    private boolean[] setQueued;
+
+    public IslandAwakener(Bodies bodies, BroadPhase broadPhase) {
+        this.bodies = bodies;
+        this.broadPhase = broadPhase;
+        queuedSets = new int[16];
+        setQueued = new boolean[16];
+    }
+
+    /**
+     * Connects the awakener to the solver holding the constraints of sleeping islands. The solver is created after the awakener, since the
+     * connectivity it depends on wakes islands through the awakener.
+     */
+    void initialize(Solver solver) {
+        this.solver = solver;
+    }
+
+    public int getQueuedSetCount() {
+        return queuedCount;
+    }
+
+    /**
+     * Immediately wakes the island containing a body. Does nothing if the body is already active.
+     *
+     * @param handle Handle of the body to wake.
+     */
+    public void awakenBody(int handle) {
+        int setIndex = bodies.getSetIndex(handle);
+        if (setIndex > 0) {
+            queueSetForAwakening(setIndex);
+            awakenQueued();
+        }
+    }
+
+    /**
+     * Queues an inactive set to be woken by the next call to {@link #awakenQueued()}. Queuing the same set more than once has no effect.
+     *
+     * @param setIndex Index of the inactive set to wake.
+     */
+    public void queueSetForAwakening(int setIndex) {
+        assert setIndex > 0 : "The active set is always awake.";
+        if (setIndex >= setQueued.length) {
+            boolean[] newSetQueued = new boolean[Math.max(setIndex + 1, setQueued.length * 2)];
+            System.arraycopy(setQueued, 0, newSetQueued, 0, setQueued.length);
+            setQueued = newSetQueued;
+        }
+        if (setQueued[setIndex]) {
+            return;
+        }
+        setQueued[setIndex] = true;
+        if (queuedCount == queuedSets.length) {
+            int[] newQueuedSets = new int[queuedSets.length * 2];
+            System.arraycopy(queuedSets, 0, newQueuedSets, 0, queuedCount);
+            queuedSets = newQueuedSets;
+        }
+        queuedSets[queuedCount++] = setIndex;
+    }
+
+    /**
+     * Queues the island containing a body for awakening if the body is asleep.
+     *
+     * @param handle Handle of the body.
+     */
+    public void queueBodyForAwakening(int handle) {
+        int setIndex = bodies.getSetIndex(handle);
+        if (setIndex > 0) {
+            queueSetForAwakening(setIndex);
+        }
+    }
+
+    /**
+     * Wakes every queued island in bulk.
+     */
+    public void awakenQueued() {
+        if (queuedCount == 0) {
+            return;
+        }
+        int bodyCount = 0;
+        for (int i = 0; i < queuedCount; i++) {
+            bodyCount += bodies.getSet(queuedSets[i]).getCount();
+        }
+        bodies.ensureActiveCapacity(bodies.getActiveSet().getCount() + bodyCount);
+        broadPhase.ensureActiveCapacity(broadPhase.getActiveTree().getLeafCount() + bodyCount);
+        for (int i = 0; i < queuedCount; i++) {
+            int setIndex = queuedSets[i];
+            BodySet set = bodies.getSet(setIndex);
+            for (int j = 0; j < set.getCount(); j++) {
+                bodies.moveToActiveSet(setIndex, j);
+            }
+            if (solver != null) {
+                solver.moveToActiveSet(setIndex);
+            }
+            bodies.releaseSet(setIndex);
+            setQueued[setIndex] = false;
+        }
+        queuedCount = 0;
+    }
+}
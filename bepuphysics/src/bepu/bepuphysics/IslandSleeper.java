@@ -0,0 +1,176 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.constraints.Solver;
+
+/**
+ * Finds islands of connected bodies that have all come to rest and moves them out of the active set, along with their constraints.
+ * Each frame only a fraction of the active bodies is used to start island traversals, so the sleeper's cost scales with the active body count.
+ */
+public class IslandSleeper {
+    private final Bodies bodies;
+    private final ConstraintConnectivity constraints;
+    private final Solver solver;
+
+    private double testedFractionPerFrame = 0.01;
+    private double targetSleptFraction = 0.005;
+    private int scheduleOffset;
+
+    //Bodies are marked as visited by handle, so the marks stay valid while bodies move around inside the active set.
+    private int[] visitedStamps = new int[0];
+    private int stamp;
+    private int[] traversalStack = new int[16];
+    //Handles of the bodies in every island found this frame, stored back to back.
+    private int[] islandBodies = new int[16];
+    private int islandBodyCount;
+    private int[] islandStarts = new int[16];
+    private int islandCount;
+
+    public IslandSleeper(Bodies bodies, ConstraintConnectivity constraints, Solver solver) {
+        this.bodies = bodies;
+        this.constraints = constraints;
+        this.solver = solver;
+    }
+
+    /**
+     * Gets the fraction of the active set used to start island traversals each frame.
+     *
+     * @return Fraction of active bodies tested per frame.
+     */
+    public double getTestedFractionPerFrame() {
+        return testedFractionPerFrame;
+    }
+
+    public void setTestedFractionPerFrame(double testedFractionPerFrame) {
+        this.testedFractionPerFrame = testedFractionPerFrame;
+    }
+
+    /**
+     * Gets the fraction of the active set that the sleeper tries to put to sleep in a single frame. Once an island pushes the frame's total past
+     * this target, no more traversals are started.
+     *
+     * @return Fraction of active bodies targeted for sleeping per frame.
+     */
+    public double getTargetSleptFraction() {
+        return targetSleptFraction;
+    }
+
+    public void setTargetSleptFraction(double targetSleptFraction) {
+        this.targetSleptFraction = targetSleptFraction;
+    }
+
+    /**
+     * Puts to sleep any islands found this frame whose bodies are all sleep candidates.
+     */
+    public void update() {
+        BodySet active = bodies.getActiveSet();
+        int activeCount = active.getCount();
+        if (activeCount == 0) {
+            return;
+        }
+        int traversalCount = Math.min(activeCount, Math.max(1, (int) Math.ceil(activeCount * testedFractionPerFrame)));
+        int targetSleptCount = Math.max(1, (int) Math.ceil(activeCount * targetSleptFraction));
+        if (scheduleOffset >= activeCount) {
+            scheduleOffset = 0;
+        }
+        prepareStamps(traversalCount);
+        int frameStamp = stamp + 1;
+        islandBodyCount = 0;
+        islandCount = 0;
+        for (int i = 0; i < traversalCount && islandBodyCount < targetSleptCount; i++) {
+            int index = scheduleOffset + i;
+            if (index >= activeCount) {
+                index -= activeCount;
+            }
+            int handle = active.getHandle(index);
+            if (visitedStamps[handle] < frameStamp && active.getActivity(index).isSleepCandidate()) {
+                ++stamp;
+                collectIsland(handle, frameStamp);
+            }
+        }
+        scheduleOffset += traversalCount;
+
+        for (int i = 0; i < islandCount; i++) {
+            int start = islandStarts[i];
+            int end = i + 1 < islandCount ? islandStarts[i + 1] : islandBodyCount;
+            int setIndex = bodies.allocateSet(end - start);
+            for (int j = start; j < end; j++) {
+                int index = bodies.getIndex(islandBodies[j]);
+                for (int k = 0; k < active.getConstraintCount(index); k++) {
+                    solver.moveToInactiveSet(active.getConstraintHandle(index, k), setIndex);
+                }
+                bodies.moveToInactiveSet(islandBodies[j], setIndex);
+            }
+        }
+    }
+
+    /**
+     * Walks the constraint graph from a body. If every reachable body is a sleep candidate, the island is recorded for sleeping.
+     * Every traversal uses its own stamp; stamps at or above the frame's first stamp belong to earlier traversals in the same frame.
+     */
+    private void collectIsland(int startHandle, int frameStamp) {
+        BodySet active = bodies.getActiveSet();
+        int islandStart = islandBodyCount;
+        int stackCount = 0;
+        traversalStack[stackCount++] = startHandle;
+        visitedStamps[startHandle] = stamp;
+        while (stackCount > 0) {
+            int handle = traversalStack[--stackCount];
+            int index = bodies.getIndex(handle);
+            if (!active.getActivity(index).isSleepCandidate()) {
+                //One awake body keeps the whole island awake. Its members keep their marks so they aren't retraversed this frame.
+                islandBodyCount = islandStart;
+                return;
+            }
+            if (islandBodyCount == islandBodies.length) {
+                islandBodies = grow(islandBodies);
+            }
+            islandBodies[islandBodyCount++] = handle;
+            for (int i = 0; i < active.getConstraintCount(index); i++) {
+                int constraintHandle = active.getConstraintHandle(index, i);
+                for (int j = 0; j < constraints.getBodyCount(constraintHandle); j++) {
+                    int connectedHandle = constraints.getBodyHandle(constraintHandle, j);
+                    int connectedStamp = visitedStamps[connectedHandle];
+                    if (connectedStamp != stamp) {
+                        if (connectedStamp >= frameStamp) {
+                            //An earlier traversal this frame reached this body without recording the island, so it found an awake body.
+                            //Stopping here keeps a partial island from sleeping while it's still connected to awake bodies.
+                            islandBodyCount = islandStart;
+                            return;
+                        }
+                        assert bodies.isActive(connectedHandle) : "Constraints should never connect active bodies to sleeping bodies.";
+                        visitedStamps[connectedHandle] = stamp;
+                        if (stackCount == traversalStack.length) {
+                            traversalStack = grow(traversalStack);
+                        }
+                        traversalStack[stackCount++] = connectedHandle;
+                    }
+                }
+            }
+        }
+        if (islandCount == islandStarts.length) {
+            islandStarts = grow(islandStarts);
+        }
+        islandStarts[islandCount++] = islandStart;
+    }
+
+    /**
+     * Makes sure the stamps can cover every body handle and that the frame's traversals can each take a fresh stamp without overflowing.
+     */
+    private void prepareStamps(int traversalCount) {
+        int handleSpan = bodies.getHandleCapacity();
+        if (handleSpan > visitedStamps.length) {
+            visitedStamps = new int[handleSpan];
+            stamp = 0;
+        }
+        if (stamp >= Integer.MAX_VALUE - traversalCount) {
+            java.util.Arrays.fill(visitedStamps, 0);
+            stamp = 0;
+        }
+    }
+
+    private static int[] grow(int[] array) {
+        int[] newArray = new int[array.length * 2];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
@@ -0,0 +1,335 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the poses of every body over the last few recorded frames, so that poses can be sampled at times between or before the latest
+ * frames. Renderers use this to draw at rates other than the physics step, and servers use it to rewind bodies for lag compensation.
+ * <p>
+ * Poses are stored by body handle in flat arrays, with each handle's frames contiguous, so interpolating a body reads a single short run of
+ * memory. Sampling blends positions linearly and slerps orientations between the two frames around the requested time. Times outside the
+ * recorded range are clamped to the earliest or latest frame, and bodies added after the earliest frame are clamped to their first one.
+ * <p>
+ * Recording and sampling allocate nothing once the history has grown to the simulation's handle capacity. Neither is thread safe; sample
+ * from the thread stepping the simulation or between time steps.
+ */
+public class PoseHistory {
+    private static final long NO_HISTORY = -1;
+
+    private final Bodies bodies;
+    private boolean recording;
+
+    private int frameCapacity;
+    //Total number of frames recorded since the last clear; frame f is stored in slot f % frameCapacity.
+    private long frameCount;
+    private double latestTime;
+    private double[] times;
+
+    private int handleCapacity;
+    //Position of handle h in frame slot s starts at (h * frameCapacity + s) * 3, orientation at (h * frameCapacity + s) * 4.
+    private double[] positions = new double[0];
+    private double[] orientations = new double[0];
+    //First frame recorded for the body currently using each handle, or NO_HISTORY.
+    private long[] firstFrames = new long[0];
+
+    //Frames around the time being sampled.
+    private long sampleFrameA, sampleFrameB;
+    private double sampleWeight;
+    private final QuaternionDouble startOrientation = new QuaternionDouble();
+    private final QuaternionDouble endOrientation = new QuaternionDouble();
+    private final double[] samplePosition = new double[3];
+    private final double[] sampleOrientation = new double[4];
+
+    /**
+     * Creates an empty pose history.
+     *
+     * @param bodies Bodies to record the poses of.
+     * @param frameCapacity Number of most recent frames to keep. Covering a rewind window takes the window's length divided by the time step,
+     *                      plus one.
+     */
+    public PoseHistory(Bodies bodies, int frameCapacity) {
+        this.bodies = bodies;
+        setFrameCapacity(frameCapacity);
+    }
+
+    /**
+     * Gets whether the simulation records a frame at the end of every time step.
+     *
+     * @return True if a frame is recorded every time step; otherwise false.
+     */
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public PoseHistory setRecording(boolean recording) {
+        this.recording = recording;
+        return this;
+    }
+
+    public int getFrameCapacity() {
+        return frameCapacity;
+    }
+
+    /**
+     * Changes the number of frames kept. Recorded frames are discarded.
+     *
+     * @param frameCapacity Number of most recent frames to keep.
+     *
+     * @return This history.
+     */
+    public PoseHistory setFrameCapacity(int frameCapacity) {
+        if (frameCapacity < 1) {
+            throw new IllegalArgumentException("Pose history must keep at least one frame.");
+        }
+        this.frameCapacity = frameCapacity;
+        times = new double[frameCapacity];
+        positions = new double[handleCapacity * frameCapacity * 3];
+        orientations = new double[handleCapacity * frameCapacity * 4];
+        clear();
+        return this;
+    }
+
+    /**
+     * Gets the number of frames currently stored.
+     *
+     * @return Number of stored frames, at most the frame capacity.
+     */
+    public int getFrameCount() {
+        return (int) Math.min(frameCount, frameCapacity);
+    }
+
+    /**
+     * Gets the time of the oldest stored frame.
+     *
+     * @return Time of the oldest stored frame.
+     */
+    public double getEarliestTime() {
+        assert frameCount > 0 : "History must have a frame to have an earliest time.";
+        return times[(int) (getEarliestFrame() % frameCapacity)];
+    }
+
+    /**
+     * Gets the time of the most recently recorded frame. Clearing the history keeps this time, so a clock driven by it stays continuous.
+     *
+     * @return Time of the most recently recorded frame, or 0 if no frame was ever recorded.
+     */
+    public double getLatestTime() {
+        return latestTime;
+    }
+
+    /**
+     * Gets the exclusive upper bound on the handles the history currently holds poses for.
+     *
+     * @return Handle capacity of the history.
+     */
+    public int getHandleCapacity() {
+        return handleCapacity;
+    }
+
+    /**
+     * Checks whether a body has at least one stored frame.
+     *
+     * @param handle Handle of the body.
+     *
+     * @return True if the body can be sampled; otherwise false.
+     */
+    public boolean hasHistory(int handle) {
+        return handle >= 0 && handle < handleCapacity && firstFrames[handle] != NO_HISTORY && firstFrames[handle] < frameCount;
+    }
+
+    /**
+     * Discards all stored frames. The latest time is kept.
+     */
+    public void clear() {
+        frameCount = 0;
+        Arrays.fill(firstFrames, NO_HISTORY);
+    }
+
+    /**
+     * Discards the history of a body. {@link Simulation#removeBody(int)} does this automatically; a body removed directly through
+     * {@link Bodies#remove(int)} is only noticed at the next recorded frame, so a new body given its handle before then would inherit its
+     * history.
+     *
+     * @param handle Handle of the removed body.
+     */
+    public void forget(int handle) {
+        if (handle < handleCapacity) {
+            firstFrames[handle] = NO_HISTORY;
+        }
+    }
+
+    /**
+     * Records the current pose of every body as a new frame, replacing the oldest frame once the history is full.
+     *
+     * @param time Time of the frame. Must be later than the previously recorded frame.
+     */
+    public void record(double time) {
+        assert frameCount == 0 || time > latestTime : "Frames must be recorded in increasing time order.";
+        ensureHandleCapacity(bodies.getHandleCapacity());
+        int slot = (int) (frameCount % frameCapacity);
+        for (int handle = 0; handle < handleCapacity; handle++) {
+            if (!bodies.bodyExists(handle)) {
+                firstFrames[handle] = NO_HISTORY;
+                continue;
+            }
+            if (firstFrames[handle] == NO_HISTORY) {
+                firstFrames[handle] = frameCount;
+            }
+            RigidPose pose = bodies.getPose(handle);
+            int entry = handle * frameCapacity + slot;
+            Vector3Double position = pose.getPosition();
+            int positionIndex = entry * 3;
+            positions[positionIndex] = position.x;
+            positions[positionIndex + 1] = position.y;
+            positions[positionIndex + 2] = position.z;
+            QuaternionDouble orientation = pose.getOrientation();
+            int orientationIndex = entry * 4;
+            orientations[orientationIndex] = orientation.getX();
+            orientations[orientationIndex + 1] = orientation.getY();
+            orientations[orientationIndex + 2] = orientation.getZ();
+            orientations[orientationIndex + 3] = orientation.getW();
+        }
+        times[slot] = time;
+        latestTime = time;
+        frameCount++;
+    }
+
+    /**
+     * Samples the pose of one body.
+     *
+     * @param time Time to sample at.
+     * @param handle Handle of the body.
+     * @param result Pose to store the sampled pose in.
+     *
+     * @return True if the body had history and the result was written; otherwise false and the result is untouched.
+     */
+    public boolean sample(double time, int handle, RigidPose result) {
+        if (!hasHistory(handle)) {
+            return false;
+        }
+        locate(time);
+        sampleBody(handle, samplePosition, 0, sampleOrientation, 0);
+        result.getPosition().set(samplePosition[0], samplePosition[1], samplePosition[2]);
+        result.getOrientation().set(sampleOrientation[0], sampleOrientation[1], sampleOrientation[2], sampleOrientation[3]);
+        return true;
+    }
+
+    /**
+     * Samples the poses of a list of bodies. Every body must have history; see {@link #hasHistory(int)}.
+     *
+     * @param time Time to sample at.
+     * @param handles Handles of the bodies to sample.
+     * @param count Number of handles to sample.
+     * @param positionsOut Receives the position of the body handles[i] at 3 * i.
+     * @param orientationsOut Receives the orientation of the body handles[i] as x, y, z, w at 4 * i.
+     */
+    public void sample(double time, int[] handles, int count, double[] positionsOut, double[] orientationsOut) {
+        if (count == 0) {
+            return;
+        }
+        locate(time);
+        for (int i = 0; i < count; i++) {
+            int handle = handles[i];
+            assert hasHistory(handle) : "Sampled bodies must have history.";
+            sampleBody(handle, positionsOut, i * 3, orientationsOut, i * 4);
+        }
+    }
+
+    /**
+     * Samples the poses of every body with history. Entries of handles without history are left untouched.
+     *
+     * @param time Time to sample at.
+     * @param positionsOut Receives the position of the body with handle h at 3 * h. Must hold at least {@link #getHandleCapacity()} positions.
+     * @param orientationsOut Receives the orientation of the body with handle h as x, y, z, w at 4 * h. Must hold at least
+     *                        {@link #getHandleCapacity()} orientations.
+     */
+    public void sampleAll(double time, double[] positionsOut, double[] orientationsOut) {
+        if (frameCount == 0) {
+            return;
+        }
+        locate(time);
+        for (int handle = 0; handle < handleCapacity; handle++) {
+            if (hasHistory(handle)) {
+                sampleBody(handle, positionsOut, handle * 3, orientationsOut, handle * 4);
+            }
+        }
+    }
+
+    private long getEarliestFrame() {
+        return frameCount - getFrameCount();
+    }
+
+    /**
+     * Finds the stored frames around a time and the weight of the later one.
+     */
+    private void locate(double time) {
+        long earliest = getEarliestFrame();
+        long latest = frameCount - 1;
+        if (time <= times[(int) (earliest % frameCapacity)]) {
+            sampleFrameA = sampleFrameB = earliest;
+            sampleWeight = 0;
+            return;
+        }
+        if (time >= times[(int) (latest % frameCapacity)]) {
+            sampleFrameA = sampleFrameB = latest;
+            sampleWeight = 0;
+            return;
+        }
+        //The time lies strictly between the earliest and latest frames; find the last frame at or before it.
+        long low = earliest, high = latest;
+        while (high - low > 1) {
+            long middle = (low + high) >>> 1;
+            if (times[(int) (middle % frameCapacity)] <= time) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        double timeA = times[(int) (low % frameCapacity)];
+        double timeB = times[(int) (high % frameCapacity)];
+        sampleFrameA = low;
+        sampleFrameB = high;
+        sampleWeight = (time - timeA) / (timeB - timeA);
+    }
+
+    private void sampleBody(int handle, double[] positionsOut, int positionIndex, double[] orientationsOut, int orientationIndex) {
+        long frameA = sampleFrameA, frameB = sampleFrameB;
+        double weight = sampleWeight;
+        long bodyEarliest = Math.max(firstFrames[handle], getEarliestFrame());
+        if (frameA < bodyEarliest) {
+            frameA = frameB = bodyEarliest;
+            weight = 0;
+        }
+        int entryA = handle * frameCapacity + (int) (frameA % frameCapacity);
+        int entryB = handle * frameCapacity + (int) (frameB % frameCapacity);
+        int a = entryA * 3, b = entryB * 3;
+        for (int i = 0; i < 3; i++) {
+            positionsOut[positionIndex + i] = positions[a + i] + (positions[b + i] - positions[a + i]) * weight;
+        }
+        a = entryA * 4;
+        b = entryB * 4;
+        startOrientation.set(orientations[a], orientations[a + 1], orientations[a + 2], orientations[a + 3]);
+        endOrientation.set(orientations[b], orientations[b + 1], orientations[b + 2], orientations[b + 3]);
+        QuaternionDouble.slerp(startOrientation, endOrientation, weight, startOrientation);
+        orientationsOut[orientationIndex] = startOrientation.getX();
+        orientationsOut[orientationIndex + 1] = startOrientation.getY();
+        orientationsOut[orientationIndex + 2] = startOrientation.getZ();
+        orientationsOut[orientationIndex + 3] = startOrientation.getW();
+    }
+
+    private void ensureHandleCapacity(int capacity) {
+        if (capacity <= handleCapacity) {
+            return;
+        }
+        //Frames of each handle are contiguous, so growing only appends space for the new handles.
+        positions = Arrays.copyOf(positions, capacity * frameCapacity * 3);
+        orientations = Arrays.copyOf(orientations, capacity * frameCapacity * 4);
+        firstFrames = Arrays.copyOf(firstFrames, capacity);
+        Arrays.fill(firstFrames, handleCapacity, capacity, NO_HISTORY);
+        handleCapacity = capacity;
+    }
+}
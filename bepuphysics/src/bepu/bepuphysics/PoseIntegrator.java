@@ -0,0 +1,179 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+import bepu.bepuutilities.memory.Vector3Pool;
+import bepu.bepuutilities.threading.IChunkBody;
+import bepu.bepuutilities.threading.IThreadDispatcher;
+
+/**
+ * Integrates the velocities and poses of active bodies, tracks their sleep activity and refreshes their bounds.
+ * Sleeping bodies are not visited.
+ */
+public class PoseIntegrator {
+    private static final int BODIES_PER_CHUNK = 256;
+
+    private final Bodies bodies;
+    private final Vector3Double gravity = new Vector3Double();
+
+    private double dt;
+    private double boundsDuration;
+    private IThreadDispatcher dispatcher;
+    private final IChunkBody integrateChunk = this::integrateChunk;
+    private final IChunkBody substepChunk = this::substepChunk;
+
+    public PoseIntegrator(Bodies bodies) {
+        this.bodies = bodies;
+    }
+
+    /**
+     * Gets the acceleration applied to every active dynamic body each time step. Kinematic bodies keep their velocity.
+     *
+     * @return Gravity of the simulation.
+     */
+    public Vector3Double getGravity() {
+        return gravity;
+    }
+
+    public PoseIntegrator setGravity(Vector3Double gravity) {
+        this.gravity.set(gravity);
+        return this;
+    }
+
+    /**
+     * Integrates every active body forward by a time step.
+     *
+     * @param dt Duration of the time step.
+     */
+    public void integrate(double dt) {
+        integrate(dt, null);
+    }
+
+    /**
+     * Integrates every active body forward by a time step, splitting the active set across the dispatcher's workers.
+     *
+     * @param dt Duration of the time step.
+     * @param dispatcher Dispatcher to use. If null, the calling thread integrates every body.
+     */
+    public void integrate(double dt, IThreadDispatcher dispatcher) {
+        integrate(dt, dt, dispatcher);
+    }
+
+    /**
+     * Integrates every active body forward by a time step, splitting the active set across the dispatcher's workers. Continuous bodies'
+     * bounds are expanded to cover their motion over a whole frame, which can be longer than the integrated step when the rest of the frame
+     * is integrated in substeps by the solver: back to the pose before this step, and on to the end of the frame at the current velocity.
+     *
+     * @param dt Duration of the time step.
+     * @param boundsDuration Duration of the frame that continuous bodies' bounds must cover, starting with this step.
+     * @param dispatcher Dispatcher to use. If null, the calling thread integrates every body.
+     */
+    public void integrate(double dt, double boundsDuration, IThreadDispatcher dispatcher) {
+        int count = bodies.getActiveSet().getCount();
+        if (dispatcher == null) {
+            Vector3Double min = Vector3Pool.getInstance().take();
+            Vector3Double max = Vector3Pool.getInstance().take();
+            integrate(0, count, dt, boundsDuration, min, max);
+            Vector3Pool.getInstance().release(min);
+            Vector3Pool.getInstance().release(max);
+        } else {
+            this.dt = dt;
+            this.boundsDuration = boundsDuration;
+            this.dispatcher = dispatcher;
+            dispatcher.forEachChunk(count, BODIES_PER_CHUNK, integrateChunk);
+            this.dispatcher = null;
+        }
+    }
+
+    private void integrateChunk(int start, int end, int workerIndex) {
+        Vector3Pool pool = dispatcher.getWorkerPools(workerIndex).getVector3Pool();
+        Vector3Double min = pool.take();
+        Vector3Double max = pool.take();
+        integrate(start, end, dt, boundsDuration, min, max);
+        pool.release(min);
+        pool.release(max);
+    }
+
+    /**
+     * Applies gravity and integrates the poses of every active body over a substep. Unlike {@link #integrate(double, IThreadDispatcher)},
+     * sleep activity and bounds are left alone; they are refreshed once per frame.
+     *
+     * @param dt Duration of the substep.
+     * @param dispatcher Dispatcher to use. If null, the calling thread integrates every body.
+     */
+    public void substep(double dt, IThreadDispatcher dispatcher) {
+        int count = bodies.getActiveSet().getCount();
+        if (dispatcher == null) {
+            substep(0, count, dt);
+        } else {
+            this.dt = dt;
+            dispatcher.forEachChunk(count, BODIES_PER_CHUNK, substepChunk);
+        }
+    }
+
+    private void substepChunk(int start, int end, int workerIndex) {
+        substep(start, end, dt);
+    }
+
+    private void substep(int start, int end, double dt) {
+        BodySet active = bodies.getActiveSet();
+        for (int i = start; i < end; i++) {
+            BodyVelocity velocity = active.getVelocity(i);
+            Vector3Double linear = velocity.getLinear();
+            if (!active.getInertia(i).isKinematic()) {
+                linear.addScaledLocal(gravity, dt);
+            }
+            RigidPose pose = active.getPose(i);
+            pose.getPosition().addScaledLocal(linear, dt);
+            integrateOrientation(pose.getOrientation(), velocity.getAngular(), dt);
+        }
+    }
+
+    private void integrate(int start, int end, double dt, double boundsDuration, Vector3Double min, Vector3Double max) {
+        BodySet active = bodies.getActiveSet();
+        for (int i = start; i < end; i++) {
+            BodyVelocity velocity = active.getVelocity(i);
+            Vector3Double linear = velocity.getLinear();
+            Vector3Double angular = velocity.getAngular();
+            if (!active.getInertia(i).isKinematic()) {
+                linear.addScaledLocal(gravity, dt);
+            }
+            RigidPose pose = active.getPose(i);
+            pose.getPosition().addScaledLocal(linear, dt);
+            integrateOrientation(pose.getOrientation(), angular, dt);
+            active.getActivity(i).update(linear.lengthSquared() + angular.lengthSquared());
+            bodies.updateBounds(i, dt, boundsDuration - dt, min, max);
+        }
+    }
+
+    /**
+     * Integrates an orientation by an angular velocity over a time step.
+     *
+     * @param orientation Orientation to integrate. It is modified in place.
+     * @param angularVelocity Angular velocity of the body.
+     * @param dt Duration of the time step.
+     */
+    public static void integrateOrientation(QuaternionDouble orientation, Vector3Double angularVelocity, double dt) {
+        double speed = angularVelocity.length();
+        if (speed > 1e-15) {
+            double halfAngle = speed * dt * 0.5;
+            double s = Math.sin(halfAngle) / speed;
+            double rx = angularVelocity.x * s;
+            double ry = angularVelocity.y * s;
+            double rz = angularVelocity.z * s;
+            double rw = Math.cos(halfAngle);
+            double x = orientation.getX();
+            double y = orientation.getY();
+            double z = orientation.getZ();
+            double w = orientation.getW();
+            //Same product as QuaternionDouble.concatenateWithoutOverlap(orientation, rotation), expanded to stay free of temporaries.
+            orientation.set(
+                    w * rx + x * rw + z * ry - y * rz,
+                    w * ry + y * rw + x * rz - z * rx,
+                    w * rz + z * rw + y * rx - x * ry,
+                    w * rw - x * rx - y * ry - z * rz);
+            orientation.normalizeLocal();
+        }
+    }
+}
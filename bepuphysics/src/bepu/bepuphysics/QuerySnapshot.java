@@ -0,0 +1,130 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuphysics.trees.Tree;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only view of the broad phase and body poses as they were at the end of a time step. Snapshots are obtained from
+ * {@link QuerySnapshots#acquire()} and stay unchanged until they are released, so any number of threads can run ray casts and overlap
+ * queries against the trees while the simulation computes the next frame.
+ * <p>
+ * Leaf indices match the trees of the snapshot, not the live broad phase. Shapes are referenced rather than copied; the data behind a
+ * snapshot's shapes must not be removed or overwritten while the snapshot is held.
+ */
+public class QuerySnapshot {
+    SnapshotTree active;
+    SnapshotTree sleeping;
+    long frameIndex;
+    final AtomicInteger readerCount = new AtomicInteger();
+
+    QuerySnapshot(SnapshotTree active, SnapshotTree sleeping) {
+        this.active = active;
+        this.sleeping = sleeping;
+    }
+
+    /**
+     * Gets the number of snapshots published before this one.
+     *
+     * @return Index of the frame captured by the snapshot.
+     */
+    public long getFrameIndex() {
+        return frameIndex;
+    }
+
+    /**
+     * Gets the frozen copy of the broad phase's active tree. The tree must only be queried, never modified.
+     *
+     * @return Active tree of the snapshot.
+     */
+    public Tree getActiveTree() {
+        return active.tree;
+    }
+
+    /**
+     * Gets the frozen copy of the broad phase's static tree. The tree must only be queried, never modified.
+     *
+     * @return Static tree of the snapshot.
+     */
+    public Tree getStaticTree() {
+        return sleeping.tree;
+    }
+
+    /**
+     * Gets the packed collidable reference owning an active leaf.
+     *
+     * @param index Index of the leaf in the snapshot's active tree.
+     *
+     * @return Packed collidable reference of the leaf's owner.
+     */
+    public int getActiveLeaf(int index) {
+        return active.leaves[index];
+    }
+
+    /**
+     * Gets the packed collidable reference owning a static leaf.
+     *
+     * @param index Index of the leaf in the snapshot's static tree.
+     *
+     * @return Packed collidable reference of the leaf's owner.
+     */
+    public int getStaticLeaf(int index) {
+        return sleeping.leaves[index];
+    }
+
+    /**
+     * Gets the pose of an active leaf's owner.
+     *
+     * @param index Index of the leaf in the snapshot's active tree.
+     * @param result Pose to fill. It can be null.
+     *
+     * @return Pose of the owner when the snapshot was published.
+     */
+    public RigidPose getActivePose(int index, RigidPose result) {
+        return active.getPose(index, result);
+    }
+
+    /**
+     * Gets the pose of a static leaf's owner.
+     *
+     * @param index Index of the leaf in the snapshot's static tree.
+     * @param result Pose to fill. It can be null.
+     *
+     * @return Pose of the owner when the snapshot was published, or the identity pose if the leaf doesn't belong to a body.
+     */
+    public RigidPose getStaticPose(int index, RigidPose result) {
+        return sleeping.getPose(index, result);
+    }
+
+    /**
+     * Gets the shape of an active leaf's owner.
+     *
+     * @param index Index of the leaf in the snapshot's active tree.
+     *
+     * @return Shape of the owner when the snapshot was published.
+     */
+    public TypedIndex getActiveShape(int index) {
+        return active.shapes[index];
+    }
+
+    /**
+     * Gets the shape of a static leaf's owner.
+     *
+     * @param index Index of the leaf in the snapshot's static tree.
+     *
+     * @return Shape of the owner when the snapshot was published, or null if the leaf doesn't belong to a body.
+     */
+    public TypedIndex getStaticShape(int index) {
+        return sleeping.shapes[index];
+    }
+
+    /**
+     * Hands the snapshot back so that its storage can be reused by a later publish. The snapshot must not be used after it is released.
+     */
+    public void release() {
+        int count = readerCount.decrementAndGet();
+        assert count >= 0 : "Snapshot was released more often than it was acquired.";
+    }
+}
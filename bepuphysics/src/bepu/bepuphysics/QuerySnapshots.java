@@ -0,0 +1,140 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.collisiondetection.BroadPhase;
+import bepu.bepuphysics.trees.Tree;
+
+/**
+ * Publishes read-only snapshots of the broad phase and body poses for threads that query the simulation while it steps.
+ * <p>
+ * Publishing copies the active tree and the poses of its owners into a snapshot that no reader holds, then makes it current with a single
+ * reference swap. Normally two snapshots alternate; a third is only created if readers still hold both. The static tree usually doesn't
+ * change between frames, so its copy is shared by every snapshot until the tree changes. The new copy then goes into a retired copy that
+ * no published snapshot refers to anymore, and a fresh one is only created if readers still hold every retired copy.
+ * <p>
+ * {@link #publish()} must only be called from the thread stepping the simulation. {@link #acquire()} never blocks and can be called from
+ * any thread.
+ */
+public class QuerySnapshots {
+    private final Bodies bodies;
+    private final BroadPhase broadPhase;
+
+    private boolean publishing;
+    private QuerySnapshot[] snapshots = new QuerySnapshot[2];
+    private int snapshotCount;
+    private SnapshotTree staticCopy;
+    //Every static copy ever made, including the current one; the others are reused once no published snapshot refers to them.
+    private SnapshotTree[] staticCopies = new SnapshotTree[2];
+    private int staticCopyCount;
+    private long publishedCount;
+    private volatile QuerySnapshot current;
+
+    public QuerySnapshots(Bodies bodies) {
+        this.bodies = bodies;
+        this.broadPhase = bodies.getBroadPhase();
+        publish();
+    }
+
+    /**
+     * Gets whether the simulation publishes a snapshot at the end of every time step.
+     *
+     * @return True if snapshots are published every time step; otherwise false.
+     */
+    public boolean isPublishing() {
+        return publishing;
+    }
+
+    public QuerySnapshots setPublishing(boolean publishing) {
+        this.publishing = publishing;
+        return this;
+    }
+
+    /**
+     * Acquires the most recently published snapshot. The snapshot stays valid until it is released with {@link QuerySnapshot#release()}.
+     *
+     * @return Latest published snapshot.
+     */
+    public QuerySnapshot acquire() {
+        while (true) {
+            QuerySnapshot snapshot = current;
+            snapshot.readerCount.incrementAndGet();
+            //A publish may have recycled the snapshot between the read and the increment. Once the snapshot is confirmed to still be
+            //current, the publisher can see the reader and won't recycle it.
+            if (snapshot == current) {
+                return snapshot;
+            }
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Captures the current state of the broad phase and body poses and makes it the snapshot returned by {@link #acquire()}.
+     */
+    public void publish() {
+        QuerySnapshot previous = current;
+        QuerySnapshot target = null;
+        for (int i = 0; i < snapshotCount; i++) {
+            QuerySnapshot snapshot = snapshots[i];
+            if (snapshot != previous && snapshot.readerCount.get() == 0) {
+                target = snapshot;
+                break;
+            }
+        }
+        if (target == null) {
+            target = new QuerySnapshot(new SnapshotTree(broadPhase.getActiveTree().getLeafCount()), null);
+            if (snapshotCount == snapshots.length) {
+                QuerySnapshot[] newSnapshots = new QuerySnapshot[snapshots.length * 2];
+                System.arraycopy(snapshots, 0, newSnapshots, 0, snapshotCount);
+                snapshots = newSnapshots;
+            }
+            snapshots[snapshotCount++] = target;
+        }
+        target.active.copy(broadPhase.getActiveTree(), true, bodies);
+        Tree staticTree = broadPhase.getStaticTree();
+        if (staticCopy == null || staticCopy.tree.getVersion() != staticTree.getVersion()) {
+            //Older snapshots may still refer to the previous copy, so it is replaced rather than overwritten.
+            staticCopy = takeStaticCopy(target, staticTree.getLeafCount());
+            staticCopy.copy(staticTree, false, bodies);
+        }
+        target.sleeping = staticCopy;
+        target.frameIndex = publishedCount++;
+        current = target;
+    }
+
+    /**
+     * Finds a static copy that can be overwritten, creating one if every existing copy is still in use.
+     *
+     * @param target Snapshot being published. Its own reference to a copy doesn't keep that copy in use.
+     * @param leafCount Number of leaves the copy will need to hold.
+     */
+    private SnapshotTree takeStaticCopy(QuerySnapshot target, int leafCount) {
+        for (int i = 0; i < staticCopyCount; i++) {
+            SnapshotTree copy = staticCopies[i];
+            if (copy != staticCopy && !isInUse(copy, target)) {
+                return copy;
+            }
+        }
+        SnapshotTree copy = new SnapshotTree(leafCount);
+        if (staticCopyCount == staticCopies.length) {
+            SnapshotTree[] newStaticCopies = new SnapshotTree[staticCopies.length * 2];
+            System.arraycopy(staticCopies, 0, newStaticCopies, 0, staticCopyCount);
+            staticCopies = newStaticCopies;
+        }
+        staticCopies[staticCopyCount++] = copy;
+        return copy;
+    }
+
+    /**
+     * Checks whether a static copy is visible through the current snapshot or through one that a reader holds. As with recycling whole
+     * snapshots, a reader that acquires a snapshot after it stopped being current notices and lets go of it without reading it.
+     */
+    private boolean isInUse(SnapshotTree copy, QuerySnapshot target) {
+        QuerySnapshot published = current;
+        for (int i = 0; i < snapshotCount; i++) {
+            QuerySnapshot snapshot = snapshots[i];
+            if (snapshot != target && snapshot.sleeping == copy && (snapshot == published || snapshot.readerCount.get() > 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
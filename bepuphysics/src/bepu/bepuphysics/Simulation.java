@@ -0,0 +1,232 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.collidables.CollidableReference;
+import bepu.bepuphysics.collidables.Shapes;
+import bepu.bepuphysics.collisiondetection.BroadPhase;
+import bepu.bepuphysics.collisiondetection.IBroadPhaseOverlapHandler;
+import bepu.bepuphysics.collisiondetection.NarrowPhase;
+import bepu.bepuphysics.constraints.Solver;
+import bepu.bepuutilities.threading.IThreadDispatcher;
+
+/**
+ * Orchestrates the bookkeeping and execution of a full dynamic simulation.
+ */
+public class Simulation {
+    private final Shapes shapes;
+    private final BroadPhase broadPhase;
+    private final Bodies bodies;
+    private final IslandAwakener awakener;
+    private final ConstraintConnectivity constraints;
+    private final IslandSleeper sleeper;
+    private final BodyLayoutOptimizer layoutOptimizer;
+    private final PoseIntegrator poseIntegrator;
+    private final Solver solver;
+    private final NarrowPhase narrowPhase;
+    private final QuerySnapshots snapshots;
+    private final PoseHistory poseHistory;
+    private IThreadDispatcher threadDispatcher;
+    private TimestepProfiler profiler;
+
+    //Any moving collidable touching a sleeping body's bounds wakes that body's island at the end of the frame.
+    private final IBroadPhaseOverlapHandler overlapHandler = this::handleOverlap;
+
+    public Simulation(int initialBodyCapacity, int initialIslandCapacity, int initialConstraintCapacity, int initialShapeCapacityPerType) {
+        shapes = new Shapes(initialShapeCapacityPerType);
+        broadPhase = new BroadPhase(initialBodyCapacity, initialBodyCapacity);
+        bodies = new Bodies(shapes, broadPhase, initialBodyCapacity, initialIslandCapacity);
+        awakener = new IslandAwakener(bodies, broadPhase);
+        bodies.initialize(awakener);
+        constraints = new ConstraintConnectivity(bodies, awakener, initialConstraintCapacity);
+        poseIntegrator = new PoseIntegrator(bodies);
+        solver = new Solver(bodies, constraints, poseIntegrator);
+        awakener.initialize(solver);
+        sleeper = new IslandSleeper(bodies, constraints, solver);
+        layoutOptimizer = new BodyLayoutOptimizer(bodies);
+        narrowPhase = new NarrowPhase(bodies, solver, initialBodyCapacity * 2);
+        snapshots = new QuerySnapshots(bodies);
+        //Half a second at 60 steps per second.
+        poseHistory = new PoseHistory(bodies, 31);
+    }
+
+    public Simulation() {
+        this(1024, 64, 1024, 128);
+    }
+
+    public Shapes getShapes() {
+        return shapes;
+    }
+
+    public BroadPhase getBroadPhase() {
+        return broadPhase;
+    }
+
+    public Bodies getBodies() {
+        return bodies;
+    }
+
+    public IslandAwakener getAwakener() {
+        return awakener;
+    }
+
+    public ConstraintConnectivity getConstraints() {
+        return constraints;
+    }
+
+    public IslandSleeper getSleeper() {
+        return sleeper;
+    }
+
+    public BodyLayoutOptimizer getLayoutOptimizer() {
+        return layoutOptimizer;
+    }
+
+    public PoseIntegrator getPoseIntegrator() {
+        return poseIntegrator;
+    }
+
+    public Solver getSolver() {
+        return solver;
+    }
+
+    public NarrowPhase getNarrowPhase() {
+        return narrowPhase;
+    }
+
+    /**
+     * Gets the snapshots that other threads can query while the simulation steps. Snapshots are only published at the end of a time step
+     * if publishing is enabled; otherwise they can be published manually.
+     *
+     * @return Query snapshots of the simulation.
+     */
+    public QuerySnapshots getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Gets the history of recent body poses. Recording is off until enabled with {@link PoseHistory#setRecording(boolean)}; frames are then
+     * timed by adding each time step's duration to the latest recorded time.
+     *
+     * @return Pose history of the simulation.
+     */
+    public PoseHistory getPoseHistory() {
+        return poseHistory;
+    }
+
+    /**
+     * Gets the dispatcher used by multithreaded stages. If null, every stage runs on the thread calling {@link #timestep(double)}.
+     *
+     * @return Dispatcher owned by the simulation.
+     */
+    public IThreadDispatcher getThreadDispatcher() {
+        return threadDispatcher;
+    }
+
+    public void setThreadDispatcher(IThreadDispatcher threadDispatcher) {
+        this.threadDispatcher = threadDispatcher;
+    }
+
+    public TimestepProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Sets the profiler that records how long each stage of a time step takes.
+     *
+     * @param profiler Profiler to record into, or null to stop profiling.
+     */
+    public void setProfiler(TimestepProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Removes a body along with the contact constraints created for it. Other constraints connected to the body must be removed first.
+     *
+     * @param handle Handle of the body to remove.
+     */
+    public void removeBody(int handle) {
+        narrowPhase.removeContactConstraints(handle);
+        bodies.remove(handle);
+        poseHistory.forget(handle);
+    }
+
+    /**
+     * Performs one time step of the given length. Only active bodies are integrated, bounded and tested.
+     * <p>
+     * Bodies are integrated over the first solver substep before collision detection; the solver integrates the remaining substeps itself.
+     *
+     * @param dt Duration of the time step.
+     */
+    public void timestep(double dt) {
+        TimestepProfiler profiler = this.profiler;
+        long time = profiler != null ? System.nanoTime() : 0;
+        sleeper.update();
+        if (profiler != null) {
+            time = profiler.record(TimestepProfiler.Stage.SLEEP, time);
+        }
+        layoutOptimizer.update(threadDispatcher);
+        if (profiler != null) {
+            time = profiler.record(TimestepProfiler.Stage.BODY_LAYOUT, time);
+        }
+        double substepDt = dt / solver.getSubstepCount();
+        //Bounds still have to cover the whole frame, since collision detection doesn't run again until the next one.
+        poseIntegrator.integrate(substepDt, dt, threadDispatcher);
+        if (profiler != null) {
+            time = profiler.record(TimestepProfiler.Stage.POSE_INTEGRATION, time);
+        }
+        broadPhase.update(threadDispatcher);
+        narrowPhase.prepare(substepDt, dt, threadDispatcher);
+        broadPhase.getOverlaps(overlapHandler);
+        if (profiler != null) {
+            time = profiler.record(TimestepProfiler.Stage.BROAD_PHASE, time);
+        }
+        narrowPhase.execute(threadDispatcher);
+        narrowPhase.flush();
+        if (profiler != null) {
+            time = profiler.record(TimestepProfiler.Stage.NARROW_PHASE, time);
+        }
+        awakener.awakenQueued();
+        if (profiler != null) {
+            time = profiler.record(TimestepProfiler.Stage.AWAKEN, time);
+        }
+        solver.solve(dt, threadDispatcher);
+        if (profiler != null) {
+            time = profiler.record(TimestepProfiler.Stage.SOLVER, time);
+        }
+        if (snapshots.isPublishing()) {
+            snapshots.publish();
+        }
+        if (profiler != null) {
+            time = profiler.record(TimestepProfiler.Stage.SNAPSHOTS, time);
+        }
+        if (poseHistory.isRecording()) {
+            poseHistory.record(poseHistory.getLatestTime() + dt);
+        }
+        if (profiler != null) {
+            profiler.record(TimestepProfiler.Stage.POSE_HISTORY, time);
+            profiler.endTimestep();
+        }
+    }
+
+    private void handleOverlap(int collidableA, int collidableB) {
+        narrowPhase.getOverlapCollector().handle(collidableA, collidableB);
+        //The broad phase always reports the active collidable first; only the second can belong to a sleeping body.
+        //Contacts never move kinematic bodies, so a sleeping kinematic body stays asleep; waking it would let it wake everything it touches.
+        if (CollidableReference.isBody(collidableB)) {
+            int handleB = CollidableReference.getHandle(collidableB);
+            if (!bodies.isActive(handleB) && !bodies.getInertia(handleB).isKinematic()
+                    && isMovingFor(CollidableReference.getHandle(collidableA), handleB)) {
+                awakener.queueBodyForAwakening(handleB);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a body moves fast enough to wake a sleeping body it touches: faster than the sleeping body's own sleep threshold.
+     * Resting bodies don't wake their neighbors; otherwise two touching islands could keep each other awake forever.
+     */
+    private boolean isMovingFor(int handle, int sleepingHandle) {
+        BodyVelocity velocity = bodies.getVelocity(handle);
+        double velocitySquared = velocity.getLinear().lengthSquared() + velocity.getAngular().lengthSquared();
+        return velocitySquared >= bodies.getActivity(sleepingHandle).getSleepThreshold();
+    }
+}
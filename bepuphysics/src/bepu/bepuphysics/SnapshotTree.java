@@ -0,0 +1,86 @@
+package bepu.bepuphysics;
+
+import bepu.bepuphysics.collidables.CollidableReference;
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuphysics.trees.Tree;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Frozen copy of one broad phase tree along with the owner, pose and shape of each of its leaves.
+ */
+final class SnapshotTree {
+    static final int POSE_STRIDE = 7;
+
+    final Tree tree;
+    int[] leaves;
+    //Per leaf position x, y, z followed by orientation x, y, z, w.
+    double[] poses;
+    TypedIndex[] shapes;
+
+    SnapshotTree(int initialLeafCapacity) {
+        tree = new Tree(initialLeafCapacity);
+        int capacity = Math.max(1, initialLeafCapacity);
+        leaves = new int[capacity];
+        poses = new double[capacity * POSE_STRIDE];
+        shapes = new TypedIndex[capacity];
+    }
+
+    /**
+     * Overwrites the snapshot with the current contents of a broad phase tree.
+     *
+     * @param source Tree to copy.
+     * @param active True if the source is the broad phase's active tree, false if it is the static tree.
+     * @param bodies Bodies owning the tree's leaves.
+     */
+    void copy(Tree source, boolean active, Bodies bodies) {
+        source.copyTo(tree);
+        int leafCount = source.getLeafCount();
+        if (leafCount > leaves.length) {
+            int capacity = Math.max(leafCount, leaves.length * 2);
+            leaves = new int[capacity];
+            poses = new double[capacity * POSE_STRIDE];
+            shapes = new TypedIndex[capacity];
+        }
+        for (int i = 0; i < leafCount; i++) {
+            int leaf = active ? bodies.getBroadPhase().getActiveLeaf(i) : bodies.getBroadPhase().getStaticLeaf(i);
+            leaves[i] = leaf;
+            int offset = i * POSE_STRIDE;
+            if (!CollidableReference.isBody(leaf)) {
+                //Statics that aren't bodies have no pose or shape stored with the bodies; only their leaf and bounds are known.
+                poses[offset] = poses[offset + 1] = poses[offset + 2] = 0;
+                poses[offset + 3] = poses[offset + 4] = poses[offset + 5] = 0;
+                poses[offset + 6] = 1;
+                shapes[i] = null;
+                continue;
+            }
+            int handle = CollidableReference.getHandle(leaf);
+            RigidPose pose = bodies.getPose(handle);
+            Vector3Double position = pose.getPosition();
+            QuaternionDouble orientation = pose.getOrientation();
+            poses[offset] = position.x;
+            poses[offset + 1] = position.y;
+            poses[offset + 2] = position.z;
+            poses[offset + 3] = orientation.getX();
+            poses[offset + 4] = orientation.getY();
+            poses[offset + 5] = orientation.getZ();
+            poses[offset + 6] = orientation.getW();
+            shapes[i] = bodies.getCollidable(handle).getShape();
+        }
+        //Drop references to shapes that are no longer in the tree so that stale slots can't be mistaken for live ones.
+        for (int i = leafCount; i < shapes.length && shapes[i] != null; i++) {
+            shapes[i] = null;
+        }
+    }
+
+    RigidPose getPose(int leafIndex, RigidPose result) {
+        if (result == null) {
+            result = new RigidPose(Vector3Double.ZERO);
+        }
+        int offset = leafIndex * POSE_STRIDE;
+        result.getPosition().set(poses[offset], poses[offset + 1], poses[offset + 2]);
+        result.getOrientation().set(poses[offset + 3], poses[offset + 4], poses[offset + 5], poses[offset + 6]);
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+package bepu.bepuphysics;
+
+/**
+ * Accumulates the wall clock time spent in each stage of {@link Simulation#timestep(double)}. Recording costs two {@link System#nanoTime()}
+ * calls per stage and allocates nothing.
+ */
+public class TimestepProfiler {
+    /**
+     * Stages of a time step, in execution order.
+     */
+    public enum Stage {
+        SLEEP,
+        BODY_LAYOUT,
+        POSE_INTEGRATION,
+        BROAD_PHASE,
+        NARROW_PHASE,
+        AWAKEN,
+        SOLVER,
+        SNAPSHOTS,
+        POSE_HISTORY;
+
+        private static final Stage[] VALUES = values();
+
+        public static int getCount() {
+            return VALUES.length;
+        }
+
+        /**
+         * Gets the stage associated with an ordinal without allocating a copy of the values array.
+         *
+         * @param ordinal Ordinal of the stage.
+         *
+         * @return Stage with the given ordinal.
+         */
+        public static Stage fromOrdinal(int ordinal) {
+            return VALUES[ordinal];
+        }
+    }
+
+    private final long[] stageNanos = new long[Stage.getCount()];
+    private int timestepCount;
+
+    /**
+     * Adds the time elapsed since a mark to a stage.
+     *
+     * @param stage Stage that just finished.
+     * @param start Value of {@link System#nanoTime()} when the stage started.
+     *
+     * @return Current value of {@link System#nanoTime()}, to be used as the start of the next stage.
+     */
+    long record(Stage stage, long start) {
+        long now = System.nanoTime();
+        stageNanos[stage.ordinal()] += now - start;
+        return now;
+    }
+
+    void endTimestep() {
+        timestepCount++;
+    }
+
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : stageNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    public int getTimestepCount() {
+        return timestepCount;
+    }
+
+    public void reset() {
+        for (int i = 0; i < stageNanos.length; i++) {
+            stageNanos[i] = 0;
+        }
+        timestepCount = 0;
+    }
+}
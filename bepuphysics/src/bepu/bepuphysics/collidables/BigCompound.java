@@ -0,0 +1,26 @@
+package bepu.bepuphysics.collidables;
+
+/**
+ * Compound whose children are indexed by a bounding volume hierarchy, so that overlap and ray queries against it only visit the
+ * children near the query. Use this over {@link Compound} once a compound has more than a few dozen children.
+ */
+public class BigCompound extends Compound {
+    public static final int TYPE_ID = 5;
+
+    public BigCompound() {
+    }
+
+    public BigCompound(CompoundChild... children) {
+        super(children);
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public ShapeBatch createShapeBatch(int initialCapacity, Shapes shapes) {
+        return new BigCompoundBatch(initialCapacity, shapes);
+    }
+}
@@ -0,0 +1,84 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuphysics.trees.ILeafHandler;
+import bepu.bepuphysics.trees.IRayLeafTester;
+import bepu.bepuphysics.trees.Tree;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Stores big compounds. On top of the flat child data of a {@link CompoundBatch}, each compound owns a tree over its children's local
+ * bounds, with leaf i referring to child i, so overlap and ray queries run in logarithmic rather than linear time in the child count.
+ */
+public class BigCompoundBatch extends CompoundBatch {
+    private Tree[] trees;
+
+    public BigCompoundBatch(int initialCapacity, Shapes shapes) {
+        super(BigCompound.TYPE_ID, initialCapacity, shapes);
+        trees = new Tree[getCapacity()];
+    }
+
+    /**
+     * Gets the tree over a compound's children.
+     *
+     * @param index Index of the compound in the batch.
+     *
+     * @return Tree whose leaf indices are child indices.
+     */
+    public Tree getTree(int index) {
+        return trees[index];
+    }
+
+    @Override
+    public Compound get(int index, Compound result) {
+        return super.get(index, result == null ? new BigCompound() : result);
+    }
+
+    @Override
+    public void findOverlaps(int index, Vector3Double min, Vector3Double max, ILeafHandler handler) {
+        trees[index].getOverlaps(min, max, handler);
+    }
+
+    @Override
+    public double rayCast(int index, Vector3Double origin, Vector3Double direction, double maximumT, IRayLeafTester tester) {
+        return trees[index].rayCast(origin, direction, maximumT, tester);
+    }
+
+    @Override
+    protected void write(int index, IShape shape) {
+        super.write(index, shape);
+        int childCount = getChildCount(index);
+        //Built top down in one pass; adding children one at a time degenerates into a list for children laid out along a line.
+        double[] childBounds = new double[childCount * 6];
+        Vector3Double min = new Vector3Double();
+        Vector3Double max = new Vector3Double();
+        for (int i = 0; i < childCount; i++) {
+            getChildBounds(index, i, min, max);
+            int offset = i * 6;
+            childBounds[offset] = min.x;
+            childBounds[offset + 1] = min.y;
+            childBounds[offset + 2] = min.z;
+            childBounds[offset + 3] = max.x;
+            childBounds[offset + 4] = max.y;
+            childBounds[offset + 5] = max.z;
+        }
+        Tree tree = new Tree(childCount);
+        tree.buildLinear(childBounds, childCount);
+        trees[index] = tree;
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        super.ensureCapacity(capacity);
+        if (trees.length < getCapacity()) {
+            Tree[] newTrees = new Tree[getCapacity()];
+            System.arraycopy(trees, 0, newTrees, 0, trees.length);
+            trees = newTrees;
+        }
+    }
+
+    @Override
+    protected void dispose(int index) {
+        super.dispose(index);
+        trees[index] = null;
+    }
+}
@@ -0,0 +1,95 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Collision shape representing a solid cuboid centered on its origin.
+ */
+public class Box implements IConvexShape {
+    public static final int TYPE_ID = 2;
+
+    private double halfWidth;
+    private double halfHeight;
+    private double halfLength;
+
+    public Box() {
+    }
+
+    /**
+     * Creates a box.
+     *
+     * @param width Size of the box along its local X axis.
+     * @param height Size of the box along its local Y axis.
+     * @param length Size of the box along its local Z axis.
+     */
+    public Box(double width, double height, double length) {
+        this.halfWidth = width * 0.5;
+        this.halfHeight = height * 0.5;
+        this.halfLength = length * 0.5;
+    }
+
+    public double getHalfWidth() {
+        return halfWidth;
+    }
+
+    public Box setHalfWidth(double halfWidth) {
+        this.halfWidth = halfWidth;
+        return this;
+    }
+
+    public double getHalfHeight() {
+        return halfHeight;
+    }
+
+    public Box setHalfHeight(double halfHeight) {
+        this.halfHeight = halfHeight;
+        return this;
+    }
+
+    public double getHalfLength() {
+        return halfLength;
+    }
+
+    public Box setHalfLength(double halfLength) {
+        this.halfLength = halfLength;
+        return this;
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public void computeBounds(QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        computeBounds(halfWidth, halfHeight, halfLength, orientation, min, max);
+    }
+
+    static void computeBounds(double halfWidth, double halfHeight, double halfLength, QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        double qx = orientation.getX();
+        double qy = orientation.getY();
+        double qz = orientation.getZ();
+        double qw = orientation.getW();
+        double xx = 2 * qx * qx;
+        double yy = 2 * qy * qy;
+        double zz = 2 * qz * qz;
+        double xy = 2 * qx * qy;
+        double xz = 2 * qx * qz;
+        double yz = 2 * qy * qz;
+        double wx = 2 * qw * qx;
+        double wy = 2 * qw * qy;
+        double wz = 2 * qw * qz;
+        //Each world axis extent is the sum of the rotated half extents projected onto it.
+        double extentX = Math.abs(1 - yy - zz) * halfWidth + Math.abs(xy - wz) * halfHeight + Math.abs(xz + wy) * halfLength;
+        double extentY = Math.abs(xy + wz) * halfWidth + Math.abs(1 - xx - zz) * halfHeight + Math.abs(yz - wx) * halfLength;
+        double extentZ = Math.abs(xz - wy) * halfWidth + Math.abs(yz + wx) * halfHeight + Math.abs(1 - xx - yy) * halfLength;
+        min.set(-extentX, -extentY, -extentZ);
+        max.set(extentX, extentY, extentZ);
+    }
+
+    @Override
+    public ShapeBatch createShapeBatch(int initialCapacity, Shapes shapes) {
+        return new BoxBatch(initialCapacity);
+    }
+}
@@ -0,0 +1,46 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Stores boxes as their half width, half height and half length.
+ */
+public class BoxBatch extends ConvexShapeBatch {
+    public BoxBatch(int initialCapacity) {
+        super(Box.TYPE_ID, 3, initialCapacity);
+    }
+
+    public Box get(int index, Box result) {
+        if (result == null) {
+            result = new Box();
+        }
+        return result.setHalfWidth(getParameter(index, 0)).setHalfHeight(getParameter(index, 1)).setHalfLength(getParameter(index, 2));
+    }
+
+    @Override
+    protected void write(int index, IShape shape) {
+        Box box = (Box) shape;
+        setParameter(index, 0, box.getHalfWidth());
+        setParameter(index, 1, box.getHalfHeight());
+        setParameter(index, 2, box.getHalfLength());
+    }
+
+    @Override
+    protected double computeMaximumRadius(int index) {
+        double halfWidth = getParameter(index, 0);
+        double halfHeight = getParameter(index, 1);
+        double halfLength = getParameter(index, 2);
+        return Math.sqrt(halfWidth * halfWidth + halfHeight * halfHeight + halfLength * halfLength);
+    }
+
+    @Override
+    protected double computeMinimumRadius(int index) {
+        return Math.min(getParameter(index, 0), Math.min(getParameter(index, 1), getParameter(index, 2)));
+    }
+
+    @Override
+    public void computeBounds(int shapeIndex, QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        Box.computeBounds(getParameter(shapeIndex, 0), getParameter(shapeIndex, 1), getParameter(shapeIndex, 2), orientation, min, max);
+    }
+}
@@ -0,0 +1,79 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Collision shape representing a swept sphere: every point within the radius of a line segment along the local Y axis.
+ */
+public class Capsule implements IConvexShape {
+    public static final int TYPE_ID = 1;
+
+    private double radius;
+    private double halfLength;
+
+    public Capsule() {
+    }
+
+    /**
+     * Creates a capsule.
+     *
+     * @param radius Radius of the capsule.
+     * @param length Length of the capsule's internal segment along the local Y axis.
+     */
+    public Capsule(double radius, double length) {
+        this.radius = radius;
+        this.halfLength = length * 0.5;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    public Capsule setRadius(double radius) {
+        this.radius = radius;
+        return this;
+    }
+
+    /**
+     * Gets half of the length of the capsule's internal segment.
+     *
+     * @return Half length of the segment.
+     */
+    public double getHalfLength() {
+        return halfLength;
+    }
+
+    public Capsule setHalfLength(double halfLength) {
+        this.halfLength = halfLength;
+        return this;
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public void computeBounds(QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        computeBounds(radius, halfLength, orientation, min, max);
+    }
+
+    static void computeBounds(double radius, double halfLength, QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        double qx = orientation.getX();
+        double qy = orientation.getY();
+        double qz = orientation.getZ();
+        double qw = orientation.getW();
+        //Local Y axis rotated into world space.
+        double extentX = Math.abs(2 * (qx * qy - qw * qz)) * halfLength + radius;
+        double extentY = Math.abs(1 - 2 * (qx * qx + qz * qz)) * halfLength + radius;
+        double extentZ = Math.abs(2 * (qy * qz + qw * qx)) * halfLength + radius;
+        min.set(-extentX, -extentY, -extentZ);
+        max.set(extentX, extentY, extentZ);
+    }
+
+    @Override
+    public ShapeBatch createShapeBatch(int initialCapacity, Shapes shapes) {
+        return new CapsuleBatch(initialCapacity);
+    }
+}
@@ -0,0 +1,42 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Stores capsules as a radius followed by a half length.
+ */
+public class CapsuleBatch extends ConvexShapeBatch {
+    public CapsuleBatch(int initialCapacity) {
+        super(Capsule.TYPE_ID, 2, initialCapacity);
+    }
+
+    public Capsule get(int index, Capsule result) {
+        if (result == null) {
+            result = new Capsule();
+        }
+        return result.setRadius(getParameter(index, 0)).setHalfLength(getParameter(index, 1));
+    }
+
+    @Override
+    protected void write(int index, IShape shape) {
+        Capsule capsule = (Capsule) shape;
+        setParameter(index, 0, capsule.getRadius());
+        setParameter(index, 1, capsule.getHalfLength());
+    }
+
+    @Override
+    protected double computeMaximumRadius(int index) {
+        return getParameter(index, 0) + getParameter(index, 1);
+    }
+
+    @Override
+    protected double computeMinimumRadius(int index) {
+        return getParameter(index, 0);
+    }
+
+    @Override
+    public void computeBounds(int shapeIndex, QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        Capsule.computeBounds(getParameter(shapeIndex, 0), getParameter(shapeIndex, 1), orientation, min, max);
+    }
+}
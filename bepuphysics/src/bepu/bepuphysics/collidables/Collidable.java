@@ -0,0 +1,96 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuphysics.collisiondetection.CollisionFilter;
+
+/**
+ * Collision related properties of a body.
+ */
+public class Collidable {
+    private TypedIndex shape;
+    private double speculativeMargin;
+    private int broadPhaseIndex = -1;
+    private boolean continuous;
+    private long collisionFilter = CollisionFilter.DEFAULT;
+
+    /**
+     * Gets the index of the shape used by the collidable. If the index does not exist, the collidable has no shape and does not take part in collision detection.
+     *
+     * @return Typed index of the shape.
+     */
+    public TypedIndex getShape() {
+        return shape;
+    }
+
+    public void setShape(TypedIndex shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * Gets the distance by which the collidable's bounds are expanded so that contacts can be generated before shapes actually touch.
+     *
+     * @return Speculative margin of the collidable.
+     */
+    public double getSpeculativeMargin() {
+        return speculativeMargin;
+    }
+
+    public void setSpeculativeMargin(double speculativeMargin) {
+        this.speculativeMargin = speculativeMargin;
+    }
+
+    /**
+     * Gets the index of the collidable's leaf in the broad phase. The tree containing it depends on whether the owner is active.
+     * -1 if the collidable has no shape.
+     *
+     * @return Index of the leaf in the broad phase.
+     */
+    public int getBroadPhaseIndex() {
+        return broadPhaseIndex;
+    }
+
+    public void setBroadPhaseIndex(int broadPhaseIndex) {
+        this.broadPhaseIndex = broadPhaseIndex;
+    }
+
+    /**
+     * Gets whether the collidable uses continuous collision detection. Continuous collidables have their bounds expanded to cover their
+     * motion over the time step, and their pairs are swept so that contacts are generated at the time of impact rather than after the
+     * shapes have passed through each other.
+     *
+     * @return True if the collidable uses continuous collision detection; otherwise false.
+     */
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    public void setContinuous(boolean continuous) {
+        this.continuous = continuous;
+    }
+
+    /**
+     * Gets the packed groups and mask deciding which other collidables this one can collide with. The broad phase keeps a copy next to
+     * the collidable's leaf; change it through {@code Bodies.setCollisionFilter} so that both stay in sync.
+     *
+     * @return Packed {@link CollisionFilter}.
+     */
+    public long getCollisionFilter() {
+        return collisionFilter;
+    }
+
+    public void setCollisionFilter(long collisionFilter) {
+        this.collisionFilter = collisionFilter;
+    }
+
+    public Collidable set(Collidable other) {
+        this.shape = other.shape;
+        this.speculativeMargin = other.speculativeMargin;
+        this.broadPhaseIndex = other.broadPhaseIndex;
+        this.continuous = other.continuous;
+        this.collisionFilter = other.collisionFilter;
+        return this;
+    }
+
+    public boolean hasShape() {
+        return shape != null && shape.exists();
+    }
+}
@@ -0,0 +1,32 @@
+package bepu.bepuphysics.collidables;
+
+/**
+ * Describes how a collidable moves.
+ */
+public enum CollidableMobility {
+    /**
+     * Marks a collidable as owned by a dynamic body.
+     */
+    DYNAMIC,
+    /**
+     * Marks a collidable as owned by a kinematic body.
+     */
+    KINEMATIC,
+    /**
+     * Marks the collidable as an independent immobile collidable.
+     */
+    STATIC;
+
+    private static final CollidableMobility[] VALUES = values();
+
+    /**
+     * Gets the mobility associated with an ordinal without allocating a copy of the values array.
+     *
+     * @param ordinal Ordinal of the mobility.
+     *
+     * @return Mobility with the given ordinal.
+     */
+    public static CollidableMobility fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,59 @@
+package bepu.bepuphysics.collidables;
+
+/**
+ * Packs a collidable's mobility and the handle of its owner into a single integer so that references can be stored in primitive arrays.
+ */
+public final class CollidableReference {
+    private CollidableReference() {
+    }
+
+    /**
+     * Creates a packed collidable reference.
+     *
+     * @param mobility Mobility of the collidable.
+     * @param handle Handle of the body or static owning the collidable.
+     *
+     * @return Packed reference.
+     */
+    public static int create(CollidableMobility mobility, int handle) {
+        assert handle >= 0 && handle < 1 << 30 : "Do you really have that many bodies, or is the handle corrupt?";
+        return mobility.ordinal() << 30 | handle;
+    }
+
+    /**
+     * Gets the mobility of a packed collidable reference.
+     *
+     * @param packed Packed reference.
+     *
+     * @return Mobility of the collidable.
+     */
+    public static CollidableMobility getMobility(int packed) {
+        return CollidableMobility.fromOrdinal(packed >>> 30);
+    }
+
+    /**
+     * Gets the handle of the owner of a packed collidable reference.
+     *
+     * @param packed Packed reference.
+     *
+     * @return Handle of the body or static owning the collidable.
+     */
+    public static int getHandle(int packed) {
+        return packed & 0x3FFFFFFF;
+    }
+
+    /**
+     * Gets whether a packed reference refers to a body rather than a static.
+     *
+     * @param packed Packed reference.
+     *
+     * @return True if the collidable belongs to a body; otherwise false.
+     */
+    public static boolean isBody(int packed) {
+        return packed >>> 30 != CollidableMobility.STATIC.ordinal();
+    }
+
+    public static String toString(int packed) {
+        return getMobility(packed) + "[" + getHandle(packed) + "]";
+    }
+}
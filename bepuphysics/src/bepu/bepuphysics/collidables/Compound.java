@@ -0,0 +1,71 @@
+package bepu.bepuphysics.collidables;
+
+/**
+ * Shape made of other shapes, each placed at a local pose. Children must already be added to the {@link Shapes} collection the compound
+ * is added to, and cannot be compounds themselves.
+ * <p>
+ * Queries against a compound test every child's bounds, which is the cheapest option for a handful of children. Compounds with many
+ * children should use {@link BigCompound} instead.
+ */
+public class Compound implements IShape {
+    public static final int TYPE_ID = 4;
+
+    private CompoundChild[] children;
+    private int childCount;
+
+    public Compound() {
+        children = new CompoundChild[4];
+    }
+
+    public Compound(CompoundChild... children) {
+        this.children = children.clone();
+        childCount = children.length;
+    }
+
+    public int getChildCount() {
+        return childCount;
+    }
+
+    public CompoundChild getChild(int index) {
+        assert index >= 0 && index < childCount : "Child index out of range.";
+        return children[index];
+    }
+
+    /**
+     * Appends a child to the compound.
+     *
+     * @param shape Shape of the child.
+     * @param localPose Pose of the child relative to the compound's origin.
+     *
+     * @return This compound.
+     */
+    public Compound addChild(TypedIndex shape, RigidPose localPose) {
+        if (childCount == children.length) {
+            CompoundChild[] newChildren = new CompoundChild[Math.max(4, childCount * 2)];
+            System.arraycopy(children, 0, newChildren, 0, childCount);
+            children = newChildren;
+        }
+        children[childCount++] = new CompoundChild(shape, localPose);
+        return this;
+    }
+
+    /**
+     * Removes every child from the compound. The child shapes themselves are left in their batches.
+     */
+    public void clear() {
+        for (int i = 0; i < childCount; i++) {
+            children[i] = null;
+        }
+        childCount = 0;
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public ShapeBatch createShapeBatch(int initialCapacity, Shapes shapes) {
+        return new CompoundBatch(initialCapacity, shapes);
+    }
+}
@@ -0,0 +1,295 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuphysics.trees.ILeafHandler;
+import bepu.bepuphysics.trees.IRayLeafTester;
+import bepu.bepuphysics.trees.Tree;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+import bepu.bepuutilities.memory.Vector3Pool;
+
+import java.util.Arrays;
+
+/**
+ * Stores compounds. Each slot of the batch holds the compound's child count; the children live in flat per compound arrays: packed child
+ * shape references, child poses as position x, y, z and orientation x, y, z, w, and each child's bounds in the compound's local space.
+ * <p>
+ * Child bounds are computed when the compound is added, so child shapes must not change while a compound refers to them.
+ */
+public class CompoundBatch extends ShapeBatch {
+    static final int POSE_STRIDE = 7;
+    static final int BOUNDS_STRIDE = 6;
+
+    protected final Shapes shapes;
+    protected long[][] childShapes;
+    protected double[][] childPoses;
+    protected double[][] childBounds;
+
+    public CompoundBatch(int initialCapacity, Shapes shapes) {
+        this(Compound.TYPE_ID, initialCapacity, shapes);
+    }
+
+    protected CompoundBatch(int typeId, int initialCapacity, Shapes shapes) {
+        super(typeId, 4, initialCapacity);
+        this.shapes = shapes;
+        setCompound(true);
+        childShapes = new long[getCapacity()][];
+        childPoses = new double[getCapacity()][];
+        childBounds = new double[getCapacity()][];
+    }
+
+    public int getChildCount(int index) {
+        return shapesData.getInt(index * shapeDataSize);
+    }
+
+    /**
+     * Gets the shape of a child.
+     *
+     * @param index Index of the compound in the batch.
+     * @param childIndex Index of the child in the compound.
+     *
+     * @return Shape of the child.
+     */
+    public TypedIndex getChildShape(int index, int childIndex) {
+        long packed = childShapes[index][childIndex];
+        return new TypedIndex((int) ((packed & 0x7F000000) >> 24), (int) (packed & 0x00FFFFFF));
+    }
+
+    /**
+     * Gets the pose of a child relative to the compound's origin.
+     *
+     * @param index Index of the compound in the batch.
+     * @param childIndex Index of the child in the compound.
+     * @param result Pose to fill. It can be null.
+     *
+     * @return Local pose of the child.
+     */
+    public RigidPose getChildPose(int index, int childIndex, RigidPose result) {
+        if (result == null) {
+            result = new RigidPose(Vector3Double.ZERO);
+        }
+        double[] poses = childPoses[index];
+        int offset = childIndex * POSE_STRIDE;
+        result.getPosition().set(poses[offset], poses[offset + 1], poses[offset + 2]);
+        result.getOrientation().set(poses[offset + 3], poses[offset + 4], poses[offset + 5], poses[offset + 6]);
+        return result;
+    }
+
+    /**
+     * Gets the bounds of a child in the compound's local space.
+     *
+     * @param index Index of the compound in the batch.
+     * @param childIndex Index of the child in the compound.
+     * @param min Minimum of the child's bounds.
+     * @param max Maximum of the child's bounds.
+     */
+    public void getChildBounds(int index, int childIndex, Vector3Double min, Vector3Double max) {
+        double[] bounds = childBounds[index];
+        int offset = childIndex * BOUNDS_STRIDE;
+        min.set(bounds[offset], bounds[offset + 1], bounds[offset + 2]);
+        max.set(bounds[offset + 3], bounds[offset + 4], bounds[offset + 5]);
+    }
+
+    public Compound get(int index, Compound result) {
+        if (result == null) {
+            result = new Compound();
+        }
+        result.clear();
+        int childCount = getChildCount(index);
+        RigidPose pose = new RigidPose(Vector3Double.ZERO);
+        for (int i = 0; i < childCount; i++) {
+            result.addChild(getChildShape(index, i), getChildPose(index, i, pose));
+        }
+        return result;
+    }
+
+    /**
+     * Finds every child whose local bounds overlap a box in the compound's local space.
+     *
+     * @param index Index of the compound in the batch.
+     * @param min Minimum of the query box.
+     * @param max Maximum of the query box.
+     * @param handler Handler to report overlapping child indices to.
+     */
+    public void findOverlaps(int index, Vector3Double min, Vector3Double max, ILeafHandler handler) {
+        double[] bounds = childBounds[index];
+        int childCount = getChildCount(index);
+        for (int i = 0; i < childCount; i++) {
+            int offset = i * BOUNDS_STRIDE;
+            if (bounds[offset] <= max.x && bounds[offset + 3] >= min.x &&
+                    bounds[offset + 1] <= max.y && bounds[offset + 4] >= min.y &&
+                    bounds[offset + 2] <= max.z && bounds[offset + 5] >= min.z) {
+                handler.handle(i);
+            }
+        }
+    }
+
+    /**
+     * Casts a ray in the compound's local space against the bounds of its children.
+     *
+     * @param index Index of the compound in the batch.
+     * @param origin Origin of the ray.
+     * @param direction Direction of the ray. Distances are measured in units of its length.
+     * @param maximumT Maximum distance along the ray to test.
+     * @param tester Tester to run on every child whose bounds the ray hits. It receives child indices.
+     *
+     * @return Maximum distance along the ray after all children were tested.
+     */
+    public double rayCast(int index, Vector3Double origin, Vector3Double direction, double maximumT, IRayLeafTester tester) {
+        double[] bounds = childBounds[index];
+        double inverseX = 1 / direction.x;
+        double inverseY = 1 / direction.y;
+        double inverseZ = 1 / direction.z;
+        int childCount = getChildCount(index);
+        for (int i = 0; i < childCount; i++) {
+            if (Tree.rayIntersects(bounds, i * BOUNDS_STRIDE, origin.x, origin.y, origin.z, inverseX, inverseY, inverseZ, maximumT)) {
+                maximumT = tester.test(i, maximumT);
+            }
+        }
+        return maximumT;
+    }
+
+    /**
+     * Computes the compound's rotated bounds by rotating each child's local bounds as a box. The result is conservative rather than tight,
+     * but needs no access to the child shapes and is safe to call from several threads at once.
+     */
+    @Override
+    public void computeBounds(int shapeIndex, QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        double qx = orientation.getX();
+        double qy = orientation.getY();
+        double qz = orientation.getZ();
+        double qw = orientation.getW();
+        double xx = 2 * qx * qx, yy = 2 * qy * qy, zz = 2 * qz * qz;
+        double xy = 2 * qx * qy, xz = 2 * qx * qz, yz = 2 * qy * qz;
+        double wx = 2 * qw * qx, wy = 2 * qw * qy, wz = 2 * qw * qz;
+        double r00 = 1 - yy - zz, r01 = xy - wz, r02 = xz + wy;
+        double r10 = xy + wz, r11 = 1 - xx - zz, r12 = yz - wx;
+        double r20 = xz - wy, r21 = yz + wx, r22 = 1 - xx - yy;
+        double[] bounds = childBounds[shapeIndex];
+        int childCount = getChildCount(shapeIndex);
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < childCount; i++) {
+            int offset = i * BOUNDS_STRIDE;
+            double cx = 0.5 * (bounds[offset] + bounds[offset + 3]);
+            double cy = 0.5 * (bounds[offset + 1] + bounds[offset + 4]);
+            double cz = 0.5 * (bounds[offset + 2] + bounds[offset + 5]);
+            double ex = 0.5 * (bounds[offset + 3] - bounds[offset]);
+            double ey = 0.5 * (bounds[offset + 4] - bounds[offset + 1]);
+            double ez = 0.5 * (bounds[offset + 5] - bounds[offset + 2]);
+            double rcx = r00 * cx + r01 * cy + r02 * cz;
+            double rcy = r10 * cx + r11 * cy + r12 * cz;
+            double rcz = r20 * cx + r21 * cy + r22 * cz;
+            double rex = Math.abs(r00) * ex + Math.abs(r01) * ey + Math.abs(r02) * ez;
+            double rey = Math.abs(r10) * ex + Math.abs(r11) * ey + Math.abs(r12) * ez;
+            double rez = Math.abs(r20) * ex + Math.abs(r21) * ey + Math.abs(r22) * ez;
+            minX = Math.min(minX, rcx - rex);
+            minY = Math.min(minY, rcy - rey);
+            minZ = Math.min(minZ, rcz - rez);
+            maxX = Math.max(maxX, rcx + rex);
+            maxY = Math.max(maxY, rcy + rey);
+            maxZ = Math.max(maxZ, rcz + rez);
+        }
+        min.set(minX, minY, minZ);
+        max.set(maxX, maxY, maxZ);
+    }
+
+    @Override
+    protected double computeMaximumRadius(int index) {
+        double[] poses = childPoses[index];
+        long[] packedShapes = childShapes[index];
+        int childCount = getChildCount(index);
+        double maximum = 0;
+        for (int i = 0; i < childCount; i++) {
+            int offset = i * POSE_STRIDE;
+            double x = poses[offset], y = poses[offset + 1], z = poses[offset + 2];
+            long packed = packedShapes[i];
+            ShapeBatch childBatch = shapes.get((int) ((packed & 0x7F000000) >> 24));
+            maximum = Math.max(maximum, Math.sqrt(x * x + y * y + z * z) + childBatch.getMaximumRadius((int) (packed & 0x00FFFFFF)));
+        }
+        return maximum;
+    }
+
+    @Override
+    protected int hashContent(int index) {
+        return Arrays.hashCode(childShapes[index]) * 31 + Arrays.hashCode(childPoses[index]);
+    }
+
+    @Override
+    protected boolean contentEquals(int indexA, int indexB) {
+        return Arrays.equals(childShapes[indexA], childShapes[indexB]) && Arrays.equals(childPoses[indexA], childPoses[indexB]);
+    }
+
+    @Override
+    protected void write(int index, IShape shape) {
+        Compound compound = (Compound) shape;
+        int childCount = compound.getChildCount();
+        long[] packedShapes = new long[childCount];
+        double[] poses = new double[childCount * POSE_STRIDE];
+        double[] bounds = new double[childCount * BOUNDS_STRIDE];
+        Vector3Double min = Vector3Pool.getInstance().take();
+        Vector3Double max = Vector3Pool.getInstance().take();
+        for (int i = 0; i < childCount; i++) {
+            CompoundChild child = compound.getChild(i);
+            TypedIndex childShape = child.getShape();
+            ShapeBatch childBatch = shapes.get(childShape.getType());
+            assert childBatch != null && !childBatch.isCompound() : "Compound children must be existing, non-compound shapes.";
+            packedShapes[i] = childShape.getPacked();
+            Vector3Double position = child.getLocalPose().getPosition();
+            QuaternionDouble orientation = child.getLocalPose().getOrientation();
+            int poseOffset = i * POSE_STRIDE;
+            poses[poseOffset] = position.x;
+            poses[poseOffset + 1] = position.y;
+            poses[poseOffset + 2] = position.z;
+            poses[poseOffset + 3] = orientation.getX();
+            poses[poseOffset + 4] = orientation.getY();
+            poses[poseOffset + 5] = orientation.getZ();
+            poses[poseOffset + 6] = orientation.getW();
+            childBatch.computeBounds(childShape.getIndex(), orientation, min, max);
+            int boundsOffset = i * BOUNDS_STRIDE;
+            bounds[boundsOffset] = min.x + position.x;
+            bounds[boundsOffset + 1] = min.y + position.y;
+            bounds[boundsOffset + 2] = min.z + position.z;
+            bounds[boundsOffset + 3] = max.x + position.x;
+            bounds[boundsOffset + 4] = max.y + position.y;
+            bounds[boundsOffset + 5] = max.z + position.z;
+        }
+        Vector3Pool.getInstance().release(min);
+        Vector3Pool.getInstance().release(max);
+        childShapes[index] = packedShapes;
+        childPoses[index] = poses;
+        childBounds[index] = bounds;
+        shapesData.putInt(index * shapeDataSize, childCount);
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        super.ensureCapacity(capacity);
+        if (childShapes.length < getCapacity()) {
+            long[][] newChildShapes = new long[getCapacity()][];
+            double[][] newChildPoses = new double[getCapacity()][];
+            double[][] newChildBounds = new double[getCapacity()][];
+            System.arraycopy(childShapes, 0, newChildShapes, 0, childShapes.length);
+            System.arraycopy(childPoses, 0, newChildPoses, 0, childPoses.length);
+            System.arraycopy(childBounds, 0, newChildBounds, 0, childBounds.length);
+            childShapes = newChildShapes;
+            childPoses = newChildPoses;
+            childBounds = newChildBounds;
+        }
+    }
+
+    @Override
+    protected void dispose(int index) {
+        childShapes[index] = null;
+        childPoses[index] = null;
+        childBounds[index] = null;
+        shapesData.putInt(index * shapeDataSize, 0);
+    }
+
+    @Override
+    protected void removeAndDisposeChildren(int index, Shapes shapes) {
+        int childCount = getChildCount(index);
+        for (int i = 0; i < childCount; i++) {
+            shapes.recursivelyRemoveAndDispose(getChildShape(index, i));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Shape and local pose of one child of a compound.
+ */
+public class CompoundChild {
+    private TypedIndex shape;
+    private final RigidPose localPose = new RigidPose(Vector3Double.ZERO);
+
+    public CompoundChild() {
+    }
+
+    public CompoundChild(TypedIndex shape, RigidPose localPose) {
+        this.shape = shape;
+        this.localPose.set(localPose);
+    }
+
+    public TypedIndex getShape() {
+        return shape;
+    }
+
+    public CompoundChild setShape(TypedIndex shape) {
+        this.shape = shape;
+        return this;
+    }
+
+    /**
+     * Gets the pose of the child relative to the compound's origin.
+     *
+     * @return Local pose of the child.
+     */
+    public RigidPose getLocalPose() {
+        return localPose;
+    }
+
+    public CompoundChild setLocalPose(RigidPose localPose) {
+        this.localPose.set(localPose);
+        return this;
+    }
+}
@@ -0,0 +1,129 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Collision shape representing the convex hull of a point set. Hulls are created by {@link ConvexHullBuilder}; the hull keeps only the
+ * points on its surface, in the same coordinates as the source points.
+ * <p>
+ * Faces are convex polygons. Face f uses the vertex indices in [faceStarts[f], faceStarts[f + 1]) of the face vertex index list, wound
+ * counterclockwise when viewed from outside, and lies on the plane {@code dot(normal, p) = offset}.
+ */
+public class ConvexHull implements IConvexShape {
+    public static final int TYPE_ID = 3;
+
+    double[] vertices = new double[0];
+    int vertexCount;
+    //Normal x, y, z and offset per face.
+    double[] facePlanes = new double[0];
+    int[] faceStarts = new int[1];
+    int faceCount;
+    int[] faceVertexIndices = new int[0];
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public Vector3Double getVertex(int index, Vector3Double result) {
+        if (result == null) {
+            result = new Vector3Double();
+        }
+        return result.set(vertices[index * 3], vertices[index * 3 + 1], vertices[index * 3 + 2]);
+    }
+
+    public int getFaceCount() {
+        return faceCount;
+    }
+
+    public int getFaceVertexCount(int faceIndex) {
+        return faceStarts[faceIndex + 1] - faceStarts[faceIndex];
+    }
+
+    /**
+     * Gets the index of one of a face's vertices.
+     *
+     * @param faceIndex Index of the face.
+     * @param faceVertexIndex Index of the vertex within the face, in counterclockwise order.
+     *
+     * @return Index of the vertex in the hull.
+     */
+    public int getFaceVertexIndex(int faceIndex, int faceVertexIndex) {
+        return faceVertexIndices[faceStarts[faceIndex] + faceVertexIndex];
+    }
+
+    public Vector3Double getFaceNormal(int faceIndex, Vector3Double result) {
+        if (result == null) {
+            result = new Vector3Double();
+        }
+        return result.set(facePlanes[faceIndex * 4], facePlanes[faceIndex * 4 + 1], facePlanes[faceIndex * 4 + 2]);
+    }
+
+    public double getFaceOffset(int faceIndex) {
+        return facePlanes[faceIndex * 4 + 3];
+    }
+
+    /**
+     * Gets the total number of vertex references across all faces.
+     *
+     * @return Length of the face vertex index list.
+     */
+    public int getFaceVertexIndexCount() {
+        return faceStarts[faceCount];
+    }
+
+    void ensureCapacity(int vertexCount, int faceCount, int faceVertexIndexCount) {
+        if (vertices.length < vertexCount * 3) {
+            vertices = new double[vertexCount * 3];
+        }
+        if (facePlanes.length < faceCount * 4) {
+            facePlanes = new double[faceCount * 4];
+        }
+        if (faceStarts.length < faceCount + 1) {
+            faceStarts = new int[faceCount + 1];
+        }
+        if (faceVertexIndices.length < faceVertexIndexCount) {
+            faceVertexIndices = new int[faceVertexIndexCount];
+        }
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public void computeBounds(QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        double qx = orientation.getX();
+        double qy = orientation.getY();
+        double qz = orientation.getZ();
+        double qw = orientation.getW();
+        double xx = 2 * qx * qx, yy = 2 * qy * qy, zz = 2 * qz * qz;
+        double xy = 2 * qx * qy, xz = 2 * qx * qz, yz = 2 * qy * qz;
+        double wx = 2 * qw * qx, wy = 2 * qw * qy, wz = 2 * qw * qz;
+        double r00 = 1 - yy - zz, r01 = xy - wz, r02 = xz + wy;
+        double r10 = xy + wz, r11 = 1 - xx - zz, r12 = yz - wx;
+        double r20 = xz - wy, r21 = yz + wx, r22 = 1 - xx - yy;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < vertexCount * 3; i += 3) {
+            double x = vertices[i], y = vertices[i + 1], z = vertices[i + 2];
+            double rx = r00 * x + r01 * y + r02 * z;
+            double ry = r10 * x + r11 * y + r12 * z;
+            double rz = r20 * x + r21 * y + r22 * z;
+            minX = Math.min(minX, rx);
+            minY = Math.min(minY, ry);
+            minZ = Math.min(minZ, rz);
+            maxX = Math.max(maxX, rx);
+            maxY = Math.max(maxY, ry);
+            maxZ = Math.max(maxZ, rz);
+        }
+        min.set(minX, minY, minZ);
+        max.set(maxX, maxY, maxZ);
+    }
+
+    @Override
+    public ShapeBatch createShapeBatch(int initialCapacity, Shapes shapes) {
+        return new ConvexHullBatch(initialCapacity);
+    }
+}
@@ -0,0 +1,188 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores convex hulls. Each slot of the batch holds the hull's vertex, face and face vertex index counts; the hull itself lives in one
+ * packed buffer per shape laid out as vertex coordinates, then face planes, then face starts, then face vertex indices.
+ */
+public class ConvexHullBatch extends ShapeBatch {
+    private static final int VERTEX_COUNT_OFFSET = 0;
+    private static final int FACE_COUNT_OFFSET = 4;
+    private static final int INDEX_COUNT_OFFSET = 8;
+
+    private ByteBuffer[] hullData;
+
+    public ConvexHullBatch(int initialCapacity) {
+        super(ConvexHull.TYPE_ID, 12, initialCapacity);
+        hullData = new ByteBuffer[getCapacity()];
+    }
+
+    public int getVertexCount(int index) {
+        return shapesData.getInt(index * shapeDataSize + VERTEX_COUNT_OFFSET);
+    }
+
+    public int getFaceCount(int index) {
+        return shapesData.getInt(index * shapeDataSize + FACE_COUNT_OFFSET);
+    }
+
+    /**
+     * Gets the packed data of a hull. Vertices start at byte 0 as x, y, z doubles.
+     *
+     * @param index Index of the hull in the batch.
+     *
+     * @return Buffer holding the hull.
+     */
+    public ByteBuffer getHullData(int index) {
+        return hullData[index];
+    }
+
+    public ConvexHull get(int index, ConvexHull result) {
+        if (result == null) {
+            result = new ConvexHull();
+        }
+        int vertexCount = getVertexCount(index);
+        int faceCount = getFaceCount(index);
+        int indexCount = shapesData.getInt(index * shapeDataSize + INDEX_COUNT_OFFSET);
+        result.ensureCapacity(vertexCount, faceCount, indexCount);
+        ByteBuffer data = hullData[index];
+        int offset = 0;
+        for (int i = 0; i < vertexCount * 3; i++, offset += Double.BYTES) {
+            result.vertices[i] = data.getDouble(offset);
+        }
+        for (int i = 0; i < faceCount * 4; i++, offset += Double.BYTES) {
+            result.facePlanes[i] = data.getDouble(offset);
+        }
+        for (int i = 0; i <= faceCount; i++, offset += Integer.BYTES) {
+            result.faceStarts[i] = data.getInt(offset);
+        }
+        for (int i = 0; i < indexCount; i++, offset += Integer.BYTES) {
+            result.faceVertexIndices[i] = data.getInt(offset);
+        }
+        result.vertexCount = vertexCount;
+        result.faceCount = faceCount;
+        return result;
+    }
+
+    @Override
+    protected void write(int index, IShape shape) {
+        ConvexHull hull = (ConvexHull) shape;
+        int indexCount = hull.getFaceVertexIndexCount();
+        int size = (hull.vertexCount * 3 + hull.faceCount * 4) * Double.BYTES + (hull.faceCount + 1 + indexCount) * Integer.BYTES;
+        ByteBuffer data = ByteBuffer.allocate(size);
+        int offset = 0;
+        for (int i = 0; i < hull.vertexCount * 3; i++, offset += Double.BYTES) {
+            data.putDouble(offset, hull.vertices[i]);
+        }
+        for (int i = 0; i < hull.faceCount * 4; i++, offset += Double.BYTES) {
+            data.putDouble(offset, hull.facePlanes[i]);
+        }
+        for (int i = 0; i <= hull.faceCount; i++, offset += Integer.BYTES) {
+            data.putInt(offset, hull.faceStarts[i]);
+        }
+        for (int i = 0; i < indexCount; i++, offset += Integer.BYTES) {
+            data.putInt(offset, hull.faceVertexIndices[i]);
+        }
+        hullData[index] = data;
+        int slot = index * shapeDataSize;
+        shapesData.putInt(slot + VERTEX_COUNT_OFFSET, hull.vertexCount);
+        shapesData.putInt(slot + FACE_COUNT_OFFSET, hull.faceCount);
+        shapesData.putInt(slot + INDEX_COUNT_OFFSET, indexCount);
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        super.ensureCapacity(capacity);
+        if (hullData.length < getCapacity()) {
+            ByteBuffer[] newHullData = new ByteBuffer[getCapacity()];
+            System.arraycopy(hullData, 0, newHullData, 0, hullData.length);
+            hullData = newHullData;
+        }
+    }
+
+    @Override
+    public void computeBounds(int shapeIndex, QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        double qx = orientation.getX();
+        double qy = orientation.getY();
+        double qz = orientation.getZ();
+        double qw = orientation.getW();
+        double xx = 2 * qx * qx, yy = 2 * qy * qy, zz = 2 * qz * qz;
+        double xy = 2 * qx * qy, xz = 2 * qx * qz, yz = 2 * qy * qz;
+        double wx = 2 * qw * qx, wy = 2 * qw * qy, wz = 2 * qw * qz;
+        double r00 = 1 - yy - zz, r01 = xy - wz, r02 = xz + wy;
+        double r10 = xy + wz, r11 = 1 - xx - zz, r12 = yz - wx;
+        double r20 = xz - wy, r21 = yz + wx, r22 = 1 - xx - yy;
+        ByteBuffer data = hullData[shapeIndex];
+        int end = getVertexCount(shapeIndex) * 3 * Double.BYTES;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int offset = 0; offset < end; offset += 3 * Double.BYTES) {
+            double x = data.getDouble(offset);
+            double y = data.getDouble(offset + Double.BYTES);
+            double z = data.getDouble(offset + 2 * Double.BYTES);
+            double rx = r00 * x + r01 * y + r02 * z;
+            double ry = r10 * x + r11 * y + r12 * z;
+            double rz = r20 * x + r21 * y + r22 * z;
+            minX = Math.min(minX, rx);
+            minY = Math.min(minY, ry);
+            minZ = Math.min(minZ, rz);
+            maxX = Math.max(maxX, rx);
+            maxY = Math.max(maxY, ry);
+            maxZ = Math.max(maxZ, rz);
+        }
+        min.set(minX, minY, minZ);
+        max.set(maxX, maxY, maxZ);
+    }
+
+    @Override
+    protected double computeMaximumRadius(int index) {
+        ByteBuffer data = hullData[index];
+        int end = getVertexCount(index) * 3 * Double.BYTES;
+        double maximumSquared = 0;
+        for (int offset = 0; offset < end; offset += 3 * Double.BYTES) {
+            double x = data.getDouble(offset);
+            double y = data.getDouble(offset + Double.BYTES);
+            double z = data.getDouble(offset + 2 * Double.BYTES);
+            maximumSquared = Math.max(maximumSquared, x * x + y * y + z * z);
+        }
+        return Math.sqrt(maximumSquared);
+    }
+
+    /**
+     * The closest face plane bounds the distance to the surface. Hulls that do not contain their origin report zero.
+     */
+    @Override
+    protected double computeMinimumRadius(int index) {
+        ByteBuffer data = hullData[index];
+        int planeStart = getVertexCount(index) * 3 * Double.BYTES;
+        int faceCount = getFaceCount(index);
+        double minimum = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < faceCount; i++) {
+            minimum = Math.min(minimum, data.getDouble(planeStart + (i * 4 + 3) * Double.BYTES));
+        }
+        return Math.max(0, minimum);
+    }
+
+    @Override
+    protected int hashContent(int index) {
+        return super.hashContent(index) * 31 + hullData[index].hashCode();
+    }
+
+    @Override
+    protected boolean contentEquals(int indexA, int indexB) {
+        return super.contentEquals(indexA, indexB) && hullData[indexA].equals(hullData[indexB]);
+    }
+
+    @Override
+    protected void dispose(int index) {
+        hullData[index] = null;
+    }
+
+    @Override
+    protected void removeAndDisposeChildren(int index, Shapes shapes) {
+        //Hulls have no children.
+    }
+}
@@ -0,0 +1,702 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.BoundingBox;
+import bepu.bepuutilities.threading.IChunkBody;
+import bepu.bepuutilities.threading.IThreadDispatcher;
+
+import java.util.Arrays;
+
+/**
+ * Builds {@link ConvexHull} shapes from point clouds using quickhull.
+ * <p>
+ * The two passes that touch every input point run in parallel when a dispatcher is provided: the bounding pass that finds the extreme
+ * points, and the partition of all points against the initial tetrahedron, which discards every point inside it before the incremental
+ * phase starts. For scanned data most points are interior, so the sequential phase only ever sees a small fraction of the input.
+ * <p>
+ * A builder keeps its scratch buffers between builds, so reusing one builder for many hulls avoids reallocating them. It is not thread safe.
+ */
+public class ConvexHullBuilder {
+    private static final int POINTS_PER_CHUNK = 4096;
+    //Adjacent triangles whose normals are this close are merged into a single polygonal face.
+    private static final double COPLANAR_NORMAL_TOLERANCE = 1e-9;
+
+    //Points being built, recentered on the input's bounds so that plane offsets and visibility tests don't lose precision far from the origin.
+    private double[] points;
+    private double[] inputPoints;
+    private int pointCount;
+    private double epsilon;
+    private double centerX, centerY, centerZ;
+    private double[] centeredPoints = new double[0];
+    private final IChunkBody recenterChunk = this::recenterChunk;
+
+    //Bounding pass. Each chunk records its bounds and the indices of its six extreme points.
+    private BoundingBox[] chunkBounds = new BoundingBox[0];
+    private int[] chunkExtremes = new int[0];
+    private final IChunkBody boundChunk = this::boundChunk;
+
+    //Partition pass. Each point records the initial face it is furthest outside of, or -1.
+    private int[] pointFaces = new int[0];
+    private double[] pointDistances = new double[0];
+    private final IChunkBody partitionChunk = this::partitionChunk;
+
+    //Triangles of the hull under construction.
+    private int faceCount;
+    private int[] faceVertices = new int[0];
+    private int[] faceNeighbors = new int[0];
+    private double[] facePlanes = new double[0];
+    private boolean[] faceDeleted = new boolean[0];
+    private int[] faceOutsideHeads = new int[0];
+    private int[] faceVisitStamps = new int[0];
+    private int visitStamp;
+
+    //Outside point lists, linked through the points.
+    private int[] pointNext = new int[0];
+
+    //Horizon traversal.
+    private int[] stackFaces = new int[0];
+    private int[] stackEdges = new int[0];
+    private int[] stackSteps = new int[0];
+    private int[] visibleFaces = new int[0];
+    private int visibleCount;
+    private int[] horizonFaces = new int[0];
+    private int[] horizonEdges = new int[0];
+    private int horizonCount;
+    private int[] orderedHorizon = new int[0];
+    private int[] newFaces = new int[0];
+
+    //Output assembly.
+    private int[] groupOf = new int[0];
+    private int[] vertexRemap = new int[0];
+    private int[] boundaryNext = new int[0];
+    private int[] groupFaces = new int[0];
+    private int[] groupCounts = new int[0];
+
+    /**
+     * Builds the convex hull of a point cloud on the calling thread.
+     *
+     * @param points Coordinates of the points as consecutive x, y, z triples.
+     * @param pointCount Number of points.
+     * @param result Hull to fill. It can be null.
+     *
+     * @return Hull of the points.
+     */
+    public ConvexHull build(double[] points, int pointCount, ConvexHull result) {
+        return build(points, pointCount, null, result);
+    }
+
+    /**
+     * Builds the convex hull of a point cloud.
+     *
+     * @param points Coordinates of the points as consecutive x, y, z triples.
+     * @param pointCount Number of points.
+     * @param dispatcher Dispatcher used for the passes over every point. If null, everything runs on the calling thread.
+     * @param result Hull to fill. It can be null.
+     *
+     * @return Hull of the points.
+     */
+    public ConvexHull build(double[] points, int pointCount, IThreadDispatcher dispatcher, ConvexHull result) {
+        if (pointCount < 4) {
+            throw new IllegalArgumentException("A convex hull needs at least four points.");
+        }
+        if (result == null) {
+            result = new ConvexHull();
+        }
+        this.points = points;
+        this.inputPoints = points;
+        this.pointCount = pointCount;
+        try {
+            int chunkCount = (pointCount + POINTS_PER_CHUNK - 1) / POINTS_PER_CHUNK;
+            findExtremes(chunkCount, dispatcher);
+            recenter(dispatcher);
+            int[] simplex = new int[4];
+            createInitialSimplex(simplex);
+            partition(dispatcher, simplex);
+            expand();
+            assemble(result);
+        } finally {
+            this.points = null;
+            this.inputPoints = null;
+        }
+        return result;
+    }
+
+    private void findExtremes(int chunkCount, IThreadDispatcher dispatcher) {
+        if (chunkBounds.length < chunkCount) {
+            BoundingBox[] newBounds = new BoundingBox[chunkCount];
+            System.arraycopy(chunkBounds, 0, newBounds, 0, chunkBounds.length);
+            for (int i = chunkBounds.length; i < chunkCount; i++) {
+                newBounds[i] = new BoundingBox();
+            }
+            chunkBounds = newBounds;
+            chunkExtremes = new int[chunkCount * 6];
+        }
+        if (dispatcher == null) {
+            for (int start = 0; start < pointCount; start += POINTS_PER_CHUNK) {
+                boundChunk(start, Math.min(pointCount, start + POINTS_PER_CHUNK), 0);
+            }
+        } else {
+            dispatcher.forEachChunk(pointCount, POINTS_PER_CHUNK, boundChunk);
+        }
+        //Reduce the per chunk extremes into chunk 0's slots.
+        for (int chunk = 1; chunk < chunkCount; chunk++) {
+            for (int axis = 0; axis < 3; axis++) {
+                int candidateMin = chunkExtremes[chunk * 6 + axis];
+                int candidateMax = chunkExtremes[chunk * 6 + 3 + axis];
+                if (points[candidateMin * 3 + axis] < points[chunkExtremes[axis] * 3 + axis]) {
+                    chunkExtremes[axis] = candidateMin;
+                }
+                if (points[candidateMax * 3 + axis] > points[chunkExtremes[3 + axis] * 3 + axis]) {
+                    chunkExtremes[3 + axis] = candidateMax;
+                }
+            }
+            BoundingBox.createMerged(chunkBounds[0], chunkBounds[chunk], chunkBounds[0]);
+        }
+        BoundingBox bounds = chunkBounds[0];
+        centerX = (bounds.min.x + bounds.max.x) * 0.5;
+        centerY = (bounds.min.y + bounds.max.y) * 0.5;
+        centerZ = (bounds.min.z + bounds.max.z) * 0.5;
+        //Tolerances scale with the size of the recentered cloud, not with its distance from the origin.
+        double scale = (bounds.max.x - bounds.min.x) + (bounds.max.y - bounds.min.y) + (bounds.max.z - bounds.min.z);
+        epsilon = scale * 0.5 * 1e-11;
+    }
+
+    /**
+     * Copies the points into a scratch buffer relative to the center of their bounds. Everything after this works on the copy.
+     */
+    private void recenter(IThreadDispatcher dispatcher) {
+        if (centeredPoints.length < pointCount * 3) {
+            centeredPoints = new double[pointCount * 3];
+        }
+        if (dispatcher == null) {
+            recenterChunk(0, pointCount, 0);
+        } else {
+            dispatcher.forEachChunk(pointCount, POINTS_PER_CHUNK, recenterChunk);
+        }
+        points = centeredPoints;
+    }
+
+    private void recenterChunk(int start, int end, int workerIndex) {
+        for (int i = start; i < end; i++) {
+            centeredPoints[i * 3] = inputPoints[i * 3] - centerX;
+            centeredPoints[i * 3 + 1] = inputPoints[i * 3 + 1] - centerY;
+            centeredPoints[i * 3 + 2] = inputPoints[i * 3 + 2] - centerZ;
+        }
+    }
+
+    private void boundChunk(int start, int end, int workerIndex) {
+        int chunk = start / POINTS_PER_CHUNK;
+        BoundingBox bounds = BoundingBox.createFromPoints(points, start, end - start, chunkBounds[chunk]);
+        double minX = bounds.min.x, minY = bounds.min.y, minZ = bounds.min.z;
+        double maxX = bounds.max.x, maxY = bounds.max.y, maxZ = bounds.max.z;
+        int base = chunk * 6;
+        for (int i = start; i < end; i++) {
+            double x = points[i * 3];
+            double y = points[i * 3 + 1];
+            double z = points[i * 3 + 2];
+            if (x == minX) {
+                chunkExtremes[base] = i;
+            }
+            if (y == minY) {
+                chunkExtremes[base + 1] = i;
+            }
+            if (z == minZ) {
+                chunkExtremes[base + 2] = i;
+            }
+            if (x == maxX) {
+                chunkExtremes[base + 3] = i;
+            }
+            if (y == maxY) {
+                chunkExtremes[base + 4] = i;
+            }
+            if (z == maxZ) {
+                chunkExtremes[base + 5] = i;
+            }
+        }
+    }
+
+    private void createInitialSimplex(int[] simplex) {
+        //The most distant pair of extreme points spans the first edge.
+        double bestDistance = -1;
+        for (int i = 0; i < 6; i++) {
+            for (int j = i + 1; j < 6; j++) {
+                double distance = distanceSquared(chunkExtremes[i], chunkExtremes[j]);
+                if (distance > bestDistance) {
+                    bestDistance = distance;
+                    simplex[0] = chunkExtremes[i];
+                    simplex[1] = chunkExtremes[j];
+                }
+            }
+        }
+        int a = simplex[0] * 3;
+        int b = simplex[1] * 3;
+        double ex = points[b] - points[a], ey = points[b + 1] - points[a + 1], ez = points[b + 2] - points[a + 2];
+        //The point furthest from the edge's line completes the first triangle.
+        bestDistance = -1;
+        for (int i = 0; i < pointCount; i++) {
+            double dx = points[i * 3] - points[a], dy = points[i * 3 + 1] - points[a + 1], dz = points[i * 3 + 2] - points[a + 2];
+            double cx = ey * dz - ez * dy, cy = ez * dx - ex * dz, cz = ex * dy - ey * dx;
+            double distance = cx * cx + cy * cy + cz * cz;
+            if (distance > bestDistance) {
+                bestDistance = distance;
+                simplex[2] = i;
+            }
+        }
+        int c = simplex[2] * 3;
+        double fx = points[c] - points[a], fy = points[c + 1] - points[a + 1], fz = points[c + 2] - points[a + 2];
+        double nx = ey * fz - ez * fy, ny = ez * fx - ex * fz, nz = ex * fy - ey * fx;
+        //The point furthest from the triangle's plane completes the tetrahedron.
+        bestDistance = -1;
+        double signedBest = 0;
+        for (int i = 0; i < pointCount; i++) {
+            double distance = (points[i * 3] - points[a]) * nx + (points[i * 3 + 1] - points[a + 1]) * ny + (points[i * 3 + 2] - points[a + 2]) * nz;
+            if (Math.abs(distance) > bestDistance) {
+                bestDistance = Math.abs(distance);
+                signedBest = distance;
+                simplex[3] = i;
+            }
+        }
+        double normalLength = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (normalLength <= epsilon || bestDistance / normalLength <= epsilon) {
+            throw new IllegalArgumentException("Cannot build a convex hull from points that are all coplanar.");
+        }
+
+        faceCount = 0;
+        ensureFaceCapacity(16);
+        if (signedBest > 0) {
+            //The fourth point is on the positive side of (a, b, c), so that triangle must face the other way.
+            int swap = simplex[1];
+            simplex[1] = simplex[2];
+            simplex[2] = swap;
+        }
+        int s0 = simplex[0], s1 = simplex[1], s2 = simplex[2], s3 = simplex[3];
+        //Faces wound counterclockwise from outside: (0,1,2) faces away from 3.
+        int f0 = addFace(s0, s1, s2);
+        int f1 = addFace(s0, s3, s1);
+        int f2 = addFace(s1, s3, s2);
+        int f3 = addFace(s2, s3, s0);
+        setNeighbors(f0, f1, f2, f3);
+        setNeighbors(f1, f3, f2, f0);
+        setNeighbors(f2, f1, f3, f0);
+        setNeighbors(f3, f2, f1, f0);
+    }
+
+    private void setNeighbors(int face, int acrossEdge0, int acrossEdge1, int acrossEdge2) {
+        faceNeighbors[face * 3] = acrossEdge0;
+        faceNeighbors[face * 3 + 1] = acrossEdge1;
+        faceNeighbors[face * 3 + 2] = acrossEdge2;
+    }
+
+    private void partition(IThreadDispatcher dispatcher, int[] simplex) {
+        if (pointFaces.length < pointCount) {
+            pointFaces = new int[pointCount];
+            pointDistances = new double[pointCount];
+            pointNext = new int[pointCount];
+        }
+        if (dispatcher == null) {
+            partitionChunk(0, pointCount, 0);
+        } else {
+            dispatcher.forEachChunk(pointCount, POINTS_PER_CHUNK, partitionChunk);
+        }
+        for (int i = 0; i < 4; i++) {
+            pointFaces[simplex[i]] = -1;
+        }
+        //Link the surviving points into their faces' outside lists.
+        for (int i = 0; i < pointCount; i++) {
+            int face = pointFaces[i];
+            if (face >= 0) {
+                pointNext[i] = faceOutsideHeads[face];
+                faceOutsideHeads[face] = i;
+            }
+        }
+    }
+
+    private void partitionChunk(int start, int end, int workerIndex) {
+        for (int i = start; i < end; i++) {
+            int bestFace = -1;
+            double bestDistance = epsilon;
+            for (int face = 0; face < 4; face++) {
+                double distance = distanceToFace(face, i);
+                if (distance > bestDistance) {
+                    bestDistance = distance;
+                    bestFace = face;
+                }
+            }
+            pointFaces[i] = bestFace;
+            pointDistances[i] = bestDistance;
+        }
+    }
+
+    private void expand() {
+        int searchStart = 0;
+        while (true) {
+            //Find a face that still has outside points.
+            int face = -1;
+            for (int i = searchStart; i < faceCount; i++) {
+                if (!faceDeleted[i] && faceOutsideHeads[i] >= 0) {
+                    face = i;
+                    break;
+                }
+            }
+            if (face < 0) {
+                return;
+            }
+            searchStart = face;
+            int eye = -1;
+            double furthest = -1;
+            for (int p = faceOutsideHeads[face]; p >= 0; p = pointNext[p]) {
+                if (pointDistances[p] > furthest) {
+                    furthest = pointDistances[p];
+                    eye = p;
+                }
+            }
+            addPoint(face, eye);
+        }
+    }
+
+    private void addPoint(int startFace, int eye) {
+        findHorizon(startFace, eye);
+        orderHorizon();
+
+        //Fan new faces from the eye to every horizon edge.
+        if (newFaces.length < horizonCount) {
+            newFaces = new int[horizonCount * 2];
+        }
+        ensureFaceCapacity(faceCount + horizonCount);
+        for (int i = 0; i < horizonCount; i++) {
+            int h = orderedHorizon[i];
+            int oldFace = horizonFaces[h];
+            int edge = horizonEdges[h];
+            //Horizon edges are stored from the outside face's perspective, so the new face walks them in reverse.
+            int u = faceVertices[oldFace * 3 + (edge + 1) % 3];
+            int v = faceVertices[oldFace * 3 + edge];
+            int newFace = addFace(u, v, eye);
+            newFaces[i] = newFace;
+            faceNeighbors[newFace * 3] = oldFace;
+            faceNeighbors[oldFace * 3 + edge] = newFace;
+        }
+        for (int i = 0; i < horizonCount; i++) {
+            int newFace = newFaces[i];
+            faceNeighbors[newFace * 3 + 1] = newFaces[i + 1 == horizonCount ? 0 : i + 1];
+            faceNeighbors[newFace * 3 + 2] = newFaces[i == 0 ? horizonCount - 1 : i - 1];
+        }
+
+        //Hand the orphaned outside points to the new faces.
+        for (int i = 0; i < visibleCount; i++) {
+            int visible = visibleFaces[i];
+            int p = faceOutsideHeads[visible];
+            while (p >= 0) {
+                int next = pointNext[p];
+                if (p != eye) {
+                    int bestFace = -1;
+                    double bestDistance = epsilon;
+                    for (int j = 0; j < horizonCount; j++) {
+                        double distance = distanceToFace(newFaces[j], p);
+                        if (distance > bestDistance) {
+                            bestDistance = distance;
+                            bestFace = newFaces[j];
+                        }
+                    }
+                    if (bestFace >= 0) {
+                        pointDistances[p] = bestDistance;
+                        pointNext[p] = faceOutsideHeads[bestFace];
+                        faceOutsideHeads[bestFace] = p;
+                    }
+                }
+                p = next;
+            }
+            faceOutsideHeads[visible] = -1;
+            faceDeleted[visible] = true;
+        }
+    }
+
+    /**
+     * Collects every face visible from the eye and the edges of the outside faces that border them.
+     */
+    private void findHorizon(int startFace, int eye) {
+        visitStamp++;
+        visibleCount = 0;
+        horizonCount = 0;
+        int depth = 0;
+        ensureStackCapacity(1);
+        stackFaces[0] = startFace;
+        stackEdges[0] = 0;
+        stackSteps[0] = 0;
+        markVisible(startFace);
+        depth = 1;
+        while (depth > 0) {
+            int top = depth - 1;
+            int face = stackFaces[top];
+            //The start face checks all three edges; faces entered through an edge skip that edge.
+            int stepCount = top == 0 ? 3 : 2;
+            if (stackSteps[top] == stepCount) {
+                depth--;
+                continue;
+            }
+            int edge = (stackEdges[top] + stackSteps[top] + (top == 0 ? 0 : 1)) % 3;
+            stackSteps[top]++;
+            int neighbor = faceNeighbors[face * 3 + edge];
+            if (faceVisitStamps[neighbor] == visitStamp) {
+                continue;
+            }
+            if (distanceToFace(neighbor, eye) > epsilon) {
+                markVisible(neighbor);
+                ensureStackCapacity(depth + 1);
+                stackFaces[depth] = neighbor;
+                stackEdges[depth] = edgeIndexOf(neighbor, face);
+                stackSteps[depth] = 0;
+                depth++;
+            } else {
+                ensureHorizonCapacity(horizonCount + 1);
+                horizonFaces[horizonCount] = neighbor;
+                horizonEdges[horizonCount] = edgeIndexOf(neighbor, face);
+                horizonCount++;
+            }
+        }
+    }
+
+    /**
+     * Chains the horizon edges into a loop so that consecutive new faces share an edge.
+     */
+    private void orderHorizon() {
+        if (orderedHorizon.length < horizonCount) {
+            orderedHorizon = new int[horizonCount * 2];
+        }
+        if (boundaryNext.length < pointCount) {
+            boundaryNext = new int[pointCount];
+        }
+        //Index horizon edges by the vertex the new face starts them from.
+        for (int i = 0; i < horizonCount; i++) {
+            int face = horizonFaces[i];
+            int u = faceVertices[face * 3 + (horizonEdges[i] + 1) % 3];
+            boundaryNext[u] = i;
+        }
+        int current = 0;
+        for (int i = 0; i < horizonCount; i++) {
+            orderedHorizon[i] = current;
+            int face = horizonFaces[current];
+            int v = faceVertices[face * 3 + horizonEdges[current]];
+            current = boundaryNext[v];
+        }
+    }
+
+    private void markVisible(int face) {
+        faceVisitStamps[face] = visitStamp;
+        if (visibleFaces.length == visibleCount) {
+            visibleFaces = Arrays.copyOf(visibleFaces, Math.max(16, visibleCount * 2));
+        }
+        visibleFaces[visibleCount++] = face;
+    }
+
+    private int edgeIndexOf(int face, int neighbor) {
+        int base = face * 3;
+        return faceNeighbors[base] == neighbor ? 0 : faceNeighbors[base + 1] == neighbor ? 1 : 2;
+    }
+
+    private int addFace(int a, int b, int c) {
+        ensureFaceCapacity(faceCount + 1);
+        int face = faceCount++;
+        faceVertices[face * 3] = a;
+        faceVertices[face * 3 + 1] = b;
+        faceVertices[face * 3 + 2] = c;
+        int ia = a * 3, ib = b * 3, ic = c * 3;
+        double abx = points[ib] - points[ia], aby = points[ib + 1] - points[ia + 1], abz = points[ib + 2] - points[ia + 2];
+        double acx = points[ic] - points[ia], acy = points[ic + 1] - points[ia + 1], acz = points[ic + 2] - points[ia + 2];
+        double nx = aby * acz - abz * acy, ny = abz * acx - abx * acz, nz = abx * acy - aby * acx;
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        double inverse = length > 0 ? 1 / length : 0;
+        nx *= inverse;
+        ny *= inverse;
+        nz *= inverse;
+        facePlanes[face * 4] = nx;
+        facePlanes[face * 4 + 1] = ny;
+        facePlanes[face * 4 + 2] = nz;
+        facePlanes[face * 4 + 3] = nx * points[ia] + ny * points[ia + 1] + nz * points[ia + 2];
+        faceDeleted[face] = false;
+        faceOutsideHeads[face] = -1;
+        faceVisitStamps[face] = 0;
+        return face;
+    }
+
+    private double distanceToFace(int face, int point) {
+        int p = point * 3;
+        int f = face * 4;
+        return facePlanes[f] * points[p] + facePlanes[f + 1] * points[p + 1] + facePlanes[f + 2] * points[p + 2] - facePlanes[f + 3];
+    }
+
+    private double distanceSquared(int a, int b) {
+        double dx = points[a * 3] - points[b * 3];
+        double dy = points[a * 3 + 1] - points[b * 3 + 1];
+        double dz = points[a * 3 + 2] - points[b * 3 + 2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Merges coplanar triangles into polygons and packs the surviving vertices and faces into the hull.
+     */
+    private void assemble(ConvexHull result) {
+        //Flood each group out from its lowest face, accepting neighbors that lie in the root's plane so merged faces cannot drift.
+        if (groupOf.length < faceCount) {
+            groupOf = new int[faceCount];
+        }
+        Arrays.fill(groupOf, 0, faceCount, -1);
+        ensureStackCapacity(faceCount);
+        double planeTolerance = epsilon * 1000;
+        for (int root = 0; root < faceCount; root++) {
+            if (faceDeleted[root] || groupOf[root] >= 0) {
+                continue;
+            }
+            groupOf[root] = root;
+            stackFaces[0] = root;
+            int depth = 1;
+            while (depth > 0) {
+                int face = stackFaces[--depth];
+                for (int edge = 0; edge < 3; edge++) {
+                    int neighbor = faceNeighbors[face * 3 + edge];
+                    if (groupOf[neighbor] >= 0) {
+                        continue;
+                    }
+                    double dot = facePlanes[root * 4] * facePlanes[neighbor * 4] + facePlanes[root * 4 + 1] * facePlanes[neighbor * 4 + 1]
+                            + facePlanes[root * 4 + 2] * facePlanes[neighbor * 4 + 2];
+                    if (dot > 1 - COPLANAR_NORMAL_TOLERANCE
+                            && Math.abs(distanceToFace(root, faceVertices[neighbor * 3])) <= planeTolerance
+                            && Math.abs(distanceToFace(root, faceVertices[neighbor * 3 + 1])) <= planeTolerance
+                            && Math.abs(distanceToFace(root, faceVertices[neighbor * 3 + 2])) <= planeTolerance) {
+                        groupOf[neighbor] = root;
+                        stackFaces[depth++] = neighbor;
+                    }
+                }
+            }
+        }
+
+        //Count the output so the hull can be sized once.
+        if (vertexRemap.length < pointCount) {
+            vertexRemap = new int[pointCount];
+        }
+        Arrays.fill(vertexRemap, 0, pointCount, -1);
+        int vertexCount = 0;
+        int outputFaceCount = 0;
+        int indexCount = 0;
+        for (int face = 0; face < faceCount; face++) {
+            if (faceDeleted[face]) {
+                continue;
+            }
+            if (groupOf[face] == face) {
+                outputFaceCount++;
+            }
+            for (int edge = 0; edge < 3; edge++) {
+                int vertex = faceVertices[face * 3 + edge];
+                if (vertexRemap[vertex] < 0) {
+                    vertexRemap[vertex] = vertexCount++;
+                }
+                if (groupOf[faceNeighbors[face * 3 + edge]] != groupOf[face]) {
+                    indexCount++;
+                }
+            }
+        }
+        result.ensureCapacity(vertexCount, outputFaceCount, indexCount);
+        for (int i = 0; i < pointCount; i++) {
+            int vertex = vertexRemap[i];
+            if (vertex >= 0) {
+                //Vertices are copied from the input, so they come out exactly as given.
+                result.vertices[vertex * 3] = inputPoints[i * 3];
+                result.vertices[vertex * 3 + 1] = inputPoints[i * 3 + 1];
+                result.vertices[vertex * 3 + 2] = inputPoints[i * 3 + 2];
+            }
+        }
+
+        //Bucket the faces by group so each group's boundary can be walked without rescanning every face.
+        if (groupFaces.length < faceCount) {
+            groupFaces = new int[faceCount];
+        }
+        if (groupCounts.length < faceCount + 1) {
+            groupCounts = new int[faceCount + 1];
+        }
+        Arrays.fill(groupCounts, 0, faceCount + 1, 0);
+        for (int face = 0; face < faceCount; face++) {
+            if (!faceDeleted[face]) {
+                groupCounts[groupOf[face] + 1]++;
+            }
+        }
+        for (int i = 0; i < faceCount; i++) {
+            groupCounts[i + 1] += groupCounts[i];
+        }
+        for (int face = 0; face < faceCount; face++) {
+            if (!faceDeleted[face]) {
+                groupFaces[groupCounts[groupOf[face]]++] = face;
+            }
+        }
+        if (boundaryNext.length < pointCount) {
+            boundaryNext = new int[pointCount];
+        }
+
+        //Each group's boundary edges form one counterclockwise loop; walk it from any boundary vertex.
+        int outputFace = 0;
+        int outputIndex = 0;
+        int groupStart = 0;
+        for (int root = 0; root < faceCount; root++) {
+            //After the scatter, groupCounts[root] is the end of the root's bucket.
+            int groupEnd = groupCounts[root];
+            if (groupEnd == groupStart) {
+                continue;
+            }
+            int loopStart = -1;
+            int boundaryCount = 0;
+            for (int i = groupStart; i < groupEnd; i++) {
+                int face = groupFaces[i];
+                for (int edge = 0; edge < 3; edge++) {
+                    if (groupOf[faceNeighbors[face * 3 + edge]] != root) {
+                        int u = faceVertices[face * 3 + edge];
+                        boundaryNext[u] = faceVertices[face * 3 + (edge + 1) % 3];
+                        loopStart = u;
+                        boundaryCount++;
+                    }
+                }
+            }
+            groupStart = groupEnd;
+            result.faceStarts[outputFace] = outputIndex;
+            int vertex = loopStart;
+            for (int i = 0; i < boundaryCount; i++) {
+                result.faceVertexIndices[outputIndex++] = vertexRemap[vertex];
+                vertex = boundaryNext[vertex];
+            }
+            //Shift the plane back to the input's coordinates.
+            int plane = root * 4;
+            System.arraycopy(facePlanes, plane, result.facePlanes, outputFace * 4, 3);
+            result.facePlanes[outputFace * 4 + 3] = facePlanes[plane + 3]
+                    + facePlanes[plane] * centerX + facePlanes[plane + 1] * centerY + facePlanes[plane + 2] * centerZ;
+            outputFace++;
+        }
+        result.faceStarts[outputFace] = outputIndex;
+        result.vertexCount = vertexCount;
+        result.faceCount = outputFaceCount;
+    }
+
+    private void ensureFaceCapacity(int capacity) {
+        if (faceVertices.length < capacity * 3) {
+            int newCapacity = Math.max(capacity, faceVertices.length / 3 * 2);
+            faceVertices = Arrays.copyOf(faceVertices, newCapacity * 3);
+            faceNeighbors = Arrays.copyOf(faceNeighbors, newCapacity * 3);
+            facePlanes = Arrays.copyOf(facePlanes, newCapacity * 4);
+            faceDeleted = Arrays.copyOf(faceDeleted, newCapacity);
+            faceOutsideHeads = Arrays.copyOf(faceOutsideHeads, newCapacity);
+            faceVisitStamps = Arrays.copyOf(faceVisitStamps, newCapacity);
+        }
+    }
+
+    private void ensureStackCapacity(int capacity) {
+        if (stackFaces.length < capacity) {
+            int newCapacity = Math.max(16, capacity * 2);
+            stackFaces = Arrays.copyOf(stackFaces, newCapacity);
+            stackEdges = Arrays.copyOf(stackEdges, newCapacity);
+            stackSteps = Arrays.copyOf(stackSteps, newCapacity);
+        }
+    }
+
+    private void ensureHorizonCapacity(int capacity) {
+        if (horizonFaces.length < capacity) {
+            int newCapacity = Math.max(16, capacity * 2);
+            horizonFaces = Arrays.copyOf(horizonFaces, newCapacity);
+            horizonEdges = Arrays.copyOf(horizonEdges, newCapacity);
+        }
+    }
+}
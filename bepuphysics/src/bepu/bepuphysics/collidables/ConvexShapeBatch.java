@@ -0,0 +1,56 @@
+package bepu.bepuphysics.collidables;
+
+/**
+ * Batch of convex shapes whose data is a short run of doubles. Keeping every convex type in the same layout lets the narrow phase gather
+ * shapes of any type into its pair bundles without knowing the concrete shape.
+ */
+public abstract class ConvexShapeBatch extends ShapeBatch {
+    private final int parameterCount;
+
+    protected ConvexShapeBatch(int typeId, int parameterCount, int initialCapacity) {
+        super(typeId, parameterCount * Double.BYTES, initialCapacity);
+        this.parameterCount = parameterCount;
+    }
+
+    /**
+     * Gets the number of doubles describing each shape in the batch.
+     *
+     * @return Number of parameters per shape.
+     */
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    public double getParameter(int shapeIndex, int parameter) {
+        return shapesData.getDouble(shapeIndex * shapeDataSize + parameter * Double.BYTES);
+    }
+
+    protected void setParameter(int shapeIndex, int parameter, double value) {
+        shapesData.putDouble(shapeIndex * shapeDataSize + parameter * Double.BYTES, value);
+    }
+
+    /**
+     * Copies a shape's parameters into a lane of a structure of arrays layout.
+     *
+     * @param shapeIndex Index of the shape in the batch.
+     * @param target Array receiving the parameters. Parameter p of the shape lands at {@code p * laneStride + lane}.
+     * @param lane Lane to write.
+     * @param laneStride Distance between consecutive parameters in the target array.
+     */
+    public void gather(int shapeIndex, double[] target, int lane, int laneStride) {
+        int offset = shapeIndex * shapeDataSize;
+        for (int p = 0; p < parameterCount; p++) {
+            target[p * laneStride + lane] = shapesData.getDouble(offset + p * Double.BYTES);
+        }
+    }
+
+    @Override
+    protected void dispose(int index) {
+        //Convex shapes own no resources.
+    }
+
+    @Override
+    protected void removeAndDisposeChildren(int index, Shapes shapes) {
+        //Convex shapes have no children.
+    }
+}
@@ -0,0 +1,18 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Shape that is convex and can be tested directly by the narrow phase's pair testers.
+ */
+public interface IConvexShape extends IShape {
+    /**
+     * Computes the bounding box of the shape rotated by the given orientation, relative to the shape's origin.
+     *
+     * @param orientation Orientation of the shape.
+     * @param min Minimum of the shape's rotated bounds.
+     * @param max Maximum of the shape's rotated bounds.
+     */
+    void computeBounds(QuaternionDouble orientation, Vector3Double min, Vector3Double max);
+}
@@ -6,5 +6,15 @@ public interface IShape {
      */
     int getTypeId();
 
+    /**
+     * Creates a batch able to store shapes of this type.
+     *
+     * @param initialCapacity Number of shapes to preallocate space for.
+     * @param shapes Shape collection the batch belongs to.
+     *
+     * @return Batch for this shape type.
+     */
+    ShapeBatch createShapeBatch(int initialCapacity, Shapes shapes);
+
 
 }
@@ -0,0 +1,37 @@
+package bepu.bepuphysics.collidables;
+
+/**
+ * Collision shape made of the triangles of a {@link MeshData}. The mesh data is referenced rather than copied, so many meshes, including
+ * meshes in different simulations, can share one set of triangles, for example a memory mapped level file.
+ */
+public class Mesh implements IShape {
+    public static final int TYPE_ID = 6;
+
+    private MeshData data;
+
+    public Mesh() {
+    }
+
+    public Mesh(MeshData data) {
+        this.data = data;
+    }
+
+    public MeshData getData() {
+        return data;
+    }
+
+    public Mesh setData(MeshData data) {
+        this.data = data;
+        return this;
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public ShapeBatch createShapeBatch(int initialCapacity, Shapes shapes) {
+        return new MeshBatch(initialCapacity);
+    }
+}
@@ -0,0 +1,135 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Stores meshes. Each slot of the batch holds the mesh's triangle count and the mesh bounds; the triangles and hierarchy stay in the
+ * shared {@link MeshData} the slot refers to.
+ */
+public class MeshBatch extends ShapeBatch {
+    private static final int TRIANGLE_COUNT_OFFSET = 0;
+    private static final int BOUNDS_OFFSET = 8;
+
+    private MeshData[] meshes;
+
+    public MeshBatch(int initialCapacity) {
+        super(Mesh.TYPE_ID, BOUNDS_OFFSET + 6 * Double.BYTES, initialCapacity);
+        meshes = new MeshData[getCapacity()];
+    }
+
+    public int getTriangleCount(int index) {
+        return shapesData.getInt(index * shapeDataSize + TRIANGLE_COUNT_OFFSET);
+    }
+
+    /**
+     * Gets the mesh data a slot refers to.
+     *
+     * @param index Index of the mesh in the batch.
+     *
+     * @return Mesh data of the shape.
+     */
+    public MeshData getData(int index) {
+        return meshes[index];
+    }
+
+    public Mesh get(int index, Mesh result) {
+        if (result == null) {
+            result = new Mesh();
+        }
+        return result.setData(meshes[index]);
+    }
+
+    /**
+     * Computes the mesh's rotated bounds by rotating its local bounds as a box. Only the slot is read, so the mesh's triangles are never
+     * paged in to compute bounds.
+     */
+    @Override
+    public void computeBounds(int shapeIndex, QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        double qx = orientation.getX();
+        double qy = orientation.getY();
+        double qz = orientation.getZ();
+        double qw = orientation.getW();
+        double xx = 2 * qx * qx, yy = 2 * qy * qy, zz = 2 * qz * qz;
+        double xy = 2 * qx * qy, xz = 2 * qx * qz, yz = 2 * qy * qz;
+        double wx = 2 * qw * qx, wy = 2 * qw * qy, wz = 2 * qw * qz;
+        double r00 = 1 - yy - zz, r01 = xy - wz, r02 = xz + wy;
+        double r10 = xy + wz, r11 = 1 - xx - zz, r12 = yz - wx;
+        double r20 = xz - wy, r21 = yz + wx, r22 = 1 - xx - yy;
+        int offset = shapeIndex * shapeDataSize + BOUNDS_OFFSET;
+        double minX = shapesData.getDouble(offset), minY = shapesData.getDouble(offset + 8), minZ = shapesData.getDouble(offset + 16);
+        double maxX = shapesData.getDouble(offset + 24), maxY = shapesData.getDouble(offset + 32), maxZ = shapesData.getDouble(offset + 40);
+        double cx = 0.5 * (minX + maxX), cy = 0.5 * (minY + maxY), cz = 0.5 * (minZ + maxZ);
+        double ex = 0.5 * (maxX - minX), ey = 0.5 * (maxY - minY), ez = 0.5 * (maxZ - minZ);
+        double rcx = r00 * cx + r01 * cy + r02 * cz;
+        double rcy = r10 * cx + r11 * cy + r12 * cz;
+        double rcz = r20 * cx + r21 * cy + r22 * cz;
+        double rex = Math.abs(r00) * ex + Math.abs(r01) * ey + Math.abs(r02) * ez;
+        double rey = Math.abs(r10) * ex + Math.abs(r11) * ey + Math.abs(r12) * ez;
+        double rez = Math.abs(r20) * ex + Math.abs(r21) * ey + Math.abs(r22) * ez;
+        min.set(rcx - rex, rcy - rey, rcz - rez);
+        max.set(rcx + rex, rcy + rey, rcz + rez);
+    }
+
+    @Override
+    protected double computeMaximumRadius(int index) {
+        int offset = index * shapeDataSize + BOUNDS_OFFSET;
+        double x = Math.max(Math.abs(shapesData.getDouble(offset)), Math.abs(shapesData.getDouble(offset + 24)));
+        double y = Math.max(Math.abs(shapesData.getDouble(offset + 8)), Math.abs(shapesData.getDouble(offset + 32)));
+        double z = Math.max(Math.abs(shapesData.getDouble(offset + 16)), Math.abs(shapesData.getDouble(offset + 40)));
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+
+    /**
+     * Meshes are only interchangeable when they share the same mesh data; comparing triangles would page in the whole mesh.
+     */
+    @Override
+    protected int hashContent(int index) {
+        return System.identityHashCode(meshes[index]);
+    }
+
+    @Override
+    protected boolean contentEquals(int indexA, int indexB) {
+        return meshes[indexA] == meshes[indexB];
+    }
+
+    @Override
+    protected void write(int index, IShape shape) {
+        MeshData data = ((Mesh) shape).getData();
+        meshes[index] = data;
+        int slot = index * shapeDataSize;
+        shapesData.putInt(slot + TRIANGLE_COUNT_OFFSET, data.getTriangleCount());
+        Vector3Double min = new Vector3Double();
+        Vector3Double max = new Vector3Double();
+        data.getBounds(min, max);
+        shapesData.putDouble(slot + BOUNDS_OFFSET, min.x);
+        shapesData.putDouble(slot + BOUNDS_OFFSET + 8, min.y);
+        shapesData.putDouble(slot + BOUNDS_OFFSET + 16, min.z);
+        shapesData.putDouble(slot + BOUNDS_OFFSET + 24, max.x);
+        shapesData.putDouble(slot + BOUNDS_OFFSET + 32, max.y);
+        shapesData.putDouble(slot + BOUNDS_OFFSET + 40, max.z);
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        super.ensureCapacity(capacity);
+        if (meshes.length < getCapacity()) {
+            MeshData[] newMeshes = new MeshData[getCapacity()];
+            System.arraycopy(meshes, 0, newMeshes, 0, meshes.length);
+            meshes = newMeshes;
+        }
+    }
+
+    /**
+     * Drops the slot's reference to its mesh data. Mapped data is unmapped once no shape refers to it anymore.
+     */
+    @Override
+    protected void dispose(int index) {
+        meshes[index] = null;
+    }
+
+    @Override
+    protected void removeAndDisposeChildren(int index, Shapes shapes) {
+        //Meshes have no child shapes.
+    }
+}
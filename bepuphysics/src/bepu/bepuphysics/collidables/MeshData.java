@@ -0,0 +1,663 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuphysics.trees.ILeafHandler;
+import bepu.bepuphysics.trees.IRayLeafTester;
+import bepu.bepuphysics.trees.Tree;
+import bepu.bepuutilities.math.Vector3Double;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Immutable triangle soup with a bounding volume hierarchy, stored in a single buffer that can be a memory mapped file.
+ * <p>
+ * Nothing is read from the buffer until a query touches it: opening a mapped mesh only checks its header, and the operating system pages
+ * in the nodes and triangles a query visits. Since the data is never written after creation and every read uses absolute offsets, one
+ * instance can be shared by any number of {@link Mesh} shapes, simulations and threads.
+ * <p>
+ * The layout is little endian:
+ * <ul>
+ *     <li>Header: magic, version, triangle count and node count as ints, followed by the bounds of the whole mesh as six doubles and the
+ *     {@link MeshNodeFormat} ordinal as an int, padded to 72 bytes. Version 1 files lack the format and are always {@link MeshNodeFormat#FULL}.</li>
+ *     <li>Nodes: two child slots per node, each holding its bounds, then the two child references as ints. Non-negative references are
+ *     node indices; negative references are encoded triangle indices, as in {@link Tree}.</li>
+ *     <li>Triangles: three vertices of three doubles each, in the order the mesh was created with.</li>
+ * </ul>
+ * Full nodes store slot bounds as six doubles. Quantized nodes store each slot's minimum as unsigned offsets up from the minimum of the node's
+ * own bounds, and its maximum as offsets down from the node's maximum, in steps of the node's extent divided by the format's levels. Offsets
+ * are rounded toward the outside, so decoded bounds always contain the exact ones, and an offset of zero decodes exactly. Traversals decode
+ * each node's slots from the bounds decoded one level up, starting from the mesh bounds in the header.
+ * <p>
+ * Buffers are limited to 2GB, which bounds a mesh to roughly 12 million triangles with full nodes, or 18 million with quantized ones.
+ */
+public final class MeshData {
+    private static final int MAGIC = 0x4D504542;
+    private static final int VERSION = 2;
+    private static final int VERSION_1_HEADER_SIZE = 64;
+    private static final int HEADER_SIZE = 72;
+    private static final int TRIANGLE_SIZE = 9 * Double.BYTES;
+
+    private final ByteBuffer data;
+    private final MeshNodeFormat format;
+    private final int triangleCount;
+    private final int nodeCount;
+    private final int nodeStart;
+    private final int nodeSize;
+    //Bytes per quantized bound; 0 for full nodes.
+    private final int valueSize;
+    private final double inverseLevels;
+    private final int triangleStart;
+
+    private MeshData(ByteBuffer data) {
+        this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.capacity() < VERSION_1_HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Buffer does not contain mesh data.");
+        }
+        int version = data.getInt(4);
+        if (version == 1) {
+            format = MeshNodeFormat.FULL;
+            nodeStart = VERSION_1_HEADER_SIZE;
+        } else if (version == VERSION && data.capacity() >= HEADER_SIZE) {
+            int formatOrdinal = data.getInt(64);
+            if (formatOrdinal < 0 || formatOrdinal >= MeshNodeFormat.getCount()) {
+                throw new IllegalArgumentException("Unsupported mesh node format " + formatOrdinal + ".");
+            }
+            format = MeshNodeFormat.fromOrdinal(formatOrdinal);
+            nodeStart = HEADER_SIZE;
+        } else {
+            throw new IllegalArgumentException("Unsupported mesh data version " + version + ".");
+        }
+        valueSize = getValueSize(format);
+        nodeSize = getNodeSize(format);
+        inverseLevels = format == MeshNodeFormat.FULL ? 0 : 1.0 / format.getLevels();
+        triangleCount = data.getInt(8);
+        nodeCount = data.getInt(12);
+        long triangleStart = nodeStart + (long) nodeCount * nodeSize;
+        if (triangleStart + (long) triangleCount * TRIANGLE_SIZE > data.capacity()) {
+            throw new IllegalArgumentException("Mesh data is truncated.");
+        }
+        this.triangleStart = (int) triangleStart;
+    }
+
+    private static int getValueSize(MeshNodeFormat format) {
+        switch (format) {
+            case QUANTIZED_16:
+                return Short.BYTES;
+            case QUANTIZED_8:
+                return Byte.BYTES;
+            default:
+                return 0;
+        }
+    }
+
+    private static int getNodeSize(MeshNodeFormat format) {
+        int valueSize = getValueSize(format);
+        return (valueSize == 0 ? 12 * Double.BYTES : 12 * valueSize) + 2 * Integer.BYTES;
+    }
+
+    /**
+     * Creates mesh data on the heap.
+     *
+     * @param triangles Vertex coordinates, nine doubles per triangle.
+     * @param triangleCount Number of triangles.
+     *
+     * @return Mesh data holding the triangles and their hierarchy.
+     */
+    public static MeshData create(double[] triangles, int triangleCount) {
+        return create(triangles, triangleCount, MeshNodeFormat.FULL);
+    }
+
+    /**
+     * Creates mesh data on the heap.
+     *
+     * @param triangles Vertex coordinates, nine doubles per triangle.
+     * @param triangleCount Number of triangles.
+     * @param format Format of the hierarchy's nodes.
+     *
+     * @return Mesh data holding the triangles and their hierarchy.
+     */
+    public static MeshData create(double[] triangles, int triangleCount, MeshNodeFormat format) {
+        return new MeshData(build(triangles, triangleCount, format));
+    }
+
+    /**
+     * Builds mesh data and writes it to a file that can later be opened with {@link #open(Path)}.
+     *
+     * @param path File to write. Existing content is replaced.
+     * @param triangles Vertex coordinates, nine doubles per triangle.
+     * @param triangleCount Number of triangles.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, double[] triangles, int triangleCount) throws IOException {
+        write(path, triangles, triangleCount, MeshNodeFormat.FULL);
+    }
+
+    /**
+     * Builds mesh data and writes it to a file that can later be opened with {@link #open(Path)}.
+     *
+     * @param path File to write. Existing content is replaced.
+     * @param triangles Vertex coordinates, nine doubles per triangle.
+     * @param triangleCount Number of triangles.
+     * @param format Format of the hierarchy's nodes.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, double[] triangles, int triangleCount, MeshNodeFormat format) throws IOException {
+        ByteBuffer buffer = build(triangles, triangleCount, format);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Maps a mesh file into memory read only. The file is not read beyond its header until queries need it, and the mapping stays valid
+     * after the channel is closed.
+     *
+     * @param path File written by {@link #write(Path, double[], int)}.
+     *
+     * @return Mesh data backed by the mapped file.
+     *
+     * @throws IOException If the file cannot be mapped.
+     */
+    public static MeshData open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MeshData(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public MeshNodeFormat getNodeFormat() {
+        return format;
+    }
+
+    /**
+     * Gets the number of bytes the hierarchy's nodes take.
+     *
+     * @return Size of the node section in bytes.
+     */
+    public long getNodeBytes() {
+        return (long) nodeCount * nodeSize;
+    }
+
+    /**
+     * Gets the bounds of the whole mesh in its local space.
+     *
+     * @param min Minimum of the mesh's bounds.
+     * @param max Maximum of the mesh's bounds.
+     */
+    public void getBounds(Vector3Double min, Vector3Double max) {
+        min.set(data.getDouble(16), data.getDouble(24), data.getDouble(32));
+        max.set(data.getDouble(40), data.getDouble(48), data.getDouble(56));
+    }
+
+    /**
+     * Gets the vertices of a triangle.
+     *
+     * @param triangleIndex Index of the triangle.
+     * @param a First vertex of the triangle.
+     * @param b Second vertex of the triangle.
+     * @param c Third vertex of the triangle.
+     */
+    public void getTriangle(int triangleIndex, Vector3Double a, Vector3Double b, Vector3Double c) {
+        int offset = triangleStart + triangleIndex * TRIANGLE_SIZE;
+        a.set(data.getDouble(offset), data.getDouble(offset + 8), data.getDouble(offset + 16));
+        b.set(data.getDouble(offset + 24), data.getDouble(offset + 32), data.getDouble(offset + 40));
+        c.set(data.getDouble(offset + 48), data.getDouble(offset + 56), data.getDouble(offset + 64));
+    }
+
+    /**
+     * Finds all triangles whose bounds overlap a box in the mesh's local space.
+     *
+     * @param min Minimum of the query box.
+     * @param max Maximum of the query box.
+     * @param handler Handler to report overlapping triangle indices to.
+     */
+    public void getOverlaps(Vector3Double min, Vector3Double max, ILeafHandler handler) {
+        int slotCount = Math.min(triangleCount, 2);
+        if (valueSize > 0) {
+            getOverlapsInQuantizedNode(0, slotCount, data.getDouble(16), data.getDouble(24), data.getDouble(32),
+                    data.getDouble(40), data.getDouble(48), data.getDouble(56), min.x, min.y, min.z, max.x, max.y, max.z, handler);
+            return;
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            getOverlapsInSlot(0, slot, min.x, min.y, min.z, max.x, max.y, max.z, handler);
+        }
+    }
+
+    /**
+     * Casts a ray in the mesh's local space against the bounds of its triangles.
+     *
+     * @param origin Origin of the ray.
+     * @param direction Direction of the ray. Distances are measured in units of its length.
+     * @param maximumT Maximum distance along the ray to test.
+     * @param tester Tester to run on every triangle whose bounds the ray hits. {@link #rayTriangle} can serve as the exact test.
+     *
+     * @return Maximum distance along the ray after all triangles were tested.
+     */
+    public double rayCast(Vector3Double origin, Vector3Double direction, double maximumT, IRayLeafTester tester) {
+        double inverseX = 1 / direction.x;
+        double inverseY = 1 / direction.y;
+        double inverseZ = 1 / direction.z;
+        int slotCount = Math.min(triangleCount, 2);
+        if (valueSize > 0) {
+            return rayCastQuantizedNode(0, slotCount, data.getDouble(16), data.getDouble(24), data.getDouble(32),
+                    data.getDouble(40), data.getDouble(48), data.getDouble(56), origin.x, origin.y, origin.z, inverseX, inverseY, inverseZ, maximumT, tester);
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            maximumT = rayCastSlot(0, slot, origin.x, origin.y, origin.z, inverseX, inverseY, inverseZ, maximumT, tester);
+        }
+        return maximumT;
+    }
+
+    /**
+     * Intersects a ray with a triangle. Both sides of the triangle are hit.
+     *
+     * @param triangleIndex Index of the triangle.
+     * @param origin Origin of the ray.
+     * @param direction Direction of the ray.
+     *
+     * @return Distance along the ray to the hit in units of the direction's length, or positive infinity if the ray misses.
+     */
+    public double rayTriangle(int triangleIndex, Vector3Double origin, Vector3Double direction) {
+        int offset = triangleStart + triangleIndex * TRIANGLE_SIZE;
+        double ax = data.getDouble(offset), ay = data.getDouble(offset + 8), az = data.getDouble(offset + 16);
+        double abx = data.getDouble(offset + 24) - ax, aby = data.getDouble(offset + 32) - ay, abz = data.getDouble(offset + 40) - az;
+        double acx = data.getDouble(offset + 48) - ax, acy = data.getDouble(offset + 56) - ay, acz = data.getDouble(offset + 64) - az;
+        double px = direction.y * acz - direction.z * acy;
+        double py = direction.z * acx - direction.x * acz;
+        double pz = direction.x * acy - direction.y * acx;
+        double determinant = abx * px + aby * py + abz * pz;
+        if (determinant == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double inverseDeterminant = 1 / determinant;
+        double tx = origin.x - ax, ty = origin.y - ay, tz = origin.z - az;
+        double u = (tx * px + ty * py + tz * pz) * inverseDeterminant;
+        if (u < 0 || u > 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double qx = ty * abz - tz * aby;
+        double qy = tz * abx - tx * abz;
+        double qz = tx * aby - ty * abx;
+        double v = (direction.x * qx + direction.y * qy + direction.z * qz) * inverseDeterminant;
+        if (v < 0 || u + v > 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double t = (acx * qx + acy * qy + acz * qz) * inverseDeterminant;
+        return t >= 0 ? t : Double.POSITIVE_INFINITY;
+    }
+
+    private boolean slotOverlaps(int slotOffset, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        return data.getDouble(slotOffset) <= maxX && data.getDouble(slotOffset + 24) >= minX &&
+                data.getDouble(slotOffset + 8) <= maxY && data.getDouble(slotOffset + 32) >= minY &&
+                data.getDouble(slotOffset + 16) <= maxZ && data.getDouble(slotOffset + 40) >= minZ;
+    }
+
+    private void getOverlapsInSlot(int node, int slot, double minX, double minY, double minZ, double maxX, double maxY, double maxZ, ILeafHandler handler) {
+        int nodeOffset = nodeStart + node * nodeSize;
+        if (!slotOverlaps(nodeOffset + slot * 6 * Double.BYTES, minX, minY, minZ, maxX, maxY, maxZ)) {
+            return;
+        }
+        int child = data.getInt(nodeOffset + 12 * Double.BYTES + slot * Integer.BYTES);
+        if (child < 0) {
+            handler.handle(-1 - child);
+        } else {
+            getOverlapsInSlot(child, 0, minX, minY, minZ, maxX, maxY, maxZ, handler);
+            getOverlapsInSlot(child, 1, minX, minY, minZ, maxX, maxY, maxZ, handler);
+        }
+    }
+
+    private double rayCastSlot(int node, int slot, double originX, double originY, double originZ,
+                               double inverseX, double inverseY, double inverseZ, double maximumT, IRayLeafTester tester) {
+        int nodeOffset = nodeStart + node * nodeSize;
+        int slotOffset = nodeOffset + slot * 6 * Double.BYTES;
+        if (!rayHits(data.getDouble(slotOffset), data.getDouble(slotOffset + 8), data.getDouble(slotOffset + 16),
+                data.getDouble(slotOffset + 24), data.getDouble(slotOffset + 32), data.getDouble(slotOffset + 40),
+                originX, originY, originZ, inverseX, inverseY, inverseZ, maximumT)) {
+            return maximumT;
+        }
+        int child = data.getInt(nodeOffset + 12 * Double.BYTES + slot * Integer.BYTES);
+        if (child < 0) {
+            return tester.test(-1 - child, maximumT);
+        }
+        maximumT = rayCastSlot(child, 0, originX, originY, originZ, inverseX, inverseY, inverseZ, maximumT, tester);
+        return rayCastSlot(child, 1, originX, originY, originZ, inverseX, inverseY, inverseZ, maximumT, tester);
+    }
+
+    private static boolean rayHits(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                                   double originX, double originY, double originZ, double inverseX, double inverseY, double inverseZ, double maximumT) {
+        double tX0 = (minX - originX) * inverseX;
+        double tX1 = (maxX - originX) * inverseX;
+        double tY0 = (minY - originY) * inverseY;
+        double tY1 = (maxY - originY) * inverseY;
+        double tZ0 = (minZ - originZ) * inverseZ;
+        double tZ1 = (maxZ - originZ) * inverseZ;
+        double enter = Math.max(0, Math.max(Math.min(tX0, tX1), Math.max(Math.min(tY0, tY1), Math.min(tZ0, tZ1))));
+        double exit = Math.min(maximumT, Math.min(Math.max(tX0, tX1), Math.min(Math.max(tY0, tY1), Math.max(tZ0, tZ1))));
+        //NaN from a zero direction component on a slab plane fails the comparison; fall back to the exact test for that rare case.
+        return enter <= exit || Double.isNaN(enter) || Double.isNaN(exit);
+    }
+
+    private int readQuantized(int offset) {
+        return valueSize == Short.BYTES ? data.getShort(offset) & 0xFFFF : data.get(offset) & 0xFF;
+    }
+
+    /**
+     * Tests the slots of a quantized node against a box, given the node's decoded bounds.
+     */
+    private void getOverlapsInQuantizedNode(int node, int slotCount, double nodeMinX, double nodeMinY, double nodeMinZ,
+                                            double nodeMaxX, double nodeMaxY, double nodeMaxZ,
+                                            double minX, double minY, double minZ, double maxX, double maxY, double maxZ, ILeafHandler handler) {
+        int nodeOffset = nodeStart + node * nodeSize;
+        double scaleX = (nodeMaxX - nodeMinX) * inverseLevels;
+        double scaleY = (nodeMaxY - nodeMinY) * inverseLevels;
+        double scaleZ = (nodeMaxZ - nodeMinZ) * inverseLevels;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int slotOffset = nodeOffset + slot * 6 * valueSize;
+            double slotMinX = nodeMinX + readQuantized(slotOffset) * scaleX;
+            double slotMinY = nodeMinY + readQuantized(slotOffset + valueSize) * scaleY;
+            double slotMinZ = nodeMinZ + readQuantized(slotOffset + 2 * valueSize) * scaleZ;
+            double slotMaxX = nodeMaxX - readQuantized(slotOffset + 3 * valueSize) * scaleX;
+            double slotMaxY = nodeMaxY - readQuantized(slotOffset + 4 * valueSize) * scaleY;
+            double slotMaxZ = nodeMaxZ - readQuantized(slotOffset + 5 * valueSize) * scaleZ;
+            if (slotMinX > maxX || slotMaxX < minX || slotMinY > maxY || slotMaxY < minY || slotMinZ > maxZ || slotMaxZ < minZ) {
+                continue;
+            }
+            int child = data.getInt(nodeOffset + 12 * valueSize + slot * Integer.BYTES);
+            if (child < 0) {
+                handler.handle(-1 - child);
+            } else {
+                getOverlapsInQuantizedNode(child, 2, slotMinX, slotMinY, slotMinZ, slotMaxX, slotMaxY, slotMaxZ, minX, minY, minZ, maxX, maxY, maxZ, handler);
+            }
+        }
+    }
+
+    /**
+     * Casts a ray against the slots of a quantized node, given the node's decoded bounds.
+     */
+    private double rayCastQuantizedNode(int node, int slotCount, double nodeMinX, double nodeMinY, double nodeMinZ,
+                                        double nodeMaxX, double nodeMaxY, double nodeMaxZ, double originX, double originY, double originZ,
+                                        double inverseX, double inverseY, double inverseZ, double maximumT, IRayLeafTester tester) {
+        int nodeOffset = nodeStart + node * nodeSize;
+        double scaleX = (nodeMaxX - nodeMinX) * inverseLevels;
+        double scaleY = (nodeMaxY - nodeMinY) * inverseLevels;
+        double scaleZ = (nodeMaxZ - nodeMinZ) * inverseLevels;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int slotOffset = nodeOffset + slot * 6 * valueSize;
+            double slotMinX = nodeMinX + readQuantized(slotOffset) * scaleX;
+            double slotMinY = nodeMinY + readQuantized(slotOffset + valueSize) * scaleY;
+            double slotMinZ = nodeMinZ + readQuantized(slotOffset + 2 * valueSize) * scaleZ;
+            double slotMaxX = nodeMaxX - readQuantized(slotOffset + 3 * valueSize) * scaleX;
+            double slotMaxY = nodeMaxY - readQuantized(slotOffset + 4 * valueSize) * scaleY;
+            double slotMaxZ = nodeMaxZ - readQuantized(slotOffset + 5 * valueSize) * scaleZ;
+            if (!rayHits(slotMinX, slotMinY, slotMinZ, slotMaxX, slotMaxY, slotMaxZ, originX, originY, originZ, inverseX, inverseY, inverseZ, maximumT)) {
+                continue;
+            }
+            int child = data.getInt(nodeOffset + 12 * valueSize + slot * Integer.BYTES);
+            if (child < 0) {
+                maximumT = tester.test(-1 - child, maximumT);
+            } else {
+                maximumT = rayCastQuantizedNode(child, 2, slotMinX, slotMinY, slotMinZ, slotMaxX, slotMaxY, slotMaxZ,
+                        originX, originY, originZ, inverseX, inverseY, inverseZ, maximumT, tester);
+            }
+        }
+        return maximumT;
+    }
+
+    private static ByteBuffer build(double[] triangles, int triangleCount, MeshNodeFormat format) {
+        if (triangleCount < 1) {
+            throw new IllegalArgumentException("A mesh needs at least one triangle.");
+        }
+        int nodeCount = Math.max(1, triangleCount - 1);
+        int nodeSize = getNodeSize(format);
+        long size = HEADER_SIZE + (long) nodeCount * nodeSize + (long) triangleCount * TRIANGLE_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Mesh is too large for a single buffer.");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, triangleCount);
+        buffer.putInt(12, nodeCount);
+        buffer.putInt(64, format.ordinal());
+        int triangleStart = HEADER_SIZE + nodeCount * nodeSize;
+        for (int i = 0; i < triangleCount * 9; i++) {
+            buffer.putDouble(triangleStart + i * Double.BYTES, triangles[i]);
+        }
+
+        //Per triangle bounds and centroids drive a top down median split build.
+        double[] triangleBounds = new double[triangleCount * 6];
+        double[] centroids = new double[triangleCount * 3];
+        int[] indices = new int[triangleCount];
+        for (int i = 0; i < triangleCount; i++) {
+            indices[i] = i;
+            for (int axis = 0; axis < 3; axis++) {
+                double a = triangles[i * 9 + axis], b = triangles[i * 9 + 3 + axis], c = triangles[i * 9 + 6 + axis];
+                triangleBounds[i * 6 + axis] = Math.min(a, Math.min(b, c));
+                triangleBounds[i * 6 + 3 + axis] = Math.max(a, Math.max(b, c));
+                centroids[i * 3 + axis] = (a + b + c) / 3;
+            }
+        }
+        Builder builder = new Builder(nodeCount, triangleBounds, centroids, indices);
+        double[] rootBounds = new double[6];
+        if (triangleCount == 1) {
+            builder.writeLeafSlot(0, 0, 0);
+            System.arraycopy(triangleBounds, 0, rootBounds, 0, 6);
+        } else {
+            builder.nodeCount = 1;
+            builder.buildNode(0, 0, triangleCount, rootBounds);
+        }
+        for (int i = 0; i < 6; i++) {
+            buffer.putDouble(16 + i * Double.BYTES, rootBounds[i]);
+        }
+        if (format == MeshNodeFormat.FULL) {
+            builder.writeFullNodes(buffer);
+        } else {
+            builder.writeQuantizedNode(buffer, format, 0, Math.min(triangleCount, 2), rootBounds);
+        }
+        return buffer;
+    }
+
+    private static final class Builder {
+        //Exact slot bounds and child references of every node, in the same arrangement as full nodes.
+        final double[] nodeBounds;
+        final int[] children;
+        final double[] triangleBounds;
+        final double[] centroids;
+        final int[] indices;
+        int nodeCount;
+
+        Builder(int nodeCapacity, double[] triangleBounds, double[] centroids, int[] indices) {
+            this.nodeBounds = new double[nodeCapacity * 12];
+            this.children = new int[nodeCapacity * 2];
+            this.triangleBounds = triangleBounds;
+            this.centroids = centroids;
+            this.indices = indices;
+        }
+
+        /**
+         * Fills a node with the triangles in [start, end), which must hold at least two, and returns the node's bounds.
+         */
+        void buildNode(int node, int start, int end, double[] nodeBounds) {
+            double cMinX = Double.POSITIVE_INFINITY, cMinY = Double.POSITIVE_INFINITY, cMinZ = Double.POSITIVE_INFINITY;
+            double cMaxX = Double.NEGATIVE_INFINITY, cMaxY = Double.NEGATIVE_INFINITY, cMaxZ = Double.NEGATIVE_INFINITY;
+            for (int i = start; i < end; i++) {
+                int t = indices[i] * 3;
+                cMinX = Math.min(cMinX, centroids[t]);
+                cMinY = Math.min(cMinY, centroids[t + 1]);
+                cMinZ = Math.min(cMinZ, centroids[t + 2]);
+                cMaxX = Math.max(cMaxX, centroids[t]);
+                cMaxY = Math.max(cMaxY, centroids[t + 1]);
+                cMaxZ = Math.max(cMaxZ, centroids[t + 2]);
+            }
+            double spanX = cMaxX - cMinX, spanY = cMaxY - cMinY, spanZ = cMaxZ - cMinZ;
+            int axis = spanX >= spanY && spanX >= spanZ ? 0 : spanY >= spanZ ? 1 : 2;
+            int middle = (start + end) >>> 1;
+            select(start, end - 1, middle, axis);
+
+            double[] childBounds = new double[6];
+            for (int i = 0; i < 6; i++) {
+                nodeBounds[i] = i < 3 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+            }
+            buildSlot(node, 0, start, middle, childBounds);
+            merge(nodeBounds, childBounds);
+            buildSlot(node, 1, middle, end, childBounds);
+            merge(nodeBounds, childBounds);
+        }
+
+        private void buildSlot(int node, int slot, int start, int end, double[] slotBounds) {
+            if (end - start == 1) {
+                writeLeafSlot(node, slot, indices[start]);
+                System.arraycopy(triangleBounds, indices[start] * 6, slotBounds, 0, 6);
+            } else {
+                int child = nodeCount++;
+                buildNode(child, start, end, slotBounds);
+                writeSlot(node, slot, slotBounds, child);
+            }
+        }
+
+        void writeLeafSlot(int node, int slot, int triangle) {
+            double[] bounds = new double[6];
+            System.arraycopy(triangleBounds, triangle * 6, bounds, 0, 6);
+            writeSlot(node, slot, bounds, Tree.encode(triangle));
+        }
+
+        private void writeSlot(int node, int slot, double[] bounds, int child) {
+            System.arraycopy(bounds, 0, nodeBounds, node * 12 + slot * 6, 6);
+            children[node * 2 + slot] = child;
+        }
+
+        void writeFullNodes(ByteBuffer buffer) {
+            int nodeSize = getNodeSize(MeshNodeFormat.FULL);
+            for (int node = 0; node < nodeCount; node++) {
+                int nodeOffset = HEADER_SIZE + node * nodeSize;
+                for (int i = 0; i < 12; i++) {
+                    buffer.putDouble(nodeOffset + i * Double.BYTES, nodeBounds[node * 12 + i]);
+                }
+                buffer.putInt(nodeOffset + 12 * Double.BYTES, children[node * 2]);
+                buffer.putInt(nodeOffset + 12 * Double.BYTES + Integer.BYTES, children[node * 2 + 1]);
+            }
+        }
+
+        /**
+         * Writes a node's slots quantized against the node's decoded bounds, then recurses into its children with the bounds their slots
+         * decode to, exactly as traversals will see them.
+         */
+        void writeQuantizedNode(ByteBuffer buffer, MeshNodeFormat format, int node, int slotCount, double[] decodedNodeBounds) {
+            int valueSize = getValueSize(format);
+            int levels = format.getLevels();
+            double inverseLevels = 1.0 / levels;
+            int nodeOffset = HEADER_SIZE + node * getNodeSize(format);
+            double[] decodedSlotBounds = new double[6];
+            for (int slot = 0; slot < slotCount; slot++) {
+                int boundsOffset = node * 12 + slot * 6;
+                int slotOffset = nodeOffset + slot * 6 * valueSize;
+                for (int axis = 0; axis < 3; axis++) {
+                    double nodeMin = decodedNodeBounds[axis];
+                    double nodeMax = decodedNodeBounds[axis + 3];
+                    double scale = (nodeMax - nodeMin) * inverseLevels;
+                    int minOffset = quantizeMin(nodeBounds[boundsOffset + axis], nodeMin, scale, levels);
+                    int maxOffset = quantizeMax(nodeBounds[boundsOffset + axis + 3], nodeMax, scale, levels);
+                    writeQuantized(buffer, slotOffset + axis * valueSize, valueSize, minOffset);
+                    writeQuantized(buffer, slotOffset + (axis + 3) * valueSize, valueSize, maxOffset);
+                    decodedSlotBounds[axis] = nodeMin + minOffset * scale;
+                    decodedSlotBounds[axis + 3] = nodeMax - maxOffset * scale;
+                }
+                int child = children[node * 2 + slot];
+                buffer.putInt(nodeOffset + 12 * valueSize + slot * Integer.BYTES, child);
+                if (child >= 0) {
+                    writeQuantizedNode(buffer, format, child, 2, decodedSlotBounds);
+                }
+            }
+        }
+
+        /**
+         * Finds the largest offset from the node's minimum that doesn't decode above the value.
+         */
+        private static int quantizeMin(double value, double nodeMin, double scale, int levels) {
+            if (!(scale > 0)) {
+                return 0;
+            }
+            int offset = (int) Math.max(0, Math.min(levels, Math.floor((value - nodeMin) / scale)));
+            while (offset > 0 && nodeMin + offset * scale > value) {
+                offset--;
+            }
+            return offset;
+        }
+
+        /**
+         * Finds the largest offset from the node's maximum that doesn't decode below the value.
+         */
+        private static int quantizeMax(double value, double nodeMax, double scale, int levels) {
+            if (!(scale > 0)) {
+                return 0;
+            }
+            int offset = (int) Math.max(0, Math.min(levels, Math.floor((nodeMax - value) / scale)));
+            while (offset > 0 && nodeMax - offset * scale < value) {
+                offset--;
+            }
+            return offset;
+        }
+
+        private static void writeQuantized(ByteBuffer buffer, int offset, int valueSize, int value) {
+            if (valueSize == Short.BYTES) {
+                buffer.putShort(offset, (short) value);
+            } else {
+                buffer.put(offset, (byte) value);
+            }
+        }
+
+        private static void merge(double[] target, double[] source) {
+            for (int i = 0; i < 3; i++) {
+                target[i] = Math.min(target[i], source[i]);
+                target[i + 3] = Math.max(target[i + 3], source[i + 3]);
+            }
+        }
+
+        /**
+         * Partially sorts indices[low..high] so that the element at k is the one a full sort by centroid would put there.
+         */
+        private void select(int low, int high, int k, int axis) {
+            while (high > low) {
+                double pivot = centroids[indices[(low + high) >>> 1] * 3 + axis];
+                int i = low, j = high;
+                while (i <= j) {
+                    while (centroids[indices[i] * 3 + axis] < pivot) {
+                        i++;
+                    }
+                    while (centroids[indices[j] * 3 + axis] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        int swap = indices[i];
+                        indices[i] = indices[j];
+                        indices[j] = swap;
+                        i++;
+                        j--;
+                    }
+                }
+                if (k <= j) {
+                    high = j;
+                } else if (k >= i) {
+                    low = i;
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+}
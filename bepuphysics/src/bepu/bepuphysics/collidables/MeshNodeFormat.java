@@ -0,0 +1,58 @@
+package bepu.bepuphysics.collidables;
+
+/**
+ * Describes how {@link MeshData} stores the bounds of its hierarchy's nodes.
+ */
+public enum MeshNodeFormat {
+    /**
+     * Stores child bounds as doubles. Nodes take 104 bytes, 96 of them bounds.
+     */
+    FULL(0),
+    /**
+     * Stores child bounds as 16 bit offsets within the parent's bounds, rounded outward. Nodes take 32 bytes, and the loosened bounds are
+     * rarely noticeable in queries.
+     */
+    QUANTIZED_16(65535),
+    /**
+     * Stores child bounds as 8 bit offsets within the parent's bounds, rounded outward. Nodes take 20 bytes, but bounds deep in large
+     * meshes can loosen by a few percent of their parent's size, so queries visit more nodes and triangles.
+     */
+    QUANTIZED_8(255);
+
+    private static final MeshNodeFormat[] VALUES = values();
+
+    private final int levels;
+
+    MeshNodeFormat(int levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Gets the largest quantized value a bound can take.
+     *
+     * @return Number of steps a parent's extent is split into, or 0 if bounds aren't quantized.
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Gets the number of formats.
+     *
+     * @return Number of formats.
+     */
+    public static int getCount() {
+        return VALUES.length;
+    }
+
+    /**
+     * Gets the format associated with an ordinal without allocating a copy of the values array.
+     *
+     * @param ordinal Ordinal of the format.
+     *
+     * @return Format with the given ordinal.
+     */
+    public static MeshNodeFormat fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
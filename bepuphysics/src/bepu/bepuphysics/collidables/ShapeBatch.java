@@ -1,6 +1,11 @@
 package bepu.bepuphysics.collidables;
 
+import bepu.bepuutilities.math.BoundingBox;
+import bepu.bepuutilities.math.BoundingSphere;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
 import bepu.bepuutilities.memory.IdPool;
+import bepu.bepuutilities.memory.Vector3Pool;
 
 import java.nio.ByteBuffer;
 
@@ -9,9 +14,35 @@ public abstract class ShapeBatch {
     protected int shapeDataSize;
     protected IdPool idPool;
 
+    //Per slot properties that only change when the shape does: local bounds as minX, minY, minZ, maxX, maxY, maxZ,
+    //the distance from the origin to the furthest point of the shape, and how far rotation can move the shape's surface.
+    private double[] localBounds;
+    private double[] maximumRadii;
+    private double[] angularExpansions;
+    //Number of owners of each slot. Only interning shares a slot between owners, so without it every live slot has one.
+    private int[] referenceCounts;
+
     private int typeId;
     private boolean compound;
 
+    /**
+     * Creates a batch storing shapes of a single type in fixed size slots.
+     *
+     * @param typeId Type id of the shapes in the batch.
+     * @param shapeDataSize Size of a single shape in bytes.
+     * @param initialCapacity Number of shapes to preallocate space for.
+     */
+    protected ShapeBatch(int typeId, int shapeDataSize, int initialCapacity) {
+        this.typeId = typeId;
+        this.shapeDataSize = shapeDataSize;
+        shapesData = ByteBuffer.allocate(Math.max(1, initialCapacity) * shapeDataSize);
+        idPool = new IdPool(Math.max(1, initialCapacity));
+        localBounds = new double[getCapacity() * 6];
+        maximumRadii = new double[getCapacity()];
+        angularExpansions = new double[getCapacity()];
+        referenceCounts = new int[getCapacity()];
+    }
+
     public int getCapacity() {
         return shapesData.capacity() / shapeDataSize;
     }
@@ -50,6 +81,288 @@ public abstract class ShapeBatch {
         this.compound = compound;
     }
 
+    /**
+     * Computes the bounding box of a shape in the batch rotated by the given orientation, relative to the shape's origin.
+     *
+     * @param shapeIndex Index of the shape in the batch.
+     * @param orientation Orientation of the shape.
+     * @param min Minimum of the shape's rotated bounds.
+     * @param max Maximum of the shape's rotated bounds.
+     */
+    public abstract void computeBounds(int shapeIndex, QuaternionDouble orientation, Vector3Double min, Vector3Double max);
+
+    /**
+     * Stores a shape in the batch.
+     *
+     * @param shape Shape to store. Must be of the batch's type.
+     *
+     * @return Index of the shape in the batch.
+     */
+    public int add(IShape shape) {
+        assert shape.getTypeId() == typeId : "Shape type does not match the batch.";
+        int index = idPool.take();
+        ensureCapacity(index + 1);
+        write(index, shape);
+        updateCachedProperties(index);
+        referenceCounts[index] = 1;
+        return index;
+    }
+
+    /**
+     * Stores several shapes in the batch. Ids are taken from the pool in one pass and storage is resized at most once for the whole range.
+     *
+     * @param shapes Array containing the shapes to store. Every shape in the range must be of the batch's type.
+     * @param start Index of the first shape to store.
+     * @param count Number of shapes to store.
+     * @param indices Array receiving the batch index of each stored shape in its first count elements.
+     */
+    public void add(IShape[] shapes, int start, int count, int[] indices) {
+        idPool.take(count, indices);
+        int highestIndex = -1;
+        for (int i = 0; i < count; i++) {
+            highestIndex = Math.max(highestIndex, indices[i]);
+        }
+        ensureCapacity(highestIndex + 1);
+        for (int i = 0; i < count; i++) {
+            IShape shape = shapes[start + i];
+            assert shape.getTypeId() == typeId : "Shape type does not match the batch.";
+            int index = indices[i];
+            write(index, shape);
+            updateCachedProperties(index);
+            referenceCounts[index] = 1;
+        }
+    }
+
+    /**
+     * Replaces the shape stored in a slot and refreshes the slot's cached bounds and radii.
+     *
+     * @param index Index of the slot to overwrite.
+     * @param shape New shape data. Must be of the batch's type.
+     */
+    public void set(int index, IShape shape) {
+        assert shape.getTypeId() == typeId : "Shape type does not match the batch.";
+        write(index, shape);
+        updateCachedProperties(index);
+    }
+
+    /**
+     * Gets the cached bounds of a shape in its local space.
+     *
+     * @param index Index of the shape in the batch.
+     * @param result Box to fill. It can be null.
+     *
+     * @return Local bounds of the shape.
+     */
+    public BoundingBox getLocalBounds(int index, BoundingBox result) {
+        if (result == null) {
+            result = new BoundingBox();
+        }
+        int offset = index * 6;
+        result.min.set(localBounds[offset], localBounds[offset + 1], localBounds[offset + 2]);
+        result.max.set(localBounds[offset + 3], localBounds[offset + 4], localBounds[offset + 5]);
+        return result;
+    }
+
+    /**
+     * Gets the cached bounding sphere of a shape, centered on the shape's origin.
+     *
+     * @param index Index of the shape in the batch.
+     * @param result Sphere to fill. It can be null.
+     *
+     * @return Bounding sphere of the shape.
+     */
+    public BoundingSphere getBoundingSphere(int index, BoundingSphere result) {
+        if (result == null) {
+            return new BoundingSphere(Vector3Double.ZERO, maximumRadii[index]);
+        }
+        result.getCenter().set(0, 0, 0);
+        result.setRadius(maximumRadii[index]);
+        return result;
+    }
+
+    /**
+     * Gets the distance from a shape's origin to its furthest point.
+     *
+     * @param index Index of the shape in the batch.
+     *
+     * @return Maximum radius of the shape.
+     */
+    public double getMaximumRadius(int index) {
+        return maximumRadii[index];
+    }
+
+    /**
+     * Gets the furthest any point of a shape's surface can move when the shape rotates about its origin, which is the difference between
+     * its maximum and minimum radius. Rotation can never expand the shape's bounds by more than this.
+     *
+     * @param index Index of the shape in the batch.
+     *
+     * @return Angular expansion of the shape.
+     */
+    public double getAngularExpansion(int index) {
+        return angularExpansions[index];
+    }
+
+    /**
+     * Computes a shape's bounds at an orientation from its cached local bounds and radius. The local box is rotated as a box and clipped by
+     * the bounding sphere, which is exact for spheres and boxes and conservative for everything else, without touching the shape data.
+     *
+     * @param index Index of the shape in the batch.
+     * @param orientation Orientation of the shape.
+     * @param min Minimum of the shape's rotated bounds.
+     * @param max Maximum of the shape's rotated bounds.
+     */
+    public void computeCachedBounds(int index, QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        double qx = orientation.getX();
+        double qy = orientation.getY();
+        double qz = orientation.getZ();
+        double qw = orientation.getW();
+        double xx = 2 * qx * qx, yy = 2 * qy * qy, zz = 2 * qz * qz;
+        double xy = 2 * qx * qy, xz = 2 * qx * qz, yz = 2 * qy * qz;
+        double wx = 2 * qw * qx, wy = 2 * qw * qy, wz = 2 * qw * qz;
+        double r00 = 1 - yy - zz, r01 = xy - wz, r02 = xz + wy;
+        double r10 = xy + wz, r11 = 1 - xx - zz, r12 = yz - wx;
+        double r20 = xz - wy, r21 = yz + wx, r22 = 1 - xx - yy;
+        int offset = index * 6;
+        double cx = 0.5 * (localBounds[offset] + localBounds[offset + 3]);
+        double cy = 0.5 * (localBounds[offset + 1] + localBounds[offset + 4]);
+        double cz = 0.5 * (localBounds[offset + 2] + localBounds[offset + 5]);
+        double ex = 0.5 * (localBounds[offset + 3] - localBounds[offset]);
+        double ey = 0.5 * (localBounds[offset + 4] - localBounds[offset + 1]);
+        double ez = 0.5 * (localBounds[offset + 5] - localBounds[offset + 2]);
+        double rcx = r00 * cx + r01 * cy + r02 * cz;
+        double rcy = r10 * cx + r11 * cy + r12 * cz;
+        double rcz = r20 * cx + r21 * cy + r22 * cz;
+        double rex = Math.abs(r00) * ex + Math.abs(r01) * ey + Math.abs(r02) * ez;
+        double rey = Math.abs(r10) * ex + Math.abs(r11) * ey + Math.abs(r12) * ez;
+        double rez = Math.abs(r20) * ex + Math.abs(r21) * ey + Math.abs(r22) * ez;
+        double radius = maximumRadii[index];
+        min.set(Math.max(rcx - rex, -radius), Math.max(rcy - rey, -radius), Math.max(rcz - rez, -radius));
+        max.set(Math.min(rcx + rex, radius), Math.min(rcy + rey, radius), Math.min(rcz + rez, radius));
+    }
+
+    /**
+     * Gets the number of owners of a shape. Shapes added while {@link Shapes} is interning can be shared by several owners, and are only
+     * freed when the last of them removes the shape.
+     *
+     * @param index Index of the shape in the batch.
+     *
+     * @return Number of owners of the shape.
+     */
+    public int getReferenceCount(int index) {
+        return referenceCounts[index];
+    }
+
+    void addReference(int index) {
+        referenceCounts[index]++;
+    }
+
+    /**
+     * Drops one owner of a shape.
+     *
+     * @return True if that was the last owner and the shape should be freed.
+     */
+    boolean releaseReference(int index) {
+        assert referenceCounts[index] > 0 : "Shape has no owners left to release.";
+        return --referenceCounts[index] == 0;
+    }
+
+    /**
+     * Hashes the content of a shape, including any data it keeps outside its slot. Shapes with equal content must hash equally.
+     *
+     * @param index Index of the shape in the batch.
+     *
+     * @return Hash of the shape's content.
+     */
+    protected int hashContent(int index) {
+        return shapesData.slice(index * shapeDataSize, shapeDataSize).hashCode();
+    }
+
+    /**
+     * Checks whether two shapes in the batch have identical content, including any data they keep outside their slots.
+     *
+     * @param indexA Index of the first shape.
+     * @param indexB Index of the second shape.
+     *
+     * @return True if the shapes are interchangeable.
+     */
+    protected boolean contentEquals(int indexA, int indexB) {
+        return shapesData.slice(indexA * shapeDataSize, shapeDataSize).equals(shapesData.slice(indexB * shapeDataSize, shapeDataSize));
+    }
+
+    /**
+     * Computes the distance from a shape's origin to its furthest point.
+     *
+     * @param index Index of the shape in the batch.
+     *
+     * @return Maximum radius of the shape.
+     */
+    protected abstract double computeMaximumRadius(int index);
+
+    /**
+     * Computes the distance from a shape's origin to the closest point of its surface, or a lower bound of it. Shapes that cannot cheaply
+     * bound it report zero, which makes the angular expansion as conservative as possible.
+     *
+     * @param index Index of the shape in the batch.
+     *
+     * @return Minimum radius of the shape.
+     */
+    protected double computeMinimumRadius(int index) {
+        return 0;
+    }
+
+    private void updateCachedProperties(int index) {
+        Vector3Double min = Vector3Pool.getInstance().take();
+        Vector3Double max = Vector3Pool.getInstance().take();
+        computeBounds(index, QuaternionDouble.IDENTITY, min, max);
+        int offset = index * 6;
+        localBounds[offset] = min.x;
+        localBounds[offset + 1] = min.y;
+        localBounds[offset + 2] = min.z;
+        localBounds[offset + 3] = max.x;
+        localBounds[offset + 4] = max.y;
+        localBounds[offset + 5] = max.z;
+        Vector3Pool.getInstance().release(min);
+        Vector3Pool.getInstance().release(max);
+        double maximumRadius = computeMaximumRadius(index);
+        maximumRadii[index] = maximumRadius;
+        angularExpansions[index] = Math.max(0, maximumRadius - computeMinimumRadius(index));
+    }
+
+    /**
+     * Writes a shape's data into its slot.
+     *
+     * @param index Index of the slot to write.
+     * @param shape Shape to write. Must be of the batch's type.
+     */
+    protected abstract void write(int index, IShape shape);
+
+    /**
+     * Ensures that the batch can hold shapes up to the given index without resizing.
+     *
+     * @param capacity Number of shapes to preallocate space for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > getCapacity()) {
+            ByteBuffer newData = ByteBuffer.allocate(Math.max(capacity, getCapacity() * 2) * shapeDataSize);
+            newData.put(0, shapesData, 0, shapesData.capacity());
+            shapesData = newData;
+            int newCapacity = getCapacity();
+            double[] newLocalBounds = new double[newCapacity * 6];
+            System.arraycopy(localBounds, 0, newLocalBounds, 0, localBounds.length);
+            localBounds = newLocalBounds;
+            double[] newMaximumRadii = new double[newCapacity];
+            System.arraycopy(maximumRadii, 0, newMaximumRadii, 0, maximumRadii.length);
+            maximumRadii = newMaximumRadii;
+            double[] newAngularExpansions = new double[newCapacity];
+            System.arraycopy(angularExpansions, 0, newAngularExpansions, 0, angularExpansions.length);
+            angularExpansions = newAngularExpansions;
+            int[] newReferenceCounts = new int[newCapacity];
+            System.arraycopy(referenceCounts, 0, newReferenceCounts, 0, referenceCounts.length);
+            referenceCounts = newReferenceCounts;
+        }
+    }
+
     protected abstract void dispose(int index);
     protected abstract void removeAndDisposeChildren(int index, Shapes shapes);
 
@@ -62,6 +375,32 @@ public abstract class ShapeBatch {
         remove(index);
     }
 
+    /**
+     * Removes several shapes from the batch without disposing of their resources. Freed ids are pushed in the given order, so
+     * passing indices in descending order makes later adds refill the lowest slots first.
+     *
+     * @param indices Array containing the indices to remove.
+     * @param start Index of the first index to remove.
+     * @param count Number of indices to remove.
+     */
+    public void remove(int[] indices, int start, int count){
+        idPool.release(indices, start, count);
+    }
+
+    /**
+     * Removes several shapes from the batch and disposes of their resources.
+     *
+     * @param indices Array containing the indices to remove.
+     * @param start Index of the first index to remove.
+     * @param count Number of indices to remove.
+     */
+    public void removeAndDispose(int[] indices, int start, int count){
+        for (int i = start; i < start + count; i++) {
+            dispose(indices[i]);
+        }
+        remove(indices, start, count);
+    }
+
     public void recursivelyRemoveAndDispose(int index, Shapes shapes){
         removeAndDisposeChildren(index, shapes);
         removeAndDispose(index);
@@ -1,10 +1,22 @@
 package bepu.bepuphysics.collidables;
 
+import bepu.bepuutilities.collections.LongIntQuickDictionary;
+
+import java.util.Arrays;
+
 public class Shapes {
     private ShapeBatch[] batches;
     private int registeredTypeSpan;
     private int initialCapacityPerBatch;
 
+    private boolean interning;
+    //Maps a shape type and content hash, packed as type << 32 | hash, to the slot holding the first shape added with that content.
+    private final LongIntQuickDictionary internedShapes = new LongIntQuickDictionary(16);
+
+    //Scratch space for bulk adds and removes.
+    private int[] rangeIndices = new int[16];
+    private long[] rangeShapes = new long[16];
+
     //Note that not every index within the batches list is guaranteed to be filled. For example, if only a cylinder has been added, and a cylinder's type id is 7,
     //then the batches.Count and RegisteredTypeSpan will be 8- but indices 0 through 6 will be null.
     //We don't tend to do any performance sensitive iteration over shape type batches, so this lack of contiguity is fine.
@@ -24,6 +36,228 @@ public class Shapes {
         return batches[typeIndex];
     }
 
+    /**
+     * Gets whether added shapes are interned. While interning, adding a shape whose content matches a shape that was added while interning
+     * returns the existing shape's index and adds a reference to it instead of filling a new slot. Removing an interned shape drops one
+     * reference; the shape is only freed once every reference is removed.
+     * <p>
+     * A compound owns one reference to each of its children, the one the child was added with. When an interned compound turns out to be a
+     * duplicate, the duplicate's child references are released, so every owner of the shared compound can hand its children over
+     * the same way and {@link #recursivelyRemoveAndDispose(TypedIndex)} of the last owner frees them.
+     * <p>
+     * Interned shapes are shared, so writing to one with {@link ShapeBatch#set(int, IShape)} changes it for every owner.
+     *
+     * @return True if added shapes are interned; otherwise false.
+     */
+    public boolean isInterning() {
+        return interning;
+    }
+
+    public Shapes setInterning(boolean interning) {
+        this.interning = interning;
+        return this;
+    }
+
+    /**
+     * Adds a shape, creating the batch for its type if necessary.
+     *
+     * @param shape Shape to add.
+     *
+     * @return Typed index referring to the added shape.
+     */
+    public TypedIndex add(IShape shape) {
+        int typeId = shape.getTypeId();
+        ShapeBatch batch = getOrCreateBatch(shape);
+        int index = batch.add(shape);
+        if (interning) {
+            long key = getInternKey(typeId, batch, index);
+            int existing = internedShapes.get(key, -1);
+            if (existing < 0) {
+                internedShapes.add(key, index);
+            } else if (batch.getReferenceCount(existing) > 0 && batch.contentEquals(existing, index)) {
+                //The duplicate took over the references its children were added with, the same way the existing shape did. Equal content
+                //means equal children, so releasing them drops the duplicate's share without freeing anything the existing shape uses.
+                batch.recursivelyRemoveAndDispose(index, this);
+                batch.addReference(existing);
+                return new TypedIndex(typeId, existing);
+            }
+            //A hash collision between different shapes leaves the new shape as a private, uninterned slot.
+        }
+        return new TypedIndex(typeId, index);
+    }
+
+    /**
+     * Adds several shapes. Consecutive shapes of the same type are stored with a single bulk add into their batch, which takes their ids
+     * together and resizes the batch at most once. While interning, every shape goes through {@link #add(IShape)} instead so that it can be
+     * matched against existing content.
+     *
+     * @param shapes Array containing the shapes to add.
+     * @param start Index of the first shape to add.
+     * @param count Number of shapes to add.
+     * @param results Array receiving the typed index of each added shape in its first count elements.
+     */
+    public void add(IShape[] shapes, int start, int count, TypedIndex[] results) {
+        if (interning) {
+            for (int i = 0; i < count; i++) {
+                results[i] = add(shapes[start + i]);
+            }
+            return;
+        }
+        if (rangeIndices.length < count) {
+            rangeIndices = new int[Math.max(count, rangeIndices.length * 2)];
+        }
+        int runStart = 0;
+        while (runStart < count) {
+            IShape first = shapes[start + runStart];
+            int typeId = first.getTypeId();
+            int runEnd = runStart + 1;
+            while (runEnd < count && shapes[start + runEnd].getTypeId() == typeId) {
+                runEnd++;
+            }
+            int runCount = runEnd - runStart;
+            getOrCreateBatch(first).add(shapes, start + runStart, runCount, rangeIndices);
+            for (int i = 0; i < runCount; i++) {
+                results[runStart + i] = new TypedIndex(typeId, rangeIndices[i]);
+            }
+            runStart = runEnd;
+        }
+    }
+
+    private ShapeBatch getOrCreateBatch(IShape shape) {
+        int typeId = shape.getTypeId();
+        if (typeId >= batches.length) {
+            ShapeBatch[] newBatches = new ShapeBatch[Math.max(typeId + 1, batches.length * 2)];
+            System.arraycopy(batches, 0, newBatches, 0, batches.length);
+            batches = newBatches;
+        }
+        ShapeBatch batch = batches[typeId];
+        if (batch == null) {
+            batch = shape.createShapeBatch(initialCapacityPerBatch, this);
+            batches[typeId] = batch;
+            registeredTypeSpan = Math.max(registeredTypeSpan, typeId + 1);
+        }
+        return batch;
+    }
+
+    /**
+     * Removes a shape from its batch without disposing of any resources it refers to.
+     *
+     * @param shape Shape to remove.
+     */
+    public void remove(TypedIndex shape) {
+        if (release(shape)) {
+            batches[shape.getType()].remove(shape.getIndex());
+        }
+    }
+
+    /**
+     * Removes a shape and disposes of its resources, without touching any child shapes.
+     *
+     * @param shape Shape to remove.
+     */
+    public void removeAndDispose(TypedIndex shape) {
+        if (release(shape)) {
+            batches[shape.getType()].removeAndDispose(shape.getIndex());
+        }
+    }
+
+    /**
+     * Removes a shape along with every child shape it refers to.
+     *
+     * @param shape Shape to remove.
+     */
+    public void recursivelyRemoveAndDispose(TypedIndex shape) {
+        if (release(shape)) {
+            batches[shape.getType()].recursivelyRemoveAndDispose(shape.getIndex(), this);
+        }
+    }
+
+    /**
+     * Removes several shapes from their batches without disposing of any resources they refer to.
+     *
+     * @param shapes Array containing the shapes to remove.
+     * @param start Index of the first shape to remove.
+     * @param count Number of shapes to remove.
+     */
+    public void remove(TypedIndex[] shapes, int start, int count) {
+        removeRange(shapes, start, count, false);
+    }
+
+    /**
+     * Removes several shapes and disposes of their resources, without touching any child shapes.
+     *
+     * @param shapes Array containing the shapes to remove.
+     * @param start Index of the first shape to remove.
+     * @param count Number of shapes to remove.
+     */
+    public void removeAndDispose(TypedIndex[] shapes, int start, int count) {
+        removeRange(shapes, start, count, true);
+    }
+
+    /**
+     * Frees a range of shapes grouped by batch. The freed shapes are sorted and handed back to each batch in descending index order, so the
+     * batch's id pool gives the lowest freed slots out first and later adds keep the occupied slots packed toward the start of the batch.
+     */
+    private void removeRange(TypedIndex[] shapes, int start, int count, boolean dispose) {
+        if (rangeShapes.length < count) {
+            rangeShapes = new long[Math.max(count, rangeShapes.length * 2)];
+        }
+        if (rangeIndices.length < count) {
+            rangeIndices = new int[Math.max(count, rangeIndices.length * 2)];
+        }
+        int freedCount = 0;
+        for (int i = start; i < start + count; i++) {
+            if (release(shapes[i])) {
+                rangeShapes[freedCount++] = shapes[i].getPacked();
+            }
+        }
+        //Packed typed indices order by type first and index second, so sorting groups each batch's shapes into one run.
+        Arrays.sort(rangeShapes, 0, freedCount);
+        int runEnd = freedCount;
+        while (runEnd > 0) {
+            int typeId = getType(rangeShapes[runEnd - 1]);
+            int runCount = 0;
+            while (runEnd - runCount > 0 && getType(rangeShapes[runEnd - runCount - 1]) == typeId) {
+                rangeIndices[runCount] = (int) (rangeShapes[runEnd - runCount - 1] & 0xFFFFFF);
+                runCount++;
+            }
+            if (dispose) {
+                batches[typeId].removeAndDispose(rangeIndices, 0, runCount);
+            } else {
+                batches[typeId].remove(rangeIndices, 0, runCount);
+            }
+            runEnd -= runCount;
+        }
+    }
+
+    private static int getType(long packed) {
+        return (int) ((packed & 0x7F000000) >> 24);
+    }
+
+    /**
+     * Drops a reference to a shape, and forgets its interned content once the last reference is gone.
+     *
+     * @return True if the shape has no references left and should be freed.
+     */
+    private boolean release(TypedIndex shape) {
+        ShapeBatch batch = batches[shape.getType()];
+        int index = shape.getIndex();
+        if (!batch.releaseReference(index)) {
+            return false;
+        }
+        if (internedShapes.getCount() > 0) {
+            long key = getInternKey(shape.getType(), batch, index);
+            if (internedShapes.get(key, -1) == index) {
+                internedShapes.fastRemove(key);
+            }
+        }
+        return true;
+    }
+
+    private static long getInternKey(int typeId, ShapeBatch batch, int index) {
+        return (long) typeId << 32 | (batch.hashContent(index) & 0xFFFFFFFFL);
+    }
+
     public Shapes(int initialCapacityPerBatch) {
         this.initialCapacityPerBatch = initialCapacityPerBatch;
         //This list pretty much will never resize unless something really strange happens, and since batches use virtual calls,
@@ -0,0 +1,49 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Collision shape representing a sphere centered on its origin.
+ */
+public class Sphere implements IConvexShape {
+    public static final int TYPE_ID = 0;
+
+    private double radius;
+
+    public Sphere() {
+    }
+
+    public Sphere(double radius) {
+        this.radius = radius;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    public Sphere setRadius(double radius) {
+        this.radius = radius;
+        return this;
+    }
+
+    @Override
+    public int getTypeId() {
+        return TYPE_ID;
+    }
+
+    @Override
+    public void computeBounds(QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        computeBounds(radius, min, max);
+    }
+
+    static void computeBounds(double radius, Vector3Double min, Vector3Double max) {
+        min.set(-radius, -radius, -radius);
+        max.set(radius, radius, radius);
+    }
+
+    @Override
+    public ShapeBatch createShapeBatch(int initialCapacity, Shapes shapes) {
+        return new SphereBatch(initialCapacity);
+    }
+}
@@ -0,0 +1,40 @@
+package bepu.bepuphysics.collidables;
+
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Stores spheres as a single radius each.
+ */
+public class SphereBatch extends ConvexShapeBatch {
+    public SphereBatch(int initialCapacity) {
+        super(Sphere.TYPE_ID, 1, initialCapacity);
+    }
+
+    public Sphere get(int index, Sphere result) {
+        if (result == null) {
+            result = new Sphere();
+        }
+        return result.setRadius(getParameter(index, 0));
+    }
+
+    @Override
+    protected void write(int index, IShape shape) {
+        setParameter(index, 0, ((Sphere) shape).getRadius());
+    }
+
+    @Override
+    protected double computeMaximumRadius(int index) {
+        return getParameter(index, 0);
+    }
+
+    @Override
+    protected double computeMinimumRadius(int index) {
+        return getParameter(index, 0);
+    }
+
+    @Override
+    public void computeBounds(int shapeIndex, QuaternionDouble orientation, Vector3Double min, Vector3Double max) {
+        Sphere.computeBounds(getParameter(shapeIndex, 0), min, max);
+    }
+}
@@ -0,0 +1,314 @@
+package bepu.bepuphysics.collisiondetection;
+
+import bepu.bepuphysics.trees.IOverlapHandler;
+import bepu.bepuphysics.trees.Tree;
+import bepu.bepuutilities.math.Vector3Double;
+import bepu.bepuutilities.threading.IThreadDispatcher;
+
+/**
+ * Manages the bounding boxes of collidables and finds the pairs that might be in contact.
+ * Moving collidables live in the active tree. Statics and sleeping bodies live in the static tree, which is never refit and is only
+ * tested against the active tree, so its contents cost nothing per frame beyond the queries that actually reach them.
+ * <p>
+ * Refitting keeps the active tree's bounds correct but not its structure, which was chosen for where leaves used to be. Every few frames
+ * the active tree is rebuilt from scratch with {@link Tree#rebuildLinear(IThreadDispatcher)} instead, along with the static tree if leaves
+ * were added to or removed from it since its last rebuild.
+ * <p>
+ * Pairs among active leaves are found by an {@link IBroadPhaseStrategy}. The default tests the active tree against itself;
+ * {@link HashGridBroadPhaseStrategy} suits large numbers of similarly sized objects.
+ * <p>
+ * Every leaf carries a packed {@link CollisionFilter}. Pairs whose filters don't allow a collision, or that an optional
+ * {@link IBroadPhasePairFilter} rejects, are dropped before they are reported.
+ */
+public class BroadPhase {
+    private final Tree activeTree;
+    private final Tree staticTree;
+    private int[] activeLeaves;
+    private int[] staticLeaves;
+    private long[] activeFilters;
+    private long[] staticFilters;
+
+    private IBroadPhaseStrategy strategy = new TreeBroadPhaseStrategy();
+    private IBroadPhasePairFilter pairFilter;
+
+    private int rebuildPeriod = 8;
+    private int framesSinceRebuild;
+    private int rebuiltStaticVersion = -1;
+
+    private IBroadPhaseOverlapHandler overlapHandler;
+    private final IOverlapHandler activeSelfHandler = this::handleActiveOverlap;
+    private final IOverlapHandler activeStaticHandler = this::handleActiveStaticOverlap;
+
+    public Tree getActiveTree() {
+        return activeTree;
+    }
+
+    public Tree getStaticTree() {
+        return staticTree;
+    }
+
+    public IBroadPhaseStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Sets the strategy used to find pairs among active leaves. The strategy is initialized with the leaves already in the broad phase.
+     *
+     * @param strategy Strategy to use.
+     *
+     * @return This broad phase.
+     */
+    public BroadPhase setStrategy(IBroadPhaseStrategy strategy) {
+        this.strategy = strategy;
+        strategy.initialize(this);
+        return this;
+    }
+
+    /**
+     * Gets the number of updates between rebuilds of the trees.
+     *
+     * @return Number of updates between rebuilds, or 0 if the trees are never rebuilt.
+     */
+    public int getRebuildPeriod() {
+        return rebuildPeriod;
+    }
+
+    public BroadPhase setRebuildPeriod(int rebuildPeriod) {
+        this.rebuildPeriod = rebuildPeriod;
+        return this;
+    }
+
+    public IBroadPhasePairFilter getPairFilter() {
+        return pairFilter;
+    }
+
+    /**
+     * Sets a filter that is consulted for every overlapping pair whose collision filters allow it.
+     *
+     * @param pairFilter Filter to use, or null to report every pair allowed by the collision filters.
+     *
+     * @return This broad phase.
+     */
+    public BroadPhase setPairFilter(IBroadPhasePairFilter pairFilter) {
+        this.pairFilter = pairFilter;
+        return this;
+    }
+
+    /**
+     * Gets the packed collidable reference owning an active leaf.
+     *
+     * @param index Index of the leaf in the active tree.
+     *
+     * @return Packed collidable reference of the leaf's owner.
+     */
+    public int getActiveLeaf(int index) {
+        return activeLeaves[index];
+    }
+
+    /**
+     * Gets the packed collidable reference owning a static leaf.
+     *
+     * @param index Index of the leaf in the static tree.
+     *
+     * @return Packed collidable reference of the leaf's owner.
+     */
+    public int getStaticLeaf(int index) {
+        return staticLeaves[index];
+    }
+
+    public long getActiveFilter(int index) {
+        return activeFilters[index];
+    }
+
+    public void setActiveFilter(int index, long filter) {
+        activeFilters[index] = filter;
+    }
+
+    public long getStaticFilter(int index) {
+        return staticFilters[index];
+    }
+
+    public void setStaticFilter(int index, long filter) {
+        staticFilters[index] = filter;
+    }
+
+    public BroadPhase(int initialActiveLeafCapacity, int initialStaticLeafCapacity) {
+        activeTree = new Tree(initialActiveLeafCapacity);
+        staticTree = new Tree(initialStaticLeafCapacity);
+        activeLeaves = new int[Math.max(1, initialActiveLeafCapacity)];
+        staticLeaves = new int[Math.max(1, initialStaticLeafCapacity)];
+        activeFilters = new long[activeLeaves.length];
+        staticFilters = new long[staticLeaves.length];
+    }
+
+    public int addActive(int collidable, Vector3Double min, Vector3Double max) {
+        return addActive(collidable, CollisionFilter.DEFAULT, min, max);
+    }
+
+    public int addActive(int collidable, long filter, Vector3Double min, Vector3Double max) {
+        int index = activeTree.add(min, max);
+        activeLeaves = ensureLeafCapacity(activeLeaves, index + 1);
+        activeFilters = ensureFilterCapacity(activeFilters, index + 1);
+        activeLeaves[index] = collidable;
+        activeFilters[index] = filter;
+        strategy.activeLeafAdded(this, index);
+        return index;
+    }
+
+    public int addStatic(int collidable, Vector3Double min, Vector3Double max) {
+        return addStatic(collidable, CollisionFilter.DEFAULT, min, max);
+    }
+
+    public int addStatic(int collidable, long filter, Vector3Double min, Vector3Double max) {
+        int index = staticTree.add(min, max);
+        staticLeaves = ensureLeafCapacity(staticLeaves, index + 1);
+        staticFilters = ensureFilterCapacity(staticFilters, index + 1);
+        staticLeaves[index] = collidable;
+        staticFilters[index] = filter;
+        return index;
+    }
+
+    /**
+     * Removes a leaf from the active tree. If another leaf was moved into the removed slot, its owner must be told about its new index.
+     *
+     * @param index Index of the leaf to remove.
+     *
+     * @return True if a leaf was moved into the removed index; its owner can be found with {@link #getActiveLeaf(int)}.
+     */
+    public boolean removeActiveAt(int index) {
+        int movedLeafIndex = activeTree.removeAt(index);
+        strategy.activeLeafRemoved(this, index, movedLeafIndex);
+        if (movedLeafIndex >= 0) {
+            activeLeaves[index] = activeLeaves[movedLeafIndex];
+            activeFilters[index] = activeFilters[movedLeafIndex];
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a leaf from the static tree. If another leaf was moved into the removed slot, its owner must be told about its new index.
+     *
+     * @param index Index of the leaf to remove.
+     *
+     * @return True if a leaf was moved into the removed index; its owner can be found with {@link #getStaticLeaf(int)}.
+     */
+    public boolean removeStaticAt(int index) {
+        int movedLeafIndex = staticTree.removeAt(index);
+        if (movedLeafIndex >= 0) {
+            staticLeaves[index] = staticLeaves[movedLeafIndex];
+            staticFilters[index] = staticFilters[movedLeafIndex];
+            return true;
+        }
+        return false;
+    }
+
+    public void updateActiveBounds(int index, Vector3Double min, Vector3Double max) {
+        activeTree.updateBounds(index, min, max);
+    }
+
+    public void getActiveBounds(int index, Vector3Double min, Vector3Double max) {
+        activeTree.getBounds(index, min, max);
+    }
+
+    public void getStaticBounds(int index, Vector3Double min, Vector3Double max) {
+        staticTree.getBounds(index, min, max);
+    }
+
+    /**
+     * Ensures that the active tree can hold at least the given number of leaves.
+     *
+     * @param capacity Number of active leaves to preallocate space for.
+     */
+    public void ensureActiveCapacity(int capacity) {
+        activeTree.ensureCapacity(capacity);
+        activeLeaves = ensureLeafCapacity(activeLeaves, capacity);
+        activeFilters = ensureFilterCapacity(activeFilters, capacity);
+    }
+
+    /**
+     * Ensures that the static tree can hold at least the given number of leaves.
+     *
+     * @param capacity Number of static leaves to preallocate space for.
+     */
+    public void ensureStaticCapacity(int capacity) {
+        staticTree.ensureCapacity(capacity);
+        staticLeaves = ensureLeafCapacity(staticLeaves, capacity);
+        staticFilters = ensureFilterCapacity(staticFilters, capacity);
+    }
+
+    /**
+     * Refits or rebuilds the active tree to match the latest leaf bounds and lets the strategy catch up with them.
+     */
+    public void update() {
+        update(null);
+    }
+
+    /**
+     * Refits or rebuilds the active tree to match the latest leaf bounds and lets the strategy catch up with them.
+     *
+     * @param dispatcher Dispatcher to sort leaves across during rebuilds. If null, the calling thread does all of the work.
+     */
+    public void update(IThreadDispatcher dispatcher) {
+        if (rebuildPeriod > 0 && ++framesSinceRebuild >= rebuildPeriod) {
+            framesSinceRebuild = 0;
+            //Rebuilds read the leaf bounds directly, so no refit is needed.
+            activeTree.rebuildLinear(dispatcher);
+            if (staticTree.getVersion() != rebuiltStaticVersion) {
+                staticTree.rebuildLinear(dispatcher);
+                rebuiltStaticVersion = staticTree.getVersion();
+            }
+        } else {
+            activeTree.refit();
+        }
+        strategy.update(this);
+    }
+
+    /**
+     * Reports every overlap among active leaves and between active and static leaves that the filters allow.
+     *
+     * @param handler Handler to report overlapping collidable pairs to.
+     */
+    public void getOverlaps(IBroadPhaseOverlapHandler handler) {
+        overlapHandler = handler;
+        strategy.getActiveOverlaps(this, activeSelfHandler);
+        activeTree.getOverlaps(staticTree, activeStaticHandler);
+        overlapHandler = null;
+    }
+
+    private void handleActiveOverlap(int a, int b) {
+        if (CollisionFilter.allows(activeFilters[a], activeFilters[b])) {
+            report(activeLeaves[a], activeLeaves[b]);
+        }
+    }
+
+    private void handleActiveStaticOverlap(int a, int b) {
+        if (CollisionFilter.allows(activeFilters[a], staticFilters[b])) {
+            report(activeLeaves[a], staticLeaves[b]);
+        }
+    }
+
+    private void report(int collidableA, int collidableB) {
+        if (pairFilter == null || pairFilter.allowPair(collidableA, collidableB)) {
+            overlapHandler.handle(collidableA, collidableB);
+        }
+    }
+
+    private static long[] ensureFilterCapacity(long[] filters, int capacity) {
+        if (capacity <= filters.length) {
+            return filters;
+        }
+        long[] newFilters = new long[Math.max(capacity, filters.length * 2)];
+        System.arraycopy(filters, 0, newFilters, 0, filters.length);
+        return newFilters;
+    }
+
+    private static int[] ensureLeafCapacity(int[] leaves, int capacity) {
+        if (capacity <= leaves.length) {
+            return leaves;
+        }
+        int[] newLeaves = new int[Math.max(capacity, leaves.length * 2)];
+        System.arraycopy(leaves, 0, newLeaves, 0, leaves.length);
+        return newLeaves;
+    }
+}
@@ -0,0 +1,55 @@
+package bepu.bepuphysics.collisiondetection;
+
+import bepu.bepuphysics.collidables.CollidableReference;
+
+/**
+ * Packs two collidable references into a single long so that pairs can be used as primitive keys.
+ * The references are ordered so that a pair maps to the same key no matter which order its collidables were reported in.
+ */
+public final class CollidablePair {
+    private CollidablePair() {
+    }
+
+    /**
+     * Creates a packed pair.
+     *
+     * @param collidableA Packed reference to the first collidable.
+     * @param collidableB Packed reference to the second collidable.
+     *
+     * @return Packed pair.
+     */
+    public static long create(int collidableA, int collidableB) {
+        if (Integer.compareUnsigned(collidableA, collidableB) > 0) {
+            int temp = collidableA;
+            collidableA = collidableB;
+            collidableB = temp;
+        }
+        return (long) collidableA << 32 | (collidableB & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the first collidable of a packed pair.
+     *
+     * @param pair Packed pair.
+     *
+     * @return Packed reference to the first collidable.
+     */
+    public static int getA(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    /**
+     * Gets the second collidable of a packed pair.
+     *
+     * @param pair Packed pair.
+     *
+     * @return Packed reference to the second collidable.
+     */
+    public static int getB(long pair) {
+        return (int) pair;
+    }
+
+    public static String toString(long pair) {
+        return "<" + CollidableReference.toString(getA(pair)) + ", " + CollidableReference.toString(getB(pair)) + ">";
+    }
+}
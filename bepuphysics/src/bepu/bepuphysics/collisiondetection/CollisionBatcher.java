@@ -0,0 +1,202 @@
+package bepu.bepuphysics.collisiondetection;
+
+import bepu.bepuphysics.collidables.Box;
+import bepu.bepuphysics.collidables.Capsule;
+import bepu.bepuphysics.collidables.ConvexShapeBatch;
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuphysics.collidables.ShapeBatch;
+import bepu.bepuphysics.collidables.Shapes;
+import bepu.bepuphysics.collidables.Sphere;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuphysics.collisiondetection.collisiontasks.BoxPairTester;
+import bepu.bepuphysics.collisiondetection.collisiontasks.CapsuleBoxTester;
+import bepu.bepuphysics.collisiondetection.collisiontasks.CapsulePairTester;
+import bepu.bepuphysics.collisiondetection.collisiontasks.ConvexManifoldBundle;
+import bepu.bepuphysics.collisiondetection.collisiontasks.ConvexPairBundle;
+import bepu.bepuphysics.collisiondetection.collisiontasks.IPairTester;
+import bepu.bepuphysics.collisiondetection.collisiontasks.SphereBoxTester;
+import bepu.bepuphysics.collisiondetection.collisiontasks.SpherePairTester;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Accumulates convex pairs into per type pair bundles and runs the matching tester once a bundle fills up, so that contact generation costs
+ * one dispatch per {@link ConvexPairBundle#WIDTH} pairs instead of one per pair.
+ * <p>
+ * Pairs are stored with the lower type id as A; pairs added the other way around are swapped on the way in and their manifolds are
+ * flipped back before they are reported.
+ * <p>
+ * A batcher is not thread safe. Each worker should use its own.
+ */
+public class CollisionBatcher {
+    private final Shapes shapes;
+    private final ICollisionCallbacks callbacks;
+    private final ConvexManifoldBundle manifolds = new ConvexManifoldBundle();
+
+    private int typeCount;
+    //Indexed by typeA * typeCount + typeB with typeA <= typeB.
+    private IPairTester[] testers = new IPairTester[0];
+    private TypeBatch[] batches = new TypeBatch[0];
+
+    /**
+     * Creates a batcher with testers registered for every pair of spheres, capsules and boxes.
+     *
+     * @param shapes Shapes referred to by the pairs.
+     * @param callbacks Callbacks receiving the manifolds.
+     */
+    public CollisionBatcher(Shapes shapes, ICollisionCallbacks callbacks) {
+        this.shapes = shapes;
+        this.callbacks = callbacks;
+        registerTester(Sphere.TYPE_ID, Sphere.TYPE_ID, new SpherePairTester());
+        registerTester(Sphere.TYPE_ID, Box.TYPE_ID, new SphereBoxTester());
+        registerTester(Capsule.TYPE_ID, Capsule.TYPE_ID, new CapsulePairTester());
+        registerTester(Capsule.TYPE_ID, Box.TYPE_ID, new CapsuleBoxTester());
+        registerTester(Box.TYPE_ID, Box.TYPE_ID, new BoxPairTester());
+    }
+
+    /**
+     * Registers the tester used for a pair of shape types.
+     *
+     * @param typeA Type id of the shape the tester treats as A. Must not be greater than typeB.
+     * @param typeB Type id of the shape the tester treats as B.
+     * @param tester Tester for the type pair.
+     */
+    public void registerTester(int typeA, int typeB, IPairTester tester) {
+        assert typeA <= typeB : "Testers are registered with the lower type id as A.";
+        if (typeB >= typeCount) {
+            int newTypeCount = typeB + 1;
+            IPairTester[] newTesters = new IPairTester[newTypeCount * newTypeCount];
+            TypeBatch[] newBatches = new TypeBatch[newTypeCount * newTypeCount];
+            for (int a = 0; a < typeCount; a++) {
+                System.arraycopy(testers, a * typeCount, newTesters, a * newTypeCount, typeCount);
+                System.arraycopy(batches, a * typeCount, newBatches, a * newTypeCount, typeCount);
+            }
+            testers = newTesters;
+            batches = newBatches;
+            typeCount = newTypeCount;
+        }
+        testers[typeA * typeCount + typeB] = tester;
+    }
+
+    /**
+     * Gets the tester registered for a pair of shape types.
+     *
+     * @param typeA Type id of the shape the tester treats as A. Must not be greater than typeB.
+     * @param typeB Type id of the shape the tester treats as B.
+     *
+     * @return Tester for the type pair, or null if none is registered.
+     */
+    public IPairTester getTester(int typeA, int typeB) {
+        assert typeA <= typeB : "Testers are registered with the lower type id as A.";
+        return typeB < typeCount ? testers[typeA * typeCount + typeB] : null;
+    }
+
+    /**
+     * Queues a pair for testing. Full bundles are tested immediately; call {@link #flush()} to test the rest.
+     *
+     * @param pairId Id reported back with the pair's manifold.
+     * @param shapeA Shape of the first collidable.
+     * @param poseA Pose of the first collidable.
+     * @param shapeB Shape of the second collidable.
+     * @param poseB Pose of the second collidable.
+     * @param speculativeMargin Distance within which separated contacts are still generated.
+     *
+     * @return True if the pair was queued, false if no tester handles its shape types.
+     */
+    public boolean add(int pairId, TypedIndex shapeA, RigidPose poseA, TypedIndex shapeB, RigidPose poseB, double speculativeMargin) {
+        int typeA = shapeA.getType();
+        int typeB = shapeB.getType();
+        boolean flip = typeA > typeB;
+        if (flip) {
+            TypedIndex shape = shapeA;
+            shapeA = shapeB;
+            shapeB = shape;
+            RigidPose pose = poseA;
+            poseA = poseB;
+            poseB = pose;
+            typeA = shapeA.getType();
+            typeB = shapeB.getType();
+        }
+        if (typeB >= typeCount) {
+            return false;
+        }
+        int batchIndex = typeA * typeCount + typeB;
+        IPairTester tester = testers[batchIndex];
+        ShapeBatch shapeBatchA = shapes.get(typeA);
+        ShapeBatch shapeBatchB = shapes.get(typeB);
+        if (tester == null || !(shapeBatchA instanceof ConvexShapeBatch convexA) || !(shapeBatchB instanceof ConvexShapeBatch convexB)) {
+            return false;
+        }
+        TypeBatch batch = batches[batchIndex];
+        if (batch == null) {
+            batch = new TypeBatch(tester);
+            batches[batchIndex] = batch;
+        }
+
+        int lane = batch.count;
+        ConvexPairBundle bundle = batch.bundle;
+        Vector3Double positionA = poseA.getPosition();
+        Vector3Double positionB = poseB.getPosition();
+        bundle.offsetBX[lane] = positionB.x - positionA.x;
+        bundle.offsetBY[lane] = positionB.y - positionA.y;
+        bundle.offsetBZ[lane] = positionB.z - positionA.z;
+        QuaternionDouble orientationA = poseA.getOrientation();
+        bundle.orientationAX[lane] = orientationA.getX();
+        bundle.orientationAY[lane] = orientationA.getY();
+        bundle.orientationAZ[lane] = orientationA.getZ();
+        bundle.orientationAW[lane] = orientationA.getW();
+        QuaternionDouble orientationB = poseB.getOrientation();
+        bundle.orientationBX[lane] = orientationB.getX();
+        bundle.orientationBY[lane] = orientationB.getY();
+        bundle.orientationBZ[lane] = orientationB.getZ();
+        bundle.orientationBW[lane] = orientationB.getW();
+        convexA.gather(shapeA.getIndex(), bundle.shapeA, lane, ConvexPairBundle.WIDTH);
+        convexB.gather(shapeB.getIndex(), bundle.shapeB, lane, ConvexPairBundle.WIDTH);
+        bundle.speculativeMargin[lane] = speculativeMargin;
+        batch.pairIds[lane] = pairId;
+        batch.flipped[lane] = flip;
+        if (++batch.count == ConvexPairBundle.WIDTH) {
+            execute(batch);
+        }
+        return true;
+    }
+
+    /**
+     * Tests every partially filled bundle.
+     */
+    public void flush() {
+        for (TypeBatch batch : batches) {
+            if (batch != null && batch.count > 0) {
+                execute(batch);
+            }
+        }
+    }
+
+    private void execute(TypeBatch batch) {
+        int count = batch.count;
+        for (int i = 0; i < count; i++) {
+            manifolds.contactCount[i] = 0;
+        }
+        batch.tester.test(batch.bundle, count, manifolds);
+        ConvexPairBundle bundle = batch.bundle;
+        for (int i = 0; i < count; i++) {
+            if (batch.flipped[i]) {
+                manifolds.flip(i, bundle.offsetBX[i], bundle.offsetBY[i], bundle.offsetBZ[i]);
+            }
+        }
+        callbacks.onManifolds(batch.pairIds, manifolds, count);
+        batch.count = 0;
+    }
+
+    private static final class TypeBatch {
+        final IPairTester tester;
+        final ConvexPairBundle bundle = new ConvexPairBundle();
+        final int[] pairIds = new int[ConvexPairBundle.WIDTH];
+        final boolean[] flipped = new boolean[ConvexPairBundle.WIDTH];
+        int count;
+
+        TypeBatch(IPairTester tester) {
+            this.tester = tester;
+        }
+    }
+}
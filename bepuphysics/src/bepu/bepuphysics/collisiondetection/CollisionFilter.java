@@ -0,0 +1,47 @@
+package bepu.bepuphysics.collisiondetection;
+
+/**
+ * Packs a collidable's collision groups and collision mask into a single long so that filters can live in primitive arrays next to the
+ * broad phase leaves. Two collidables may collide only if each one's groups intersect the other's mask.
+ */
+public final class CollisionFilter {
+    /**
+     * Filter of collidables that belong to the first group and collide with every group.
+     */
+    public static final long DEFAULT = create(1, -1);
+
+    private CollisionFilter() {
+    }
+
+    /**
+     * Creates a packed filter.
+     *
+     * @param groups Bits of the groups the collidable belongs to.
+     * @param mask Bits of the groups the collidable may collide with.
+     *
+     * @return Packed filter.
+     */
+    public static long create(int groups, int mask) {
+        return (long) groups << 32 | (mask & 0xFFFFFFFFL);
+    }
+
+    public static int getGroups(long filter) {
+        return (int) (filter >>> 32);
+    }
+
+    public static int getMask(long filter) {
+        return (int) filter;
+    }
+
+    /**
+     * Checks whether two filters allow their collidables to collide.
+     *
+     * @param filterA Packed filter of the first collidable.
+     * @param filterB Packed filter of the second collidable.
+     *
+     * @return True if each collidable's groups intersect the other's mask; otherwise false.
+     */
+    public static boolean allows(long filterA, long filterB) {
+        return (getGroups(filterA) & getMask(filterB)) != 0 && (getGroups(filterB) & getMask(filterA)) != 0;
+    }
+}
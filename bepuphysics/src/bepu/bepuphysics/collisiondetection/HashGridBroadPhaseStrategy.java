@@ -0,0 +1,306 @@
+package bepu.bepuphysics.collisiondetection;
+
+import bepu.bepuphysics.trees.IOverlapHandler;
+import bepu.bepuutilities.collections.LongIntQuickDictionary;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Finds active pairs with a uniform spatial hash. Every active leaf is listed in each grid cell its bounds touch, and only leaves sharing a
+ * cell are tested against each other. For many objects of similar size, such as debris or crowds, this avoids the tree traversal entirely.
+ * <p>
+ * Occupied cells live in a primitive open addressing table keyed by the cell's packed integer coordinates. Each cell holds a linked list of
+ * entries. Leaves are only moved between cells when their bounds cross into a different range of cells, so slow objects cost a bounds
+ * copy per frame. A pair of leaves sharing several cells is reported only from the first cell they share, so no pair is reported twice.
+ * <p>
+ * The cell size should be around the size of a typical object. Leaves covering more than {@link #MAXIMUM_CELLS_PER_LEAF} cells are kept
+ * out of the grid and tested against every other leaf, which stays cheap as long as such leaves are rare.
+ */
+public class HashGridBroadPhaseStrategy implements IBroadPhaseStrategy {
+    public static final int MAXIMUM_CELLS_PER_LEAF = 64;
+
+    //Cell coordinates are packed as three 21 bit fields. Coordinates outside the representable range are clamped to its edges, which only
+    //makes far away objects share cells more than they should.
+    private static final int COORDINATE_BITS = 21;
+    private static final int COORDINATE_MASK = (1 << COORDINATE_BITS) - 1;
+    private static final int COORDINATE_LIMIT = 1 << (COORDINATE_BITS - 1);
+
+    private final double cellSize;
+    private final double inverseCellSize;
+
+    //Maps packed cell coordinates to the first entry of the cell's list.
+    private final LongIntQuickDictionary cells = new LongIntQuickDictionary(256);
+    private int[] entryLeaves = new int[256];
+    private int[] entryNext = new int[256];
+    private int entryCount;
+    private int freeEntry = -1;
+
+    //Per leaf minimum and maximum cell coordinates as minX, minY, minZ, maxX, maxY, maxZ.
+    private int[] leafCells = new int[16 * 6];
+    private double[] leafBounds = new double[16 * 6];
+    private boolean[] leafOversized = new boolean[16];
+    private int leafCount;
+
+    private final int[] newCells = new int[6];
+    private final Vector3Double min = new Vector3Double();
+    private final Vector3Double max = new Vector3Double();
+
+    /**
+     * Creates a hash grid strategy.
+     *
+     * @param cellSize Width of a grid cell along every axis. Must be positive.
+     */
+    public HashGridBroadPhaseStrategy(double cellSize) {
+        assert cellSize > 0 : "Cells need a positive size.";
+        this.cellSize = cellSize;
+        this.inverseCellSize = 1 / cellSize;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Gets the number of grid cells containing at least one leaf.
+     *
+     * @return Number of occupied cells.
+     */
+    public int getOccupiedCellCount() {
+        return cells.getCount();
+    }
+
+    @Override
+    public void initialize(BroadPhase broadPhase) {
+        cells.fastClear();
+        entryCount = 0;
+        freeEntry = -1;
+        leafCount = 0;
+        int count = broadPhase.getActiveTree().getLeafCount();
+        for (int i = 0; i < count; i++) {
+            activeLeafAdded(broadPhase, i);
+        }
+    }
+
+    @Override
+    public void activeLeafAdded(BroadPhase broadPhase, int index) {
+        assert index == leafCount : "Active leaves are always appended.";
+        if (leafCount == leafOversized.length) {
+            resizeLeaves(leafCount * 2);
+        }
+        leafCount++;
+        readBounds(broadPhase, index);
+        computeCells(index, newCells);
+        System.arraycopy(newCells, 0, leafCells, index * 6, 6);
+        insert(index);
+    }
+
+    @Override
+    public void activeLeafRemoved(BroadPhase broadPhase, int index, int movedLeafIndex) {
+        remove(index);
+        if (movedLeafIndex >= 0) {
+            relabel(movedLeafIndex, index);
+            System.arraycopy(leafCells, movedLeafIndex * 6, leafCells, index * 6, 6);
+            System.arraycopy(leafBounds, movedLeafIndex * 6, leafBounds, index * 6, 6);
+            leafOversized[index] = leafOversized[movedLeafIndex];
+        }
+        leafCount--;
+    }
+
+    @Override
+    public void update(BroadPhase broadPhase) {
+        for (int i = 0; i < leafCount; i++) {
+            readBounds(broadPhase, i);
+            computeCells(i, newCells);
+            int offset = i * 6;
+            if (newCells[0] != leafCells[offset] || newCells[1] != leafCells[offset + 1] || newCells[2] != leafCells[offset + 2] ||
+                    newCells[3] != leafCells[offset + 3] || newCells[4] != leafCells[offset + 4] || newCells[5] != leafCells[offset + 5]) {
+                remove(i);
+                System.arraycopy(newCells, 0, leafCells, offset, 6);
+                insert(i);
+            }
+        }
+    }
+
+    @Override
+    public void getActiveOverlaps(BroadPhase broadPhase, IOverlapHandler handler) {
+        long[] keys = cells.getKeyArray();
+        int[] heads = cells.getValueArray();
+        int cellCount = cells.getCount();
+        for (int cell = 0; cell < cellCount; cell++) {
+            long key = keys[cell];
+            for (int a = heads[cell]; a >= 0; a = entryNext[a]) {
+                int leafA = entryLeaves[a];
+                for (int b = entryNext[a]; b >= 0; b = entryNext[b]) {
+                    int leafB = entryLeaves[b];
+                    if (getFirstSharedCell(leafA, leafB) == key && overlaps(leafA, leafB)) {
+                        handler.handle(leafA, leafB);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < leafCount; i++) {
+            if (leafOversized[i]) {
+                for (int j = 0; j < leafCount; j++) {
+                    //Pairs of two oversized leaves are reported by the lower index.
+                    if (j != i && !(leafOversized[j] && j < i) && overlaps(i, j)) {
+                        handler.handle(i, j);
+                    }
+                }
+            }
+        }
+    }
+
+    private void readBounds(BroadPhase broadPhase, int leafIndex) {
+        broadPhase.getActiveBounds(leafIndex, min, max);
+        int offset = leafIndex * 6;
+        leafBounds[offset] = min.x;
+        leafBounds[offset + 1] = min.y;
+        leafBounds[offset + 2] = min.z;
+        leafBounds[offset + 3] = max.x;
+        leafBounds[offset + 4] = max.y;
+        leafBounds[offset + 5] = max.z;
+    }
+
+    private void computeCells(int leafIndex, int[] result) {
+        int offset = leafIndex * 6;
+        for (int i = 0; i < 6; i++) {
+            result[i] = toCell(leafBounds[offset + i]);
+        }
+    }
+
+    private int toCell(double coordinate) {
+        return (int) Math.max(-COORDINATE_LIMIT, Math.min(COORDINATE_LIMIT - 1, Math.floor(coordinate * inverseCellSize)));
+    }
+
+    private static long pack(int x, int y, int z) {
+        return (long) (x & COORDINATE_MASK) << (2 * COORDINATE_BITS) | (long) (y & COORDINATE_MASK) << COORDINATE_BITS | (z & COORDINATE_MASK);
+    }
+
+    /**
+     * Gets the packed coordinates of the lowest cell that both leaves' cell ranges contain.
+     */
+    private long getFirstSharedCell(int leafA, int leafB) {
+        int offsetA = leafA * 6;
+        int offsetB = leafB * 6;
+        return pack(Math.max(leafCells[offsetA], leafCells[offsetB]),
+                Math.max(leafCells[offsetA + 1], leafCells[offsetB + 1]),
+                Math.max(leafCells[offsetA + 2], leafCells[offsetB + 2]));
+    }
+
+    private boolean overlaps(int leafA, int leafB) {
+        int a = leafA * 6;
+        int b = leafB * 6;
+        return leafBounds[a] <= leafBounds[b + 3] && leafBounds[a + 3] >= leafBounds[b] &&
+                leafBounds[a + 1] <= leafBounds[b + 4] && leafBounds[a + 4] >= leafBounds[b + 1] &&
+                leafBounds[a + 2] <= leafBounds[b + 5] && leafBounds[a + 5] >= leafBounds[b + 2];
+    }
+
+    private void insert(int leafIndex) {
+        int offset = leafIndex * 6;
+        long cellCount = (long) (leafCells[offset + 3] - leafCells[offset] + 1) *
+                (leafCells[offset + 4] - leafCells[offset + 1] + 1) * (leafCells[offset + 5] - leafCells[offset + 2] + 1);
+        leafOversized[leafIndex] = cellCount > MAXIMUM_CELLS_PER_LEAF;
+        if (leafOversized[leafIndex]) {
+            return;
+        }
+        for (int x = leafCells[offset]; x <= leafCells[offset + 3]; x++) {
+            for (int y = leafCells[offset + 1]; y <= leafCells[offset + 4]; y++) {
+                for (int z = leafCells[offset + 2]; z <= leafCells[offset + 5]; z++) {
+                    long key = pack(x, y, z);
+                    int entry = allocateEntry(leafIndex);
+                    int cell = cells.indexOf(key);
+                    if (cell < 0) {
+                        entryNext[entry] = -1;
+                        cells.add(key, entry);
+                    } else {
+                        entryNext[entry] = cells.getValue(cell);
+                        cells.setValue(cell, entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private void remove(int leafIndex) {
+        if (leafOversized[leafIndex]) {
+            return;
+        }
+        int offset = leafIndex * 6;
+        for (int x = leafCells[offset]; x <= leafCells[offset + 3]; x++) {
+            for (int y = leafCells[offset + 1]; y <= leafCells[offset + 4]; y++) {
+                for (int z = leafCells[offset + 2]; z <= leafCells[offset + 5]; z++) {
+                    long key = pack(x, y, z);
+                    int cell = cells.indexOf(key);
+                    assert cell >= 0 : "Every cell in a leaf's range must list the leaf.";
+                    int previous = -1;
+                    int entry = cells.getValue(cell);
+                    while (entryLeaves[entry] != leafIndex) {
+                        previous = entry;
+                        entry = entryNext[entry];
+                    }
+                    if (previous >= 0) {
+                        entryNext[previous] = entryNext[entry];
+                    } else if (entryNext[entry] >= 0) {
+                        cells.setValue(cell, entryNext[entry]);
+                    } else {
+                        cells.fastRemove(key);
+                    }
+                    entryNext[entry] = freeEntry;
+                    freeEntry = entry;
+                }
+            }
+        }
+    }
+
+    /**
+     * Points every entry of a leaf at a new leaf index.
+     */
+    private void relabel(int leafIndex, int newLeafIndex) {
+        if (leafOversized[leafIndex]) {
+            return;
+        }
+        int offset = leafIndex * 6;
+        for (int x = leafCells[offset]; x <= leafCells[offset + 3]; x++) {
+            for (int y = leafCells[offset + 1]; y <= leafCells[offset + 4]; y++) {
+                for (int z = leafCells[offset + 2]; z <= leafCells[offset + 5]; z++) {
+                    int entry = cells.get(pack(x, y, z), -1);
+                    while (entryLeaves[entry] != leafIndex) {
+                        entry = entryNext[entry];
+                    }
+                    entryLeaves[entry] = newLeafIndex;
+                }
+            }
+        }
+    }
+
+    private int allocateEntry(int leafIndex) {
+        int entry;
+        if (freeEntry >= 0) {
+            entry = freeEntry;
+            freeEntry = entryNext[entry];
+        } else {
+            if (entryCount == entryLeaves.length) {
+                int[] newEntryLeaves = new int[entryCount * 2];
+                System.arraycopy(entryLeaves, 0, newEntryLeaves, 0, entryCount);
+                entryLeaves = newEntryLeaves;
+                int[] newEntryNext = new int[entryCount * 2];
+                System.arraycopy(entryNext, 0, newEntryNext, 0, entryCount);
+                entryNext = newEntryNext;
+            }
+            entry = entryCount++;
+        }
+        entryLeaves[entry] = leafIndex;
+        return entry;
+    }
+
+    private void resizeLeaves(int capacity) {
+        int[] newLeafCells = new int[capacity * 6];
+        System.arraycopy(leafCells, 0, newLeafCells, 0, leafCount * 6);
+        leafCells = newLeafCells;
+        double[] newLeafBounds = new double[capacity * 6];
+        System.arraycopy(leafBounds, 0, newLeafBounds, 0, leafCount * 6);
+        leafBounds = newLeafBounds;
+        boolean[] newLeafOversized = new boolean[capacity];
+        System.arraycopy(leafOversized, 0, newLeafOversized, 0, leafCount);
+        leafOversized = newLeafOversized;
+    }
+}
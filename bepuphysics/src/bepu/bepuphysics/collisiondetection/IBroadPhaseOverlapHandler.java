@@ -0,0 +1,14 @@
+package bepu.bepuphysics.collisiondetection;
+
+/**
+ * Receives pairs of collidables whose bounding boxes overlap in the broad phase.
+ */
+public interface IBroadPhaseOverlapHandler {
+    /**
+     * Handles a pair of overlapping collidables.
+     *
+     * @param collidableA Packed reference to the first collidable. See {@link bepu.bepuphysics.collidables.CollidableReference}.
+     * @param collidableB Packed reference to the second collidable. See {@link bepu.bepuphysics.collidables.CollidableReference}.
+     */
+    void handle(int collidableA, int collidableB);
+}
@@ -0,0 +1,17 @@
+package bepu.bepuphysics.collisiondetection;
+
+/**
+ * Decides whether a pair of collidables that overlap in the broad phase and pass their {@link CollisionFilter collision filters} should be
+ * reported. Rejected pairs never reach the pair cache or the narrow phase.
+ */
+public interface IBroadPhasePairFilter {
+    /**
+     * Checks whether a pair should be reported.
+     *
+     * @param collidableA Packed reference to the first collidable. See {@link bepu.bepuphysics.collidables.CollidableReference}.
+     * @param collidableB Packed reference to the second collidable. See {@link bepu.bepuphysics.collidables.CollidableReference}.
+     *
+     * @return True to report the pair; false to discard it.
+     */
+    boolean allowPair(int collidableA, int collidableB);
+}
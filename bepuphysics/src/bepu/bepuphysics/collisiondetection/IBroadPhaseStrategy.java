@@ -0,0 +1,49 @@
+package bepu.bepuphysics.collisiondetection;
+
+import bepu.bepuphysics.trees.IOverlapHandler;
+
+/**
+ * Finds overlapping pairs among the active leaves of a {@link BroadPhase}. The broad phase always keeps its leaves and their bounds in
+ * its trees; a strategy only decides how pairs between active leaves are found, and may keep its own acceleration structure in sync with
+ * the active leaves through the notifications below.
+ */
+public interface IBroadPhaseStrategy {
+    /**
+     * Called when the strategy is assigned to a broad phase, which may already contain leaves.
+     *
+     * @param broadPhase Broad phase using the strategy.
+     */
+    void initialize(BroadPhase broadPhase);
+
+    /**
+     * Called after a leaf was added to the active tree.
+     *
+     * @param broadPhase Broad phase using the strategy.
+     * @param index Index of the new leaf.
+     */
+    void activeLeafAdded(BroadPhase broadPhase, int index);
+
+    /**
+     * Called after a leaf was removed from the active tree.
+     *
+     * @param broadPhase Broad phase using the strategy.
+     * @param index Index of the removed leaf.
+     * @param movedLeafIndex Former index of the leaf that was moved into the removed index, or -1 if no leaf was moved.
+     */
+    void activeLeafRemoved(BroadPhase broadPhase, int index, int movedLeafIndex);
+
+    /**
+     * Called once per frame after the active leaves' bounds were updated and the active tree was refit.
+     *
+     * @param broadPhase Broad phase using the strategy.
+     */
+    void update(BroadPhase broadPhase);
+
+    /**
+     * Reports every overlapping pair of active leaves exactly once.
+     *
+     * @param broadPhase Broad phase using the strategy.
+     * @param handler Handler to report pairs of active leaf indices to.
+     */
+    void getActiveOverlaps(BroadPhase broadPhase, IOverlapHandler handler);
+}
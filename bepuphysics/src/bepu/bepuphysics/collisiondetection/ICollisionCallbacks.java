@@ -0,0 +1,18 @@
+package bepu.bepuphysics.collisiondetection;
+
+import bepu.bepuphysics.collisiondetection.collisiontasks.ConvexManifoldBundle;
+
+/**
+ * Receives the manifolds produced by a {@link CollisionBatcher}.
+ */
+public interface ICollisionCallbacks {
+    /**
+     * Called when a bundle of pairs has been tested. Manifolds are expressed in the order the pairs were added: normals point from the
+     * pair's B toward its A, and contact offsets are measured from A's position.
+     *
+     * @param pairIds Ids the pairs were added with, one per lane.
+     * @param manifolds Manifolds of the pairs, one per lane.
+     * @param count Number of filled lanes.
+     */
+    void onManifolds(int[] pairIds, ConvexManifoldBundle manifolds, int count);
+}
@@ -0,0 +1,16 @@
+package bepu.bepuphysics.collisiondetection;
+
+/**
+ * Decides what happens to pairs in the pair cache that were not seen during the last frame.
+ */
+public interface IStalePairHandler {
+    /**
+     * Handles a stale pair. Any resources owned by the pair, such as its constraint, should be released if the pair is removed.
+     *
+     * @param pair Packed pair. See {@link CollidablePair}.
+     * @param pairIndex Index of the pair in the cache.
+     *
+     * @return True if the pair should be removed from the cache, false to keep it.
+     */
+    boolean handleStalePair(long pair, int pairIndex);
+}
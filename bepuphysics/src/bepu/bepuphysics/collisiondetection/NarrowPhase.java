@@ -0,0 +1,371 @@
+package bepu.bepuphysics.collisiondetection;
+
+import bepu.bepuphysics.Bodies;
+import bepu.bepuphysics.BodyVelocity;
+import bepu.bepuphysics.PoseIntegrator;
+import bepu.bepuphysics.collidables.Collidable;
+import bepu.bepuphysics.collidables.CollidableReference;
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuphysics.collisiondetection.collisiontasks.ConvexManifoldBundle;
+import bepu.bepuphysics.constraints.Solver;
+import bepu.bepuutilities.collections.DoubleQuickList;
+import bepu.bepuutilities.collections.IntQuickList;
+import bepu.bepuutilities.collections.LongQuickList;
+import bepu.bepuutilities.math.Vector3Double;
+import bepu.bepuutilities.threading.IChunkBody;
+import bepu.bepuutilities.threading.IThreadDispatcher;
+
+import java.util.Arrays;
+
+/**
+ * Turns the broad phase's overlaps into persistent pairs. Overlaps are collected from the broad phase, looked up in the pair cache in parallel,
+ * and pairs seen for the first time are queued per worker and merged when the frame's collision detection is flushed.
+ * <p>
+ * Contact generation goes through one {@link CollisionBatcher} per worker, so pairs are tested in bundles of the same shape type pair.
+ * Pairs involving a continuous collidable are first swept over the whole frame, starting from the poses the bodies had before they were
+ * integrated. If the shapes met during the part of the frame that has already been integrated, a fast body may have passed through already:
+ * the pair's contacts are generated at the time of impact, and when the frame is flushed the pair's non-kinematic bodies are moved back to
+ * their poses at the earliest impact they were part of. If the impact lies in the rest of the frame, contacts are generated at the current
+ * poses with a speculative margin wide enough to include it, so the solver stops the approach before the shapes pass through.
+ * <p>
+ * Flushing keeps the solver's contact constraints in sync with the pair cache: touching pairs get a contact constraint, and pairs that stop
+ * touching or are dropped lose theirs.
+ */
+public class NarrowPhase {
+    private static final int PAIRS_PER_CHUNK = 128;
+
+    private final Bodies bodies;
+    private final Solver solver;
+    private final PairCache pairCache;
+
+    private final LongQuickList overlaps = new LongQuickList(256);
+    //Pair cache index of each overlap, or -1 for pairs that are new this frame.
+    private int[] overlapPairIndices = new int[256];
+
+    private CollisionBatcher[] workerBatchers = new CollisionBatcher[0];
+    private SweepTester[] workerSweepTesters = new SweepTester[0];
+    private RigidPose[] workerSweepStarts = new RigidPose[0];
+    //Bodies to move back to a time of impact once collision detection is done, recorded per worker.
+    private IntQuickList[] workerImpactHandles = new IntQuickList[0];
+    private DoubleQuickList[] workerImpactTimes = new DoubleQuickList[0];
+    //Earliest time of impact of each body while impacts are applied; positive infinity otherwise.
+    private double[] earliestImpactTimes = new double[0];
+    private int workerCount;
+    private double integratedDt;
+    private double frameDt;
+
+    private final IBroadPhaseOverlapHandler overlapCollector = this::collectOverlap;
+    private final IChunkBody processChunk = this::processChunk;
+    private final IStalePairHandler staleHandler = this::handleStalePair;
+
+    public NarrowPhase(Bodies bodies, Solver solver, int initialPairCapacity) {
+        this.bodies = bodies;
+        this.solver = solver;
+        this.pairCache = new PairCache(initialPairCapacity);
+    }
+
+    public PairCache getPairCache() {
+        return pairCache;
+    }
+
+    /**
+     * Gets the handler that records broad phase overlaps for this frame.
+     *
+     * @return Overlap handler to pass to the broad phase.
+     */
+    public IBroadPhaseOverlapHandler getOverlapCollector() {
+        return overlapCollector;
+    }
+
+    public int getOverlapCount() {
+        return overlaps.getCount();
+    }
+
+    public long getOverlap(int index) {
+        return overlaps.get(index);
+    }
+
+    /**
+     * Starts a new frame without continuous collision detection. Must be called before overlaps are collected.
+     *
+     * @param dispatcher Dispatcher used this frame, or null if the frame runs on one thread.
+     */
+    public void prepare(IThreadDispatcher dispatcher) {
+        prepare(0, dispatcher);
+    }
+
+    /**
+     * Starts a new frame whose bodies were integrated over the whole frame. Must be called before overlaps are collected.
+     *
+     * @param dt Duration of the frame. Continuous pairs are swept over it from the poses the bodies had before they were integrated.
+     * @param dispatcher Dispatcher used this frame, or null if the frame runs on one thread.
+     */
+    public void prepare(double dt, IThreadDispatcher dispatcher) {
+        prepare(dt, dt, dispatcher);
+    }
+
+    /**
+     * Starts a new frame. Must be called before overlaps are collected.
+     *
+     * @param integratedDt Duration the bodies were just integrated over, from the start of the frame.
+     * @param frameDt Duration of the whole frame, including any substeps the solver integrates later. Continuous pairs are swept over it
+     *                from the poses the bodies had before they were integrated.
+     * @param dispatcher Dispatcher used this frame, or null if the frame runs on one thread.
+     */
+    public void prepare(double integratedDt, double frameDt, IThreadDispatcher dispatcher) {
+        assert integratedDt <= frameDt : "Bodies can't have been integrated past the end of the frame.";
+        this.integratedDt = integratedDt;
+        this.frameDt = frameDt;
+        overlaps.clear();
+        workerCount = dispatcher == null ? 1 : dispatcher.getThreadCount();
+        pairCache.prepareFrame(workerCount);
+        if (workerBatchers.length < workerCount) {
+            CollisionBatcher[] newBatchers = new CollisionBatcher[workerCount];
+            SweepTester[] newSweepTesters = new SweepTester[workerCount];
+            RigidPose[] newSweepStarts = new RigidPose[workerCount * 2];
+            IntQuickList[] newImpactHandles = new IntQuickList[workerCount];
+            DoubleQuickList[] newImpactTimes = new DoubleQuickList[workerCount];
+            System.arraycopy(workerBatchers, 0, newBatchers, 0, workerBatchers.length);
+            System.arraycopy(workerSweepTesters, 0, newSweepTesters, 0, workerSweepTesters.length);
+            System.arraycopy(workerSweepStarts, 0, newSweepStarts, 0, workerSweepStarts.length);
+            System.arraycopy(workerImpactHandles, 0, newImpactHandles, 0, workerImpactHandles.length);
+            System.arraycopy(workerImpactTimes, 0, newImpactTimes, 0, workerImpactTimes.length);
+            for (int i = workerBatchers.length; i < workerCount; i++) {
+                int workerIndex = i;
+                newBatchers[i] = new CollisionBatcher(bodies.getShapes(), (pairIds, manifolds, count) -> onManifolds(workerIndex, pairIds, manifolds, count));
+                newSweepTesters[i] = new SweepTester(bodies.getShapes(), newBatchers[i]);
+                newSweepStarts[i * 2] = new RigidPose(Vector3Double.ZERO);
+                newSweepStarts[i * 2 + 1] = new RigidPose(Vector3Double.ZERO);
+                newImpactHandles[i] = new IntQuickList(16);
+                newImpactTimes[i] = new DoubleQuickList(16);
+            }
+            workerBatchers = newBatchers;
+            workerSweepTesters = newSweepTesters;
+            workerSweepStarts = newSweepStarts;
+            workerImpactHandles = newImpactHandles;
+            workerImpactTimes = newImpactTimes;
+        }
+        for (int i = 0; i < workerCount; i++) {
+            workerImpactHandles[i].clear();
+            workerImpactTimes[i].clear();
+        }
+    }
+
+    /**
+     * Looks up every collected overlap in the pair cache, keeping known pairs alive and queuing new ones.
+     *
+     * @param dispatcher Dispatcher to split the overlaps across, or null to process them on the calling thread.
+     */
+    public void execute(IThreadDispatcher dispatcher) {
+        if (overlapPairIndices.length < overlaps.getCount()) {
+            overlapPairIndices = new int[Math.max(overlaps.getCount(), overlapPairIndices.length * 2)];
+        }
+        if (dispatcher == null) {
+            processChunk(0, overlaps.getCount(), 0);
+        } else {
+            dispatcher.forEachChunk(overlaps.getCount(), PAIRS_PER_CHUNK, processChunk);
+        }
+    }
+
+    /**
+     * Merges pairs found this frame into the pair cache, drops pairs that were not seen and updates the contact constraints of every pair
+     * seen this frame.
+     */
+    public void flush() {
+        moveBackToImpacts();
+        pairCache.flush(staleHandler);
+        double[] manifolds = pairCache.getManifoldArray();
+        int[] featureIds = pairCache.getFeatureIdArray();
+        for (int pairIndex = 0; pairIndex < pairCache.getPairCount(); pairIndex++) {
+            if (!pairCache.isFresh(pairIndex)) {
+                continue;
+            }
+            int constraintHandle = pairCache.getConstraintHandle(pairIndex);
+            int contactCount = pairCache.getContactCount(pairIndex);
+            if (contactCount > 0) {
+                if (constraintHandle < 0) {
+                    long pair = pairCache.getPair(pairIndex);
+                    int handleA = CollidableReference.getHandle(CollidablePair.getA(pair));
+                    int handleB = CollidableReference.getHandle(CollidablePair.getB(pair));
+                    if (bodies.getInertia(handleA).isKinematic() && bodies.getInertia(handleB).isKinematic()) {
+                        //Nothing for the solver to do; neither body can respond.
+                        continue;
+                    }
+                    constraintHandle = solver.addContact(handleA, handleB);
+                    pairCache.setConstraintHandle(pairIndex, constraintHandle);
+                }
+                solver.setContactManifold(constraintHandle, contactCount, manifolds, pairIndex * PairCache.MANIFOLD_STRIDE,
+                        featureIds, pairIndex * PairCache.MAXIMUM_CONTACT_COUNT);
+            } else if (constraintHandle >= 0) {
+                solver.remove(constraintHandle);
+                pairCache.setConstraintHandle(pairIndex, -1);
+            }
+        }
+    }
+
+    /**
+     * Removes the contact constraints of every pair involving a body. Must be called before the body is removed.
+     *
+     * @param bodyHandle Handle of the body.
+     */
+    public void removeContactConstraints(int bodyHandle) {
+        for (int pairIndex = 0; pairIndex < pairCache.getPairCount(); pairIndex++) {
+            int constraintHandle = pairCache.getConstraintHandle(pairIndex);
+            if (constraintHandle < 0) {
+                continue;
+            }
+            long pair = pairCache.getPair(pairIndex);
+            if (CollidableReference.getHandle(CollidablePair.getA(pair)) == bodyHandle ||
+                    CollidableReference.getHandle(CollidablePair.getB(pair)) == bodyHandle) {
+                solver.remove(constraintHandle);
+                pairCache.setConstraintHandle(pairIndex, -1);
+            }
+        }
+    }
+
+    private void collectOverlap(int collidableA, int collidableB) {
+        overlaps.add(CollidablePair.create(collidableA, collidableB));
+    }
+
+    private void processChunk(int start, int end, int workerIndex) {
+        long[] pairs = overlaps.getArray();
+        CollisionBatcher batcher = workerBatchers[workerIndex];
+        for (int i = start; i < end; i++) {
+            long pair = pairs[i];
+            int pairIndex = pairCache.indexOf(pair);
+            overlapPairIndices[i] = pairIndex;
+            if (pairIndex >= 0) {
+                pairCache.markFresh(pairIndex);
+            }
+            if (!addToBatcher(batcher, workerIndex, i, CollidablePair.getA(pair), CollidablePair.getB(pair)) && pairIndex < 0) {
+                //No contact generation for this pair, but it still needs to be tracked.
+                pairCache.addPending(workerIndex, pair, -1);
+            }
+        }
+        batcher.flush();
+    }
+
+    private boolean addToBatcher(CollisionBatcher batcher, int workerIndex, int overlapIndex, int collidableA, int collidableB) {
+        if (!CollidableReference.isBody(collidableA) || !CollidableReference.isBody(collidableB)) {
+            return false;
+        }
+        int handleA = CollidableReference.getHandle(collidableA);
+        int handleB = CollidableReference.getHandle(collidableB);
+        Collidable a = bodies.getCollidable(handleA);
+        Collidable b = bodies.getCollidable(handleB);
+        if (!a.hasShape() || !b.hasShape()) {
+            return false;
+        }
+        RigidPose poseA = bodies.getPose(handleA);
+        RigidPose poseB = bodies.getPose(handleB);
+        double margin = Math.max(a.getSpeculativeMargin(), b.getSpeculativeMargin());
+        if (frameDt > 0 && (a.isContinuous() || b.isContinuous())) {
+            SweepTester sweeper = workerSweepTesters[workerIndex];
+            if (sweeper.canSweep(a.getShape(), b.getShape())) {
+                //Poses have already been integrated; walk them back to the start of the frame and sweep forward over all of it.
+                BodyVelocity velocityA = bodies.getVelocity(handleA);
+                BodyVelocity velocityB = bodies.getVelocity(handleB);
+                RigidPose startA = workerSweepStarts[workerIndex * 2];
+                RigidPose startB = workerSweepStarts[workerIndex * 2 + 1];
+                rewind(poseA, velocityA, integratedDt, startA);
+                rewind(poseB, velocityB, integratedDt, startB);
+                double timeOfImpact = sweeper.sweep(a.getShape(), startA, velocityA.getLinear(), velocityA.getAngular(),
+                        b.getShape(), startB, velocityB.getLinear(), velocityB.getAngular(), frameDt, margin);
+                //Shapes that were already within the margin at the start of the frame have a contact from the previous frame limiting
+                //their approach; moving them back would only stall bodies sliding along each other.
+                if (timeOfImpact > 0 && timeOfImpact <= integratedDt) {
+                    poseA = sweeper.getPoseA();
+                    poseB = sweeper.getPoseB();
+                    IntQuickList impactHandles = workerImpactHandles[workerIndex];
+                    DoubleQuickList impactTimes = workerImpactTimes[workerIndex];
+                    impactHandles.add(handleA);
+                    impactTimes.add(timeOfImpact);
+                    impactHandles.add(handleB);
+                    impactTimes.add(timeOfImpact);
+                } else if (timeOfImpact > integratedDt && timeOfImpact < frameDt) {
+                    //The gap left at the current poses can't be wider than the approach still to come before the impact.
+                    margin += sweeper.getApproachSpeed() * (timeOfImpact - integratedDt);
+                }
+            }
+        }
+        return batcher.add(overlapIndex, a.getShape(), poseA, b.getShape(), poseB, margin);
+    }
+
+    private static void rewind(RigidPose end, BodyVelocity velocity, double dt, RigidPose result) {
+        Vector3Double position = end.getPosition();
+        Vector3Double linear = velocity.getLinear();
+        Vector3Double angular = velocity.getAngular();
+        result.getPosition().set(position.x - linear.x * dt, position.y - linear.y * dt, position.z - linear.z * dt);
+        result.getOrientation().set(end.getOrientation());
+        //Integrating by the negated angular velocity undoes the rotation; -dt applies exactly that without a temporary vector.
+        PoseIntegrator.integrateOrientation(result.getOrientation(), angular, -dt);
+    }
+
+    /**
+     * Moves every non-kinematic body that passed a time of impact during the integrated part of the frame back to its pose at the earliest
+     * such impact, matching the poses its contacts were generated at. The solver then stops the approach before the bodies move on.
+     */
+    private void moveBackToImpacts() {
+        int handleCapacity = bodies.getHandleCapacity();
+        if (earliestImpactTimes.length < handleCapacity) {
+            earliestImpactTimes = new double[handleCapacity];
+            Arrays.fill(earliestImpactTimes, Double.POSITIVE_INFINITY);
+        }
+        for (int worker = 0; worker < workerCount; worker++) {
+            int[] handles = workerImpactHandles[worker].getArray();
+            double[] times = workerImpactTimes[worker].getArray();
+            for (int i = 0; i < workerImpactHandles[worker].getCount(); i++) {
+                earliestImpactTimes[handles[i]] = Math.min(earliestImpactTimes[handles[i]], times[i]);
+            }
+        }
+        for (int worker = 0; worker < workerCount; worker++) {
+            int[] handles = workerImpactHandles[worker].getArray();
+            for (int i = 0; i < workerImpactHandles[worker].getCount(); i++) {
+                int handle = handles[i];
+                double timeOfImpact = earliestImpactTimes[handle];
+                if (timeOfImpact == Double.POSITIVE_INFINITY) {
+                    //Already moved back by an earlier entry.
+                    continue;
+                }
+                earliestImpactTimes[handle] = Double.POSITIVE_INFINITY;
+                if (bodies.isActive(handle) && !bodies.getInertia(handle).isKinematic()) {
+                    RigidPose pose = bodies.getPose(handle);
+                    rewind(pose, bodies.getVelocity(handle), integratedDt - timeOfImpact, pose);
+                }
+            }
+        }
+    }
+
+    private void onManifolds(int workerIndex, int[] overlapIndices, ConvexManifoldBundle manifolds, int count) {
+        for (int lane = 0; lane < count; lane++) {
+            int overlapIndex = overlapIndices[lane];
+            int pairIndex = overlapPairIndices[overlapIndex];
+            if (pairIndex >= 0) {
+                pairCache.setManifold(pairIndex, manifolds, lane);
+            } else {
+                pairCache.addPending(workerIndex, overlaps.get(overlapIndex), -1, manifolds, lane);
+            }
+        }
+    }
+
+    private boolean handleStalePair(long pair, int pairIndex) {
+        //Sleeping pairs aren't reported by the broad phase, but they must survive so that their islands wake up with their state intact.
+        boolean remove = !(isAsleep(CollidablePair.getA(pair)) && isAsleep(CollidablePair.getB(pair)));
+        if (remove) {
+            int constraintHandle = pairCache.getConstraintHandle(pairIndex);
+            if (constraintHandle >= 0) {
+                solver.remove(constraintHandle);
+            }
+        }
+        return remove;
+    }
+
+    private boolean isAsleep(int collidable) {
+        if (!CollidableReference.isBody(collidable)) {
+            //Statics never move, so they can't keep a pair alive on their own.
+            return true;
+        }
+        int handle = CollidableReference.getHandle(collidable);
+        return bodies.bodyExists(handle) && !bodies.isActive(handle);
+    }
+}
@@ -0,0 +1,325 @@
+package bepu.bepuphysics.collisiondetection;
+
+import bepu.bepuphysics.collisiondetection.collisiontasks.ConvexManifoldBundle;
+import bepu.bepuutilities.collections.LongIntQuickDictionary;
+
+/**
+ * Remembers the state of every collidable pair across frames.
+ * <p>
+ * During a frame, the mapping is read-only: workers look up pairs and mark them fresh, and pairs that aren't in the cache yet go into
+ * per-worker pending lists. {@link #flush(IStalePairHandler)} then merges the pending adds on a single thread and drops every pair that was
+ * not seen in bulk.
+ */
+public class PairCache {
+    public static final int MAXIMUM_CONTACT_COUNT = 4;
+    /**
+     * Number of doubles stored per pair manifold: the normal's x, y and z, followed by offset x, y, z and depth for each contact.
+     */
+    public static final int MANIFOLD_STRIDE = 3 + MAXIMUM_CONTACT_COUNT * 4;
+
+    //Key: packed collidable pair. Value: handle of the constraint created for the pair, or -1.
+    private final LongIntQuickDictionary mapping;
+    //Parallel to the mapping's dense storage.
+    private int[] lastSeenFrames;
+    private int[] contactCounts;
+    private int[] featureIds;
+    private double[] manifolds;
+    private int frameIndex;
+
+    private PendingAdds[] workerPendingAdds = new PendingAdds[0];
+
+    public PairCache(int initialCapacity) {
+        mapping = new LongIntQuickDictionary(initialCapacity);
+        int capacity = mapping.getCapacity();
+        lastSeenFrames = new int[capacity];
+        contactCounts = new int[capacity];
+        featureIds = new int[capacity * MAXIMUM_CONTACT_COUNT];
+        manifolds = new double[capacity * MANIFOLD_STRIDE];
+    }
+
+    public int getPairCount() {
+        return mapping.getCount();
+    }
+
+    public long getPair(int pairIndex) {
+        return mapping.getKey(pairIndex);
+    }
+
+    public int getConstraintHandle(int pairIndex) {
+        return mapping.getValue(pairIndex);
+    }
+
+    public void setConstraintHandle(int pairIndex, int constraintHandle) {
+        mapping.setValue(pairIndex, constraintHandle);
+    }
+
+    public int getContactCount(int pairIndex) {
+        return contactCounts[pairIndex];
+    }
+
+    /**
+     * Gets the feature id of one of a pair's cached contacts. Feature ids let new contacts be matched with old ones for warm starting.
+     *
+     * @param pairIndex Index of the pair.
+     * @param contactIndex Index of the contact in the pair's manifold.
+     *
+     * @return Feature id of the contact.
+     */
+    public int getFeatureId(int pairIndex, int contactIndex) {
+        return featureIds[pairIndex * MAXIMUM_CONTACT_COUNT + contactIndex];
+    }
+
+    /**
+     * Updates the cached manifold summary of a pair. Safe to call from multiple threads for different pairs.
+     *
+     * @param pairIndex Index of the pair.
+     * @param contactCount Number of contacts in the pair's new manifold.
+     * @param featureIds Feature ids of the new contacts.
+     */
+    public void setManifold(int pairIndex, int contactCount, int[] featureIds) {
+        assert contactCount <= MAXIMUM_CONTACT_COUNT;
+        contactCounts[pairIndex] = contactCount;
+        System.arraycopy(featureIds, 0, this.featureIds, pairIndex * MAXIMUM_CONTACT_COUNT, contactCount);
+    }
+
+    /**
+     * Updates the cached manifold of a pair, including its normal, contact offsets and depths. Safe to call from multiple threads for
+     * different pairs.
+     *
+     * @param pairIndex Index of the pair.
+     * @param bundle Bundle holding the pair's new manifold.
+     * @param lane Lane of the bundle holding the manifold.
+     */
+    public void setManifold(int pairIndex, ConvexManifoldBundle bundle, int lane) {
+        contactCounts[pairIndex] = bundle.contactCount[lane];
+        copyManifold(bundle, lane, featureIds, pairIndex * MAXIMUM_CONTACT_COUNT, manifolds, pairIndex * MANIFOLD_STRIDE);
+    }
+
+    /**
+     * Gets the backing manifold storage for direct reads. Pair i's manifold starts at {@code i * MANIFOLD_STRIDE}; see
+     * {@link #MANIFOLD_STRIDE} for the layout. The array is replaced when the cache resizes.
+     *
+     * @return Manifold storage.
+     */
+    public double[] getManifoldArray() {
+        return manifolds;
+    }
+
+    /**
+     * Gets the backing feature id storage for direct reads. Pair i's feature ids start at {@code i * MAXIMUM_CONTACT_COUNT}. The array is
+     * replaced when the cache resizes.
+     *
+     * @return Feature id storage.
+     */
+    public int[] getFeatureIdArray() {
+        return featureIds;
+    }
+
+    /**
+     * Finds a pair in the cache. Safe to call from multiple threads between {@link #prepareFrame(int)} and {@link #flush(IStalePairHandler)}.
+     *
+     * @param pair Packed pair to look up.
+     *
+     * @return Index of the pair, or -1 if the pair isn't cached.
+     */
+    public int indexOf(long pair) {
+        return mapping.indexOf(pair);
+    }
+
+    /**
+     * Marks a cached pair as seen this frame. Safe to call from multiple threads for different pairs.
+     *
+     * @param pairIndex Index of the pair.
+     */
+    public void markFresh(int pairIndex) {
+        lastSeenFrames[pairIndex] = frameIndex;
+    }
+
+    public boolean isFresh(int pairIndex) {
+        return lastSeenFrames[pairIndex] == frameIndex;
+    }
+
+    /**
+     * Starts a new frame. Every cached pair becomes stale until it is marked fresh again; this costs nothing per pair.
+     *
+     * @param workerCount Number of workers that may queue pending adds this frame.
+     */
+    public void prepareFrame(int workerCount) {
+        frameIndex++;
+        if (workerPendingAdds.length < workerCount) {
+            PendingAdds[] newPendingAdds = new PendingAdds[workerCount];
+            System.arraycopy(workerPendingAdds, 0, newPendingAdds, 0, workerPendingAdds.length);
+            for (int i = workerPendingAdds.length; i < workerCount; i++) {
+                newPendingAdds[i] = new PendingAdds();
+            }
+            workerPendingAdds = newPendingAdds;
+        }
+    }
+
+    /**
+     * Queues a pair that was not found in the cache. Each worker has its own queue, so workers never contend.
+     *
+     * @param workerIndex Index of the worker that discovered the pair.
+     * @param pair Packed pair.
+     * @param constraintHandle Handle of the constraint created for the pair, or -1.
+     */
+    public void addPending(int workerIndex, long pair, int constraintHandle) {
+        workerPendingAdds[workerIndex].add(pair, constraintHandle, 0, null);
+    }
+
+    /**
+     * Queues a pair that was not found in the cache along with the manifold generated for it this frame.
+     *
+     * @param workerIndex Index of the worker that discovered the pair.
+     * @param pair Packed pair.
+     * @param constraintHandle Handle of the constraint created for the pair, or -1.
+     * @param contactCount Number of contacts in the pair's manifold.
+     * @param featureIds Feature ids of the contacts.
+     */
+    public void addPending(int workerIndex, long pair, int constraintHandle, int contactCount, int[] featureIds) {
+        assert contactCount <= MAXIMUM_CONTACT_COUNT;
+        workerPendingAdds[workerIndex].add(pair, constraintHandle, contactCount, featureIds);
+    }
+
+    /**
+     * Queues a pair that was not found in the cache along with the full manifold generated for it this frame.
+     *
+     * @param workerIndex Index of the worker that discovered the pair.
+     * @param pair Packed pair.
+     * @param constraintHandle Handle of the constraint created for the pair, or -1.
+     * @param bundle Bundle holding the pair's manifold.
+     * @param lane Lane of the bundle holding the manifold.
+     */
+    public void addPending(int workerIndex, long pair, int constraintHandle, ConvexManifoldBundle bundle, int lane) {
+        workerPendingAdds[workerIndex].add(pair, constraintHandle, bundle, lane);
+    }
+
+    private static void copyManifold(ConvexManifoldBundle bundle, int lane, int[] targetFeatureIds, int featureOffset,
+                                     double[] targetManifolds, int manifoldOffset) {
+        int contactCount = bundle.contactCount[lane];
+        targetManifolds[manifoldOffset] = bundle.normalX[lane];
+        targetManifolds[manifoldOffset + 1] = bundle.normalY[lane];
+        targetManifolds[manifoldOffset + 2] = bundle.normalZ[lane];
+        for (int i = 0; i < contactCount; i++) {
+            int slot = ConvexManifoldBundle.getSlot(i, lane);
+            int offset = manifoldOffset + 3 + i * 4;
+            targetManifolds[offset] = bundle.offsetX[slot];
+            targetManifolds[offset + 1] = bundle.offsetY[slot];
+            targetManifolds[offset + 2] = bundle.offsetZ[slot];
+            targetManifolds[offset + 3] = bundle.depth[slot];
+            targetFeatureIds[featureOffset + i] = bundle.featureId[slot];
+        }
+    }
+
+    /**
+     * Merges all pending adds into the cache as fresh pairs, then offers every stale pair to the handler for removal.
+     *
+     * @param staleHandler Handler deciding whether stale pairs are removed. If null, every stale pair is removed.
+     */
+    public void flush(IStalePairHandler staleHandler) {
+        int pendingCount = 0;
+        for (PendingAdds pendingAdds : workerPendingAdds) {
+            pendingCount += pendingAdds.count;
+        }
+        ensureCapacity(mapping.getCount() + pendingCount);
+        for (PendingAdds pendingAdds : workerPendingAdds) {
+            for (int i = 0; i < pendingAdds.count; i++) {
+                boolean added = mapping.add(pendingAdds.pairs[i], pendingAdds.constraintHandles[i]);
+                assert added : "A pair should only be discovered once per frame.";
+                int pairIndex = mapping.getCount() - 1;
+                lastSeenFrames[pairIndex] = frameIndex;
+                contactCounts[pairIndex] = pendingAdds.contactCounts[i];
+                System.arraycopy(pendingAdds.featureIds, i * MAXIMUM_CONTACT_COUNT, featureIds, pairIndex * MAXIMUM_CONTACT_COUNT, MAXIMUM_CONTACT_COUNT);
+                System.arraycopy(pendingAdds.manifolds, i * MANIFOLD_STRIDE, manifolds, pairIndex * MANIFOLD_STRIDE, MANIFOLD_STRIDE);
+            }
+            pendingAdds.count = 0;
+        }
+        //Walk backwards; removal moves the last pair into the removed slot, and the last pair has already been visited.
+        for (int i = mapping.getCount() - 1; i >= 0; i--) {
+            if (lastSeenFrames[i] != frameIndex && (staleHandler == null || staleHandler.handleStalePair(mapping.getKey(i), i))) {
+                removeAt(i);
+            }
+        }
+    }
+
+    private void removeAt(int pairIndex) {
+        int removedIndex = mapping.fastRemove(mapping.getKey(pairIndex));
+        assert removedIndex == pairIndex;
+        int last = mapping.getCount();
+        if (pairIndex < last) {
+            lastSeenFrames[pairIndex] = lastSeenFrames[last];
+            contactCounts[pairIndex] = contactCounts[last];
+            System.arraycopy(featureIds, last * MAXIMUM_CONTACT_COUNT, featureIds, pairIndex * MAXIMUM_CONTACT_COUNT, MAXIMUM_CONTACT_COUNT);
+            System.arraycopy(manifolds, last * MANIFOLD_STRIDE, manifolds, pairIndex * MANIFOLD_STRIDE, MANIFOLD_STRIDE);
+        }
+    }
+
+    /**
+     * Ensures that the cache can hold at least the given number of pairs without resizing.
+     *
+     * @param capacity Number of pairs to preallocate space for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > mapping.getCapacity()) {
+            mapping.ensureCapacity(Math.max(capacity, mapping.getCapacity() * 2));
+        }
+        int newCapacity = mapping.getCapacity();
+        if (newCapacity > lastSeenFrames.length) {
+            int count = mapping.getCount();
+            int[] newLastSeenFrames = new int[newCapacity];
+            System.arraycopy(lastSeenFrames, 0, newLastSeenFrames, 0, count);
+            lastSeenFrames = newLastSeenFrames;
+            int[] newContactCounts = new int[newCapacity];
+            System.arraycopy(contactCounts, 0, newContactCounts, 0, count);
+            contactCounts = newContactCounts;
+            int[] newFeatureIds = new int[newCapacity * MAXIMUM_CONTACT_COUNT];
+            System.arraycopy(featureIds, 0, newFeatureIds, 0, count * MAXIMUM_CONTACT_COUNT);
+            featureIds = newFeatureIds;
+            double[] newManifolds = new double[newCapacity * MANIFOLD_STRIDE];
+            System.arraycopy(manifolds, 0, newManifolds, 0, count * MANIFOLD_STRIDE);
+            manifolds = newManifolds;
+        }
+    }
+
+    private static final class PendingAdds {
+        long[] pairs = new long[64];
+        int[] constraintHandles = new int[64];
+        int[] contactCounts = new int[64];
+        int[] featureIds = new int[64 * MAXIMUM_CONTACT_COUNT];
+        double[] manifolds = new double[64 * MANIFOLD_STRIDE];
+        int count;
+
+        void add(long pair, int constraintHandle, ConvexManifoldBundle bundle, int lane) {
+            add(pair, constraintHandle, 0, null);
+            contactCounts[count - 1] = bundle.contactCount[lane];
+            copyManifold(bundle, lane, featureIds, (count - 1) * MAXIMUM_CONTACT_COUNT, manifolds, (count - 1) * MANIFOLD_STRIDE);
+        }
+
+        void add(long pair, int constraintHandle, int contactCount, int[] manifoldFeatureIds) {
+            if (count == pairs.length) {
+                long[] newPairs = new long[count * 2];
+                System.arraycopy(pairs, 0, newPairs, 0, count);
+                pairs = newPairs;
+                int[] newConstraintHandles = new int[count * 2];
+                System.arraycopy(constraintHandles, 0, newConstraintHandles, 0, count);
+                constraintHandles = newConstraintHandles;
+                int[] newContactCounts = new int[count * 2];
+                System.arraycopy(contactCounts, 0, newContactCounts, 0, count);
+                contactCounts = newContactCounts;
+                int[] newFeatureIds = new int[count * 2 * MAXIMUM_CONTACT_COUNT];
+                System.arraycopy(featureIds, 0, newFeatureIds, 0, count * MAXIMUM_CONTACT_COUNT);
+                featureIds = newFeatureIds;
+                double[] newManifolds = new double[count * 2 * MANIFOLD_STRIDE];
+                System.arraycopy(manifolds, 0, newManifolds, 0, count * MANIFOLD_STRIDE);
+                manifolds = newManifolds;
+            }
+            pairs[count] = pair;
+            constraintHandles[count] = constraintHandle;
+            contactCounts[count] = contactCount;
+            if (contactCount > 0) {
+                System.arraycopy(manifoldFeatureIds, 0, featureIds, count * MAXIMUM_CONTACT_COUNT, contactCount);
+            }
+            count++;
+        }
+    }
+}
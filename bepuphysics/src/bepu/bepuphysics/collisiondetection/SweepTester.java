@@ -0,0 +1,214 @@
+package bepu.bepuphysics.collisiondetection;
+
+import bepu.bepuphysics.PoseIntegrator;
+import bepu.bepuphysics.collidables.ConvexShapeBatch;
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuphysics.collidables.Shapes;
+import bepu.bepuphysics.collidables.TypedIndex;
+import bepu.bepuphysics.collisiondetection.collisiontasks.ConvexManifoldBundle;
+import bepu.bepuphysics.collisiondetection.collisiontasks.ConvexPairBundle;
+import bepu.bepuphysics.collisiondetection.collisiontasks.IPairTester;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Finds the time of impact between two moving convex shapes by conservative advancement.
+ * <p>
+ * Each iteration measures the distance between the shapes with the pair's contact tester and advances time by that distance divided by
+ * an upper bound on how fast the shapes can approach each other: their relative linear speed plus each shape's angular speed times its
+ * maximum radius. The shapes can never close a gap faster than that bound, so advancing never skips past the first impact.
+ * <p>
+ * A sweep tester is not thread safe. Each worker should use its own.
+ */
+public class SweepTester {
+    private static final int MAXIMUM_ITERATION_COUNT = 32;
+
+    private final Shapes shapes;
+    private final CollisionBatcher batcher;
+    private final ConvexPairBundle bundle = new ConvexPairBundle();
+    private final ConvexManifoldBundle manifolds = new ConvexManifoldBundle();
+    private final RigidPose poseA = new RigidPose(Vector3Double.ZERO);
+    private final RigidPose poseB = new RigidPose(Vector3Double.ZERO);
+    private final RigidPose swapPose = new RigidPose(Vector3Double.ZERO);
+    private double approachSpeed;
+
+    /**
+     * Creates a sweep tester.
+     *
+     * @param shapes Shapes referred to by the swept pairs.
+     * @param batcher Batcher whose registered testers measure distances. Only its tester registry is used.
+     */
+    public SweepTester(Shapes shapes, CollisionBatcher batcher) {
+        this.shapes = shapes;
+        this.batcher = batcher;
+    }
+
+    /**
+     * Gets the pose of shape A at the time of impact found by the last successful sweep.
+     *
+     * @return Pose of shape A at impact.
+     */
+    public RigidPose getPoseA() {
+        return poseA;
+    }
+
+    /**
+     * Gets the pose of shape B at the time of impact found by the last successful sweep.
+     *
+     * @return Pose of shape B at impact.
+     */
+    public RigidPose getPoseB() {
+        return poseB;
+    }
+
+    /**
+     * Gets the upper bound on the speed at which the shapes of the last sweep could approach each other.
+     *
+     * @return Maximum approach speed of the last swept pair.
+     */
+    public double getApproachSpeed() {
+        return approachSpeed;
+    }
+
+    /**
+     * Checks whether a pair of shapes can be swept.
+     *
+     * @param shapeA First shape.
+     * @param shapeB Second shape.
+     *
+     * @return True if both shapes are convex and a tester is registered for their types.
+     */
+    public boolean canSweep(TypedIndex shapeA, TypedIndex shapeB) {
+        int typeA = Math.min(shapeA.getType(), shapeB.getType());
+        int typeB = Math.max(shapeA.getType(), shapeB.getType());
+        return batcher.getTester(typeA, typeB) != null
+                && shapes.get(typeA) instanceof ConvexShapeBatch && shapes.get(typeB) instanceof ConvexShapeBatch;
+    }
+
+    /**
+     * Sweeps two shapes along their velocities and finds the first time at which they come within a tolerance of each other. On a hit, the
+     * poses at that time are available from {@link #getPoseA()} and {@link #getPoseB()}.
+     *
+     * @param shapeA First shape. The pair must pass {@link #canSweep}.
+     * @param startA Pose of the first shape at time zero.
+     * @param linearA Linear velocity of the first shape.
+     * @param angularA Angular velocity of the first shape.
+     * @param shapeB Second shape.
+     * @param startB Pose of the second shape at time zero.
+     * @param linearB Linear velocity of the second shape.
+     * @param angularB Angular velocity of the second shape.
+     * @param maximumT Time at which the sweep ends.
+     * @param tolerance Distance at which the shapes are considered to be in contact. Must be positive.
+     *
+     * @return Time of impact in [0, maximumT], or positive infinity if the shapes stay further apart than the tolerance.
+     */
+    public double sweep(TypedIndex shapeA, RigidPose startA, Vector3Double linearA, Vector3Double angularA,
+                        TypedIndex shapeB, RigidPose startB, Vector3Double linearB, Vector3Double angularB,
+                        double maximumT, double tolerance) {
+        assert canSweep(shapeA, shapeB) : "Sweeps need a registered tester for the pair's shape types.";
+        assert tolerance > 0 : "A zero tolerance can never be reached by conservative advancement.";
+        boolean flip = shapeA.getType() > shapeB.getType();
+        if (flip) {
+            TypedIndex shape = shapeA;
+            shapeA = shapeB;
+            shapeB = shape;
+            RigidPose start = startA;
+            startA = startB;
+            startB = start;
+            Vector3Double linear = linearA;
+            linearA = linearB;
+            linearB = linear;
+            Vector3Double angular = angularA;
+            angularA = angularB;
+            angularB = angular;
+        }
+        ConvexShapeBatch batchA = (ConvexShapeBatch) shapes.get(shapeA.getType());
+        ConvexShapeBatch batchB = (ConvexShapeBatch) shapes.get(shapeB.getType());
+        IPairTester tester = batcher.getTester(shapeA.getType(), shapeB.getType());
+        batchA.gather(shapeA.getIndex(), bundle.shapeA, 0, ConvexPairBundle.WIDTH);
+        batchB.gather(shapeB.getIndex(), bundle.shapeB, 0, ConvexPairBundle.WIDTH);
+
+        double relativeX = linearB.x - linearA.x;
+        double relativeY = linearB.y - linearA.y;
+        double relativeZ = linearB.z - linearA.z;
+        approachSpeed = Math.sqrt(relativeX * relativeX + relativeY * relativeY + relativeZ * relativeZ)
+                + angularA.length() * batchA.getMaximumRadius(shapeA.getIndex())
+                + angularB.length() * batchB.getMaximumRadius(shapeB.getIndex());
+
+        double t = 0;
+        for (int iteration = 0; iteration < MAXIMUM_ITERATION_COUNT; iteration++) {
+            setPose(startA, linearA, angularA, t, poseA);
+            setPose(startB, linearB, angularB, t, poseB);
+            //Anything further apart than the remaining approach cannot hit before maximumT, so that is the only range worth measuring.
+            double reach = approachSpeed * (maximumT - t) + tolerance;
+            double distance = measureDistance(tester, reach);
+            if (distance <= tolerance) {
+                if (flip) {
+                    swapPoses();
+                }
+                return t;
+            }
+            if (distance >= reach) {
+                return Double.POSITIVE_INFINITY;
+            }
+            //Step to the point where the gap could first have shrunk to half the tolerance, so the next measurement lands inside it.
+            t += (distance - 0.5 * tolerance) / approachSpeed;
+            if (t > maximumT) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        //Grazing motion can converge slowly. Report the last safe time rather than risk missing the impact.
+        setPose(startA, linearA, angularA, t, poseA);
+        setPose(startB, linearB, angularB, t, poseB);
+        if (flip) {
+            swapPoses();
+        }
+        return t;
+    }
+
+    /**
+     * Measures a lower bound on the distance between the shapes at the current poses. Penetrating shapes report negative distances.
+     */
+    private double measureDistance(IPairTester tester, double reach) {
+        Vector3Double positionA = poseA.getPosition();
+        Vector3Double positionB = poseB.getPosition();
+        bundle.offsetBX[0] = positionB.x - positionA.x;
+        bundle.offsetBY[0] = positionB.y - positionA.y;
+        bundle.offsetBZ[0] = positionB.z - positionA.z;
+        QuaternionDouble orientationA = poseA.getOrientation();
+        bundle.orientationAX[0] = orientationA.getX();
+        bundle.orientationAY[0] = orientationA.getY();
+        bundle.orientationAZ[0] = orientationA.getZ();
+        bundle.orientationAW[0] = orientationA.getW();
+        QuaternionDouble orientationB = poseB.getOrientation();
+        bundle.orientationBX[0] = orientationB.getX();
+        bundle.orientationBY[0] = orientationB.getY();
+        bundle.orientationBZ[0] = orientationB.getZ();
+        bundle.orientationBW[0] = orientationB.getW();
+        bundle.speculativeMargin[0] = reach;
+        manifolds.contactCount[0] = 0;
+        tester.test(bundle, 1, manifolds);
+        int contactCount = manifolds.contactCount[0];
+        if (contactCount == 0) {
+            return reach;
+        }
+        double deepest = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < contactCount; i++) {
+            deepest = Math.max(deepest, manifolds.depth[ConvexManifoldBundle.getSlot(i, 0)]);
+        }
+        return -deepest;
+    }
+
+    private void swapPoses() {
+        swapPose.set(poseA);
+        poseA.set(poseB);
+        poseB.set(swapPose);
+    }
+
+    private static void setPose(RigidPose start, Vector3Double linear, Vector3Double angular, double t, RigidPose result) {
+        Vector3Double position = start.getPosition();
+        result.getPosition().set(position.x + linear.x * t, position.y + linear.y * t, position.z + linear.z * t);
+        result.getOrientation().set(start.getOrientation());
+        PoseIntegrator.integrateOrientation(result.getOrientation(), angular, t);
+    }
+}
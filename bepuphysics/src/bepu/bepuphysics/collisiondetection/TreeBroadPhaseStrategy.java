@@ -0,0 +1,29 @@
+package bepu.bepuphysics.collisiondetection;
+
+import bepu.bepuphysics.trees.IOverlapHandler;
+
+/**
+ * Finds active pairs by testing the active tree against itself. Works for any mix of object sizes and needs no state of its own.
+ */
+public class TreeBroadPhaseStrategy implements IBroadPhaseStrategy {
+    @Override
+    public void initialize(BroadPhase broadPhase) {
+    }
+
+    @Override
+    public void activeLeafAdded(BroadPhase broadPhase, int index) {
+    }
+
+    @Override
+    public void activeLeafRemoved(BroadPhase broadPhase, int index, int movedLeafIndex) {
+    }
+
+    @Override
+    public void update(BroadPhase broadPhase) {
+    }
+
+    @Override
+    public void getActiveOverlaps(BroadPhase broadPhase, IOverlapHandler handler) {
+        broadPhase.getActiveTree().getSelfOverlaps(handler);
+    }
+}
@@ -0,0 +1,452 @@
+package bepu.bepuphysics.collisiondetection.collisiontasks;
+
+/**
+ * Tests box-box pairs. The separating axis test runs over the 3 face axes of each box and the 9 edge-edge axes in A's local space. A face
+ * axis produces up to four contacts by clipping the other box's most opposed face against the reference face; an edge axis produces a
+ * single contact between the two closest edges.
+ * <p>
+ * Holds scratch state for clipping, so each thread needs its own instance.
+ */
+public class BoxPairTester implements IPairTester {
+    private static final double EDGE_TOLERANCE = 1e-3;
+    private static final int MAXIMUM_POLYGON_SIZE = 8;
+
+    //Orientation of B in A's local space, row major: r[row * 3 + column] = dot(axis A[row], axis B[column]).
+    private final double[] r = new double[9];
+    private final double[] absR = new double[9];
+    private final double[] t = new double[3];
+    private final double[] halfA = new double[3];
+    private final double[] halfB = new double[3];
+
+    //Reference frame copies for face clipping, so the same code handles either box as the reference.
+    private final double[] referenceR = new double[9];
+    private final double[] referenceT = new double[3];
+
+    private double[] polygonX = new double[MAXIMUM_POLYGON_SIZE];
+    private double[] polygonY = new double[MAXIMUM_POLYGON_SIZE];
+    private double[] polygonZ = new double[MAXIMUM_POLYGON_SIZE];
+    private int[] polygonIds = new int[MAXIMUM_POLYGON_SIZE];
+    private double[] clippedX = new double[MAXIMUM_POLYGON_SIZE];
+    private double[] clippedY = new double[MAXIMUM_POLYGON_SIZE];
+    private double[] clippedZ = new double[MAXIMUM_POLYGON_SIZE];
+    private int[] clippedIds = new int[MAXIMUM_POLYGON_SIZE];
+    private final double[] candidateDepths = new double[MAXIMUM_POLYGON_SIZE];
+    private final boolean[] candidateUsed = new boolean[MAXIMUM_POLYGON_SIZE];
+
+    @Override
+    public void test(ConvexPairBundle pairs, int count, ConvexManifoldBundle manifolds) {
+        final int w = ConvexPairBundle.WIDTH;
+        for (int lane = 0; lane < count; lane++) {
+            double qx = pairs.orientationAX[lane];
+            double qy = pairs.orientationAY[lane];
+            double qz = pairs.orientationAZ[lane];
+            double qw = pairs.orientationAW[lane];
+            double xx = 2 * qx * qx, yy = 2 * qy * qy, zz = 2 * qz * qz;
+            double xy = 2 * qx * qy, xz = 2 * qx * qz, yz = 2 * qy * qz;
+            double wx = 2 * qw * qx, wy = 2 * qw * qy, wz = 2 * qw * qz;
+            double a00 = 1 - yy - zz, a01 = xy - wz, a02 = xz + wy;
+            double a10 = xy + wz, a11 = 1 - xx - zz, a12 = yz - wx;
+            double a20 = xz - wy, a21 = yz + wx, a22 = 1 - xx - yy;
+            qx = pairs.orientationBX[lane];
+            qy = pairs.orientationBY[lane];
+            qz = pairs.orientationBZ[lane];
+            qw = pairs.orientationBW[lane];
+            xx = 2 * qx * qx;
+            yy = 2 * qy * qy;
+            zz = 2 * qz * qz;
+            xy = 2 * qx * qy;
+            xz = 2 * qx * qz;
+            yz = 2 * qy * qz;
+            wx = 2 * qw * qx;
+            wy = 2 * qw * qy;
+            wz = 2 * qw * qz;
+            double b00 = 1 - yy - zz, b01 = xy - wz, b02 = xz + wy;
+            double b10 = xy + wz, b11 = 1 - xx - zz, b12 = yz - wx;
+            double b20 = xz - wy, b21 = yz + wx, b22 = 1 - xx - yy;
+
+            //r = transpose(A) * B.
+            r[0] = a00 * b00 + a10 * b10 + a20 * b20;
+            r[1] = a00 * b01 + a10 * b11 + a20 * b21;
+            r[2] = a00 * b02 + a10 * b12 + a20 * b22;
+            r[3] = a01 * b00 + a11 * b10 + a21 * b20;
+            r[4] = a01 * b01 + a11 * b11 + a21 * b21;
+            r[5] = a01 * b02 + a11 * b12 + a21 * b22;
+            r[6] = a02 * b00 + a12 * b10 + a22 * b20;
+            r[7] = a02 * b01 + a12 * b11 + a22 * b21;
+            r[8] = a02 * b02 + a12 * b12 + a22 * b22;
+            for (int i = 0; i < 9; i++) {
+                absR[i] = Math.abs(r[i]) + 1e-12;
+            }
+            double ox = pairs.offsetBX[lane];
+            double oy = pairs.offsetBY[lane];
+            double oz = pairs.offsetBZ[lane];
+            t[0] = a00 * ox + a10 * oy + a20 * oz;
+            t[1] = a01 * ox + a11 * oy + a21 * oz;
+            t[2] = a02 * ox + a12 * oy + a22 * oz;
+            for (int i = 0; i < 3; i++) {
+                halfA[i] = pairs.shapeA[i * w + lane];
+                halfB[i] = pairs.shapeB[i * w + lane];
+            }
+
+            //Face axes of A.
+            double bestFaceSeparation = Double.NEGATIVE_INFINITY;
+            int bestFace = -1;
+            for (int i = 0; i < 3; i++) {
+                double radiusB = halfB[0] * absR[i * 3] + halfB[1] * absR[i * 3 + 1] + halfB[2] * absR[i * 3 + 2];
+                double separation = Math.abs(t[i]) - (halfA[i] + radiusB);
+                if (separation > bestFaceSeparation) {
+                    bestFaceSeparation = separation;
+                    bestFace = i;
+                }
+            }
+            //Face axes of B. A's faces win ties so that resting stacks keep a stable reference face.
+            double scale = Math.max(Math.max(Math.max(halfA[0], halfA[1]), Math.max(halfA[2], halfB[0])), Math.max(halfB[1], halfB[2]));
+            double tolerance = EDGE_TOLERANCE * scale;
+            for (int j = 0; j < 3; j++) {
+                double projectedT = t[0] * r[j] + t[1] * r[3 + j] + t[2] * r[6 + j];
+                double radiusA = halfA[0] * absR[j] + halfA[1] * absR[3 + j] + halfA[2] * absR[6 + j];
+                double separation = Math.abs(projectedT) - (radiusA + halfB[j]);
+                if (separation > bestFaceSeparation + tolerance) {
+                    bestFaceSeparation = separation;
+                    bestFace = 3 + j;
+                }
+            }
+            double margin = pairs.speculativeMargin[lane];
+            if (bestFaceSeparation > margin) {
+                continue;
+            }
+
+            //Edge axes: cross(axis A[i], axis B[j]) in A's local space.
+            double bestEdgeSeparation = Double.NEGATIVE_INFINITY;
+            int bestEdge = -1;
+            double edgeNormalX = 0, edgeNormalY = 0, edgeNormalZ = 0;
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    double vx = r[j], vy = r[3 + j], vz = r[6 + j];
+                    double lx, ly, lz;
+                    if (i == 0) {
+                        lx = 0;
+                        ly = -vz;
+                        lz = vy;
+                    } else if (i == 1) {
+                        lx = vz;
+                        ly = 0;
+                        lz = -vx;
+                    } else {
+                        lx = -vy;
+                        ly = vx;
+                        lz = 0;
+                    }
+                    double lengthSquared = lx * lx + ly * ly + lz * lz;
+                    if (lengthSquared < 1e-10) {
+                        //Parallel edges; the face axes already cover this direction.
+                        continue;
+                    }
+                    double inverse = 1 / Math.sqrt(lengthSquared);
+                    lx *= inverse;
+                    ly *= inverse;
+                    lz *= inverse;
+                    double radiusA = halfA[0] * Math.abs(lx) + halfA[1] * Math.abs(ly) + halfA[2] * Math.abs(lz);
+                    double radiusB = halfB[0] * Math.abs(lx * r[0] + ly * r[3] + lz * r[6])
+                            + halfB[1] * Math.abs(lx * r[1] + ly * r[4] + lz * r[7])
+                            + halfB[2] * Math.abs(lx * r[2] + ly * r[5] + lz * r[8]);
+                    double separation = Math.abs(lx * t[0] + ly * t[1] + lz * t[2]) - (radiusA + radiusB);
+                    if (separation > bestEdgeSeparation) {
+                        bestEdgeSeparation = separation;
+                        bestEdge = i * 3 + j;
+                        edgeNormalX = lx;
+                        edgeNormalY = ly;
+                        edgeNormalZ = lz;
+                    }
+                }
+            }
+            if (bestEdgeSeparation > margin) {
+                continue;
+            }
+
+            if (bestEdge >= 0 && bestEdgeSeparation > bestFaceSeparation + tolerance) {
+                addEdgeContact(manifolds, lane, bestEdge, bestEdgeSeparation, edgeNormalX, edgeNormalY, edgeNormalZ,
+                        a00, a01, a02, a10, a11, a12, a20, a21, a22, margin);
+            } else {
+                addFaceContacts(manifolds, lane, bestFace, a00, a01, a02, a10, a11, a12, a20, a21, a22, margin);
+            }
+        }
+    }
+
+    private void addEdgeContact(ConvexManifoldBundle manifolds, int lane, int edge, double separation, double lx, double ly, double lz,
+                                double a00, double a01, double a02, double a10, double a11, double a12, double a20, double a21, double a22,
+                                double margin) {
+        int i = edge / 3;
+        int j = edge % 3;
+        //Orient the normal from B toward A.
+        if (lx * t[0] + ly * t[1] + lz * t[2] > 0) {
+            lx = -lx;
+            ly = -ly;
+            lz = -lz;
+        }
+        //A's edge is the one furthest toward B, B's edge is the one furthest toward A.
+        double normal0 = lx, normal1 = ly, normal2 = lz;
+        double cax = i == 0 ? 0 : (normal0 > 0 ? -halfA[0] : halfA[0]);
+        double cay = i == 1 ? 0 : (normal1 > 0 ? -halfA[1] : halfA[1]);
+        double caz = i == 2 ? 0 : (normal2 > 0 ? -halfA[2] : halfA[2]);
+        double dax = i == 0 ? 1 : 0;
+        double day = i == 1 ? 1 : 0;
+        double daz = i == 2 ? 1 : 0;
+        double cbx = t[0], cby = t[1], cbz = t[2];
+        for (int k = 0; k < 3; k++) {
+            if (k == j) {
+                continue;
+            }
+            double columnX = r[k], columnY = r[3 + k], columnZ = r[6 + k];
+            double sign = columnX * lx + columnY * ly + columnZ * lz > 0 ? halfB[k] : -halfB[k];
+            cbx += columnX * sign;
+            cby += columnY * sign;
+            cbz += columnZ * sign;
+        }
+        double dbx = r[j], dby = r[3 + j], dbz = r[6 + j];
+        double halfLengthA = halfA[i];
+        double halfLengthB = halfB[j];
+
+        double offsetX = cbx - cax, offsetY = cby - cay, offsetZ = cbz - caz;
+        double axisDot = dax * dbx + day * dby + daz * dbz;
+        double offsetDotA = offsetX * dax + offsetY * day + offsetZ * daz;
+        double offsetDotB = offsetX * dbx + offsetY * dby + offsetZ * dbz;
+        double denominator = 1 - axisDot * axisDot;
+        double ta = denominator > 1e-9 ? (offsetDotA - axisDot * offsetDotB) / denominator : 0;
+        ta = Math.max(-halfLengthA, Math.min(halfLengthA, ta));
+        double tb = Math.max(-halfLengthB, Math.min(halfLengthB, ta * axisDot - offsetDotB));
+        ta = Math.max(-halfLengthA, Math.min(halfLengthA, tb * axisDot + offsetDotA));
+        double px = (cax + dax * ta + cbx + dbx * tb) * 0.5;
+        double py = (cay + day * ta + cby + dby * tb) * 0.5;
+        double pz = (caz + daz * ta + cbz + dbz * tb) * 0.5;
+
+        manifolds.setNormal(lane, a00 * lx + a01 * ly + a02 * lz, a10 * lx + a11 * ly + a12 * lz, a20 * lx + a21 * ly + a22 * lz);
+        manifolds.addContact(lane, a00 * px + a01 * py + a02 * pz, a10 * px + a11 * py + a12 * pz, a20 * px + a21 * py + a22 * pz,
+                -separation, 1 << 13 | edge, margin);
+    }
+
+    private void addFaceContacts(ConvexManifoldBundle manifolds, int lane, int face,
+                                 double a00, double a01, double a02, double a10, double a11, double a12, double a20, double a21, double a22,
+                                 double margin) {
+        boolean referenceIsA = face < 3;
+        int k = referenceIsA ? face : face - 3;
+        double[] referenceHalf;
+        double[] incidentHalf;
+        if (referenceIsA) {
+            System.arraycopy(r, 0, referenceR, 0, 9);
+            System.arraycopy(t, 0, referenceT, 0, 3);
+            referenceHalf = halfA;
+            incidentHalf = halfB;
+        } else {
+            //Work in B's local space: the incident box's axes are the rows of r, and A's center is at -transpose(r) * t.
+            for (int row = 0; row < 3; row++) {
+                for (int column = 0; column < 3; column++) {
+                    referenceR[row * 3 + column] = r[column * 3 + row];
+                }
+            }
+            for (int row = 0; row < 3; row++) {
+                referenceT[row] = -(r[row] * t[0] + r[3 + row] * t[1] + r[6 + row] * t[2]);
+            }
+            referenceHalf = halfB;
+            incidentHalf = halfA;
+        }
+        double sign = referenceT[k] >= 0 ? 1 : -1;
+
+        //The incident face is the face of the other box most opposed to the reference face normal.
+        int incidentAxis = 0;
+        double bestAlignment = -1;
+        for (int j = 0; j < 3; j++) {
+            double alignment = Math.abs(referenceR[k * 3 + j]);
+            if (alignment > bestAlignment) {
+                bestAlignment = alignment;
+                incidentAxis = j;
+            }
+        }
+        double incidentSign = referenceR[k * 3 + incidentAxis] * sign > 0 ? -1 : 1;
+        int j1 = (incidentAxis + 1) % 3;
+        int j2 = (incidentAxis + 2) % 3;
+        double centerX = referenceT[0] + referenceR[incidentAxis] * incidentSign * incidentHalf[incidentAxis];
+        double centerY = referenceT[1] + referenceR[3 + incidentAxis] * incidentSign * incidentHalf[incidentAxis];
+        double centerZ = referenceT[2] + referenceR[6 + incidentAxis] * incidentSign * incidentHalf[incidentAxis];
+        double ux = referenceR[j1] * incidentHalf[j1], uy = referenceR[3 + j1] * incidentHalf[j1], uz = referenceR[6 + j1] * incidentHalf[j1];
+        double vx = referenceR[j2] * incidentHalf[j2], vy = referenceR[3 + j2] * incidentHalf[j2], vz = referenceR[6 + j2] * incidentHalf[j2];
+        setVertex(0, centerX + ux + vx, centerY + uy + vy, centerZ + uz + vz);
+        setVertex(1, centerX - ux + vx, centerY - uy + vy, centerZ - uz + vz);
+        setVertex(2, centerX - ux - vx, centerY - uy - vy, centerZ - uz - vz);
+        setVertex(3, centerX + ux - vx, centerY + uy - vy, centerZ + uz - vz);
+        int vertexCount = 4;
+
+        //Clip against the four side planes of the reference face.
+        int k1 = (k + 1) % 3;
+        int k2 = (k + 2) % 3;
+        vertexCount = clip(vertexCount, k1, 1, referenceHalf[k1], 0);
+        vertexCount = clip(vertexCount, k1, -1, referenceHalf[k1], 1);
+        vertexCount = clip(vertexCount, k2, 1, referenceHalf[k2], 2);
+        vertexCount = clip(vertexCount, k2, -1, referenceHalf[k2], 3);
+
+        //Keep the points below the reference face, or within the speculative margin above it.
+        int candidateCount = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            double coordinate = k == 0 ? polygonX[i] : k == 1 ? polygonY[i] : polygonZ[i];
+            double depth = referenceHalf[k] - sign * coordinate;
+            if (depth >= -margin) {
+                polygonX[candidateCount] = polygonX[i];
+                polygonY[candidateCount] = polygonY[i];
+                polygonZ[candidateCount] = polygonZ[i];
+                polygonIds[candidateCount] = polygonIds[i];
+                candidateDepths[candidateCount] = depth;
+                candidateCount++;
+            }
+        }
+        if (candidateCount == 0) {
+            return;
+        }
+
+        //Normal from B toward A in A's local space. With A as the reference, the reference normal points toward B.
+        double nx, ny, nz;
+        if (referenceIsA) {
+            nx = k == 0 ? -sign : 0;
+            ny = k == 1 ? -sign : 0;
+            nz = k == 2 ? -sign : 0;
+        } else {
+            nx = r[k] * sign;
+            ny = r[3 + k] * sign;
+            nz = r[6 + k] * sign;
+        }
+        manifolds.setNormal(lane, a00 * nx + a01 * ny + a02 * nz, a10 * nx + a11 * ny + a12 * nz, a20 * nx + a21 * ny + a22 * nz);
+
+        reduceCandidates(candidateCount, k);
+        int featureBase = (referenceIsA ? 0 : 1 << 12) | (k * 2 + (sign > 0 ? 1 : 0)) << 9 | (incidentAxis * 2 + (incidentSign > 0 ? 1 : 0)) << 6;
+        for (int i = 0; i < candidateCount; i++) {
+            if (!candidateUsed[i]) {
+                continue;
+            }
+            double depth = candidateDepths[i];
+            //Move the point halfway up toward the reference face.
+            double offset = sign * depth * 0.5;
+            double px = polygonX[i] + (k == 0 ? offset : 0);
+            double py = polygonY[i] + (k == 1 ? offset : 0);
+            double pz = polygonZ[i] + (k == 2 ? offset : 0);
+            if (!referenceIsA) {
+                double x = r[0] * px + r[1] * py + r[2] * pz + t[0];
+                double y = r[3] * px + r[4] * py + r[5] * pz + t[1];
+                double z = r[6] * px + r[7] * py + r[8] * pz + t[2];
+                px = x;
+                py = y;
+                pz = z;
+            }
+            manifolds.addContact(lane, a00 * px + a01 * py + a02 * pz, a10 * px + a11 * py + a12 * pz, a20 * px + a21 * py + a22 * pz,
+                    depth, featureBase | polygonIds[i], margin);
+        }
+    }
+
+    private void setVertex(int index, double x, double y, double z) {
+        polygonX[index] = x;
+        polygonY[index] = y;
+        polygonZ[index] = z;
+        polygonIds[index] = index;
+    }
+
+    /**
+     * Clips the polygon against the plane {@code side * coordinate[axis] <= limit}, swapping the polygon and clipped buffers.
+     */
+    private int clip(int vertexCount, int axis, double side, double limit, int planeIndex) {
+        int outputCount = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            int next = i + 1 == vertexCount ? 0 : i + 1;
+            double current = side * (axis == 0 ? polygonX[i] : axis == 1 ? polygonY[i] : polygonZ[i]) - limit;
+            double following = side * (axis == 0 ? polygonX[next] : axis == 1 ? polygonY[next] : polygonZ[next]) - limit;
+            if (current <= 0 && outputCount < MAXIMUM_POLYGON_SIZE) {
+                clippedX[outputCount] = polygonX[i];
+                clippedY[outputCount] = polygonY[i];
+                clippedZ[outputCount] = polygonZ[i];
+                clippedIds[outputCount] = polygonIds[i];
+                outputCount++;
+            }
+            if ((current <= 0) != (following <= 0) && outputCount < MAXIMUM_POLYGON_SIZE) {
+                double fraction = current / (current - following);
+                clippedX[outputCount] = polygonX[i] + (polygonX[next] - polygonX[i]) * fraction;
+                clippedY[outputCount] = polygonY[i] + (polygonY[next] - polygonY[i]) * fraction;
+                clippedZ[outputCount] = polygonZ[i] + (polygonZ[next] - polygonZ[i]) * fraction;
+                //Intersection ids combine the incident edge and the clipping plane so they stay stable across frames.
+                clippedIds[outputCount] = 4 + (i * 4 + planeIndex);
+                outputCount++;
+            }
+        }
+        double[] swap = polygonX;
+        polygonX = clippedX;
+        clippedX = swap;
+        swap = polygonY;
+        polygonY = clippedY;
+        clippedY = swap;
+        swap = polygonZ;
+        polygonZ = clippedZ;
+        clippedZ = swap;
+        int[] swapIds = polygonIds;
+        polygonIds = clippedIds;
+        clippedIds = swapIds;
+        return outputCount;
+    }
+
+    /**
+     * Picks at most four of the candidates: the deepest, the one furthest from it, and the two spanning the most area on either side.
+     */
+    private void reduceCandidates(int candidateCount, int normalAxis) {
+        for (int i = 0; i < candidateCount; i++) {
+            candidateUsed[i] = candidateCount <= ConvexManifoldBundle.MAXIMUM_CONTACT_COUNT;
+        }
+        if (candidateCount <= ConvexManifoldBundle.MAXIMUM_CONTACT_COUNT) {
+            return;
+        }
+        int first = 0;
+        for (int i = 1; i < candidateCount; i++) {
+            if (candidateDepths[i] > candidateDepths[first]) {
+                first = i;
+            }
+        }
+        int second = -1;
+        double bestDistance = -1;
+        for (int i = 0; i < candidateCount; i++) {
+            double dx = polygonX[i] - polygonX[first];
+            double dy = polygonY[i] - polygonY[first];
+            double dz = polygonZ[i] - polygonZ[first];
+            double distance = dx * dx + dy * dy + dz * dz;
+            if (i != first && distance > bestDistance) {
+                bestDistance = distance;
+                second = i;
+            }
+        }
+        int third = -1;
+        int fourth = -1;
+        double mostPositive = 0;
+        double mostNegative = 0;
+        double ex = polygonX[second] - polygonX[first];
+        double ey = polygonY[second] - polygonY[first];
+        double ez = polygonZ[second] - polygonZ[first];
+        for (int i = 0; i < candidateCount; i++) {
+            if (i == first || i == second) {
+                continue;
+            }
+            double dx = polygonX[i] - polygonX[first];
+            double dy = polygonY[i] - polygonY[first];
+            double dz = polygonZ[i] - polygonZ[first];
+            //Signed area of the triangle around the reference face normal.
+            double area = normalAxis == 0 ? ey * dz - ez * dy : normalAxis == 1 ? ez * dx - ex * dz : ex * dy - ey * dx;
+            if (area > mostPositive) {
+                mostPositive = area;
+                third = i;
+            } else if (area < mostNegative) {
+                mostNegative = area;
+                fourth = i;
+            }
+        }
+        candidateUsed[first] = true;
+        candidateUsed[second] = true;
+        if (third >= 0) {
+            candidateUsed[third] = true;
+        }
+        if (fourth >= 0) {
+            candidateUsed[fourth] = true;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package bepu.bepuphysics.collisiondetection.collisiontasks;
+
+/**
+ * Tests capsule-box pairs with the capsule as A. Everything happens in the box's local space: the closest points between the capsule's
+ * segment and the box are found by alternating projection, and a segment that has sunk into the box is pushed out along the face axis of
+ * least penetration. When the segment lies flat against a face, the clipped segment ends become two contacts.
+ */
+public class CapsuleBoxTester implements IPairTester {
+    private static final int PROJECTION_ITERATIONS = 6;
+    private static final double FLAT_THRESHOLD = 0.3;
+
+    @Override
+    public void test(ConvexPairBundle pairs, int count, ConvexManifoldBundle manifolds) {
+        final int w = ConvexPairBundle.WIDTH;
+        for (int i = 0; i < count; i++) {
+            double qx = pairs.orientationBX[i];
+            double qy = pairs.orientationBY[i];
+            double qz = pairs.orientationBZ[i];
+            double qw = pairs.orientationBW[i];
+            double xx = 2 * qx * qx;
+            double yy = 2 * qy * qy;
+            double zz = 2 * qz * qz;
+            double xy = 2 * qx * qy;
+            double xz = 2 * qx * qz;
+            double yz = 2 * qy * qz;
+            double wx = 2 * qw * qx;
+            double wy = 2 * qw * qy;
+            double wz = 2 * qw * qz;
+            double r00 = 1 - yy - zz, r01 = xy - wz, r02 = xz + wy;
+            double r10 = xy + wz, r11 = 1 - xx - zz, r12 = yz - wx;
+            double r20 = xz - wy, r21 = yz + wx, r22 = 1 - xx - yy;
+
+            //Capsule axis in world space.
+            qx = pairs.orientationAX[i];
+            qy = pairs.orientationAY[i];
+            qz = pairs.orientationAZ[i];
+            qw = pairs.orientationAW[i];
+            double worldAxisX = 2 * (qx * qy - qw * qz);
+            double worldAxisY = 1 - 2 * (qx * qx + qz * qz);
+            double worldAxisZ = 2 * (qy * qz + qw * qx);
+
+            //Capsule center and axis in the box's local space.
+            double ox = pairs.offsetBX[i];
+            double oy = pairs.offsetBY[i];
+            double oz = pairs.offsetBZ[i];
+            double cx = -(r00 * ox + r10 * oy + r20 * oz);
+            double cy = -(r01 * ox + r11 * oy + r21 * oz);
+            double cz = -(r02 * ox + r12 * oy + r22 * oz);
+            double ax = r00 * worldAxisX + r10 * worldAxisY + r20 * worldAxisZ;
+            double ay = r01 * worldAxisX + r11 * worldAxisY + r21 * worldAxisZ;
+            double az = r02 * worldAxisX + r12 * worldAxisY + r22 * worldAxisZ;
+
+            double radius = pairs.shapeA[i];
+            double halfLength = pairs.shapeA[w + i];
+            double hx = pairs.shapeB[i];
+            double hy = pairs.shapeB[w + i];
+            double hz = pairs.shapeB[2 * w + i];
+
+            double t = Math.max(-halfLength, Math.min(halfLength, -(cx * ax + cy * ay + cz * az)));
+            double px = 0, py = 0, pz = 0, bx = 0, by = 0, bz = 0;
+            for (int iteration = 0; iteration < PROJECTION_ITERATIONS; iteration++) {
+                px = cx + ax * t;
+                py = cy + ay * t;
+                pz = cz + az * t;
+                bx = Math.max(-hx, Math.min(hx, px));
+                by = Math.max(-hy, Math.min(hy, py));
+                bz = Math.max(-hz, Math.min(hz, pz));
+                t = Math.max(-halfLength, Math.min(halfLength, (bx - cx) * ax + (by - cy) * ay + (bz - cz) * az));
+            }
+            px = cx + ax * t;
+            py = cy + ay * t;
+            pz = cz + az * t;
+            bx = Math.max(-hx, Math.min(hx, px));
+            by = Math.max(-hy, Math.min(hy, py));
+            bz = Math.max(-hz, Math.min(hz, pz));
+            double dx = px - bx;
+            double dy = py - by;
+            double dz = pz - bz;
+            double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+            double lx, ly, lz, depth;
+            if (distance > 1e-12) {
+                double inverse = 1 / distance;
+                lx = dx * inverse;
+                ly = dy * inverse;
+                lz = dz * inverse;
+                depth = radius - distance;
+            } else {
+                //The segment touches the box's interior. Use the face axis along which the whole capsule needs to move the least.
+                double extentX = Math.abs(ax) * halfLength + radius;
+                double extentY = Math.abs(ay) * halfLength + radius;
+                double extentZ = Math.abs(az) * halfLength + radius;
+                double positiveX = hx - cx + extentX, negativeX = hx + cx + extentX;
+                double positiveY = hy - cy + extentY, negativeY = hy + cy + extentY;
+                double positiveZ = hz - cz + extentZ, negativeZ = hz + cz + extentZ;
+                double depthX = Math.min(positiveX, negativeX);
+                double depthY = Math.min(positiveY, negativeY);
+                double depthZ = Math.min(positiveZ, negativeZ);
+                lx = 0;
+                ly = 0;
+                lz = 0;
+                if (depthX <= depthY && depthX <= depthZ) {
+                    lx = positiveX <= negativeX ? 1 : -1;
+                    depth = depthX;
+                } else if (depthY <= depthZ) {
+                    ly = positiveY <= negativeY ? 1 : -1;
+                    depth = depthY;
+                } else {
+                    lz = positiveZ <= negativeZ ? 1 : -1;
+                    depth = depthZ;
+                }
+                //Measure the representative contact from the segment's deepest point along the chosen axis.
+                double tDeep = (ax * lx + ay * ly + az * lz) > 0 ? -halfLength : halfLength;
+                px = cx + ax * tDeep;
+                py = cy + ay * tDeep;
+                pz = cz + az * tDeep;
+                depth = hx * Math.abs(lx) + hy * Math.abs(ly) + hz * Math.abs(lz) + radius - (px * lx + py * ly + pz * lz);
+            }
+            manifolds.setNormal(i, r00 * lx + r01 * ly + r02 * lz, r10 * lx + r11 * ly + r12 * lz, r20 * lx + r21 * ly + r22 * lz);
+            double margin = pairs.speculativeMargin[i];
+            double support = hx * Math.abs(lx) + hy * Math.abs(ly) + hz * Math.abs(lz);
+
+            double low = -halfLength;
+            double high = halfLength;
+            boolean flat = Math.abs(ax * lx + ay * ly + az * lz) < FLAT_THRESHOLD && halfLength > 0;
+            if (flat) {
+                //Clip the segment to the box's extent on the axes that are not part of the normal.
+                low = clipLow(low, cx, ax, hx, lx);
+                high = clipHigh(high, cx, ax, hx, lx);
+                low = clipLow(low, cy, ay, hy, ly);
+                high = clipHigh(high, cy, ay, hy, ly);
+                low = clipLow(low, cz, az, hz, lz);
+                high = clipHigh(high, cz, az, hz, lz);
+            }
+            if (flat && high - low > 1e-6 * halfLength) {
+                addContact(manifolds, i, low, 0, cx, cy, cz, ax, ay, az, lx, ly, lz, support, radius, r00, r01, r02, r10, r11, r12, r20, r21, r22, ox, oy, oz, margin);
+                addContact(manifolds, i, high, 1, cx, cy, cz, ax, ay, az, lx, ly, lz, support, radius, r00, r01, r02, r10, r11, r12, r20, r21, r22, ox, oy, oz, margin);
+            } else {
+                double scale = depth * 0.5 - radius;
+                double sx = px + lx * scale;
+                double sy = py + ly * scale;
+                double sz = pz + lz * scale;
+                manifolds.addContact(i,
+                        r00 * sx + r01 * sy + r02 * sz + ox,
+                        r10 * sx + r11 * sy + r12 * sz + oy,
+                        r20 * sx + r21 * sy + r22 * sz + oz, depth, 2, margin);
+            }
+        }
+    }
+
+    private static double clipLow(double low, double center, double axis, double halfExtent, double normalComponent) {
+        if (Math.abs(normalComponent) > 0.9 || Math.abs(axis) < 1e-12) {
+            return low;
+        }
+        double a = (-halfExtent - center) / axis;
+        double b = (halfExtent - center) / axis;
+        return Math.max(low, Math.min(a, b));
+    }
+
+    private static double clipHigh(double high, double center, double axis, double halfExtent, double normalComponent) {
+        if (Math.abs(normalComponent) > 0.9 || Math.abs(axis) < 1e-12) {
+            return high;
+        }
+        double a = (-halfExtent - center) / axis;
+        double b = (halfExtent - center) / axis;
+        return Math.min(high, Math.max(a, b));
+    }
+
+    private static void addContact(ConvexManifoldBundle manifolds, int lane, double t, int featureId,
+                                   double cx, double cy, double cz, double ax, double ay, double az,
+                                   double lx, double ly, double lz, double support, double radius,
+                                   double r00, double r01, double r02, double r10, double r11, double r12, double r20, double r21, double r22,
+                                   double ox, double oy, double oz, double margin) {
+        double px = cx + ax * t;
+        double py = cy + ay * t;
+        double pz = cz + az * t;
+        double depth = support + radius - (px * lx + py * ly + pz * lz);
+        double scale = depth * 0.5 - radius;
+        double sx = px + lx * scale;
+        double sy = py + ly * scale;
+        double sz = pz + lz * scale;
+        //Contacts are measured from the capsule's center, which sits at -offsetB from the box.
+        manifolds.addContact(lane,
+                r00 * sx + r01 * sy + r02 * sz + ox,
+                r10 * sx + r11 * sy + r12 * sz + oy,
+                r20 * sx + r21 * sy + r22 * sz + oz, depth, featureId, margin);
+    }
+}
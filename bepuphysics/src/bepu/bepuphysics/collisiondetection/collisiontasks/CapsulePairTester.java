@@ -0,0 +1,107 @@
+package bepu.bepuphysics.collisiondetection.collisiontasks;
+
+/**
+ * Tests capsule-capsule pairs. The closest points between the two internal segments give the normal; when the segments are nearly
+ * parallel, both ends of their overlap become contacts so that a capsule lying on another one does not rock around a single point.
+ */
+public class CapsulePairTester implements IPairTester {
+    private static final double PARALLEL_THRESHOLD = 0.995;
+
+    @Override
+    public void test(ConvexPairBundle pairs, int count, ConvexManifoldBundle manifolds) {
+        for (int i = 0; i < count; i++) {
+            double radiusA = pairs.shapeA[i];
+            double halfLengthA = pairs.shapeA[ConvexPairBundle.WIDTH + i];
+            double radiusB = pairs.shapeB[i];
+            double halfLengthB = pairs.shapeB[ConvexPairBundle.WIDTH + i];
+
+            //Local Y axes of both capsules in world space.
+            double qx = pairs.orientationAX[i];
+            double qy = pairs.orientationAY[i];
+            double qz = pairs.orientationAZ[i];
+            double qw = pairs.orientationAW[i];
+            double ax = 2 * (qx * qy - qw * qz);
+            double ay = 1 - 2 * (qx * qx + qz * qz);
+            double az = 2 * (qy * qz + qw * qx);
+            qx = pairs.orientationBX[i];
+            qy = pairs.orientationBY[i];
+            qz = pairs.orientationBZ[i];
+            qw = pairs.orientationBW[i];
+            double bx = 2 * (qx * qy - qw * qz);
+            double by = 1 - 2 * (qx * qx + qz * qz);
+            double bz = 2 * (qy * qz + qw * qx);
+
+            double ox = pairs.offsetBX[i];
+            double oy = pairs.offsetBY[i];
+            double oz = pairs.offsetBZ[i];
+            double axisDot = ax * bx + ay * by + az * bz;
+            double offsetDotA = ox * ax + oy * ay + oz * az;
+            double offsetDotB = ox * bx + oy * by + oz * bz;
+
+            //Closest points between the segments, clamped to both segments' extents.
+            double denominator = 1 - axisDot * axisDot;
+            double ta = denominator > 1e-9 ? (offsetDotA - axisDot * offsetDotB) / denominator : 0;
+            ta = Math.max(-halfLengthA, Math.min(halfLengthA, ta));
+            double tb = Math.max(-halfLengthB, Math.min(halfLengthB, ta * axisDot - offsetDotB));
+            ta = Math.max(-halfLengthA, Math.min(halfLengthA, tb * axisDot + offsetDotA));
+
+            double dx = ax * ta - (ox + bx * tb);
+            double dy = ay * ta - (oy + by * tb);
+            double dz = az * ta - (oz + bz * tb);
+            double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            double nx, ny, nz;
+            if (distance > 1e-12) {
+                double inverse = 1 / distance;
+                nx = dx * inverse;
+                ny = dy * inverse;
+                nz = dz * inverse;
+            } else {
+                //The segments intersect; push apart along a direction perpendicular to both.
+                nx = ay * bz - az * by;
+                ny = az * bx - ax * bz;
+                nz = ax * by - ay * bx;
+                double lengthSquared = nx * nx + ny * ny + nz * nz;
+                if (lengthSquared < 1e-12) {
+                    boolean useX = Math.abs(ax) < 0.9;
+                    nx = useX ? 0 : az;
+                    ny = useX ? az : 0;
+                    nz = useX ? -ay : -ax;
+                    lengthSquared = nx * nx + ny * ny + nz * nz;
+                }
+                double inverse = 1 / Math.sqrt(lengthSquared);
+                nx *= inverse;
+                ny *= inverse;
+                nz *= inverse;
+            }
+            manifolds.setNormal(i, nx, ny, nz);
+            double margin = pairs.speculativeMargin[i];
+
+            //Project B's segment onto A's axis to find the overlap of nearly parallel segments.
+            double projectedHalfLength = halfLengthB * Math.abs(axisDot);
+            double low = Math.max(-halfLengthA, offsetDotA - projectedHalfLength);
+            double high = Math.min(halfLengthA, offsetDotA + projectedHalfLength);
+            if (Math.abs(axisDot) > PARALLEL_THRESHOLD && high - low > 1e-6 * (halfLengthA + halfLengthB + 1e-12)) {
+                addSegmentContact(manifolds, i, low, 0, ax, ay, az, bx, by, bz, ox, oy, oz, axisDot, offsetDotB, halfLengthB, radiusA, radiusB, nx, ny, nz, margin);
+                addSegmentContact(manifolds, i, high, 1, ax, ay, az, bx, by, bz, ox, oy, oz, axisDot, offsetDotB, halfLengthB, radiusA, radiusB, nx, ny, nz, margin);
+            } else {
+                double depth = radiusA + radiusB - distance;
+                double scale = depth * 0.5 - radiusA;
+                manifolds.addContact(i, ax * ta + nx * scale, ay * ta + ny * scale, az * ta + nz * scale, depth, 0, margin);
+            }
+        }
+    }
+
+    private static void addSegmentContact(ConvexManifoldBundle manifolds, int lane, double ta, int featureId,
+                                          double ax, double ay, double az, double bx, double by, double bz,
+                                          double ox, double oy, double oz, double axisDot, double offsetDotB, double halfLengthB,
+                                          double radiusA, double radiusB, double nx, double ny, double nz, double margin) {
+        double tb = Math.max(-halfLengthB, Math.min(halfLengthB, ta * axisDot - offsetDotB));
+        double pax = ax * ta;
+        double pay = ay * ta;
+        double paz = az * ta;
+        double separation = (pax - ox - bx * tb) * nx + (pay - oy - by * tb) * ny + (paz - oz - bz * tb) * nz;
+        double depth = radiusA + radiusB - separation;
+        double scale = depth * 0.5 - radiusA;
+        manifolds.addContact(lane, pax + nx * scale, pay + ny * scale, paz + nz * scale, depth, featureId, margin);
+    }
+}
@@ -0,0 +1,68 @@
+package bepu.bepuphysics.collisiondetection.collisiontasks;
+
+/**
+ * Structure of arrays receiving the contact manifolds of a {@link ConvexPairBundle}. Every contact of a lane shares the lane's normal,
+ * which points from B toward A. Contact offsets are measured from A's position.
+ * <p>
+ * Contact c of lane l lives at {@code c * ConvexPairBundle.WIDTH + l}.
+ */
+public class ConvexManifoldBundle {
+    public static final int MAXIMUM_CONTACT_COUNT = 4;
+    private static final int SIZE = MAXIMUM_CONTACT_COUNT * ConvexPairBundle.WIDTH;
+
+    public final int[] contactCount = new int[ConvexPairBundle.WIDTH];
+    public final double[] normalX = new double[ConvexPairBundle.WIDTH];
+    public final double[] normalY = new double[ConvexPairBundle.WIDTH];
+    public final double[] normalZ = new double[ConvexPairBundle.WIDTH];
+    public final double[] offsetX = new double[SIZE];
+    public final double[] offsetY = new double[SIZE];
+    public final double[] offsetZ = new double[SIZE];
+    public final double[] depth = new double[SIZE];
+    public final int[] featureId = new int[SIZE];
+
+    public static int getSlot(int contactIndex, int lane) {
+        return contactIndex * ConvexPairBundle.WIDTH + lane;
+    }
+
+    void setNormal(int lane, double x, double y, double z) {
+        normalX[lane] = x;
+        normalY[lane] = y;
+        normalZ[lane] = z;
+    }
+
+    /**
+     * Appends a contact to a lane if it is within the speculative margin.
+     */
+    void addContact(int lane, double x, double y, double z, double contactDepth, int contactFeatureId, double speculativeMargin) {
+        int count = contactCount[lane];
+        if (contactDepth >= -speculativeMargin && count < MAXIMUM_CONTACT_COUNT) {
+            int slot = getSlot(count, lane);
+            offsetX[slot] = x;
+            offsetY[slot] = y;
+            offsetZ[slot] = z;
+            depth[slot] = contactDepth;
+            featureId[slot] = contactFeatureId;
+            contactCount[lane] = count + 1;
+        }
+    }
+
+    /**
+     * Turns the manifold of a lane around, as if A and B had been swapped when the lane was tested.
+     *
+     * @param lane Lane to flip.
+     * @param offsetBX X component of the offset from the tested A to the tested B.
+     * @param offsetBY Y component of the offset from the tested A to the tested B.
+     * @param offsetBZ Z component of the offset from the tested A to the tested B.
+     */
+    public void flip(int lane, double offsetBX, double offsetBY, double offsetBZ) {
+        normalX[lane] = -normalX[lane];
+        normalY[lane] = -normalY[lane];
+        normalZ[lane] = -normalZ[lane];
+        for (int i = 0; i < contactCount[lane]; i++) {
+            int slot = getSlot(i, lane);
+            offsetX[slot] -= offsetBX;
+            offsetY[slot] -= offsetBY;
+            offsetZ[slot] -= offsetBZ;
+        }
+    }
+}
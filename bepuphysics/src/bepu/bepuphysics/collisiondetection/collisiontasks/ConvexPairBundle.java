@@ -0,0 +1,30 @@
+package bepu.bepuphysics.collisiondetection.collisiontasks;
+
+/**
+ * Structure of arrays holding up to {@link #WIDTH} convex pairs of the same type pair. Every lane describes shape B relative to shape A, so
+ * testers work in a frame centered on A's position and never see absolute positions.
+ * <p>
+ * Shape parameters are stored in the order used by {@code ConvexShapeBatch}; parameter p of lane l lives at {@code p * WIDTH + l}.
+ */
+public class ConvexPairBundle {
+    /**
+     * Number of pairs in a full bundle. Loops over a bundle have a fixed, small trip count that the JIT can unroll and vectorize.
+     */
+    public static final int WIDTH = 8;
+    public static final int MAXIMUM_SHAPE_PARAMETERS = 3;
+
+    public final double[] offsetBX = new double[WIDTH];
+    public final double[] offsetBY = new double[WIDTH];
+    public final double[] offsetBZ = new double[WIDTH];
+    public final double[] orientationAX = new double[WIDTH];
+    public final double[] orientationAY = new double[WIDTH];
+    public final double[] orientationAZ = new double[WIDTH];
+    public final double[] orientationAW = new double[WIDTH];
+    public final double[] orientationBX = new double[WIDTH];
+    public final double[] orientationBY = new double[WIDTH];
+    public final double[] orientationBZ = new double[WIDTH];
+    public final double[] orientationBW = new double[WIDTH];
+    public final double[] shapeA = new double[MAXIMUM_SHAPE_PARAMETERS * WIDTH];
+    public final double[] shapeB = new double[MAXIMUM_SHAPE_PARAMETERS * WIDTH];
+    public final double[] speculativeMargin = new double[WIDTH];
+}
@@ -0,0 +1,16 @@
+package bepu.bepuphysics.collisiondetection.collisiontasks;
+
+/**
+ * Generates contact manifolds for a bundle of pairs that all share the same pair of shape types.
+ * Testers may keep scratch state, so each thread needs its own instances.
+ */
+public interface IPairTester {
+    /**
+     * Tests a bundle of pairs.
+     *
+     * @param pairs Pairs to test. Lanes [0, count) are filled.
+     * @param count Number of filled lanes.
+     * @param manifolds Receives one manifold per lane. Contact counts must be zeroed before the call.
+     */
+    void test(ConvexPairBundle pairs, int count, ConvexManifoldBundle manifolds);
+}
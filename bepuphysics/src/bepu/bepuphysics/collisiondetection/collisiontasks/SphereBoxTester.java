@@ -0,0 +1,76 @@
+package bepu.bepuphysics.collisiondetection.collisiontasks;
+
+/**
+ * Tests sphere-box pairs with the sphere as A. The sphere center is brought into the box's local space and clamped to the box; when the
+ * center is inside, the face of least penetration is used instead. Both cases are computed for every lane and selected without branching.
+ */
+public class SphereBoxTester implements IPairTester {
+    @Override
+    public void test(ConvexPairBundle pairs, int count, ConvexManifoldBundle manifolds) {
+        for (int i = 0; i < count; i++) {
+            double qx = pairs.orientationBX[i];
+            double qy = pairs.orientationBY[i];
+            double qz = pairs.orientationBZ[i];
+            double qw = pairs.orientationBW[i];
+            double xx = 2 * qx * qx;
+            double yy = 2 * qy * qy;
+            double zz = 2 * qz * qz;
+            double xy = 2 * qx * qy;
+            double xz = 2 * qx * qz;
+            double yz = 2 * qy * qz;
+            double wx = 2 * qw * qx;
+            double wy = 2 * qw * qy;
+            double wz = 2 * qw * qz;
+            double r00 = 1 - yy - zz, r01 = xy - wz, r02 = xz + wy;
+            double r10 = xy + wz, r11 = 1 - xx - zz, r12 = yz - wx;
+            double r20 = xz - wy, r21 = yz + wx, r22 = 1 - xx - yy;
+
+            //Sphere center relative to the box, in the box's local space.
+            double ox = -pairs.offsetBX[i];
+            double oy = -pairs.offsetBY[i];
+            double oz = -pairs.offsetBZ[i];
+            double px = r00 * ox + r10 * oy + r20 * oz;
+            double py = r01 * ox + r11 * oy + r21 * oz;
+            double pz = r02 * ox + r12 * oy + r22 * oz;
+
+            double radius = pairs.shapeA[i];
+            double hx = pairs.shapeB[i];
+            double hy = pairs.shapeB[ConvexPairBundle.WIDTH + i];
+            double hz = pairs.shapeB[2 * ConvexPairBundle.WIDTH + i];
+            double dx = px - Math.max(-hx, Math.min(hx, px));
+            double dy = py - Math.max(-hy, Math.min(hy, py));
+            double dz = pz - Math.max(-hz, Math.min(hz, pz));
+            double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            boolean outside = distance > 1e-12;
+            double inverseDistance = outside ? 1 / distance : 0;
+
+            double depthX = hx - Math.abs(px);
+            double depthY = hy - Math.abs(py);
+            double depthZ = hz - Math.abs(pz);
+            boolean useX = depthX <= depthY && depthX <= depthZ;
+            boolean useY = !useX && depthY <= depthZ;
+            boolean useZ = !useX && !useY;
+            double faceDepth = Math.min(depthX, Math.min(depthY, depthZ));
+
+            double lx = outside ? dx * inverseDistance : useX ? (px < 0 ? -1 : 1) : 0;
+            double ly = outside ? dy * inverseDistance : useY ? (py < 0 ? -1 : 1) : 0;
+            double lz = outside ? dz * inverseDistance : useZ ? (pz < 0 ? -1 : 1) : 0;
+            double depth = outside ? radius - distance : radius + faceDepth;
+
+            //Local normal points from the box toward the sphere; bring it back to world space.
+            double nx = r00 * lx + r01 * ly + r02 * lz;
+            double ny = r10 * lx + r11 * ly + r12 * lz;
+            double nz = r20 * lx + r21 * ly + r22 * lz;
+            double scale = depth * 0.5 - radius;
+            manifolds.normalX[i] = nx;
+            manifolds.normalY[i] = ny;
+            manifolds.normalZ[i] = nz;
+            manifolds.offsetX[i] = nx * scale;
+            manifolds.offsetY[i] = ny * scale;
+            manifolds.offsetZ[i] = nz * scale;
+            manifolds.depth[i] = depth;
+            manifolds.featureId[i] = 0;
+            manifolds.contactCount[i] = depth >= -pairs.speculativeMargin[i] ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package bepu.bepuphysics.collisiondetection.collisiontasks;
+
+/**
+ * Tests sphere-sphere pairs. Every lane runs the same straight line arithmetic, so the loop has no data dependent branches.
+ */
+public class SpherePairTester implements IPairTester {
+    @Override
+    public void test(ConvexPairBundle pairs, int count, ConvexManifoldBundle manifolds) {
+        for (int i = 0; i < count; i++) {
+            double ox = pairs.offsetBX[i];
+            double oy = pairs.offsetBY[i];
+            double oz = pairs.offsetBZ[i];
+            double radiusA = pairs.shapeA[i];
+            double radiusB = pairs.shapeB[i];
+            double distance = Math.sqrt(ox * ox + oy * oy + oz * oz);
+            //Coincident centers have no meaningful direction; fall back to an arbitrary one.
+            boolean separated = distance > 1e-12;
+            double inverseDistance = separated ? -1 / distance : 0;
+            double nx = ox * inverseDistance;
+            double ny = separated ? oy * inverseDistance : 1;
+            double nz = oz * inverseDistance;
+            double depth = radiusA + radiusB - distance;
+            //Put the contact halfway between the two surfaces.
+            double scale = depth * 0.5 - radiusA;
+            manifolds.normalX[i] = nx;
+            manifolds.normalY[i] = ny;
+            manifolds.normalZ[i] = nz;
+            manifolds.offsetX[i] = nx * scale;
+            manifolds.offsetY[i] = ny * scale;
+            manifolds.offsetZ[i] = nz * scale;
+            manifolds.depth[i] = depth;
+            manifolds.featureId[i] = 0;
+            manifolds.contactCount[i] = depth >= -pairs.speculativeMargin[i] ? 1 : 0;
+        }
+    }
+}
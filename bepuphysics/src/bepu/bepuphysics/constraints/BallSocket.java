@@ -0,0 +1,49 @@
+package bepu.bepuphysics.constraints;
+
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Describes a ball socket joint: a point attached to body A is held at the position of a point attached to body B, leaving rotation free.
+ */
+public class BallSocket {
+    private final Vector3Double localOffsetA = new Vector3Double();
+    private final Vector3Double localOffsetB = new Vector3Double();
+    private final SpringSettings springSettings = new SpringSettings(30, 1);
+
+    /**
+     * Gets the offset from body A's position to the anchor, in A's local space.
+     *
+     * @return Local anchor offset on body A.
+     */
+    public Vector3Double getLocalOffsetA() {
+        return localOffsetA;
+    }
+
+    public BallSocket setLocalOffsetA(Vector3Double localOffsetA) {
+        this.localOffsetA.set(localOffsetA);
+        return this;
+    }
+
+    /**
+     * Gets the offset from body B's position to the anchor, in B's local space.
+     *
+     * @return Local anchor offset on body B.
+     */
+    public Vector3Double getLocalOffsetB() {
+        return localOffsetB;
+    }
+
+    public BallSocket setLocalOffsetB(Vector3Double localOffsetB) {
+        this.localOffsetB.set(localOffsetB);
+        return this;
+    }
+
+    public SpringSettings getSpringSettings() {
+        return springSettings;
+    }
+
+    public BallSocket setSpringSettings(SpringSettings springSettings) {
+        this.springSettings.set(springSettings);
+        return this;
+    }
+}
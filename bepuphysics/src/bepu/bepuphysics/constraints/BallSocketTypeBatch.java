@@ -0,0 +1,223 @@
+package bepu.bepuphysics.constraints;
+
+import bepu.bepuphysics.Bodies;
+import bepu.bepuphysics.BodyVelocity;
+import bepu.bepuphysics.collidables.RigidPose;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Ball socket joints. Each joint removes the three linear degrees of freedom between an anchor on body A and an anchor on body B.
+ */
+public class BallSocketTypeBatch extends TypeBatch {
+    public static final int TYPE_ID = 1;
+
+    //Per constraint.
+    private double[] localOffsetsA;
+    private double[] localOffsetsB;
+    private double[] springFrequencies;
+    private double[] springDampingRatios;
+    private double[] impulses;
+
+    //Prestep outputs: world space anchor offsets, bias velocity and the lower triangle of the softened effective mass.
+    private double[] offsetsA;
+    private double[] offsetsB;
+    private double[] biasVelocities;
+    private double[] effectiveMasses;
+    private double[] softnessScales;
+
+    public BallSocketTypeBatch(int initialCapacity) {
+        super(TYPE_ID, initialCapacity);
+        allocateData(getCapacity());
+    }
+
+    private void allocateData(int capacity) {
+        localOffsetsA = new double[capacity * 3];
+        localOffsetsB = new double[capacity * 3];
+        springFrequencies = new double[capacity];
+        springDampingRatios = new double[capacity];
+        impulses = new double[capacity * 3];
+        offsetsA = new double[capacity * 3];
+        offsetsB = new double[capacity * 3];
+        biasVelocities = new double[capacity * 3];
+        effectiveMasses = new double[capacity * 6];
+        softnessScales = new double[capacity];
+    }
+
+    @Override
+    protected void resizeData(int capacity) {
+        double[] oldLocalOffsetsA = localOffsetsA;
+        double[] oldLocalOffsetsB = localOffsetsB;
+        double[] oldSpringFrequencies = springFrequencies;
+        double[] oldSpringDampingRatios = springDampingRatios;
+        double[] oldImpulses = impulses;
+        allocateData(capacity);
+        System.arraycopy(oldLocalOffsetsA, 0, localOffsetsA, 0, count * 3);
+        System.arraycopy(oldLocalOffsetsB, 0, localOffsetsB, 0, count * 3);
+        System.arraycopy(oldSpringFrequencies, 0, springFrequencies, 0, count);
+        System.arraycopy(oldSpringDampingRatios, 0, springDampingRatios, 0, count);
+        System.arraycopy(oldImpulses, 0, impulses, 0, count * 3);
+    }
+
+    @Override
+    protected void copy(int source, TypeBatch targetBatch, int target) {
+        BallSocketTypeBatch other = (BallSocketTypeBatch) targetBatch;
+        System.arraycopy(localOffsetsA, source * 3, other.localOffsetsA, target * 3, 3);
+        System.arraycopy(localOffsetsB, source * 3, other.localOffsetsB, target * 3, 3);
+        other.springFrequencies[target] = springFrequencies[source];
+        other.springDampingRatios[target] = springDampingRatios[source];
+        System.arraycopy(impulses, source * 3, other.impulses, target * 3, 3);
+    }
+
+    int add(int handle, int bodyHandleA, int bodyHandleB, BallSocket description) {
+        int index = allocate(handle, bodyHandleA, bodyHandleB);
+        Vector3Double a = description.getLocalOffsetA();
+        Vector3Double b = description.getLocalOffsetB();
+        localOffsetsA[index * 3] = a.x;
+        localOffsetsA[index * 3 + 1] = a.y;
+        localOffsetsA[index * 3 + 2] = a.z;
+        localOffsetsB[index * 3] = b.x;
+        localOffsetsB[index * 3 + 1] = b.y;
+        localOffsetsB[index * 3 + 2] = b.z;
+        springFrequencies[index] = description.getSpringSettings().getFrequency();
+        springDampingRatios[index] = description.getSpringSettings().getDampingRatio();
+        impulses[index * 3] = 0;
+        impulses[index * 3 + 1] = 0;
+        impulses[index * 3 + 2] = 0;
+        return index;
+    }
+
+    @Override
+    public void prestep(int start, int end, double dt, boolean firstSubstep, Bodies bodies) {
+        for (int i = start; i < end; i++) {
+            int slotA = i * 2;
+            int slotB = slotA + 1;
+            gatherBody(slotA, bodies);
+            gatherBody(slotB, bodies);
+            RigidPose poseA = bodies.getPose(bodyHandles[slotA]);
+            RigidPose poseB = bodies.getPose(bodyHandles[slotB]);
+            int o = i * 3;
+            rotate(localOffsetsA, o, poseA.getOrientation(), offsetsA);
+            rotate(localOffsetsB, o, poseB.getOrientation(), offsetsB);
+            double rax = offsetsA[o], ray = offsetsA[o + 1], raz = offsetsA[o + 2];
+            double rbx = offsetsB[o], rby = offsetsB[o + 1], rbz = offsetsB[o + 2];
+            Vector3Double positionA = poseA.getPosition();
+            Vector3Double positionB = poseB.getPosition();
+            //Error is the separation of the anchors, measured from B's anchor to A's.
+            double ex = positionA.x + rax - positionB.x - rbx;
+            double ey = positionA.y + ray - positionB.y - rby;
+            double ez = positionA.z + raz - positionB.z - rbz;
+
+            double frequency = springFrequencies[i];
+            double dampingRatio = springDampingRatios[i];
+            double angularFrequency = frequency * 2 * Math.PI;
+            double positionErrorToVelocity = angularFrequency / (angularFrequency * dt + 2 * dampingRatio);
+            double angularFrequencyDt = angularFrequency * dt;
+            double effectiveMassScale = 1 / (1 + 1 / (angularFrequencyDt * (angularFrequencyDt + 2 * dampingRatio)));
+            softnessScales[i] = 1 - effectiveMassScale;
+            biasVelocities[o] = -ex * positionErrorToVelocity;
+            biasVelocities[o + 1] = -ey * positionErrorToVelocity;
+            biasVelocities[o + 2] = -ez * positionErrorToVelocity;
+
+            //K = (mA + mB) * I + skew(rA) * IA * skew(rA)^T + skew(rB) * IB * skew(rB)^T.
+            double inverseMassSum = inverseMasses[slotA] + inverseMasses[slotB];
+            int m = i * 6;
+            double k00 = inverseMassSum, k10 = 0, k11 = inverseMassSum, k20 = 0, k21 = 0, k22 = inverseMassSum;
+            for (int body = 0; body < 2; body++) {
+                int slot = body == 0 ? slotA : slotB;
+                double rx = body == 0 ? rax : rbx;
+                double ry = body == 0 ? ray : rby;
+                double rz = body == 0 ? raz : rbz;
+                int io = slot * INERTIA_STRIDE;
+                double[] inertia = inverseInertias;
+                double ixx = inertia[io], iyx = inertia[io + 1], iyy = inertia[io + 2];
+                double izx = inertia[io + 3], izy = inertia[io + 4], izz = inertia[io + 5];
+                //S = skew(r); rows of S: (0, -rz, ry), (rz, 0, -rx), (-ry, rx, 0). Compute S * I, then (S * I) * S^T.
+                double a00 = -rz * iyx + ry * izx, a01 = -rz * iyy + ry * izy, a02 = -rz * izy + ry * izz;
+                double a10 = rz * ixx - rx * izx, a11 = rz * iyx - rx * izy, a12 = rz * izx - rx * izz;
+                double a20 = -ry * ixx + rx * iyx, a21 = -ry * iyx + rx * iyy, a22 = -ry * izx + rx * izy;
+                k00 += -a01 * rz + a02 * ry;
+                k10 += -a11 * rz + a12 * ry;
+                k11 += a10 * rz - a12 * rx;
+                k20 += -a21 * rz + a22 * ry;
+                k21 += a20 * rz - a22 * rx;
+                k22 += -a20 * ry + a21 * rx;
+            }
+            //Invert the symmetric matrix through its cofactors.
+            double c00 = k11 * k22 - k21 * k21;
+            double c10 = k21 * k20 - k10 * k22;
+            double c20 = k10 * k21 - k11 * k20;
+            double determinant = k00 * c00 + k10 * c10 + k20 * c20;
+            double inverseDeterminant = determinant != 0 ? effectiveMassScale / determinant : 0;
+            effectiveMasses[m] = c00 * inverseDeterminant;
+            effectiveMasses[m + 1] = c10 * inverseDeterminant;
+            effectiveMasses[m + 2] = (k00 * k22 - k20 * k20) * inverseDeterminant;
+            effectiveMasses[m + 3] = c20 * inverseDeterminant;
+            effectiveMasses[m + 4] = (k20 * k10 - k00 * k21) * inverseDeterminant;
+            effectiveMasses[m + 5] = (k00 * k11 - k10 * k10) * inverseDeterminant;
+        }
+    }
+
+    private static void rotate(double[] source, int offset, QuaternionDouble orientation, double[] target) {
+        double x = source[offset];
+        double y = source[offset + 1];
+        double z = source[offset + 2];
+        double qx = orientation.getX();
+        double qy = orientation.getY();
+        double qz = orientation.getZ();
+        double qw = orientation.getW();
+        //v + 2w(q x v) + 2q x (q x v)
+        double tx = 2 * (qy * z - qz * y);
+        double ty = 2 * (qz * x - qx * z);
+        double tz = 2 * (qx * y - qy * x);
+        target[offset] = x + qw * tx + qy * tz - qz * ty;
+        target[offset + 1] = y + qw * ty + qz * tx - qx * tz;
+        target[offset + 2] = z + qw * tz + qx * ty - qy * tx;
+    }
+
+    private void apply(int i, double lx, double ly, double lz) {
+        int o = i * 3;
+        double rax = offsetsA[o], ray = offsetsA[o + 1], raz = offsetsA[o + 2];
+        double rbx = offsetsB[o], rby = offsetsB[o + 1], rbz = offsetsB[o + 2];
+        applyImpulse(i * 2, lx, ly, lz, ray * lz - raz * ly, raz * lx - rax * lz, rax * ly - ray * lx);
+        applyImpulse(i * 2 + 1, -lx, -ly, -lz, -(rby * lz - rbz * ly), -(rbz * lx - rbx * lz), -(rbx * ly - rby * lx));
+    }
+
+    @Override
+    public void warmStart(int start, int end) {
+        for (int i = start; i < end; i++) {
+            apply(i, impulses[i * 3], impulses[i * 3 + 1], impulses[i * 3 + 2]);
+        }
+    }
+
+    @Override
+    public void solve(int start, int end) {
+        for (int i = start; i < end; i++) {
+            int o = i * 3;
+            BodyVelocity velocityA = velocities[i * 2];
+            BodyVelocity velocityB = velocities[i * 2 + 1];
+            Vector3Double linearA = velocityA.getLinear();
+            Vector3Double angularA = velocityA.getAngular();
+            Vector3Double linearB = velocityB.getLinear();
+            Vector3Double angularB = velocityB.getAngular();
+            double rax = offsetsA[o], ray = offsetsA[o + 1], raz = offsetsA[o + 2];
+            double rbx = offsetsB[o], rby = offsetsB[o + 1], rbz = offsetsB[o + 2];
+            //Velocity of A's anchor relative to B's anchor.
+            double vx = linearA.x + angularA.y * raz - angularA.z * ray - linearB.x - (angularB.y * rbz - angularB.z * rby);
+            double vy = linearA.y + angularA.z * rax - angularA.x * raz - linearB.y - (angularB.z * rbx - angularB.x * rbz);
+            double vz = linearA.z + angularA.x * ray - angularA.y * rax - linearB.z - (angularB.x * rby - angularB.y * rbx);
+            double dx = biasVelocities[o] - vx;
+            double dy = biasVelocities[o + 1] - vy;
+            double dz = biasVelocities[o + 2] - vz;
+            int m = i * 6;
+            double softness = softnessScales[i];
+            double ix = effectiveMasses[m] * dx + effectiveMasses[m + 1] * dy + effectiveMasses[m + 3] * dz - impulses[o] * softness;
+            double iy = effectiveMasses[m + 1] * dx + effectiveMasses[m + 2] * dy + effectiveMasses[m + 4] * dz - impulses[o + 1] * softness;
+            double iz = effectiveMasses[m + 3] * dx + effectiveMasses[m + 4] * dy + effectiveMasses[m + 5] * dz - impulses[o + 2] * softness;
+            impulses[o] += ix;
+            impulses[o + 1] += iy;
+            impulses[o + 2] += iz;
+            apply(i, ix, iy, iz);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package bepu.bepuphysics.constraints;
+
+/**
+ * Set of constraints that share no dynamic body, so all of them can be solved at the same time without synchronization. Kinematic bodies
+ * are never written by the solver and may appear in any number of constraints of a batch.
+ */
+public class ConstraintBatch {
+    private final TypeBatch[] typeBatches;
+    //One bit per body handle, set if a constraint in this batch writes to the body.
+    private long[] referencedBodies = new long[1];
+
+    ConstraintBatch(int typeCount) {
+        typeBatches = new TypeBatch[typeCount];
+    }
+
+    /**
+     * Gets the batch holding the constraints of a type.
+     *
+     * @param typeId Id of the constraint type.
+     *
+     * @return Type batch, or null if no constraint of the type was ever added to this batch.
+     */
+    public TypeBatch getTypeBatch(int typeId) {
+        return typeBatches[typeId];
+    }
+
+    public int getTypeCount() {
+        return typeBatches.length;
+    }
+
+    void setTypeBatch(int typeId, TypeBatch typeBatch) {
+        typeBatches[typeId] = typeBatch;
+    }
+
+    public int getConstraintCount() {
+        int count = 0;
+        for (TypeBatch typeBatch : typeBatches) {
+            if (typeBatch != null) {
+                count += typeBatch.getCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether a constraint in this batch already writes to a body.
+     *
+     * @param bodyHandle Handle of the body. Negative handles are never referenced.
+     *
+     * @return True if the body is referenced; otherwise false.
+     */
+    public boolean isReferenced(int bodyHandle) {
+        if (bodyHandle < 0) {
+            return false;
+        }
+        int word = bodyHandle >> 6;
+        return word < referencedBodies.length && (referencedBodies[word] & (1L << bodyHandle)) != 0;
+    }
+
+    void reference(int bodyHandle) {
+        if (bodyHandle < 0) {
+            return;
+        }
+        int word = bodyHandle >> 6;
+        if (word >= referencedBodies.length) {
+            long[] newReferencedBodies = new long[Math.max(word + 1, referencedBodies.length * 2)];
+            System.arraycopy(referencedBodies, 0, newReferencedBodies, 0, referencedBodies.length);
+            referencedBodies = newReferencedBodies;
+        }
+        referencedBodies[word] |= 1L << bodyHandle;
+    }
+
+    void unreference(int bodyHandle) {
+        if (bodyHandle < 0) {
+            return;
+        }
+        referencedBodies[bodyHandle >> 6] &= ~(1L << bodyHandle);
+    }
+}
@@ -0,0 +1,59 @@
+package bepu.bepuphysics.constraints;
+
+/**
+ * Material properties used by contact constraints.
+ */
+public class ContactMaterial {
+    private double frictionCoefficient = 1;
+    private double maximumRecoveryVelocity = 2;
+    private final SpringSettings springSettings = new SpringSettings(30, 1);
+
+    /**
+     * Gets the ratio of the largest friction impulse to the normal impulse at each contact.
+     *
+     * @return Friction coefficient.
+     */
+    public double getFrictionCoefficient() {
+        return frictionCoefficient;
+    }
+
+    public ContactMaterial setFrictionCoefficient(double frictionCoefficient) {
+        this.frictionCoefficient = frictionCoefficient;
+        return this;
+    }
+
+    /**
+     * Gets the largest velocity at which penetrating shapes are pushed apart. Keeps deep penetrations from resolving explosively.
+     *
+     * @return Maximum recovery velocity.
+     */
+    public double getMaximumRecoveryVelocity() {
+        return maximumRecoveryVelocity;
+    }
+
+    public ContactMaterial setMaximumRecoveryVelocity(double maximumRecoveryVelocity) {
+        this.maximumRecoveryVelocity = maximumRecoveryVelocity;
+        return this;
+    }
+
+    /**
+     * Gets the stiffness and damping with which penetration is corrected.
+     *
+     * @return Spring settings of contacts.
+     */
+    public SpringSettings getSpringSettings() {
+        return springSettings;
+    }
+
+    public ContactMaterial setSpringSettings(SpringSettings springSettings) {
+        this.springSettings.set(springSettings);
+        return this;
+    }
+
+    public ContactMaterial set(ContactMaterial other) {
+        this.frictionCoefficient = other.frictionCoefficient;
+        this.maximumRecoveryVelocity = other.maximumRecoveryVelocity;
+        this.springSettings.set(other.springSettings);
+        return this;
+    }
+}
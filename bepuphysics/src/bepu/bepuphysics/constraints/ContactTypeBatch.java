@@ -0,0 +1,448 @@
+package bepu.bepuphysics.constraints;
+
+import bepu.bepuphysics.Bodies;
+import bepu.bepuphysics.BodyVelocity;
+import bepu.bepuphysics.collisiondetection.PairCache;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Contact constraints with up to {@link PairCache#MAXIMUM_CONTACT_COUNT} contacts sharing one normal. Each contact has a non-penetration
+ * impulse and two friction impulses bounded by the friction coefficient times the normal impulse.
+ * <p>
+ * Contact data is written once per frame by collision detection. When a frame is split into substeps, later substeps estimate how the
+ * penetration depth changed from the bodies' velocities instead of running collision detection again.
+ */
+public class ContactTypeBatch extends TypeBatch {
+    public static final int TYPE_ID = 0;
+    private static final int CONTACTS = PairCache.MAXIMUM_CONTACT_COUNT;
+
+    //Per constraint.
+    private int[] contactCounts;
+    private double[] normals;
+    private double[] frictionCoefficients;
+    private double[] maximumRecoveryVelocities;
+    private double[] springFrequencies;
+    private double[] springDampingRatios;
+
+    //Per contact, CONTACTS slots per constraint. Offsets are from body A's position to the contact.
+    private double[] offsets;
+    private double[] depths;
+    private int[] featureIds;
+    //Accumulated normal, first tangent and second tangent impulses.
+    private double[] impulses;
+
+    //Prestep outputs. Offset from A's position to B's position and the tangent basis are per constraint; the rest is per contact.
+    private double[] offsetsB;
+    private double[] tangents;
+    private double[] effectiveMassScales;
+    private double[] normalEffectiveMasses;
+    private double[] tangentEffectiveMasses;
+    private double[] biasVelocities;
+
+    public ContactTypeBatch(int initialCapacity) {
+        super(TYPE_ID, initialCapacity);
+        allocateData(getCapacity());
+    }
+
+    private void allocateData(int capacity) {
+        contactCounts = new int[capacity];
+        normals = new double[capacity * 3];
+        frictionCoefficients = new double[capacity];
+        maximumRecoveryVelocities = new double[capacity];
+        springFrequencies = new double[capacity];
+        springDampingRatios = new double[capacity];
+        offsets = new double[capacity * CONTACTS * 3];
+        depths = new double[capacity * CONTACTS];
+        featureIds = new int[capacity * CONTACTS];
+        impulses = new double[capacity * CONTACTS * 3];
+        offsetsB = new double[capacity * 3];
+        tangents = new double[capacity * 6];
+        effectiveMassScales = new double[capacity];
+        normalEffectiveMasses = new double[capacity * CONTACTS];
+        tangentEffectiveMasses = new double[capacity * CONTACTS * 2];
+        biasVelocities = new double[capacity * CONTACTS];
+    }
+
+    @Override
+    protected void resizeData(int capacity) {
+        int[] oldContactCounts = contactCounts;
+        double[] oldNormals = normals;
+        double[] oldFrictionCoefficients = frictionCoefficients;
+        double[] oldMaximumRecoveryVelocities = maximumRecoveryVelocities;
+        double[] oldSpringFrequencies = springFrequencies;
+        double[] oldSpringDampingRatios = springDampingRatios;
+        double[] oldOffsets = offsets;
+        double[] oldDepths = depths;
+        int[] oldFeatureIds = featureIds;
+        double[] oldImpulses = impulses;
+        allocateData(capacity);
+        //Prestep outputs are recomputed before every use, so only the persistent data is copied.
+        System.arraycopy(oldContactCounts, 0, contactCounts, 0, count);
+        System.arraycopy(oldNormals, 0, normals, 0, count * 3);
+        System.arraycopy(oldFrictionCoefficients, 0, frictionCoefficients, 0, count);
+        System.arraycopy(oldMaximumRecoveryVelocities, 0, maximumRecoveryVelocities, 0, count);
+        System.arraycopy(oldSpringFrequencies, 0, springFrequencies, 0, count);
+        System.arraycopy(oldSpringDampingRatios, 0, springDampingRatios, 0, count);
+        System.arraycopy(oldOffsets, 0, offsets, 0, count * CONTACTS * 3);
+        System.arraycopy(oldDepths, 0, depths, 0, count * CONTACTS);
+        System.arraycopy(oldFeatureIds, 0, featureIds, 0, count * CONTACTS);
+        System.arraycopy(oldImpulses, 0, impulses, 0, count * CONTACTS * 3);
+    }
+
+    @Override
+    protected void copy(int source, TypeBatch targetBatch, int target) {
+        ContactTypeBatch other = (ContactTypeBatch) targetBatch;
+        other.contactCounts[target] = contactCounts[source];
+        System.arraycopy(normals, source * 3, other.normals, target * 3, 3);
+        other.frictionCoefficients[target] = frictionCoefficients[source];
+        other.maximumRecoveryVelocities[target] = maximumRecoveryVelocities[source];
+        other.springFrequencies[target] = springFrequencies[source];
+        other.springDampingRatios[target] = springDampingRatios[source];
+        System.arraycopy(offsets, source * CONTACTS * 3, other.offsets, target * CONTACTS * 3, CONTACTS * 3);
+        System.arraycopy(depths, source * CONTACTS, other.depths, target * CONTACTS, CONTACTS);
+        System.arraycopy(featureIds, source * CONTACTS, other.featureIds, target * CONTACTS, CONTACTS);
+        System.arraycopy(impulses, source * CONTACTS * 3, other.impulses, target * CONTACTS * 3, CONTACTS * 3);
+    }
+
+    /**
+     * Adds a contact constraint without contacts. Its manifold is filled in by {@link #setManifold}.
+     *
+     * @return Index of the constraint in the batch.
+     */
+    int add(int handle, int bodyHandleA, int bodyHandleB, ContactMaterial material) {
+        int index = allocate(handle, bodyHandleA, bodyHandleB);
+        contactCounts[index] = 0;
+        frictionCoefficients[index] = material.getFrictionCoefficient();
+        maximumRecoveryVelocities[index] = material.getMaximumRecoveryVelocity();
+        springFrequencies[index] = material.getSpringSettings().getFrequency();
+        springDampingRatios[index] = material.getSpringSettings().getDampingRatio();
+        return index;
+    }
+
+    public int getContactCount(int index) {
+        return contactCounts[index];
+    }
+
+    /**
+     * Gets the accumulated normal impulse of one of a constraint's contacts.
+     *
+     * @param index Index of the constraint.
+     * @param contactIndex Index of the contact.
+     *
+     * @return Accumulated normal impulse from the last solve.
+     */
+    public double getNormalImpulse(int index, int contactIndex) {
+        return impulses[(index * CONTACTS + contactIndex) * 3];
+    }
+
+    /**
+     * Replaces a constraint's contacts. Contacts whose feature ids match a previous contact keep its accumulated impulses for warm starting;
+     * new contacts start from zero.
+     *
+     * @param index Index of the constraint.
+     * @param contactCount Number of contacts in the manifold.
+     * @param manifolds Manifold storage laid out as described by {@link PairCache#MANIFOLD_STRIDE}.
+     * @param manifoldOffset Index of the manifold's first value.
+     * @param manifoldFeatureIds Feature id storage.
+     * @param featureIdOffset Index of the manifold's first feature id.
+     */
+    void setManifold(int index, int contactCount, double[] manifolds, int manifoldOffset, int[] manifoldFeatureIds, int featureIdOffset) {
+        assert contactCount > 0 && contactCount <= CONTACTS;
+        int base = index * CONTACTS;
+        int previousCount = contactCounts[index];
+        //Match new contacts to old ones by swapping carried impulses into place. Slots below i are final; an old contact in the remaining
+        //range is only discarded once no later new contact can claim it.
+        for (int i = 0; i < contactCount; i++) {
+            int featureId = manifoldFeatureIds[featureIdOffset + i];
+            int match = findFeature(base, i, previousCount, featureId);
+            if (match >= 0) {
+                if (match != i) {
+                    swapContacts(base + i, base + match);
+                }
+                continue;
+            }
+            if (i < previousCount) {
+                int discarded = -1;
+                for (int k = i; k < previousCount; k++) {
+                    if (!isClaimedLater(featureIds[base + k], manifoldFeatureIds, featureIdOffset + i + 1, featureIdOffset + contactCount)) {
+                        discarded = k;
+                        break;
+                    }
+                }
+                if (discarded >= 0) {
+                    swapContacts(base + i, base + discarded);
+                } else {
+                    //Every remaining old contact is still wanted; there are fewer old contacts than new ones, so there is room to keep them all.
+                    swapContacts(base + i, base + previousCount);
+                    previousCount++;
+                }
+            }
+            featureIds[base + i] = featureId;
+            impulses[(base + i) * 3] = 0;
+            impulses[(base + i) * 3 + 1] = 0;
+            impulses[(base + i) * 3 + 2] = 0;
+        }
+        contactCounts[index] = contactCount;
+        normals[index * 3] = manifolds[manifoldOffset];
+        normals[index * 3 + 1] = manifolds[manifoldOffset + 1];
+        normals[index * 3 + 2] = manifolds[manifoldOffset + 2];
+        for (int i = 0; i < contactCount; i++) {
+            int source = manifoldOffset + 3 + i * 4;
+            int contact = base + i;
+            offsets[contact * 3] = manifolds[source];
+            offsets[contact * 3 + 1] = manifolds[source + 1];
+            offsets[contact * 3 + 2] = manifolds[source + 2];
+            depths[contact] = manifolds[source + 3];
+        }
+    }
+
+    private int findFeature(int base, int start, int end, int featureId) {
+        for (int j = start; j < end; j++) {
+            if (featureIds[base + j] == featureId) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isClaimedLater(int featureId, int[] manifoldFeatureIds, int start, int end) {
+        for (int j = start; j < end; j++) {
+            if (manifoldFeatureIds[j] == featureId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void swapContacts(int a, int b) {
+        int featureId = featureIds[a];
+        featureIds[a] = featureIds[b];
+        featureIds[b] = featureId;
+        for (int i = 0; i < 3; i++) {
+            double impulse = impulses[a * 3 + i];
+            impulses[a * 3 + i] = impulses[b * 3 + i];
+            impulses[b * 3 + i] = impulse;
+        }
+    }
+
+    @Override
+    public void prestep(int start, int end, double dt, boolean firstSubstep, Bodies bodies) {
+        for (int i = start; i < end; i++) {
+            int slotA = i * 2;
+            int slotB = slotA + 1;
+            gatherBody(slotA, bodies);
+            gatherBody(slotB, bodies);
+            Vector3Double positionA = bodies.getPose(bodyHandles[slotA]).getPosition();
+            Vector3Double positionB = bodies.getPose(bodyHandles[slotB]).getPosition();
+            double abx = positionB.x - positionA.x;
+            double aby = positionB.y - positionA.y;
+            double abz = positionB.z - positionA.z;
+            offsetsB[i * 3] = abx;
+            offsetsB[i * 3 + 1] = aby;
+            offsetsB[i * 3 + 2] = abz;
+            double nx = normals[i * 3];
+            double ny = normals[i * 3 + 1];
+            double nz = normals[i * 3 + 2];
+            //Any unit vector perpendicular to the normal will do for the first tangent; pick the more stable of two candidates.
+            double t1x, t1y, t1z;
+            if (Math.abs(nx) < 0.57735) {
+                double scale = 1 / Math.sqrt(ny * ny + nz * nz);
+                t1x = 0;
+                t1y = nz * scale;
+                t1z = -ny * scale;
+            } else {
+                double scale = 1 / Math.sqrt(nx * nx + nz * nz);
+                t1x = -nz * scale;
+                t1y = 0;
+                t1z = nx * scale;
+            }
+            double t2x = ny * t1z - nz * t1y;
+            double t2y = nz * t1x - nx * t1z;
+            double t2z = nx * t1y - ny * t1x;
+            int t = i * 6;
+            tangents[t] = t1x;
+            tangents[t + 1] = t1y;
+            tangents[t + 2] = t1z;
+            tangents[t + 3] = t2x;
+            tangents[t + 4] = t2y;
+            tangents[t + 5] = t2z;
+
+            double frequency = springFrequencies[i];
+            double dampingRatio = springDampingRatios[i];
+            double angularFrequency = frequency * 2 * Math.PI;
+            double positionErrorToVelocity = angularFrequency / (angularFrequency * dt + 2 * dampingRatio);
+            double angularFrequencyDt = angularFrequency * dt;
+            double effectiveMassScale = 1 / (1 + 1 / (angularFrequencyDt * (angularFrequencyDt + 2 * dampingRatio)));
+            effectiveMassScales[i] = effectiveMassScale;
+            double maximumRecoveryVelocity = maximumRecoveryVelocities[i];
+            double inverseMassSum = inverseMasses[slotA] + inverseMasses[slotB];
+
+            BodyVelocity velocityA = velocities[slotA];
+            BodyVelocity velocityB = velocities[slotB];
+            int contactCount = contactCounts[i];
+            for (int c = 0; c < contactCount; c++) {
+                int contact = i * CONTACTS + c;
+                double rax = offsets[contact * 3];
+                double ray = offsets[contact * 3 + 1];
+                double raz = offsets[contact * 3 + 2];
+                double rbx = rax - abx;
+                double rby = ray - aby;
+                double rbz = raz - abz;
+                if (!firstSubstep) {
+                    //The previous substep moved the bodies; estimate the new depth from the relative velocity at the contact.
+                    double relativeVelocity = relativeVelocity(velocityA, velocityB, rax, ray, raz, rbx, rby, rbz, nx, ny, nz);
+                    double previousDepth = depths[contact];
+                    //A speculative contact only lets its gap close, so an estimate past zero is rounding error rather than penetration.
+                    depths[contact] = previousDepth <= 0 ? Math.min(0, previousDepth + relativeVelocity * dt) : previousDepth + relativeVelocity * dt;
+                }
+                double nk = inverseMassSum + angularTerm(slotA, slotB, rax, ray, raz, rbx, rby, rbz, nx, ny, nz);
+                normalEffectiveMasses[contact] = nk > 0 ? 1 / nk : 0;
+                double t1k = inverseMassSum + angularTerm(slotA, slotB, rax, ray, raz, rbx, rby, rbz, t1x, t1y, t1z);
+                double t2k = inverseMassSum + angularTerm(slotA, slotB, rax, ray, raz, rbx, rby, rbz, t2x, t2y, t2z);
+                tangentEffectiveMasses[contact * 2] = t1k > 0 ? 1 / t1k : 0;
+                tangentEffectiveMasses[contact * 2 + 1] = t2k > 0 ? 1 / t2k : 0;
+                double depth = depths[contact];
+                //Penetrating contacts are pushed apart softly; speculative contacts allow exactly enough approach to close the gap.
+                biasVelocities[contact] = depth > 0 ? Math.min(depth * positionErrorToVelocity, maximumRecoveryVelocity) : depth / dt;
+            }
+        }
+    }
+
+    /**
+     * Computes the velocity at which the contact point on A moves toward B along a direction pointing from B to A, i.e. the rate at which
+     * penetration grows.
+     */
+    private static double relativeVelocity(BodyVelocity velocityA, BodyVelocity velocityB,
+                                           double rax, double ray, double raz, double rbx, double rby, double rbz,
+                                           double dx, double dy, double dz) {
+        Vector3Double linearA = velocityA.getLinear();
+        Vector3Double angularA = velocityA.getAngular();
+        Vector3Double linearB = velocityB.getLinear();
+        Vector3Double angularB = velocityB.getAngular();
+        //(wA x rA) . d = wA . (rA x d)
+        double along = (linearA.x - linearB.x) * dx + (linearA.y - linearB.y) * dy + (linearA.z - linearB.z) * dz +
+                angularA.x * (ray * dz - raz * dy) + angularA.y * (raz * dx - rax * dz) + angularA.z * (rax * dy - ray * dx) -
+                angularB.x * (rby * dz - rbz * dy) - angularB.y * (rbz * dx - rbx * dz) - angularB.z * (rbx * dy - rby * dx);
+        return -along;
+    }
+
+    private double angularTerm(int slotA, int slotB, double rax, double ray, double raz, double rbx, double rby, double rbz,
+                               double dx, double dy, double dz) {
+        return angularContribution(slotA, ray * dz - raz * dy, raz * dx - rax * dz, rax * dy - ray * dx) +
+                angularContribution(slotB, rby * dz - rbz * dy, rbz * dx - rbx * dz, rbx * dy - rby * dx);
+    }
+
+    /**
+     * Applies an impulse along a direction at a contact: +d to A, -d to B.
+     */
+    private void applyContactImpulse(int slotA, int slotB, double rax, double ray, double raz, double rbx, double rby, double rbz,
+                                     double dx, double dy, double dz, double impulse) {
+        double lx = dx * impulse;
+        double ly = dy * impulse;
+        double lz = dz * impulse;
+        applyImpulse(slotA, lx, ly, lz, ray * lz - raz * ly, raz * lx - rax * lz, rax * ly - ray * lx);
+        applyImpulse(slotB, -lx, -ly, -lz, -(rby * lz - rbz * ly), -(rbz * lx - rbx * lz), -(rbx * ly - rby * lx));
+    }
+
+    @Override
+    public void warmStart(int start, int end) {
+        for (int i = start; i < end; i++) {
+            int slotA = i * 2;
+            int slotB = slotA + 1;
+            double abx = offsetsB[i * 3];
+            double aby = offsetsB[i * 3 + 1];
+            double abz = offsetsB[i * 3 + 2];
+            double nx = normals[i * 3];
+            double ny = normals[i * 3 + 1];
+            double nz = normals[i * 3 + 2];
+            int t = i * 6;
+            int contactCount = contactCounts[i];
+            for (int c = 0; c < contactCount; c++) {
+                int contact = i * CONTACTS + c;
+                double rax = offsets[contact * 3];
+                double ray = offsets[contact * 3 + 1];
+                double raz = offsets[contact * 3 + 2];
+                double rbx = rax - abx;
+                double rby = ray - aby;
+                double rbz = raz - abz;
+                double normalImpulse = impulses[contact * 3];
+                double tangentImpulse1 = impulses[contact * 3 + 1];
+                double tangentImpulse2 = impulses[contact * 3 + 2];
+                double dx = nx * normalImpulse + tangents[t] * tangentImpulse1 + tangents[t + 3] * tangentImpulse2;
+                double dy = ny * normalImpulse + tangents[t + 1] * tangentImpulse1 + tangents[t + 4] * tangentImpulse2;
+                double dz = nz * normalImpulse + tangents[t + 2] * tangentImpulse1 + tangents[t + 5] * tangentImpulse2;
+                applyContactImpulse(slotA, slotB, rax, ray, raz, rbx, rby, rbz, dx, dy, dz, 1);
+            }
+        }
+    }
+
+    @Override
+    public void solve(int start, int end) {
+        for (int i = start; i < end; i++) {
+            int slotA = i * 2;
+            int slotB = slotA + 1;
+            BodyVelocity velocityA = velocities[slotA];
+            BodyVelocity velocityB = velocities[slotB];
+            double abx = offsetsB[i * 3];
+            double aby = offsetsB[i * 3 + 1];
+            double abz = offsetsB[i * 3 + 2];
+            double nx = normals[i * 3];
+            double ny = normals[i * 3 + 1];
+            double nz = normals[i * 3 + 2];
+            int t = i * 6;
+            double t1x = tangents[t];
+            double t1y = tangents[t + 1];
+            double t1z = tangents[t + 2];
+            double t2x = tangents[t + 3];
+            double t2y = tangents[t + 4];
+            double t2z = tangents[t + 5];
+            double effectiveMassScale = effectiveMassScales[i];
+            double softnessScale = 1 - effectiveMassScale;
+            double frictionCoefficient = frictionCoefficients[i];
+            int contactCount = contactCounts[i];
+            for (int c = 0; c < contactCount; c++) {
+                int contact = i * CONTACTS + c;
+                double rax = offsets[contact * 3];
+                double ray = offsets[contact * 3 + 1];
+                double raz = offsets[contact * 3 + 2];
+                double rbx = rax - abx;
+                double rby = ray - aby;
+                double rbz = raz - abz;
+
+                //Friction first, bounded by the normal impulse of the previous iteration.
+                double maximumFriction = frictionCoefficient * impulses[contact * 3];
+                double previous1 = impulses[contact * 3 + 1];
+                double previous2 = impulses[contact * 3 + 2];
+                double accumulated1 = previous1 + relativeVelocity(velocityA, velocityB, rax, ray, raz, rbx, rby, rbz, t1x, t1y, t1z) *
+                        tangentEffectiveMasses[contact * 2];
+                double accumulated2 = previous2 + relativeVelocity(velocityA, velocityB, rax, ray, raz, rbx, rby, rbz, t2x, t2y, t2z) *
+                        tangentEffectiveMasses[contact * 2 + 1];
+                double frictionSquared = accumulated1 * accumulated1 + accumulated2 * accumulated2;
+                if (frictionSquared > maximumFriction * maximumFriction) {
+                    double scale = frictionSquared > 0 ? maximumFriction / Math.sqrt(frictionSquared) : 0;
+                    accumulated1 *= scale;
+                    accumulated2 *= scale;
+                }
+                impulses[contact * 3 + 1] = accumulated1;
+                impulses[contact * 3 + 2] = accumulated2;
+                double friction1 = accumulated1 - previous1;
+                double friction2 = accumulated2 - previous2;
+                applyContactImpulse(slotA, slotB, rax, ray, raz, rbx, rby, rbz,
+                        t1x * friction1 + t2x * friction2, t1y * friction1 + t2y * friction2, t1z * friction1 + t2z * friction2, 1);
+
+                //Separating velocity along the normal is the negation of the approach rate.
+                double separatingVelocity = -relativeVelocity(velocityA, velocityB, rax, ray, raz, rbx, rby, rbz, nx, ny, nz);
+                double previousNormal = impulses[contact * 3];
+                //Softness only eases penetration recovery. A speculative contact's bias closes the gap exactly, and the velocity error a soft
+                //constraint leaves grows with its impulse; for a fast body that error alone would carry it through a thin obstacle.
+                double biasVelocity = biasVelocities[contact];
+                double normalImpulse = biasVelocity > 0
+                        ? (biasVelocity - separatingVelocity) * normalEffectiveMasses[contact] * effectiveMassScale - previousNormal * softnessScale
+                        : (biasVelocity - separatingVelocity) * normalEffectiveMasses[contact];
+                double accumulatedNormal = Math.max(0, previousNormal + normalImpulse);
+                impulses[contact * 3] = accumulatedNormal;
+                applyContactImpulse(slotA, slotB, rax, ray, raz, rbx, rby, rbz, nx, ny, nz, accumulatedNormal - previousNormal);
+            }
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package bepu.bepuphysics.constraints;
+
+import bepu.bepuphysics.Bodies;
+import bepu.bepuphysics.ConstraintConnectivity;
+import bepu.bepuphysics.PoseIntegrator;
+import bepu.bepuutilities.threading.IChunkBody;
+import bepu.bepuutilities.threading.IThreadDispatcher;
+
+import java.util.Arrays;
+
+/**
+ * Computes the velocity changes that keep constraints satisfied using sequential impulses.
+ * <p>
+ * Constraints are distributed over {@link ConstraintBatch batches} such that no dynamic body appears twice in a batch. Every constraint of a
+ * batch can then be solved in parallel; batches run one after another. Within a batch, constraints are grouped by type into
+ * {@link TypeBatch type batches} whose data is stored as a structure of primitive arrays.
+ * <p>
+ * A frame can be split into substeps. Collision detection runs once per frame; between substeps the solver integrates poses itself and
+ * contact constraints estimate their new depths from velocity.
+ * <p>
+ * Constraint handles are shared with {@link ConstraintConnectivity}. Solver constraints only register their non-kinematic bodies there, so a
+ * kinematic body does not merge every island that touches it into one.
+ * <p>
+ * When an island falls asleep its constraints are moved out of the batches into storage kept for the island's inactive body set, so the
+ * cost of a solve only depends on the constraints of active bodies. Waking the island assigns its constraints to batches again, with their
+ * accumulated impulses and contact data intact.
+ */
+public class Solver {
+    public static final int TYPE_COUNT = 2;
+    private static final int CONSTRAINTS_PER_CHUNK = 64;
+    private static final int INITIAL_TYPE_BATCH_CAPACITY = 64;
+
+    private final Bodies bodies;
+    private final ConstraintConnectivity connectivity;
+    private final PoseIntegrator poseIntegrator;
+    private final ContactMaterial contactMaterial = new ContactMaterial();
+    private int iterationCount = 8;
+    private int substepCount = 1;
+
+    private ConstraintBatch[] batches = new ConstraintBatch[4];
+    private int batchCount;
+
+    //Constraints of sleeping islands by body set index. Each holds type batches that are never solved.
+    private ConstraintBatch[] inactiveSets = new ConstraintBatch[0];
+
+    //Location of each constraint by handle. A batch index of -1 marks a handle that isn't in a batch: it either only exists in the
+    //connectivity, or its constraint sleeps in the inactive set given by the handle's set index.
+    private int[] handleBatches = new int[0];
+    private int[] handleSets = new int[0];
+    private int[] handleTypes = new int[0];
+    private int[] handleIndices = new int[0];
+    //Bit 0 set if body A was dynamic when the constraint was added and so is referenced by its batch; bit 1 for body B.
+    private byte[] handleReferences = new byte[0];
+    private final int[] connectedBodies = new int[2];
+
+    private TypeBatch dispatchBatch;
+    private double dispatchDt;
+    private boolean dispatchFirstSubstep;
+    private final IChunkBody prestepChunk = this::prestepChunk;
+    private final IChunkBody warmStartChunk = this::warmStartChunk;
+    private final IChunkBody solveChunk = this::solveChunk;
+
+    public Solver(Bodies bodies, ConstraintConnectivity connectivity, PoseIntegrator poseIntegrator) {
+        this.bodies = bodies;
+        this.connectivity = connectivity;
+        this.poseIntegrator = poseIntegrator;
+    }
+
+    public int getIterationCount() {
+        return iterationCount;
+    }
+
+    public Solver setIterationCount(int iterationCount) {
+        assert iterationCount > 0;
+        this.iterationCount = iterationCount;
+        return this;
+    }
+
+    /**
+     * Gets the number of substeps each frame is split into. Substeps are cheaper than extra frames because collision detection only runs once.
+     *
+     * @return Substeps per frame.
+     */
+    public int getSubstepCount() {
+        return substepCount;
+    }
+
+    public Solver setSubstepCount(int substepCount) {
+        assert substepCount > 0;
+        this.substepCount = substepCount;
+        return this;
+    }
+
+    /**
+     * Gets the material given to contact constraints when they are created. Changes do not affect existing contacts.
+     *
+     * @return Contact material.
+     */
+    public ContactMaterial getContactMaterial() {
+        return contactMaterial;
+    }
+
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    public ConstraintBatch getBatch(int batchIndex) {
+        return batches[batchIndex];
+    }
+
+    public boolean constraintExists(int constraintHandle) {
+        return connectivity.constraintExists(constraintHandle);
+    }
+
+    /**
+     * Gets the index of the body set whose island a constraint belongs to.
+     *
+     * @param constraintHandle Handle of the constraint.
+     *
+     * @return 0 if the constraint is solved with the active bodies, or the index of the inactive set it sleeps with.
+     */
+    public int getSetIndex(int constraintHandle) {
+        return handleSets[constraintHandle];
+    }
+
+    /**
+     * Gets the type batch holding a constraint. Constraints of sleeping islands are held by type batches that aren't part of any
+     * {@link #getBatch(int) batch}.
+     *
+     * @param constraintHandle Handle of the constraint.
+     *
+     * @return Type batch holding the constraint, or null if the constraint isn't owned by the solver.
+     */
+    public TypeBatch getTypeBatch(int constraintHandle) {
+        int setIndex = handleSets[constraintHandle];
+        if (setIndex > 0) {
+            return inactiveSets[setIndex].getTypeBatch(handleTypes[constraintHandle]);
+        }
+        int batchIndex = handleBatches[constraintHandle];
+        return batchIndex < 0 ? null : batches[batchIndex].getTypeBatch(handleTypes[constraintHandle]);
+    }
+
+    /**
+     * Gets the index of a constraint within its type batch.
+     *
+     * @param constraintHandle Handle of the constraint.
+     *
+     * @return Index of the constraint in the batch returned by {@link #getTypeBatch(int)}.
+     */
+    public int getIndexInTypeBatch(int constraintHandle) {
+        return handleIndices[constraintHandle];
+    }
+
+    /**
+     * Adds a ball socket joint between two bodies.
+     *
+     * @param bodyHandleA Handle of the first body.
+     * @param bodyHandleB Handle of the second body.
+     * @param description Description of the joint.
+     *
+     * @return Handle of the constraint.
+     */
+    public int add(int bodyHandleA, int bodyHandleB, BallSocket description) {
+        int handle = allocate(bodyHandleA, bodyHandleB, BallSocketTypeBatch.TYPE_ID);
+        BallSocketTypeBatch typeBatch = (BallSocketTypeBatch) getTypeBatch(handle);
+        handleIndices[handle] = typeBatch.add(handle, bodyHandleA, bodyHandleB, description);
+        return handle;
+    }
+
+    /**
+     * Adds a contact constraint without contacts between two bodies using the current {@link #getContactMaterial() contact material}.
+     * Contacts are set with {@link #setContactManifold}.
+     *
+     * @param bodyHandleA Handle of the first body of the collidable pair.
+     * @param bodyHandleB Handle of the second body of the collidable pair.
+     *
+     * @return Handle of the constraint.
+     */
+    public int addContact(int bodyHandleA, int bodyHandleB) {
+        int handle = allocate(bodyHandleA, bodyHandleB, ContactTypeBatch.TYPE_ID);
+        ContactTypeBatch typeBatch = (ContactTypeBatch) getTypeBatch(handle);
+        handleIndices[handle] = typeBatch.add(handle, bodyHandleA, bodyHandleB, contactMaterial);
+        return handle;
+    }
+
+    /**
+     * Replaces the contacts of a contact constraint.
+     *
+     * @param constraintHandle Handle of the contact constraint.
+     * @param contactCount Number of contacts in the manifold.
+     * @param manifolds Manifold storage laid out as described by {@code PairCache.MANIFOLD_STRIDE}.
+     * @param manifoldOffset Index of the manifold's first value.
+     * @param featureIds Feature id storage.
+     * @param featureIdOffset Index of the manifold's first feature id.
+     */
+    public void setContactManifold(int constraintHandle, int contactCount, double[] manifolds, int manifoldOffset, int[] featureIds, int featureIdOffset) {
+        assert handleTypes[constraintHandle] == ContactTypeBatch.TYPE_ID && getTypeBatch(constraintHandle) != null : "Constraint must be a contact.";
+        ContactTypeBatch typeBatch = (ContactTypeBatch) getTypeBatch(constraintHandle);
+        typeBatch.setManifold(handleIndices[constraintHandle], contactCount, manifolds, manifoldOffset, featureIds, featureIdOffset);
+    }
+
+    /**
+     * Removes a constraint from the solver and the connectivity.
+     *
+     * @param constraintHandle Handle of the constraint to remove.
+     */
+    public void remove(int constraintHandle) {
+        int batchIndex = constraintHandle < handleBatches.length ? handleBatches[constraintHandle] : -1;
+        int setIndex = constraintHandle < handleSets.length ? handleSets[constraintHandle] : 0;
+        if (setIndex > 0) {
+            TypeBatch typeBatch = inactiveSets[setIndex].getTypeBatch(handleTypes[constraintHandle]);
+            int index = handleIndices[constraintHandle];
+            int movedHandle = typeBatch.removeAt(index);
+            if (movedHandle >= 0) {
+                handleIndices[movedHandle] = index;
+            }
+            handleSets[constraintHandle] = 0;
+        } else if (batchIndex >= 0) {
+            ConstraintBatch batch = batches[batchIndex];
+            TypeBatch typeBatch = batch.getTypeBatch(handleTypes[constraintHandle]);
+            int index = handleIndices[constraintHandle];
+            int references = handleReferences[constraintHandle];
+            if ((references & 1) != 0) {
+                batch.unreference(typeBatch.getBodyHandleA(index));
+            }
+            if ((references & 2) != 0) {
+                batch.unreference(typeBatch.getBodyHandleB(index));
+            }
+            int movedHandle = typeBatch.removeAt(index);
+            if (movedHandle >= 0) {
+                handleIndices[movedHandle] = index;
+            }
+            handleBatches[constraintHandle] = -1;
+            trimEmptyBatches();
+        }
+        connectivity.remove(constraintHandle);
+    }
+
+    private int allocate(int bodyHandleA, int bodyHandleB, int typeId) {
+        boolean dynamicA = !bodies.getInertia(bodyHandleA).isKinematic();
+        boolean dynamicB = !bodies.getInertia(bodyHandleB).isKinematic();
+        int handle;
+        if (dynamicA == dynamicB) {
+            handle = connectivity.add(bodyHandleA, bodyHandleB);
+        } else {
+            connectedBodies[0] = dynamicA ? bodyHandleA : bodyHandleB;
+            handle = connectivity.add(connectedBodies, 1);
+        }
+        ensureHandleCapacity(handle + 1);
+        int references = (dynamicA ? 1 : 0) | (dynamicB ? 2 : 0);
+        handleBatches[handle] = assignBatch(bodyHandleA, bodyHandleB, references, typeId);
+        handleSets[handle] = 0;
+        handleTypes[handle] = typeId;
+        handleReferences[handle] = (byte) references;
+        return handle;
+    }
+
+    /**
+     * Finds the first batch that doesn't write to any of a constraint's dynamic bodies, creating the batch and its type batch if needed, and
+     * marks the bodies as written by it.
+     *
+     * @return Index of the batch.
+     */
+    private int assignBatch(int bodyHandleA, int bodyHandleB, int references, int typeId) {
+        boolean dynamicA = (references & 1) != 0;
+        boolean dynamicB = (references & 2) != 0;
+        int batchIndex = 0;
+        while (batchIndex < batchCount &&
+                ((dynamicA && batches[batchIndex].isReferenced(bodyHandleA)) || (dynamicB && batches[batchIndex].isReferenced(bodyHandleB)))) {
+            batchIndex++;
+        }
+        if (batchIndex == batchCount) {
+            if (batchCount == batches.length) {
+                ConstraintBatch[] newBatches = new ConstraintBatch[batches.length * 2];
+                System.arraycopy(batches, 0, newBatches, 0, batchCount);
+                batches = newBatches;
+            }
+            if (batches[batchCount] == null) {
+                batches[batchCount] = new ConstraintBatch(TYPE_COUNT);
+            }
+            batchCount++;
+        }
+        ConstraintBatch batch = batches[batchIndex];
+        if (batch.getTypeBatch(typeId) == null) {
+            batch.setTypeBatch(typeId, createTypeBatch(typeId));
+        }
+        if (dynamicA) {
+            batch.reference(bodyHandleA);
+        }
+        if (dynamicB) {
+            batch.reference(bodyHandleB);
+        }
+        return batchIndex;
+    }
+
+    /**
+     * Moves a constraint out of the solved batches into the storage of a sleeping island. Does nothing if the constraint isn't in a batch,
+     * so the island's bodies can hand over every constraint they reference, including ones already moved through another body.
+     *
+     * @param constraintHandle Handle of the constraint.
+     * @param setIndex Index of the inactive body set the constraint's island is moving into.
+     */
+    public void moveToInactiveSet(int constraintHandle, int setIndex) {
+        assert setIndex > 0 : "The active set is solved; constraints only move into inactive sets.";
+        int batchIndex = constraintHandle < handleBatches.length ? handleBatches[constraintHandle] : -1;
+        if (batchIndex < 0) {
+            return;
+        }
+        if (setIndex >= inactiveSets.length) {
+            ConstraintBatch[] newInactiveSets = new ConstraintBatch[Math.max(setIndex + 1, inactiveSets.length * 2)];
+            System.arraycopy(inactiveSets, 0, newInactiveSets, 0, inactiveSets.length);
+            inactiveSets = newInactiveSets;
+        }
+        if (inactiveSets[setIndex] == null) {
+            inactiveSets[setIndex] = new ConstraintBatch(TYPE_COUNT);
+        }
+        ConstraintBatch inactiveSet = inactiveSets[setIndex];
+        int typeId = handleTypes[constraintHandle];
+        if (inactiveSet.getTypeBatch(typeId) == null) {
+            inactiveSet.setTypeBatch(typeId, createTypeBatch(typeId));
+        }
+        ConstraintBatch batch = batches[batchIndex];
+        TypeBatch typeBatch = batch.getTypeBatch(typeId);
+        int index = handleIndices[constraintHandle];
+        int references = handleReferences[constraintHandle];
+        if ((references & 1) != 0) {
+            batch.unreference(typeBatch.getBodyHandleA(index));
+        }
+        if ((references & 2) != 0) {
+            batch.unreference(typeBatch.getBodyHandleB(index));
+        }
+        handleIndices[constraintHandle] = typeBatch.copyTo(index, inactiveSet.getTypeBatch(typeId));
+        int movedHandle = typeBatch.removeAt(index);
+        if (movedHandle >= 0) {
+            handleIndices[movedHandle] = index;
+        }
+        handleBatches[constraintHandle] = -1;
+        handleSets[constraintHandle] = setIndex;
+        trimEmptyBatches();
+    }
+
+    /**
+     * Moves every constraint of a waking island back into the solved batches.
+     *
+     * @param setIndex Index of the inactive body set being woken.
+     */
+    public void moveToActiveSet(int setIndex) {
+        if (setIndex >= inactiveSets.length || inactiveSets[setIndex] == null) {
+            return;
+        }
+        ConstraintBatch inactiveSet = inactiveSets[setIndex];
+        for (int typeId = 0; typeId < TYPE_COUNT; typeId++) {
+            TypeBatch source = inactiveSet.getTypeBatch(typeId);
+            if (source == null) {
+                continue;
+            }
+            for (int i = 0; i < source.getCount(); i++) {
+                int handle = source.getHandle(i);
+                int batchIndex = assignBatch(source.getBodyHandleA(i), source.getBodyHandleB(i), handleReferences[handle], typeId);
+                handleIndices[handle] = source.copyTo(i, batches[batchIndex].getTypeBatch(typeId));
+                handleBatches[handle] = batchIndex;
+                handleSets[handle] = 0;
+            }
+            source.clear();
+        }
+    }
+
+    /**
+     * Drops empty batches from the end of the batch list, so that islands falling asleep don't leave stages running over nothing. The batch
+     * objects are kept for reuse.
+     */
+    private void trimEmptyBatches() {
+        while (batchCount > 0 && batches[batchCount - 1].getConstraintCount() == 0) {
+            batchCount--;
+        }
+    }
+
+    private static TypeBatch createTypeBatch(int typeId) {
+        switch (typeId) {
+            case ContactTypeBatch.TYPE_ID:
+                return new ContactTypeBatch(INITIAL_TYPE_BATCH_CAPACITY);
+            case BallSocketTypeBatch.TYPE_ID:
+                return new BallSocketTypeBatch(INITIAL_TYPE_BATCH_CAPACITY);
+            default:
+                throw new IllegalArgumentException("Unknown constraint type " + typeId + ".");
+        }
+    }
+
+    private void ensureHandleCapacity(int capacity) {
+        if (capacity <= handleBatches.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(16, handleBatches.length * 2));
+        int[] newHandleBatches = new int[newCapacity];
+        System.arraycopy(handleBatches, 0, newHandleBatches, 0, handleBatches.length);
+        Arrays.fill(newHandleBatches, handleBatches.length, newCapacity, -1);
+        handleBatches = newHandleBatches;
+        int[] newHandleSets = new int[newCapacity];
+        System.arraycopy(handleSets, 0, newHandleSets, 0, handleSets.length);
+        handleSets = newHandleSets;
+        int[] newHandleTypes = new int[newCapacity];
+        System.arraycopy(handleTypes, 0, newHandleTypes, 0, handleTypes.length);
+        handleTypes = newHandleTypes;
+        int[] newHandleIndices = new int[newCapacity];
+        System.arraycopy(handleIndices, 0, newHandleIndices, 0, handleIndices.length);
+        handleIndices = newHandleIndices;
+        byte[] newHandleReferences = new byte[newCapacity];
+        System.arraycopy(handleReferences, 0, newHandleReferences, 0, handleReferences.length);
+        handleReferences = newHandleReferences;
+    }
+
+    /**
+     * Solves every constraint over a frame. With more than one substep, poses are integrated between substeps.
+     *
+     * @param dt Duration of the frame.
+     * @param dispatcher Dispatcher to use. If null, the calling thread does all the work.
+     */
+    public void solve(double dt, IThreadDispatcher dispatcher) {
+        double substepDt = dt / substepCount;
+        for (int substep = 0; substep < substepCount; substep++) {
+            if (substep > 0) {
+                poseIntegrator.substep(substepDt, dispatcher);
+            }
+            dispatchDt = substepDt;
+            dispatchFirstSubstep = substep == 0;
+            //Presteps only read shared body state, so every batch could go at once; running them batch by batch keeps dispatch simple.
+            runStage(prestepChunk, dispatcher);
+            runStage(warmStartChunk, dispatcher);
+            for (int iteration = 0; iteration < iterationCount; iteration++) {
+                runStage(solveChunk, dispatcher);
+            }
+        }
+        dispatchBatch = null;
+    }
+
+    private void runStage(IChunkBody stage, IThreadDispatcher dispatcher) {
+        for (int batchIndex = 0; batchIndex < batchCount; batchIndex++) {
+            ConstraintBatch batch = batches[batchIndex];
+            for (int typeId = 0; typeId < TYPE_COUNT; typeId++) {
+                TypeBatch typeBatch = batch.getTypeBatch(typeId);
+                if (typeBatch == null || typeBatch.getCount() == 0) {
+                    continue;
+                }
+                dispatchBatch = typeBatch;
+                if (dispatcher == null) {
+                    stage.execute(0, typeBatch.getCount(), 0);
+                } else {
+                    dispatcher.forEachChunk(typeBatch.getCount(), CONSTRAINTS_PER_CHUNK, stage);
+                }
+            }
+        }
+    }
+
+    private void prestepChunk(int start, int end, int workerIndex) {
+        dispatchBatch.prestep(start, end, dispatchDt, dispatchFirstSubstep, bodies);
+    }
+
+    private void warmStartChunk(int start, int end, int workerIndex) {
+        dispatchBatch.warmStart(start, end);
+    }
+
+    private void solveChunk(int start, int end, int workerIndex) {
+        dispatchBatch.solve(start, end);
+    }
+}
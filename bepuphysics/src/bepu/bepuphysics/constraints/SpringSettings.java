@@ -0,0 +1,75 @@
+package bepu.bepuphysics.constraints;
+
+/**
+ * Stiffness and damping of a soft constraint. Constraints behave like damped springs that pull their error toward zero; the frequency
+ * controls how quickly, and the damping ratio how much the correction overshoots.
+ */
+public class SpringSettings {
+    private double frequency;
+    private double dampingRatio;
+
+    public SpringSettings() {
+        this(30, 1);
+    }
+
+    /**
+     * Creates spring settings.
+     *
+     * @param frequency Target number of undamped oscillations per unit of time.
+     * @param dampingRatio Ratio of the spring's damping to critical damping. 1 is critically damped.
+     */
+    public SpringSettings(double frequency, double dampingRatio) {
+        this.frequency = frequency;
+        this.dampingRatio = dampingRatio;
+    }
+
+    public double getFrequency() {
+        return frequency;
+    }
+
+    public SpringSettings setFrequency(double frequency) {
+        this.frequency = frequency;
+        return this;
+    }
+
+    public double getDampingRatio() {
+        return dampingRatio;
+    }
+
+    public SpringSettings setDampingRatio(double dampingRatio) {
+        this.dampingRatio = dampingRatio;
+        return this;
+    }
+
+    public SpringSettings set(SpringSettings other) {
+        this.frequency = other.frequency;
+        this.dampingRatio = other.dampingRatio;
+        return this;
+    }
+
+    /**
+     * Computes the scale converting position error into a correcting velocity over a time step.
+     *
+     * @param dt Duration of the time step.
+     *
+     * @return Scale applied to position errors.
+     */
+    public double computePositionErrorToVelocity(double dt) {
+        double angularFrequency = frequency * 2 * Math.PI;
+        return angularFrequency / (angularFrequency * dt + 2 * dampingRatio);
+    }
+
+    /**
+     * Computes the scale applied to the effective mass so that the constraint yields like a spring rather than a rigid joint. The matching
+     * softness impulse scale is one minus this value.
+     *
+     * @param dt Duration of the time step.
+     *
+     * @return Scale applied to the effective mass.
+     */
+    public double computeEffectiveMassScale(double dt) {
+        double angularFrequencyDt = frequency * 2 * Math.PI * dt;
+        double extra = 1 / (angularFrequencyDt * (angularFrequencyDt + 2 * dampingRatio));
+        return 1 / (1 + extra);
+    }
+}
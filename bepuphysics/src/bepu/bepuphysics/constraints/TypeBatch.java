@@ -0,0 +1,293 @@
+package bepu.bepuphysics.constraints;
+
+import bepu.bepuphysics.Bodies;
+import bepu.bepuphysics.BodyInertia;
+import bepu.bepuphysics.BodyVelocity;
+import bepu.bepuutilities.math.QuaternionDouble;
+import bepu.bepuutilities.math.Vector3Double;
+
+/**
+ * Stores every constraint of one type within a {@link ConstraintBatch} as a structure of arrays, so the solver's inner loops walk
+ * contiguous primitive storage. Constraints are packed densely; removing one moves the last constraint into its slot.
+ * <p>
+ * Every constraint connects two bodies. During the prestep each body's velocity, inverse mass and world space inverse inertia are
+ * gathered into the constraint's slots. Kinematic bodies are gathered with zero inverse mass and inertia so the constraint treats them as
+ * immovable, and their velocities are never written.
+ * <p>
+ * The solver also keeps type batches for the constraints of sleeping islands. Those are never solved; they only hold the constraints'
+ * data until the island wakes and its constraints are copied back into the solved batches.
+ */
+public abstract class TypeBatch {
+    protected static final int INERTIA_STRIDE = 6;
+
+    private final int typeId;
+    protected int count;
+    protected int[] handles;
+    protected int[] bodyHandles;
+
+    //Gathered during the prestep, two slots per constraint: body A at 2i, body B at 2i + 1.
+    protected BodyVelocity[] velocities;
+    protected boolean[] dynamic;
+    protected double[] inverseMasses;
+    //World space inverse inertia tensors, stored as their lower triangle: xx, yx, yy, zx, zy, zz.
+    protected double[] inverseInertias;
+
+    protected TypeBatch(int typeId, int initialCapacity) {
+        this.typeId = typeId;
+        int capacity = Math.max(1, initialCapacity);
+        handles = new int[capacity];
+        bodyHandles = new int[capacity * 2];
+        velocities = new BodyVelocity[capacity * 2];
+        dynamic = new boolean[capacity * 2];
+        inverseMasses = new double[capacity * 2];
+        inverseInertias = new double[capacity * 2 * INERTIA_STRIDE];
+    }
+
+    public int getTypeId() {
+        return typeId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return handles.length;
+    }
+
+    public int getHandle(int index) {
+        return handles[index];
+    }
+
+    public int getBodyHandleA(int index) {
+        return bodyHandles[index * 2];
+    }
+
+    public int getBodyHandleB(int index) {
+        return bodyHandles[index * 2 + 1];
+    }
+
+    /**
+     * Allocates a slot for a new constraint. The caller fills in the type specific data.
+     *
+     * @param handle Handle of the constraint.
+     * @param bodyHandleA Handle of the first body.
+     * @param bodyHandleB Handle of the second body.
+     *
+     * @return Index of the constraint in the batch.
+     */
+    int allocate(int handle, int bodyHandleA, int bodyHandleB) {
+        if (count == handles.length) {
+            resize(count * 2);
+        }
+        int index = count++;
+        handles[index] = handle;
+        bodyHandles[index * 2] = bodyHandleA;
+        bodyHandles[index * 2 + 1] = bodyHandleB;
+        return index;
+    }
+
+    /**
+     * Removes a constraint by moving the last constraint into its slot.
+     *
+     * @param index Index of the constraint to remove.
+     *
+     * @return Handle of the constraint moved into the removed slot, or -1 if no constraint was moved.
+     */
+    int removeAt(int index) {
+        int last = --count;
+        velocities[last * 2] = null;
+        velocities[last * 2 + 1] = null;
+        if (index == last) {
+            return -1;
+        }
+        handles[index] = handles[last];
+        bodyHandles[index * 2] = bodyHandles[last * 2];
+        bodyHandles[index * 2 + 1] = bodyHandles[last * 2 + 1];
+        copy(last, this, index);
+        return handles[index];
+    }
+
+    /**
+     * Adds a copy of a constraint to another type batch of the same type.
+     *
+     * @param index Index of the constraint to copy.
+     * @param target Type batch to add the copy to.
+     *
+     * @return Index of the copy in the target batch.
+     */
+    int copyTo(int index, TypeBatch target) {
+        assert target.typeId == typeId : "Constraints can only be copied between batches of the same type.";
+        int targetIndex = target.allocate(handles[index], bodyHandles[index * 2], bodyHandles[index * 2 + 1]);
+        copy(index, target, targetIndex);
+        return targetIndex;
+    }
+
+    /**
+     * Removes every constraint.
+     */
+    void clear() {
+        for (int i = 0; i < count * 2; i++) {
+            velocities[i] = null;
+        }
+        count = 0;
+    }
+
+    private void resize(int capacity) {
+        int[] newHandles = new int[capacity];
+        System.arraycopy(handles, 0, newHandles, 0, count);
+        handles = newHandles;
+        int[] newBodyHandles = new int[capacity * 2];
+        System.arraycopy(bodyHandles, 0, newBodyHandles, 0, count * 2);
+        bodyHandles = newBodyHandles;
+        velocities = new BodyVelocity[capacity * 2];
+        dynamic = new boolean[capacity * 2];
+        inverseMasses = new double[capacity * 2];
+        inverseInertias = new double[capacity * 2 * INERTIA_STRIDE];
+        resizeData(capacity);
+    }
+
+    /**
+     * Grows the type specific arrays, preserving the data of the first {@link #count} constraints.
+     *
+     * @param capacity New capacity in constraints.
+     */
+    protected abstract void resizeData(int capacity);
+
+    /**
+     * Copies the type specific data of a constraint into a slot of this batch or of another batch of the same type.
+     *
+     * @param source Index of the constraint to copy.
+     * @param targetBatch Batch containing the slot to overwrite.
+     * @param target Index of the slot to overwrite.
+     */
+    protected abstract void copy(int source, TypeBatch targetBatch, int target);
+
+    /**
+     * Gathers body state and computes everything the iterations need that stays constant over a substep.
+     *
+     * @param start Index of the first constraint to process.
+     * @param end Exclusive end of the constraints to process.
+     * @param dt Duration of the substep.
+     * @param firstSubstep True if this is the first substep of the frame, when contact data is fresh from collision detection.
+     * @param bodies Bodies referenced by the constraints.
+     */
+    public abstract void prestep(int start, int end, double dt, boolean firstSubstep, Bodies bodies);
+
+    /**
+     * Applies the impulses accumulated during the previous substep so that the iterations start from a good guess.
+     *
+     * @param start Index of the first constraint to process.
+     * @param end Exclusive end of the constraints to process.
+     */
+    public abstract void warmStart(int start, int end);
+
+    /**
+     * Runs one solver iteration.
+     *
+     * @param start Index of the first constraint to process.
+     * @param end Exclusive end of the constraints to process.
+     */
+    public abstract void solve(int start, int end);
+
+    /**
+     * Gathers the velocity, inverse mass and world space inverse inertia of one of a constraint's bodies.
+     *
+     * @param slot Body slot: constraint index * 2 for body A, plus one for body B.
+     * @param bodies Bodies referenced by the constraint.
+     */
+    protected void gatherBody(int slot, Bodies bodies) {
+        int handle = bodyHandles[slot];
+        velocities[slot] = bodies.getVelocity(handle);
+        BodyInertia inertia = bodies.getInertia(handle);
+        boolean isDynamic = !inertia.isKinematic();
+        assert !isDynamic || bodies.isActive(handle) : "Constraints of sleeping islands are moved out of the solved batches.";
+        dynamic[slot] = isDynamic;
+        int offset = slot * INERTIA_STRIDE;
+        if (!isDynamic) {
+            inverseMasses[slot] = 0;
+            for (int i = 0; i < INERTIA_STRIDE; i++) {
+                inverseInertias[offset + i] = 0;
+            }
+            return;
+        }
+        inverseMasses[slot] = inertia.getInverseMass();
+        QuaternionDouble q = bodies.getPose(handle).getOrientation();
+        double qx = q.getX();
+        double qy = q.getY();
+        double qz = q.getZ();
+        double qw = q.getW();
+        double xx = 2 * qx * qx;
+        double yy = 2 * qy * qy;
+        double zz = 2 * qz * qz;
+        double xy = 2 * qx * qy;
+        double xz = 2 * qx * qz;
+        double yz = 2 * qy * qz;
+        double wx = 2 * qw * qx;
+        double wy = 2 * qw * qy;
+        double wz = 2 * qw * qz;
+        double r00 = 1 - yy - zz;
+        double r01 = xy - wz;
+        double r02 = xz + wy;
+        double r10 = xy + wz;
+        double r11 = 1 - xx - zz;
+        double r12 = yz - wx;
+        double r20 = xz - wy;
+        double r21 = yz + wx;
+        double r22 = 1 - xx - yy;
+        double ixx = inertia.getInverseInertiaXX();
+        double iyx = inertia.getInverseInertiaYX();
+        double iyy = inertia.getInverseInertiaYY();
+        double izx = inertia.getInverseInertiaZX();
+        double izy = inertia.getInverseInertiaZY();
+        double izz = inertia.getInverseInertiaZZ();
+        //R * I^-1, then (R * I^-1) * R^T; only the lower triangle of the symmetric result is kept.
+        double m00 = r00 * ixx + r01 * iyx + r02 * izx;
+        double m01 = r00 * iyx + r01 * iyy + r02 * izy;
+        double m02 = r00 * izx + r01 * izy + r02 * izz;
+        double m10 = r10 * ixx + r11 * iyx + r12 * izx;
+        double m11 = r10 * iyx + r11 * iyy + r12 * izy;
+        double m12 = r10 * izx + r11 * izy + r12 * izz;
+        double m20 = r20 * ixx + r21 * iyx + r22 * izx;
+        double m21 = r20 * iyx + r21 * iyy + r22 * izy;
+        double m22 = r20 * izx + r21 * izy + r22 * izz;
+        inverseInertias[offset] = m00 * r00 + m01 * r01 + m02 * r02;
+        inverseInertias[offset + 1] = m10 * r00 + m11 * r01 + m12 * r02;
+        inverseInertias[offset + 2] = m10 * r10 + m11 * r11 + m12 * r12;
+        inverseInertias[offset + 3] = m20 * r00 + m21 * r01 + m22 * r02;
+        inverseInertias[offset + 4] = m20 * r10 + m21 * r11 + m22 * r12;
+        inverseInertias[offset + 5] = m20 * r20 + m21 * r21 + m22 * r22;
+    }
+
+    /**
+     * Computes the quadratic form a^T * I^-1 * a with a body slot's world inverse inertia.
+     */
+    protected double angularContribution(int slot, double ax, double ay, double az) {
+        int o = slot * INERTIA_STRIDE;
+        double[] i = inverseInertias;
+        return ax * (i[o] * ax + i[o + 1] * ay + i[o + 3] * az) +
+                ay * (i[o + 1] * ax + i[o + 2] * ay + i[o + 4] * az) +
+                az * (i[o + 3] * ax + i[o + 4] * ay + i[o + 5] * az);
+    }
+
+    /**
+     * Applies a linear impulse and an angular impulse to a body slot. Does nothing for kinematic bodies.
+     */
+    protected void applyImpulse(int slot, double linearX, double linearY, double linearZ, double angularX, double angularY, double angularZ) {
+        if (!dynamic[slot]) {
+            return;
+        }
+        BodyVelocity velocity = velocities[slot];
+        double inverseMass = inverseMasses[slot];
+        Vector3Double linear = velocity.getLinear();
+        linear.x += linearX * inverseMass;
+        linear.y += linearY * inverseMass;
+        linear.z += linearZ * inverseMass;
+        int o = slot * INERTIA_STRIDE;
+        double[] i = inverseInertias;
+        Vector3Double angular = velocity.getAngular();
+        angular.x += i[o] * angularX + i[o + 1] * angularY + i[o + 3] * angularZ;
+        angular.y += i[o + 1] * angularX + i[o + 2] * angularY + i[o + 4] * angularZ;
+        angular.z += i[o + 3] * angularX + i[o + 4] * angularY + i[o + 5] * angularZ;
+    }
+}
@@ -0,0 +1,13 @@
+package bepu.bepuphysics.trees;
+
+/**
+ * Receives leaves found by a tree query.
+ */
+public interface ILeafHandler {
+    /**
+     * Handles a leaf whose bounding box overlaps the query.
+     *
+     * @param leafIndex Index of the leaf in the tree.
+     */
+    void handle(int leafIndex);
+}
@@ -0,0 +1,14 @@
+package bepu.bepuphysics.trees;
+
+/**
+ * Receives pairs of overlapping leaves found by a tree traversal.
+ */
+public interface IOverlapHandler {
+    /**
+     * Handles a pair of leaves whose bounding boxes overlap.
+     *
+     * @param leafIndexA Index of the first leaf in its tree.
+     * @param leafIndexB Index of the second leaf in its tree.
+     */
+    void handle(int leafIndexA, int leafIndexB);
+}
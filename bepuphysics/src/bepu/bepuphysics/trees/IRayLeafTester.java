@@ -0,0 +1,17 @@
+package bepu.bepuphysics.trees;
+
+/**
+ * Tests leaves whose bounding boxes are hit by a ray during a tree ray cast.
+ */
+public interface IRayLeafTester {
+    /**
+     * Tests a leaf against the ray.
+     *
+     * @param leafIndex Index of the leaf in the tree.
+     * @param maximumT Current maximum distance along the ray, in units of the ray direction's length.
+     *
+     * @return New maximum distance along the ray. Returning a smaller value than the input culls everything beyond it; return the input to
+     * leave the ray unchanged.
+     */
+    double test(int leafIndex, double maximumT);
+}
@@ -0,0 +1,761 @@
+package bepu.bepuphysics.trees;
+
+import bepu.bepuutilities.collections.RadixSorter;
+import bepu.bepuutilities.math.MortonCode;
+import bepu.bepuutilities.math.Vector3Double;
+import bepu.bepuutilities.threading.IThreadDispatcher;
+
+/**
+ * Dynamic binary bounding volume hierarchy. Leaf bounds live directly in the child slots of their parent nodes,
+ * so a traversal never has to visit a leaf to know whether it overlaps something.
+ */
+public class Tree {
+    //Every node owns two child slots. Child A of node n lives in slot 2n, child B in slot 2n + 1.
+    //Slot bounds are stored as six consecutive doubles: minX, minY, minZ, maxX, maxY, maxZ.
+    double[] bounds;
+    //Non-negative values refer to nodes; negative values are encoded leaf indices.
+    int[] childIndices;
+    int[] leafCounts;
+    int[] parents;
+    int[] indicesInParent;
+    int nodeCount;
+
+    //Leaf i lives in child slot leafSlots[i].
+    int[] leafSlots;
+    int leafCount;
+
+    //Incremented by every change to the tree's structure or bounds.
+    int version;
+
+    //Scratch storage for linear rebuilds, created on first use.
+    private RadixSorter sorter;
+    private long[] mortonCodes;
+    private int[] sortedLeaves;
+    private double[] leafBounds;
+
+    /**
+     * Gets the number of leaves in the tree.
+     *
+     * @return Number of leaves in the tree.
+     */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * Gets a counter that changes whenever leaves are added or removed, or any bounds in the tree change. Two reads returning the same value
+     * mean the tree was left untouched in between.
+     *
+     * @return Modification counter of the tree.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the number of nodes in the tree. The root always exists, even if the tree is empty.
+     *
+     * @return Number of nodes in the tree.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public Tree(int initialLeafCapacity) {
+        int leafCapacity = Math.max(2, initialLeafCapacity);
+        int nodeCapacity = leafCapacity - 1;
+        bounds = new double[nodeCapacity * 12];
+        childIndices = new int[nodeCapacity * 2];
+        leafCounts = new int[nodeCapacity * 2];
+        parents = new int[nodeCapacity];
+        indicesInParent = new int[nodeCapacity];
+        leafSlots = new int[leafCapacity];
+        clear();
+    }
+
+    /**
+     * Encodes a leaf index so that it can be stored in a child slot alongside node indices.
+     *
+     * @param leafIndex Index of the leaf to encode.
+     *
+     * @return Encoded leaf index.
+     */
+    public static int encode(int leafIndex) {
+        return -1 - leafIndex;
+    }
+
+    /**
+     * Removes all leaves from the tree without releasing any storage.
+     */
+    public void clear() {
+        version++;
+        nodeCount = 1;
+        leafCount = 0;
+        parents[0] = -1;
+        indicesInParent[0] = -1;
+    }
+
+    /**
+     * Ensures that the tree can hold at least the given number of leaves without resizing.
+     *
+     * @param leafCapacity Number of leaves to preallocate space for.
+     */
+    public void ensureCapacity(int leafCapacity) {
+        if (leafCapacity > leafSlots.length) {
+            int[] newLeafSlots = new int[leafCapacity];
+            System.arraycopy(leafSlots, 0, newLeafSlots, 0, leafCount);
+            leafSlots = newLeafSlots;
+        }
+        int nodeCapacity = Math.max(1, leafCapacity - 1);
+        if (nodeCapacity > parents.length) {
+            double[] newBounds = new double[nodeCapacity * 12];
+            System.arraycopy(bounds, 0, newBounds, 0, nodeCount * 12);
+            bounds = newBounds;
+            int[] newChildIndices = new int[nodeCapacity * 2];
+            System.arraycopy(childIndices, 0, newChildIndices, 0, nodeCount * 2);
+            childIndices = newChildIndices;
+            int[] newLeafCounts = new int[nodeCapacity * 2];
+            System.arraycopy(leafCounts, 0, newLeafCounts, 0, nodeCount * 2);
+            leafCounts = newLeafCounts;
+            int[] newParents = new int[nodeCapacity];
+            System.arraycopy(parents, 0, newParents, 0, nodeCount);
+            parents = newParents;
+            int[] newIndicesInParent = new int[nodeCapacity];
+            System.arraycopy(indicesInParent, 0, newIndicesInParent, 0, nodeCount);
+            indicesInParent = newIndicesInParent;
+        }
+    }
+
+    /**
+     * Copies the nodes and leaves of this tree into another tree, growing the target if necessary. The target ends up with the same leaf
+     * indices, bounds and version as this tree and can be queried independently of it.
+     *
+     * @param target Tree to overwrite.
+     */
+    public void copyTo(Tree target) {
+        target.ensureCapacity(leafCount);
+        System.arraycopy(bounds, 0, target.bounds, 0, nodeCount * 12);
+        System.arraycopy(childIndices, 0, target.childIndices, 0, nodeCount * 2);
+        System.arraycopy(leafCounts, 0, target.leafCounts, 0, nodeCount * 2);
+        System.arraycopy(parents, 0, target.parents, 0, nodeCount);
+        System.arraycopy(indicesInParent, 0, target.indicesInParent, 0, nodeCount);
+        System.arraycopy(leafSlots, 0, target.leafSlots, 0, leafCount);
+        target.nodeCount = nodeCount;
+        target.leafCount = leafCount;
+        target.version = version;
+    }
+
+    /**
+     * Adds a leaf to the tree, descending along the path of least surface area increase.
+     *
+     * @param min Minimum bounds of the leaf.
+     * @param max Maximum bounds of the leaf.
+     *
+     * @return Index of the new leaf.
+     */
+    public int add(Vector3Double min, Vector3Double max) {
+        version++;
+        if (leafCount == leafSlots.length) {
+            ensureCapacity(leafCount * 2);
+        }
+        int leafIndex = leafCount++;
+        if (leafIndex < 2) {
+            //The root has an empty slot; while the tree holds fewer than two leaves, they occupy the root's slots in order.
+            writeSlot(leafIndex, min.x, min.y, min.z, max.x, max.y, max.z, encode(leafIndex), 1);
+            leafSlots[leafIndex] = leafIndex;
+            return leafIndex;
+        }
+        int node = 0;
+        while (true) {
+            int slotA = node * 2;
+            int slotB = slotA + 1;
+            double costA = mergedArea(slotA, min, max) - area(slotA);
+            double costB = mergedArea(slotB, min, max) - area(slotB);
+            //Ties are common when the new leaf is contained by both children; prefer the smaller subtree to keep the tree balanced.
+            int slot = costA < costB || (costA == costB && leafCounts[slotA] <= leafCounts[slotB]) ? slotA : slotB;
+            int child = childIndices[slot];
+            if (child < 0) {
+                //Hit a leaf. Replace it with a new node that holds both the old leaf and the new one.
+                int newNode = allocateNode(node, slot & 1);
+                int newSlotA = newNode * 2;
+                copySlot(slot, newSlotA);
+                leafSlots[decode(child)] = newSlotA;
+                writeSlot(newSlotA + 1, min.x, min.y, min.z, max.x, max.y, max.z, encode(leafIndex), 1);
+                leafSlots[leafIndex] = newSlotA + 1;
+                mergeInto(slot, min, max);
+                childIndices[slot] = newNode;
+                leafCounts[slot] = 2;
+                return leafIndex;
+            }
+            mergeInto(slot, min, max);
+            leafCounts[slot]++;
+            node = child;
+        }
+    }
+
+    /**
+     * Removes a leaf from the tree. The last leaf is moved into the removed leaf's index to keep leaves contiguous.
+     *
+     * @param leafIndex Index of the leaf to remove.
+     *
+     * @return Former index of the leaf that was moved into the removed leaf's index, or -1 if no leaf was moved.
+     */
+    public int removeAt(int leafIndex) {
+        assert leafIndex >= 0 && leafIndex < leafCount : "Leaf index must exist in the tree.";
+        version++;
+        int slot = leafSlots[leafIndex];
+        int node = slot >> 1;
+        int siblingSlot = slot ^ 1;
+        if (node == 0) {
+            if (leafCount <= 2) {
+                //The root's children are all leaves. Keep the remaining leaf, if any, in slot 0.
+                if (slot == 0 && leafCount == 2) {
+                    copySlot(1, 0);
+                    leafSlots[decode(childIndices[0])] = 0;
+                }
+            } else {
+                //More than two leaves means the sibling must be an internal node. Pull it up into the root.
+                int siblingNode = childIndices[siblingSlot];
+                copySlot(siblingNode * 2, 0);
+                copySlot(siblingNode * 2 + 1, 1);
+                adoptSlot(0);
+                adoptSlot(1);
+                removeNode(siblingNode);
+            }
+        } else {
+            //Replace the node in its parent's slot with the sibling; the leaf's node is no longer necessary.
+            int parent = parents[node];
+            int parentSlot = parent * 2 + indicesInParent[node];
+            copySlot(siblingSlot, parentSlot);
+            adoptSlot(parentSlot);
+            int lastNode = nodeCount - 1;
+            removeNode(node);
+            if (parent == lastNode) {
+                parent = node;
+            }
+            refitUpward(parent);
+        }
+
+        leafCount--;
+        if (leafIndex < leafCount) {
+            int movedSlot = leafSlots[leafCount];
+            leafSlots[leafIndex] = movedSlot;
+            childIndices[movedSlot] = encode(leafIndex);
+            return leafCount;
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the bounds of a leaf. Parent bounds are not updated until the tree is refit.
+     *
+     * @param leafIndex Index of the leaf to update.
+     * @param min New minimum bounds of the leaf.
+     * @param max New maximum bounds of the leaf.
+     */
+    public void updateBounds(int leafIndex, Vector3Double min, Vector3Double max) {
+        version++;
+        int offset = leafSlots[leafIndex] * 6;
+        bounds[offset] = min.x;
+        bounds[offset + 1] = min.y;
+        bounds[offset + 2] = min.z;
+        bounds[offset + 3] = max.x;
+        bounds[offset + 4] = max.y;
+        bounds[offset + 5] = max.z;
+    }
+
+    /**
+     * Gets the bounds of a leaf.
+     *
+     * @param leafIndex Index of the leaf to look up.
+     * @param min Minimum bounds of the leaf.
+     * @param max Maximum bounds of the leaf.
+     */
+    public void getBounds(int leafIndex, Vector3Double min, Vector3Double max) {
+        int offset = leafSlots[leafIndex] * 6;
+        min.set(bounds[offset], bounds[offset + 1], bounds[offset + 2]);
+        max.set(bounds[offset + 3], bounds[offset + 4], bounds[offset + 5]);
+    }
+
+    /**
+     * Recomputes the bounds of every internal node from the bounds of the leaves.
+     */
+    public void refit() {
+        version++;
+        if (leafCount <= 2) {
+            return;
+        }
+        for (int i = 0; i < 2; i++) {
+            int child = childIndices[i];
+            if (child >= 0) {
+                refitNode(child);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the tree's nodes as a linear bounding volume hierarchy. Leaves are sorted by the Morton code of their bounds' centers, and
+     * every node splits its range of leaves where the highest differing bit of the codes changes. Leaf indices and bounds are unchanged, so
+     * anything referring to leaves stays valid. Nodes are laid out in depth first order.
+     * <p>
+     * The build is much faster than inserting leaves one at a time and, unlike refitting, restores a structure that matches where the leaves
+     * are now; a tree whose leaves have moved a lot since they were inserted usually answers queries several times faster once rebuilt.
+     */
+    public void rebuildLinear() {
+        rebuildLinear(null);
+    }
+
+    /**
+     * Rebuilds the tree's nodes as a linear bounding volume hierarchy, sorting the leaves' Morton codes across the dispatcher's workers.
+     *
+     * @param dispatcher Dispatcher to sort with. If null, the calling thread does all of the work.
+     * @see #rebuildLinear()
+     */
+    public void rebuildLinear(IThreadDispatcher dispatcher) {
+        if (leafCount < 3) {
+            //Trees this small only have the root node, and its layout is already optimal.
+            return;
+        }
+        version++;
+        ensureLinearScratch();
+        for (int i = 0; i < leafCount; i++) {
+            System.arraycopy(bounds, leafSlots[i] * 6, leafBounds, i * 6, 6);
+        }
+        buildLinearNodes(dispatcher);
+    }
+
+    /**
+     * Replaces the tree's contents with a set of leaves and builds a linear bounding volume hierarchy over them, as
+     * {@link #rebuildLinear()} does. Unlike adding the leaves one at a time, the cost doesn't depend on the order the leaves come in.
+     *
+     * @param leafBounds Bounds of the leaves. Leaf i's bounds are minX, minY, minZ, maxX, maxY, maxZ starting at 6 * i.
+     * @param leafCount Number of leaves.
+     */
+    public void buildLinear(double[] leafBounds, int leafCount) {
+        clear();
+        ensureCapacity(leafCount);
+        this.leafCount = leafCount;
+        if (leafCount < 3) {
+            //As with incremental adds, up to two leaves occupy the root's slots in order.
+            for (int i = 0; i < leafCount; i++) {
+                int offset = i * 6;
+                writeSlot(i, leafBounds[offset], leafBounds[offset + 1], leafBounds[offset + 2],
+                        leafBounds[offset + 3], leafBounds[offset + 4], leafBounds[offset + 5], encode(i), 1);
+                leafSlots[i] = i;
+            }
+            return;
+        }
+        ensureLinearScratch();
+        System.arraycopy(leafBounds, 0, this.leafBounds, 0, leafCount * 6);
+        buildLinearNodes(null);
+    }
+
+    private void ensureLinearScratch() {
+        if (sorter == null) {
+            sorter = new RadixSorter();
+        }
+        if (mortonCodes == null || mortonCodes.length < leafCount) {
+            mortonCodes = new long[leafSlots.length];
+            sortedLeaves = new int[leafSlots.length];
+            leafBounds = new double[leafSlots.length * 6];
+        }
+    }
+
+    /**
+     * Builds the nodes over the leaf bounds stored in the linear build scratch.
+     */
+    private void buildLinearNodes(IThreadDispatcher dispatcher) {
+        double centerMinX = Double.POSITIVE_INFINITY, centerMinY = Double.POSITIVE_INFINITY, centerMinZ = Double.POSITIVE_INFINITY;
+        double centerMaxX = Double.NEGATIVE_INFINITY, centerMaxY = Double.NEGATIVE_INFINITY, centerMaxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < leafCount; i++) {
+            int offset = i * 6;
+            //Twice the center; the scale cancels out in the quantization below.
+            double x = leafBounds[offset] + leafBounds[offset + 3];
+            double y = leafBounds[offset + 1] + leafBounds[offset + 4];
+            double z = leafBounds[offset + 2] + leafBounds[offset + 5];
+            centerMinX = Math.min(centerMinX, x);
+            centerMinY = Math.min(centerMinY, y);
+            centerMinZ = Math.min(centerMinZ, z);
+            centerMaxX = Math.max(centerMaxX, x);
+            centerMaxY = Math.max(centerMaxY, y);
+            centerMaxZ = Math.max(centerMaxZ, z);
+        }
+        double inverseSpanX = centerMaxX > centerMinX ? 1 / (centerMaxX - centerMinX) : 0;
+        double inverseSpanY = centerMaxY > centerMinY ? 1 / (centerMaxY - centerMinY) : 0;
+        double inverseSpanZ = centerMaxZ > centerMinZ ? 1 / (centerMaxZ - centerMinZ) : 0;
+        for (int i = 0; i < leafCount; i++) {
+            int offset = i * 6;
+            mortonCodes[i] = MortonCode.encode(
+                    MortonCode.quantize(leafBounds[offset] + leafBounds[offset + 3], centerMinX, inverseSpanX, 21),
+                    MortonCode.quantize(leafBounds[offset + 1] + leafBounds[offset + 4], centerMinY, inverseSpanY, 21),
+                    MortonCode.quantize(leafBounds[offset + 2] + leafBounds[offset + 5], centerMinZ, inverseSpanZ, 21));
+            sortedLeaves[i] = i;
+        }
+        sorter.sort(mortonCodes, sortedLeaves, leafCount, 63, dispatcher);
+        nodeCount = 1;
+        parents[0] = -1;
+        indicesInParent[0] = -1;
+        buildLinearNode(0, 0, leafCount);
+    }
+
+    /**
+     * Fills a node with the sorted leaves in [start, end), which must hold at least two.
+     */
+    private void buildLinearNode(int node, int start, int end) {
+        int split = findLinearSplit(start, end);
+        buildLinearSlot(node * 2, start, split);
+        buildLinearSlot(node * 2 + 1, split, end);
+    }
+
+    private void buildLinearSlot(int slot, int start, int end) {
+        if (end - start == 1) {
+            int leaf = sortedLeaves[start];
+            int offset = leaf * 6;
+            writeSlot(slot, leafBounds[offset], leafBounds[offset + 1], leafBounds[offset + 2],
+                    leafBounds[offset + 3], leafBounds[offset + 4], leafBounds[offset + 5], encode(leaf), 1);
+            leafSlots[leaf] = slot;
+        } else {
+            int child = nodeCount++;
+            parents[child] = slot >> 1;
+            indicesInParent[child] = slot & 1;
+            buildLinearNode(child, start, end);
+            mergeChildren(child, slot);
+            childIndices[slot] = child;
+            leafCounts[slot] = end - start;
+        }
+    }
+
+    /**
+     * Finds the first index in (start, end) whose code differs from the range's first code in the highest bit that varies within the range.
+     * Ranges of identical codes are split in the middle.
+     */
+    private int findLinearSplit(int start, int end) {
+        long first = mortonCodes[start];
+        long last = mortonCodes[end - 1];
+        if (first == last) {
+            return (start + end) >>> 1;
+        }
+        int commonPrefix = Long.numberOfLeadingZeros(first ^ last);
+        //Binary search for the last code sharing more than the common prefix with the first.
+        int low = start;
+        int high = end - 1;
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (Long.numberOfLeadingZeros(first ^ mortonCodes[middle]) > commonPrefix) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Finds all pairs of overlapping leaves within the tree.
+     *
+     * @param handler Handler to report overlapping leaf pairs to.
+     */
+    public void getSelfOverlaps(IOverlapHandler handler) {
+        if (leafCount < 2) {
+            return;
+        }
+        getOverlapsInNode(0, handler);
+    }
+
+    /**
+     * Finds all pairs of overlapping leaves between this tree and another tree.
+     *
+     * @param other Tree to test against.
+     * @param handler Handler to report overlapping leaf pairs to. The first leaf index refers to this tree, the second to the other tree.
+     */
+    public void getOverlaps(Tree other, IOverlapHandler handler) {
+        int slotCountA = Math.min(leafCount, 2);
+        int slotCountB = Math.min(other.leafCount, 2);
+        for (int a = 0; a < slotCountA; a++) {
+            for (int b = 0; b < slotCountB; b++) {
+                if (intersects(this, a, other, b)) {
+                    getOverlapsBetweenSlots(this, a, other, b, handler);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds all leaves whose bounds overlap a bounding box.
+     *
+     * @param min Minimum of the query bounds.
+     * @param max Maximum of the query bounds.
+     * @param handler Handler to report overlapping leaves to.
+     */
+    public void getOverlaps(Vector3Double min, Vector3Double max, ILeafHandler handler) {
+        int slotCount = Math.min(leafCount, 2);
+        for (int slot = 0; slot < slotCount; slot++) {
+            getOverlapsInSlot(slot, min.x, min.y, min.z, max.x, max.y, max.z, handler);
+        }
+    }
+
+    /**
+     * Casts a ray against the leaves of the tree. Only subtrees whose bounds the ray hits within the current maximum distance are visited,
+     * and the tester can shorten the ray as it finds hits.
+     *
+     * @param origin Origin of the ray.
+     * @param direction Direction of the ray. Distances are measured in units of its length.
+     * @param maximumT Maximum distance along the ray to test.
+     * @param tester Tester to run on every leaf whose bounds the ray hits.
+     *
+     * @return Maximum distance along the ray after all leaves were tested.
+     */
+    public double rayCast(Vector3Double origin, Vector3Double direction, double maximumT, IRayLeafTester tester) {
+        double inverseX = 1 / direction.x;
+        double inverseY = 1 / direction.y;
+        double inverseZ = 1 / direction.z;
+        int slotCount = Math.min(leafCount, 2);
+        for (int slot = 0; slot < slotCount; slot++) {
+            maximumT = rayCastSlot(slot, origin.x, origin.y, origin.z, inverseX, inverseY, inverseZ, maximumT, tester);
+        }
+        return maximumT;
+    }
+
+    /**
+     * Tests whether a ray hits a bounding box stored as six consecutive doubles (minX, minY, minZ, maxX, maxY, maxZ).
+     *
+     * @param bounds Array holding the bounds.
+     * @param offset Index of the bounds' first element.
+     * @param originX Ray origin x.
+     * @param originY Ray origin y.
+     * @param originZ Ray origin z.
+     * @param inverseDirectionX Reciprocal of the ray direction's x component.
+     * @param inverseDirectionY Reciprocal of the ray direction's y component.
+     * @param inverseDirectionZ Reciprocal of the ray direction's z component.
+     * @param maximumT Maximum distance along the ray.
+     *
+     * @return True if the ray enters the bounds within [0, maximumT].
+     */
+    public static boolean rayIntersects(double[] bounds, int offset, double originX, double originY, double originZ,
+                                        double inverseDirectionX, double inverseDirectionY, double inverseDirectionZ, double maximumT) {
+        double tX0 = (bounds[offset] - originX) * inverseDirectionX;
+        double tX1 = (bounds[offset + 3] - originX) * inverseDirectionX;
+        double tY0 = (bounds[offset + 1] - originY) * inverseDirectionY;
+        double tY1 = (bounds[offset + 4] - originY) * inverseDirectionY;
+        double tZ0 = (bounds[offset + 2] - originZ) * inverseDirectionZ;
+        double tZ1 = (bounds[offset + 5] - originZ) * inverseDirectionZ;
+        //A zero direction component produces NaN when the origin lies on a slab plane; treat those slabs as unbounded.
+        double enter = Math.max(0, Math.max(nanToNegative(Math.min(tX0, tX1)), Math.max(nanToNegative(Math.min(tY0, tY1)), nanToNegative(Math.min(tZ0, tZ1)))));
+        double exit = Math.min(maximumT, Math.min(nanToPositive(Math.max(tX0, tX1)), Math.min(nanToPositive(Math.max(tY0, tY1)), nanToPositive(Math.max(tZ0, tZ1)))));
+        return enter <= exit;
+    }
+
+    private static double nanToNegative(double t) {
+        return t != t ? Double.NEGATIVE_INFINITY : t;
+    }
+
+    private static double nanToPositive(double t) {
+        return t != t ? Double.POSITIVE_INFINITY : t;
+    }
+
+    private void getOverlapsInSlot(int slot, double minX, double minY, double minZ, double maxX, double maxY, double maxZ, ILeafHandler handler) {
+        int offset = slot * 6;
+        if (bounds[offset] > maxX || bounds[offset + 3] < minX ||
+                bounds[offset + 1] > maxY || bounds[offset + 4] < minY ||
+                bounds[offset + 2] > maxZ || bounds[offset + 5] < minZ) {
+            return;
+        }
+        int child = childIndices[slot];
+        if (child < 0) {
+            handler.handle(decode(child));
+        } else {
+            getOverlapsInSlot(child * 2, minX, minY, minZ, maxX, maxY, maxZ, handler);
+            getOverlapsInSlot(child * 2 + 1, minX, minY, minZ, maxX, maxY, maxZ, handler);
+        }
+    }
+
+    private double rayCastSlot(int slot, double originX, double originY, double originZ,
+                               double inverseX, double inverseY, double inverseZ, double maximumT, IRayLeafTester tester) {
+        if (!rayIntersects(bounds, slot * 6, originX, originY, originZ, inverseX, inverseY, inverseZ, maximumT)) {
+            return maximumT;
+        }
+        int child = childIndices[slot];
+        if (child < 0) {
+            return tester.test(decode(child), maximumT);
+        }
+        maximumT = rayCastSlot(child * 2, originX, originY, originZ, inverseX, inverseY, inverseZ, maximumT, tester);
+        return rayCastSlot(child * 2 + 1, originX, originY, originZ, inverseX, inverseY, inverseZ, maximumT, tester);
+    }
+
+    private void getOverlapsInNode(int node, IOverlapHandler handler) {
+        int slotA = node * 2;
+        int slotB = slotA + 1;
+        int a = childIndices[slotA];
+        int b = childIndices[slotB];
+        if (a >= 0) {
+            getOverlapsInNode(a, handler);
+        }
+        if (b >= 0) {
+            getOverlapsInNode(b, handler);
+        }
+        if (intersects(this, slotA, this, slotB)) {
+            getOverlapsBetweenSlots(this, slotA, this, slotB, handler);
+        }
+    }
+
+    private static void getOverlapsBetweenSlots(Tree treeA, int slotA, Tree treeB, int slotB, IOverlapHandler handler) {
+        int a = treeA.childIndices[slotA];
+        int b = treeB.childIndices[slotB];
+        if (a < 0) {
+            if (b < 0) {
+                handler.handle(decode(a), decode(b));
+            } else {
+                for (int i = b * 2; i < b * 2 + 2; i++) {
+                    if (intersects(treeA, slotA, treeB, i)) {
+                        getOverlapsBetweenSlots(treeA, slotA, treeB, i, handler);
+                    }
+                }
+            }
+        } else if (b < 0) {
+            for (int i = a * 2; i < a * 2 + 2; i++) {
+                if (intersects(treeA, i, treeB, slotB)) {
+                    getOverlapsBetweenSlots(treeA, i, treeB, slotB, handler);
+                }
+            }
+        } else {
+            for (int i = a * 2; i < a * 2 + 2; i++) {
+                for (int j = b * 2; j < b * 2 + 2; j++) {
+                    if (intersects(treeA, i, treeB, j)) {
+                        getOverlapsBetweenSlots(treeA, i, treeB, j, handler);
+                    }
+                }
+            }
+        }
+    }
+
+    static int decode(int encodedLeafIndex) {
+        return -1 - encodedLeafIndex;
+    }
+
+    static boolean intersects(Tree treeA, int slotA, Tree treeB, int slotB) {
+        double[] a = treeA.bounds;
+        double[] b = treeB.bounds;
+        int offsetA = slotA * 6;
+        int offsetB = slotB * 6;
+        return a[offsetA] <= b[offsetB + 3] && a[offsetA + 3] >= b[offsetB] &&
+                a[offsetA + 1] <= b[offsetB + 4] && a[offsetA + 4] >= b[offsetB + 1] &&
+                a[offsetA + 2] <= b[offsetB + 5] && a[offsetA + 5] >= b[offsetB + 2];
+    }
+
+    private void refitNode(int node) {
+        int slotA = node * 2;
+        for (int i = slotA; i < slotA + 2; i++) {
+            int child = childIndices[i];
+            if (child >= 0) {
+                refitNode(child);
+            }
+        }
+        mergeChildren(node, parents[node] * 2 + indicesInParent[node]);
+    }
+
+    private void refitUpward(int node) {
+        while (node != 0) {
+            int parent = parents[node];
+            int parentSlot = parent * 2 + indicesInParent[node];
+            mergeChildren(node, parentSlot);
+            leafCounts[parentSlot] = leafCounts[node * 2] + leafCounts[node * 2 + 1];
+            node = parent;
+        }
+    }
+
+    private void mergeChildren(int node, int targetSlot) {
+        int a = node * 12;
+        int target = targetSlot * 6;
+        bounds[target] = Math.min(bounds[a], bounds[a + 6]);
+        bounds[target + 1] = Math.min(bounds[a + 1], bounds[a + 7]);
+        bounds[target + 2] = Math.min(bounds[a + 2], bounds[a + 8]);
+        bounds[target + 3] = Math.max(bounds[a + 3], bounds[a + 9]);
+        bounds[target + 4] = Math.max(bounds[a + 4], bounds[a + 10]);
+        bounds[target + 5] = Math.max(bounds[a + 5], bounds[a + 11]);
+    }
+
+    private int allocateNode(int parent, int indexInParent) {
+        if (nodeCount == parents.length) {
+            ensureCapacity(nodeCount * 2 + 1);
+        }
+        int node = nodeCount++;
+        parents[node] = parent;
+        indicesInParent[node] = indexInParent;
+        return node;
+    }
+
+    /**
+     * Removes a node whose children have already been moved elsewhere. The last node is moved into its index.
+     */
+    private void removeNode(int node) {
+        int last = --nodeCount;
+        if (node == last) {
+            return;
+        }
+        copySlot(last * 2, node * 2);
+        copySlot(last * 2 + 1, node * 2 + 1);
+        parents[node] = parents[last];
+        indicesInParent[node] = indicesInParent[last];
+        childIndices[parents[node] * 2 + indicesInParent[node]] = node;
+        adoptSlot(node * 2);
+        adoptSlot(node * 2 + 1);
+    }
+
+    /**
+     * Points the child stored in a slot back at that slot.
+     */
+    private void adoptSlot(int slot) {
+        int child = childIndices[slot];
+        if (child >= 0) {
+            parents[child] = slot >> 1;
+            indicesInParent[child] = slot & 1;
+        } else {
+            leafSlots[decode(child)] = slot;
+        }
+    }
+
+    private void copySlot(int source, int target) {
+        System.arraycopy(bounds, source * 6, bounds, target * 6, 6);
+        childIndices[target] = childIndices[source];
+        leafCounts[target] = leafCounts[source];
+    }
+
+    private void writeSlot(int slot, double minX, double minY, double minZ, double maxX, double maxY, double maxZ, int childIndex, int leafCount) {
+        int offset = slot * 6;
+        bounds[offset] = minX;
+        bounds[offset + 1] = minY;
+        bounds[offset + 2] = minZ;
+        bounds[offset + 3] = maxX;
+        bounds[offset + 4] = maxY;
+        bounds[offset + 5] = maxZ;
+        childIndices[slot] = childIndex;
+        leafCounts[slot] = leafCount;
+    }
+
+    private void mergeInto(int slot, Vector3Double min, Vector3Double max) {
+        int offset = slot * 6;
+        bounds[offset] = Math.min(bounds[offset], min.x);
+        bounds[offset + 1] = Math.min(bounds[offset + 1], min.y);
+        bounds[offset + 2] = Math.min(bounds[offset + 2], min.z);
+        bounds[offset + 3] = Math.max(bounds[offset + 3], max.x);
+        bounds[offset + 4] = Math.max(bounds[offset + 4], max.y);
+        bounds[offset + 5] = Math.max(bounds[offset + 5], max.z);
+    }
+
+    private double area(int slot) {
+        int offset = slot * 6;
+        return computeArea(bounds[offset + 3] - bounds[offset], bounds[offset + 4] - bounds[offset + 1], bounds[offset + 5] - bounds[offset + 2]);
+    }
+
+    private double mergedArea(int slot, Vector3Double min, Vector3Double max) {
+        int offset = slot * 6;
+        return computeArea(
+                Math.max(bounds[offset + 3], max.x) - Math.min(bounds[offset], min.x),
+                Math.max(bounds[offset + 4], max.y) - Math.min(bounds[offset + 1], min.y),
+                Math.max(bounds[offset + 5], max.z) - Math.min(bounds[offset + 2], min.z));
+    }
+
+    static double computeArea(double x, double y, double z) {
+        return x * y + y * z + x * z;
+    }
+}
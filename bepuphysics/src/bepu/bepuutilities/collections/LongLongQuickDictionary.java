@@ -0,0 +1,298 @@
+package bepu.bepuutilities.collections;
+
+import bepu.bepuutilities.memory.BufferPool;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary mapping long keys to long values without boxing. Keys and values are stored densely in insertion order (until removals swap
+ * elements around), and an open addressing table with linear probing maps keys to their dense indices.
+ * <p>
+ * Storage can optionally come from a {@link BufferPool}; in that case resizes return the old arrays to the pool and {@link #dispose()}
+ * returns the current ones.
+ */
+public class LongLongQuickDictionary {
+    private final BufferPool pool;
+    private long[] keys;
+    private long[] values;
+    //Each table slot holds the dense index of its key plus one; 0 marks an empty slot.
+    private int[] table;
+    private int tableMask;
+    private int count;
+
+    public LongLongQuickDictionary(int initialCapacity) {
+        this(initialCapacity, null);
+    }
+
+    /**
+     * Creates a dictionary.
+     *
+     * @param initialCapacity Number of elements to preallocate space for.
+     * @param pool Pool to take storage from. If null, storage is allocated directly.
+     */
+    public LongLongQuickDictionary(int initialCapacity, BufferPool pool) {
+        this.pool = pool;
+        int capacity = Math.max(4, initialCapacity);
+        keys = takeLongs(capacity);
+        values = takeLongs(capacity);
+        table = takeTable(QuickHashing.getTableSize(keys.length));
+        tableMask = table.length - 1;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Gets the key stored at a dense index.
+     *
+     * @param index Dense index of the element, in [0, count).
+     *
+     * @return Key at the index.
+     */
+    public long getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Gets the value stored at a dense index.
+     *
+     * @param index Dense index of the element, in [0, count).
+     *
+     * @return Value at the index.
+     */
+    public long getValue(int index) {
+        return values[index];
+    }
+
+    public void setValue(int index, long value) {
+        values[index] = value;
+    }
+
+    /**
+     * Gets the backing key array for direct iteration. Only elements in [0, count) are meaningful, and the array is replaced when the dictionary resizes.
+     *
+     * @return Dense key storage.
+     */
+    public long[] getKeyArray() {
+        return keys;
+    }
+
+    /**
+     * Gets the backing value array for direct iteration. Only elements in [0, count) are meaningful, and the array is replaced when the dictionary resizes.
+     *
+     * @return Dense value storage.
+     */
+    public long[] getValueArray() {
+        return values;
+    }
+
+    /**
+     * Finds the dense index of a key. Safe to call from multiple threads as long as nothing modifies the dictionary.
+     *
+     * @param key Key to look up.
+     *
+     * @return Dense index of the key, or -1 if it is not present.
+     */
+    public int indexOf(long key) {
+        int slot = QuickHashing.hash(key) & tableMask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (keys[entry - 1] == key) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Gets the value associated with a key.
+     *
+     * @param key Key to look up.
+     * @param defaultValue Value to return if the key is not present.
+     *
+     * @return Value associated with the key, or the default value if the key is not present.
+     */
+    public long get(long key, long defaultValue) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    /**
+     * Adds a key-value pair if the key is not already present.
+     *
+     * @param key Key to add.
+     * @param value Value to associate with the key.
+     *
+     * @return True if the pair was added, false if the key was already present.
+     */
+    public boolean add(long key, long value) {
+        if (count == keys.length) {
+            resize(count * 2);
+        }
+        int slot = QuickHashing.hash(key) & tableMask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                break;
+            }
+            if (keys[entry - 1] == key) {
+                return false;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        keys[count] = key;
+        values[count] = value;
+        table[slot] = ++count;
+        return true;
+    }
+
+    /**
+     * Adds a key-value pair, or replaces the value if the key is already present.
+     *
+     * @param key Key to add or update.
+     * @param value Value to associate with the key.
+     *
+     * @return Dense index of the key.
+     */
+    public int addOrReplace(long key, long value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            values[index] = value;
+            return index;
+        }
+        add(key, value);
+        return count - 1;
+    }
+
+    /**
+     * Removes a key. The last element is moved into the removed element's dense index.
+     *
+     * @param key Key to remove.
+     *
+     * @return Dense index that the key occupied before removal, or -1 if the key was not present.
+     */
+    public int fastRemove(long key) {
+        int slot = QuickHashing.hash(key) & tableMask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (keys[entry - 1] == key) {
+                break;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        int index = table[slot] - 1;
+        QuickHashing.removeTableSlot(table, tableMask, slot, keys);
+        int last = --count;
+        if (index < last) {
+            //Point the last key's table slot at its new dense index.
+            long movedKey = keys[last];
+            keys[index] = movedKey;
+            values[index] = values[last];
+            int movedSlot = QuickHashing.hash(movedKey) & tableMask;
+            while (table[movedSlot] != last + 1) {
+                movedSlot = (movedSlot + 1) & tableMask;
+            }
+            table[movedSlot] = index + 1;
+        }
+        return index;
+    }
+
+    /**
+     * Ensures that the dictionary can hold at least the given number of elements without resizing.
+     *
+     * @param capacity Number of elements to preallocate space for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > keys.length) {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Removes every element. Only the table slots in use are cleared when the dictionary is sparse, so the cost scales with the element count
+     * rather than the capacity.
+     */
+    public void fastClear() {
+        QuickHashing.clearTable(table, tableMask, keys, count);
+        count = 0;
+    }
+
+    /**
+     * Removes every element, clearing the whole table.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        count = 0;
+    }
+
+    /**
+     * Returns pooled storage to the pool. The dictionary cannot be used afterwards.
+     */
+    public void dispose() {
+        if (pool != null) {
+            pool.returnLongs(keys);
+            pool.returnLongs(values);
+            pool.returnInts(table);
+        }
+        keys = null;
+        values = null;
+        table = null;
+        count = 0;
+    }
+
+    private void resize(int newCapacity) {
+        long[] newKeys = takeLongs(newCapacity);
+        long[] newValues = takeLongs(newCapacity);
+        System.arraycopy(keys, 0, newKeys, 0, count);
+        System.arraycopy(values, 0, newValues, 0, count);
+        if (pool != null) {
+            pool.returnLongs(keys);
+            pool.returnLongs(values);
+        }
+        keys = newKeys;
+        values = newValues;
+        int tableSize = QuickHashing.getTableSize(newKeys.length);
+        if (tableSize != table.length) {
+            if (pool != null) {
+                pool.returnInts(table);
+            }
+            table = takeTable(tableSize);
+            tableMask = tableSize - 1;
+            for (int i = 0; i < count; i++) {
+                int slot = QuickHashing.hash(keys[i]) & tableMask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & tableMask;
+                }
+                table[slot] = i + 1;
+            }
+        }
+    }
+
+    private long[] takeLongs(int capacity) {
+        return pool == null ? new long[capacity] : pool.takeLongs(capacity);
+    }
+
+    private int[] takeTable(int size) {
+        if (pool == null) {
+            return new int[size];
+        }
+        int[] newTable = pool.takeInts(size);
+        Arrays.fill(newTable, 0);
+        return newTable;
+    }
+}
@@ -0,0 +1,195 @@
+package bepu.bepuutilities.collections;
+
+import bepu.bepuutilities.memory.BufferPool;
+
+/**
+ * Growable list of long values backed by a plain array. When a {@link BufferPool} is supplied, every array the list uses is taken from and
+ * returned to that pool, so a list that has reached its working size no longer allocates.
+ */
+public class LongQuickList {
+    private final BufferPool pool;
+    private long[] elements;
+    private int count;
+
+    public LongQuickList(int initialCapacity) {
+        this(initialCapacity, null);
+    }
+
+    /**
+     * Creates a list.
+     *
+     * @param initialCapacity Number of elements to preallocate space for.
+     * @param pool Pool to take storage from. If null, storage is allocated directly.
+     */
+    public LongQuickList(int initialCapacity, BufferPool pool) {
+        this.pool = pool;
+        elements = take(Math.max(1, initialCapacity));
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return elements.length;
+    }
+
+    public long get(int index) {
+        assert index >= 0 && index < count : "Index out of range.";
+        return elements[index];
+    }
+
+    public void set(int index, long value) {
+        assert index >= 0 && index < count : "Index out of range.";
+        elements[index] = value;
+    }
+
+    /**
+     * Gets the backing array for direct iteration. Only elements in [0, count) are meaningful, and the array is replaced when the list resizes.
+     *
+     * @return Backing storage of the list.
+     */
+    public long[] getArray() {
+        return elements;
+    }
+
+    public void add(long value) {
+        if (count == elements.length) {
+            resize(count * 2);
+        }
+        elements[count++] = value;
+    }
+
+    /**
+     * Adds a value without checking capacity. The caller must have reserved space with {@link #ensureCapacity(int)}.
+     *
+     * @param value Value to add.
+     */
+    public void addUnsafely(long value) {
+        assert count < elements.length : "Capacity must be reserved before adding unsafely.";
+        elements[count++] = value;
+    }
+
+    /**
+     * Appends a range of values from an array.
+     *
+     * @param values Array holding the values.
+     * @param start Index of the first value to copy.
+     * @param length Number of values to copy.
+     */
+    public void addRange(long[] values, int start, int length) {
+        ensureCapacity(count + length);
+        System.arraycopy(values, start, elements, count, length);
+        count += length;
+    }
+
+    /**
+     * Reserves space for a number of elements at the end of the list and returns the index of the first one.
+     * The reserved elements hold whatever values were there before.
+     *
+     * @param length Number of elements to reserve.
+     *
+     * @return Index of the first reserved element.
+     */
+    public int allocate(int length) {
+        ensureCapacity(count + length);
+        int start = count;
+        count += length;
+        return start;
+    }
+
+    /**
+     * Removes and returns the last element.
+     *
+     * @return Last element of the list.
+     */
+    public long pop() {
+        assert count > 0 : "Cannot pop an empty list.";
+        return elements[--count];
+    }
+
+    public int indexOf(long value) {
+        for (int i = 0; i < count; i++) {
+            if (elements[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(long value) {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * Removes an element by moving the last element into its slot. Does not preserve order.
+     *
+     * @param index Index of the element to remove.
+     */
+    public void fastRemoveAt(int index) {
+        assert index >= 0 && index < count : "Index out of range.";
+        elements[index] = elements[--count];
+    }
+
+    /**
+     * Removes an element, shifting every later element down by one.
+     *
+     * @param index Index of the element to remove.
+     */
+    public void removeAt(int index) {
+        assert index >= 0 && index < count : "Index out of range.";
+        count--;
+        System.arraycopy(elements, index + 1, elements, index, count - index);
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Ensures that the list can hold at least the given number of elements without resizing.
+     *
+     * @param capacity Number of elements to preallocate space for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > elements.length) {
+            resize(Math.max(capacity, elements.length * 2));
+        }
+    }
+
+    /**
+     * Shrinks the backing storage to the smallest size that holds the current elements and the requested minimum.
+     *
+     * @param minimumCapacity Number of elements to keep space for.
+     */
+    public void compact(int minimumCapacity) {
+        int target = Math.max(1, Math.max(count, minimumCapacity));
+        if ((pool == null ? target : 1 << BufferPool.getBucketPower(target)) < elements.length) {
+            resize(target);
+        }
+    }
+
+    /**
+     * Returns the backing storage to the pool. The list cannot be used afterwards.
+     */
+    public void dispose() {
+        if (pool != null) {
+            pool.returnLongs(elements);
+        }
+        elements = null;
+        count = 0;
+    }
+
+    private void resize(int newCapacity) {
+        long[] newElements = take(newCapacity);
+        System.arraycopy(elements, 0, newElements, 0, count);
+        if (pool != null) {
+            pool.returnLongs(elements);
+        }
+        elements = newElements;
+    }
+
+    private long[] take(int capacity) {
+        return pool == null ? new long[capacity] : pool.takeLongs(capacity);
+    }
+}
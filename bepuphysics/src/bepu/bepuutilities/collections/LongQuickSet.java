@@ -0,0 +1,230 @@
+package bepu.bepuutilities.collections;
+
+import bepu.bepuutilities.memory.BufferPool;
+
+import java.util.Arrays;
+
+/**
+ * Set of long values without boxing. Elements are stored densely, and an open addressing table with linear probing maps elements to their
+ * dense indices.
+ * <p>
+ * Storage can optionally come from a {@link BufferPool}; in that case resizes return the old arrays to the pool and {@link #dispose()}
+ * returns the current ones.
+ */
+public class LongQuickSet {
+    private final BufferPool pool;
+    private long[] elements;
+    //Each table slot holds the dense index of its element plus one; 0 marks an empty slot.
+    private int[] table;
+    private int tableMask;
+    private int count;
+
+    public LongQuickSet(int initialCapacity) {
+        this(initialCapacity, null);
+    }
+
+    /**
+     * Creates a set.
+     *
+     * @param initialCapacity Number of elements to preallocate space for.
+     * @param pool Pool to take storage from. If null, storage is allocated directly.
+     */
+    public LongQuickSet(int initialCapacity, BufferPool pool) {
+        this.pool = pool;
+        elements = takeLongs(Math.max(4, initialCapacity));
+        table = takeTable(QuickHashing.getTableSize(elements.length));
+        tableMask = table.length - 1;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return elements.length;
+    }
+
+    /**
+     * Gets the element stored at a dense index.
+     *
+     * @param index Dense index of the element, in [0, count).
+     *
+     * @return Element at the index.
+     */
+    public long get(int index) {
+        return elements[index];
+    }
+
+    /**
+     * Gets the backing element array for direct iteration. Only elements in [0, count) are meaningful, and the array is replaced when the set resizes.
+     *
+     * @return Dense element storage.
+     */
+    public long[] getElementArray() {
+        return elements;
+    }
+
+    /**
+     * Finds the dense index of an element. Safe to call from multiple threads as long as nothing modifies the set.
+     *
+     * @param element Element to look up.
+     *
+     * @return Dense index of the element, or -1 if it is not present.
+     */
+    public int indexOf(long element) {
+        int slot = QuickHashing.hash(element) & tableMask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (elements[entry - 1] == element) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+    }
+
+    public boolean contains(long element) {
+        return indexOf(element) >= 0;
+    }
+
+    /**
+     * Adds an element if it is not already present.
+     *
+     * @param element Element to add.
+     *
+     * @return True if the element was added, false if it was already present.
+     */
+    public boolean add(long element) {
+        if (count == elements.length) {
+            resize(count * 2);
+        }
+        int slot = QuickHashing.hash(element) & tableMask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                break;
+            }
+            if (elements[entry - 1] == element) {
+                return false;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        elements[count] = element;
+        table[slot] = ++count;
+        return true;
+    }
+
+    /**
+     * Removes an element. The last element is moved into the removed element's dense index.
+     *
+     * @param element Element to remove.
+     *
+     * @return True if the element was present.
+     */
+    public boolean fastRemove(long element) {
+        int slot = QuickHashing.hash(element) & tableMask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return false;
+            }
+            if (elements[entry - 1] == element) {
+                break;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        int index = table[slot] - 1;
+        QuickHashing.removeTableSlot(table, tableMask, slot, elements);
+        int last = --count;
+        if (index < last) {
+            long moved = elements[last];
+            elements[index] = moved;
+            int movedSlot = QuickHashing.hash(moved) & tableMask;
+            while (table[movedSlot] != last + 1) {
+                movedSlot = (movedSlot + 1) & tableMask;
+            }
+            table[movedSlot] = index + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Ensures that the set can hold at least the given number of elements without resizing.
+     *
+     * @param capacity Number of elements to preallocate space for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > elements.length) {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Removes every element. Only the table slots in use are cleared when the set is sparse, so the cost scales with the element count
+     * rather than the capacity.
+     */
+    public void fastClear() {
+        QuickHashing.clearTable(table, tableMask, elements, count);
+        count = 0;
+    }
+
+    /**
+     * Removes every element, clearing the whole table.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        count = 0;
+    }
+
+    /**
+     * Returns pooled storage to the pool. The set cannot be used afterwards.
+     */
+    public void dispose() {
+        if (pool != null) {
+            pool.returnLongs(elements);
+            pool.returnInts(table);
+        }
+        elements = null;
+        table = null;
+        count = 0;
+    }
+
+    private void resize(int newCapacity) {
+        long[] newElements = takeLongs(newCapacity);
+        System.arraycopy(elements, 0, newElements, 0, count);
+        if (pool != null) {
+            pool.returnLongs(elements);
+        }
+        elements = newElements;
+        int tableSize = QuickHashing.getTableSize(newElements.length);
+        if (tableSize != table.length) {
+            if (pool != null) {
+                pool.returnInts(table);
+            }
+            table = takeTable(tableSize);
+            tableMask = tableSize - 1;
+            for (int i = 0; i < count; i++) {
+                int slot = QuickHashing.hash(elements[i]) & tableMask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & tableMask;
+                }
+                table[slot] = i + 1;
+            }
+        }
+    }
+
+    private long[] takeLongs(int capacity) {
+        return pool == null ? new long[capacity] : pool.takeLongs(capacity);
+    }
+
+    private int[] takeTable(int size) {
+        if (pool == null) {
+            return new int[size];
+        }
+        int[] newTable = pool.takeInts(size);
+        Arrays.fill(newTable, 0);
+        return newTable;
+    }
+}
@@ -0,0 +1,97 @@
+package bepu.bepuutilities.collections;
+
+import java.util.Arrays;
+
+/**
+ * Table helpers shared by the open addressing collections. Tables hold dense indices plus one, with 0 marking an empty slot.
+ */
+final class QuickHashing {
+    private QuickHashing() {
+    }
+
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int getTableSize(int capacity) {
+        //Keep the load factor at or below one half.
+        return Integer.highestOneBit(Math.max(4, capacity) * 2 - 1) << 1;
+    }
+
+    /**
+     * Empties a table slot, shifting later entries of the probe run back so that lookups never stop early on the new gap.
+     */
+    static void removeTableSlot(int[] table, int tableMask, int slot, long[] keys) {
+        int gap = slot;
+        int probe = slot;
+        while (true) {
+            probe = (probe + 1) & tableMask;
+            int entry = table[probe];
+            if (entry == 0) {
+                break;
+            }
+            int home = hash(keys[entry - 1]) & tableMask;
+            //The entry can fill the gap only if its home slot is not cyclically within (gap, probe].
+            if (((probe - home) & tableMask) >= ((probe - gap) & tableMask)) {
+                table[gap] = entry;
+                gap = probe;
+            }
+        }
+        table[gap] = 0;
+    }
+
+    static void removeTableSlot(int[] table, int tableMask, int slot, int[] keys) {
+        int gap = slot;
+        int probe = slot;
+        while (true) {
+            probe = (probe + 1) & tableMask;
+            int entry = table[probe];
+            if (entry == 0) {
+                break;
+            }
+            int home = hash(keys[entry - 1]) & tableMask;
+            if (((probe - home) & tableMask) >= ((probe - gap) & tableMask)) {
+                table[gap] = entry;
+                gap = probe;
+            }
+        }
+        table[gap] = 0;
+    }
+
+    /**
+     * Empties every slot in use. Sparse tables are cleared by probing for each key, which is cheaper than touching the whole table.
+     */
+    static void clearTable(int[] table, int tableMask, long[] keys, int count) {
+        if (count * 8 < table.length) {
+            for (int i = 0; i < count; i++) {
+                int slot = hash(keys[i]) & tableMask;
+                while (table[slot] != i + 1) {
+                    slot = (slot + 1) & tableMask;
+                }
+                table[slot] = 0;
+            }
+        } else {
+            Arrays.fill(table, 0);
+        }
+    }
+
+    static void clearTable(int[] table, int tableMask, int[] keys, int count) {
+        if (count * 8 < table.length) {
+            for (int i = 0; i < count; i++) {
+                int slot = hash(keys[i]) & tableMask;
+                while (table[slot] != i + 1) {
+                    slot = (slot + 1) & tableMask;
+                }
+                table[slot] = 0;
+            }
+        } else {
+            Arrays.fill(table, 0);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package bepu.bepuutilities.collections;
+
+import bepu.bepuutilities.threading.IThreadDispatcher;
+import bepu.bepuutilities.threading.IWorkerBody;
+
+/**
+ * Stable least significant digit radix sort of non-negative long keys with int values, eight bits per pass. Scratch storage is kept between
+ * sorts, so a sorter that has reached its working size no longer allocates.
+ * <p>
+ * With a thread dispatcher, every pass splits the keys into one contiguous range per worker. Each worker counts the digits in its range,
+ * the counts are turned into per worker output offsets, and each worker then scatters its own range. Workers write to disjoint slots and
+ * ranges are scattered in order, so the result is identical to a single threaded sort.
+ */
+public class RadixSorter {
+    private static final int RADIX_BITS = 8;
+    private static final int BUCKET_COUNT = 1 << RADIX_BITS;
+    //Below this many keys per worker, dispatching costs more than it saves.
+    private static final int MINIMUM_KEYS_PER_WORKER = 4096;
+
+    private long[] scratchKeys = new long[0];
+    private int[] scratchValues = new int[0];
+    //Bucket counts and then output offsets of each worker's range, BUCKET_COUNT per worker.
+    private int[] histograms = new int[BUCKET_COUNT];
+
+    //State of the pass being dispatched.
+    private long[] sourceKeys;
+    private int[] sourceValues;
+    private long[] targetKeys;
+    private int[] targetValues;
+    private int count;
+    private int workerCount;
+    private int shift;
+    private final IWorkerBody countWorker = this::countRange;
+    private final IWorkerBody scatterWorker = this::scatterRange;
+
+    /**
+     * Sorts the first count keys in ascending order, applying the same permutation to the values.
+     *
+     * @param keys Keys to sort. Must be non-negative.
+     * @param values Values to permute along with the keys.
+     * @param count Number of keys to sort.
+     * @param keyBits Number of low bits that can be set in the keys. Higher bits are ignored.
+     */
+    public void sort(long[] keys, int[] values, int count, int keyBits) {
+        sort(keys, values, count, keyBits, null);
+    }
+
+    /**
+     * Sorts the first count keys in ascending order, applying the same permutation to the values.
+     *
+     * @param keys Keys to sort. Must be non-negative.
+     * @param values Values to permute along with the keys.
+     * @param count Number of keys to sort.
+     * @param keyBits Number of low bits that can be set in the keys. Higher bits are ignored.
+     * @param dispatcher Dispatcher to split passes across. If null, the calling thread sorts everything.
+     */
+    public void sort(long[] keys, int[] values, int count, int keyBits, IThreadDispatcher dispatcher) {
+        if (count < 2) {
+            return;
+        }
+        if (scratchKeys.length < count) {
+            scratchKeys = new long[Math.max(count, scratchKeys.length * 2)];
+            scratchValues = new int[scratchKeys.length];
+        }
+        workerCount = dispatcher == null ? 1 : Math.max(1, Math.min(dispatcher.getThreadCount(), count / MINIMUM_KEYS_PER_WORKER));
+        if (histograms.length < workerCount * BUCKET_COUNT) {
+            histograms = new int[workerCount * BUCKET_COUNT];
+        }
+        this.count = count;
+        sourceKeys = keys;
+        sourceValues = values;
+        targetKeys = scratchKeys;
+        targetValues = scratchValues;
+        for (shift = 0; shift < keyBits; shift += RADIX_BITS) {
+            if (workerCount > 1) {
+                dispatcher.dispatchWorkers(countWorker);
+            } else {
+                countRange(0);
+            }
+            if (!computeOffsets()) {
+                //Every key has the same digit; the pass wouldn't change the order.
+                continue;
+            }
+            if (workerCount > 1) {
+                dispatcher.dispatchWorkers(scatterWorker);
+            } else {
+                scatterRange(0);
+            }
+            long[] keysSwap = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = keysSwap;
+            int[] valuesSwap = sourceValues;
+            sourceValues = targetValues;
+            targetValues = valuesSwap;
+        }
+        if (sourceKeys != keys) {
+            System.arraycopy(sourceKeys, 0, keys, 0, count);
+            System.arraycopy(sourceValues, 0, values, 0, count);
+        }
+        sourceKeys = targetKeys = null;
+        sourceValues = targetValues = null;
+    }
+
+    private int getRangeStart(int workerIndex) {
+        return (int) ((long) count * workerIndex / workerCount);
+    }
+
+    private void countRange(int workerIndex) {
+        int histogramStart = workerIndex * BUCKET_COUNT;
+        java.util.Arrays.fill(histograms, histogramStart, histogramStart + BUCKET_COUNT, 0);
+        int end = getRangeStart(workerIndex + 1);
+        for (int i = getRangeStart(workerIndex); i < end; i++) {
+            histograms[histogramStart + ((int) (sourceKeys[i] >>> shift) & (BUCKET_COUNT - 1))]++;
+        }
+    }
+
+    /**
+     * Replaces the counts with the index each worker writes its first key of each digit to, in digit major, worker minor order.
+     *
+     * @return False if all keys share a single digit.
+     */
+    private boolean computeOffsets() {
+        int offset = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            int bucketStart = offset;
+            for (int worker = 0; worker < workerCount; worker++) {
+                int index = worker * BUCKET_COUNT + bucket;
+                int bucketCount = histograms[index];
+                histograms[index] = offset;
+                offset += bucketCount;
+            }
+            if (offset - bucketStart == count) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void scatterRange(int workerIndex) {
+        int histogramStart = workerIndex * BUCKET_COUNT;
+        int end = getRangeStart(workerIndex + 1);
+        for (int i = getRangeStart(workerIndex); i < end; i++) {
+            long key = sourceKeys[i];
+            int target = histograms[histogramStart + ((int) (key >>> shift) & (BUCKET_COUNT - 1))]++;
+            targetKeys[target] = key;
+            targetValues[target] = sourceValues[i];
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package bepu.bepuutilities.collections;
+
+import bepu.bepuutilities.memory.BufferPool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Growable list of fixed size records stored back to back in a {@link ByteBuffer}. Each element occupies {@code stride} bytes, and its fields
+ * are read and written at byte offsets within the element, the same way {@code ShapeBatch} lays out shape data.
+ * <p>
+ * When a {@link BufferPool} is supplied, every buffer the list uses is taken from and returned to that pool, so a list that has reached its
+ * working size no longer allocates.
+ */
+public class StructQuickList {
+    private final BufferPool pool;
+    private final int stride;
+    private ByteBuffer data;
+    private int capacity;
+    private int count;
+
+    public StructQuickList(int stride, int initialCapacity) {
+        this(stride, initialCapacity, null);
+    }
+
+    /**
+     * Creates a list.
+     *
+     * @param stride Size of each element in bytes.
+     * @param initialCapacity Number of elements to preallocate space for.
+     * @param pool Pool to take storage from. If null, storage is allocated directly.
+     */
+    public StructQuickList(int stride, int initialCapacity, BufferPool pool) {
+        assert stride > 0 : "Elements must occupy at least one byte.";
+        this.pool = pool;
+        this.stride = stride;
+        data = take(Math.max(1, initialCapacity) * stride);
+        capacity = data.capacity() / stride;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the backing buffer. Elements start at multiples of the stride; the buffer is replaced when the list resizes.
+     *
+     * @return Backing storage of the list.
+     */
+    public ByteBuffer getBuffer() {
+        return data;
+    }
+
+    /**
+     * Gets the byte offset of an element in the backing buffer.
+     *
+     * @param index Index of the element.
+     *
+     * @return Offset of the element's first byte.
+     */
+    public int getOffset(int index) {
+        assert index >= 0 && index < count : "Index out of range.";
+        return index * stride;
+    }
+
+    public int getInt(int index, int fieldOffset) {
+        return data.getInt(getOffset(index) + fieldOffset);
+    }
+
+    public void putInt(int index, int fieldOffset, int value) {
+        data.putInt(getOffset(index) + fieldOffset, value);
+    }
+
+    public long getLong(int index, int fieldOffset) {
+        return data.getLong(getOffset(index) + fieldOffset);
+    }
+
+    public void putLong(int index, int fieldOffset, long value) {
+        data.putLong(getOffset(index) + fieldOffset, value);
+    }
+
+    public double getDouble(int index, int fieldOffset) {
+        return data.getDouble(getOffset(index) + fieldOffset);
+    }
+
+    public void putDouble(int index, int fieldOffset, double value) {
+        data.putDouble(getOffset(index) + fieldOffset, value);
+    }
+
+    /**
+     * Appends an element and returns its index. The element's bytes are zeroed.
+     *
+     * @return Index of the new element.
+     */
+    public int add() {
+        if (count == capacity) {
+            resize(count * 2);
+        }
+        int index = count++;
+        int offset = index * stride;
+        for (int i = 0; i < stride; i++) {
+            data.put(offset + i, (byte) 0);
+        }
+        return index;
+    }
+
+    /**
+     * Appends a copy of an element from another buffer.
+     *
+     * @param source Buffer holding the element.
+     * @param sourceOffset Byte offset of the element in the source buffer.
+     *
+     * @return Index of the new element.
+     */
+    public int add(ByteBuffer source, int sourceOffset) {
+        if (count == capacity) {
+            resize(count * 2);
+        }
+        int index = count++;
+        data.put(index * stride, source, sourceOffset, stride);
+        return index;
+    }
+
+    /**
+     * Removes an element by copying the last element into its slot. Does not preserve order.
+     *
+     * @param index Index of the element to remove.
+     */
+    public void fastRemoveAt(int index) {
+        assert index >= 0 && index < count : "Index out of range.";
+        int last = --count;
+        if (index < last) {
+            data.put(index * stride, data, last * stride, stride);
+        }
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Ensures that the list can hold at least the given number of elements without resizing.
+     *
+     * @param capacity Number of elements to preallocate space for.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > this.capacity) {
+            resize(Math.max(capacity, this.capacity * 2));
+        }
+    }
+
+    /**
+     * Returns the backing storage to the pool. The list cannot be used afterwards.
+     */
+    public void dispose() {
+        if (pool != null) {
+            pool.returnBytes(data);
+        }
+        data = null;
+        capacity = 0;
+        count = 0;
+    }
+
+    private void resize(int newCapacity) {
+        ByteBuffer newData = take(newCapacity * stride);
+        newData.put(0, data, 0, count * stride);
+        if (pool != null) {
+            pool.returnBytes(data);
+        }
+        data = newData;
+        capacity = newData.capacity() / stride;
+    }
+
+    private ByteBuffer take(int byteCount) {
+        return pool == null ? ByteBuffer.allocate(byteCount) : pool.takeBytes(byteCount);
+    }
+}
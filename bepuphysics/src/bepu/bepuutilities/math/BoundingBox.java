@@ -3,6 +3,7 @@ package bepu.bepuutilities.math;
 import bepu.bepuutilities.ContainmentType;
 import bepu.bepuutilities.memory.Vector3Pool;
 
+import java.nio.DoubleBuffer;
 import java.util.List;
 
 /**
@@ -143,6 +144,82 @@ public class BoundingBox {
         return result;
     }
 
+    /**
+     * Creates the smallest possible bounding box that contains a run of points stored as consecutive x, y, z coordinates.
+     * Chunks of a large point set can be bounded independently and combined with {@link #createMerged(BoundingBox, BoundingBox, BoundingBox)}.
+     *
+     * @param points Coordinates of the points.
+     * @param startPoint Index of the first point to include.
+     * @param pointCount Number of points to include.
+     * @param result Bounding box which contains the points. It can be null.
+     *
+     * @return Bounding box which contains the points.
+     */
+    public static BoundingBox createFromPoints(double[] points, int startPoint, int pointCount, BoundingBox result){
+        if(pointCount <= 0){
+            throw new IllegalArgumentException("Cannot create a bounding box from an empty set of points.");
+        }
+        if(result == null){
+            result = new BoundingBox();
+        }
+        int offset = startPoint * 3;
+        double minX = points[offset], minY = points[offset + 1], minZ = points[offset + 2];
+        double maxX = minX, maxY = minY, maxZ = minZ;
+        int end = (startPoint + pointCount) * 3;
+        for(int i = offset + 3; i < end; i += 3){
+            double x = points[i];
+            double y = points[i + 1];
+            double z = points[i + 2];
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+        result.min.set(minX, minY, minZ);
+        result.max.set(maxX, maxY, maxZ);
+        return result;
+    }
+
+    /**
+     * Creates the smallest possible bounding box that contains a run of points stored as consecutive x, y, z coordinates.
+     * Uses absolute indexing, so the buffer's position and limit are ignored.
+     *
+     * @param points Coordinates of the points.
+     * @param startPoint Index of the first point to include.
+     * @param pointCount Number of points to include.
+     * @param result Bounding box which contains the points. It can be null.
+     *
+     * @return Bounding box which contains the points.
+     */
+    public static BoundingBox createFromPoints(DoubleBuffer points, int startPoint, int pointCount, BoundingBox result){
+        if(pointCount <= 0){
+            throw new IllegalArgumentException("Cannot create a bounding box from an empty set of points.");
+        }
+        if(result == null){
+            result = new BoundingBox();
+        }
+        int offset = startPoint * 3;
+        double minX = points.get(offset), minY = points.get(offset + 1), minZ = points.get(offset + 2);
+        double maxX = minX, maxY = minY, maxZ = minZ;
+        int end = (startPoint + pointCount) * 3;
+        for(int i = offset + 3; i < end; i += 3){
+            double x = points.get(i);
+            double y = points.get(i + 1);
+            double z = points.get(i + 2);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+        result.min.set(minX, minY, minZ);
+        result.max.set(maxX, maxY, maxZ);
+        return result;
+    }
+
     /**
      * Creates a bounding box from a bounding sphere.
      *
@@ -0,0 +1,57 @@
+package bepu.bepuutilities.math;
+
+/**
+ * Interleaves the bits of three coordinates into a Morton (Z-order) code. Points that are close in space tend to have close codes, so sorting
+ * by code groups nearby points together.
+ */
+public final class MortonCode {
+    /**
+     * Largest coordinate that can be encoded along each axis.
+     */
+    public static final int MAXIMUM_COORDINATE = (1 << 21) - 1;
+
+    private MortonCode() {
+    }
+
+    /**
+     * Encodes three coordinates of up to 21 bits each. Bit i of x ends up in bit 3i, of y in bit 3i + 1, and of z in bit 3i + 2.
+     *
+     * @param x Coordinate along the x axis, in [0, {@link #MAXIMUM_COORDINATE}].
+     * @param y Coordinate along the y axis, in [0, {@link #MAXIMUM_COORDINATE}].
+     * @param z Coordinate along the z axis, in [0, {@link #MAXIMUM_COORDINATE}].
+     *
+     * @return Morton code using the low 63 bits.
+     */
+    public static long encode(int x, int y, int z) {
+        return spread(x) | spread(y) << 1 | spread(z) << 2;
+    }
+
+    /**
+     * Quantizes a coordinate within a range to the given number of bits, clamping values outside the range.
+     *
+     * @param value Coordinate to quantize.
+     * @param min Minimum of the range.
+     * @param inverseSpan Reciprocal of the range's size, or 0 for an empty range.
+     * @param bits Number of bits of the result, at most 21.
+     *
+     * @return Quantized coordinate in [0, 2^bits - 1].
+     */
+    public static int quantize(double value, double min, double inverseSpan, int bits) {
+        int maximum = (1 << bits) - 1;
+        double scaled = (value - min) * inverseSpan * maximum;
+        return scaled <= 0 ? 0 : scaled >= maximum ? maximum : (int) scaled;
+    }
+
+    /**
+     * Spreads the low 21 bits of a value so that two zero bits separate each of them.
+     */
+    private static long spread(int value) {
+        long v = value & 0x1FFFFFL;
+        v = (v | v << 32) & 0x1F00000000FFFFL;
+        v = (v | v << 16) & 0x1F0000FF0000FFL;
+        v = (v | v << 8) & 0x100F00F00F00F00FL;
+        v = (v | v << 4) & 0x10C30C30C30C30C3L;
+        v = (v | v << 2) & 0x1249249249249249L;
+        return v;
+    }
+}
@@ -107,6 +107,90 @@ public class QuaternionDouble {
         return result;
     }
 
+    public double lengthSquared(){
+        return x * x + y * y + z * z + w * w;
+    }
+
+    /**
+     * Scales the quaternion such that it has unit length.
+     *
+     * @return This quaternion.
+     */
+    public QuaternionDouble normalizeLocal(){
+        double inverseLength = 1.0 / Math.sqrt(lengthSquared());
+        x *= inverseLength;
+        y *= inverseLength;
+        z *= inverseLength;
+        w *= inverseLength;
+        return this;
+    }
+
+    /**
+     * Creates a quaternion representing a rotation around an axis.
+     *
+     * @param axis Unit length axis to rotate around.
+     * @param angle Angle to rotate by in radians.
+     * @param result Quaternion representing the rotation. It can be null.
+     *
+     * @return The modified result quaternion.
+     */
+    public static QuaternionDouble createFromAxisAngle(final Vector3Double axis, double angle, QuaternionDouble result){
+        if(result == null) {
+            result = new QuaternionDouble();
+        }
+
+        double halfAngle = angle * 0.5;
+        double s = Math.sin(halfAngle);
+        result.x = axis.x * s;
+        result.y = axis.y * s;
+        result.z = axis.z * s;
+        result.w = Math.cos(halfAngle);
+        return result;
+    }
+
+    /**
+     * Spherically interpolates between two unit quaternions along the shorter arc.
+     *
+     * @param start Orientation at t = 0.
+     * @param end Orientation at t = 1.
+     * @param t Interpolation parameter, usually in [0, 1].
+     * @param result Interpolated quaternion. It can be null, and can be the same instance as start or end.
+     *
+     * @return The modified result quaternion.
+     */
+    public static QuaternionDouble slerp(final QuaternionDouble start, final QuaternionDouble end, double t, QuaternionDouble result){
+        if(result == null) {
+            result = new QuaternionDouble();
+        }
+
+        double ex = end.x, ey = end.y, ez = end.z, ew = end.w;
+        double cosHalfTheta = start.x * ex + start.y * ey + start.z * ez + start.w * ew;
+        //q and -q represent the same rotation; flipping the end keeps the interpolation on the shorter arc.
+        if(cosHalfTheta < 0){
+            cosHalfTheta = -cosHalfTheta;
+            ex = -ex;
+            ey = -ey;
+            ez = -ez;
+            ew = -ew;
+        }
+        double startWeight, endWeight;
+        if(cosHalfTheta > 0.9999){
+            //Nearly parallel; sin(halfTheta) is too small to divide by, and a normalized linear blend is indistinguishable.
+            startWeight = 1 - t;
+            endWeight = t;
+        } else {
+            double halfTheta = Math.acos(cosHalfTheta);
+            double inverseSinHalfTheta = 1.0 / Math.sin(halfTheta);
+            startWeight = Math.sin((1 - t) * halfTheta) * inverseSinHalfTheta;
+            endWeight = Math.sin(t * halfTheta) * inverseSinHalfTheta;
+        }
+        result.x = start.x * startWeight + ex * endWeight;
+        result.y = start.y * startWeight + ey * endWeight;
+        result.z = start.z * startWeight + ez * endWeight;
+        result.w = start.w * startWeight + ew * endWeight;
+        return result.normalizeLocal();
+    }
+
     /**
      * Computes the conjugate of the quaternion.
      *
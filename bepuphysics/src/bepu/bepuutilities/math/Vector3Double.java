@@ -45,10 +45,40 @@ public class Vector3Double {
         return this;
     }
 
+    public Vector3Double scaleLocal(double scale){
+        this.x *= scale;
+        this.y *= scale;
+        this.z *= scale;
+        return this;
+    }
+
+    /**
+     * Adds a scaled vector to this vector: this += other * scale.
+     *
+     * @param other Vector to scale and add.
+     * @param scale Scale to apply to the other vector.
+     *
+     * @return This vector.
+     */
+    public Vector3Double addScaledLocal(Vector3Double other, double scale){
+        this.x += other.x * scale;
+        this.y += other.y * scale;
+        this.z += other.z * scale;
+        return this;
+    }
+
     public double dot(Vector3Double other){
         return x*other.x + y*other.y + z*other.z;
     }
 
+    public double lengthSquared(){
+        return x*x + y*y + z*z;
+    }
+
+    public double length(){
+        return Math.sqrt(x*x + y*y + z*z);
+    }
+
     public static Vector3Double min(final Vector3Double a, final Vector3Double b, Vector3Double result){
         if(result == null) {
             result = new Vector3Double();
@@ -0,0 +1,137 @@
+package bepu.bepuutilities.memory;
+
+import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Pool of primitive arrays and byte buffers bucketed by power of two length. Buffers taken from the pool should be returned
+ * once they are no longer needed so that steady state execution does not allocate.
+ * <p>
+ * A pool is not thread safe; each worker thread should use its own.
+ */
+public class BufferPool {
+    private final Buckets<int[]> ints = new Buckets<>(int[]::new, array -> array.length);
+    private final Buckets<long[]> longs = new Buckets<>(long[]::new, array -> array.length);
+    private final Buckets<double[]> doubles = new Buckets<>(double[]::new, array -> array.length);
+    private final Buckets<ByteBuffer> bytes = new Buckets<>(ByteBuffer::allocate, ByteBuffer::capacity);
+
+    /**
+     * Gets the exponent of the smallest power of two greater than or equal to the given length.
+     *
+     * @param minimumLength Minimum length of the buffer.
+     *
+     * @return Exponent of the bucket containing buffers of at least that length.
+     */
+    public static int getBucketPower(int minimumLength) {
+        assert minimumLength >= 0 && minimumLength <= 1 << 30 : "Requested buffer is too large.";
+        return minimumLength <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(minimumLength - 1);
+    }
+
+    /**
+     * Takes an int array with a length of at least the requested size. The actual length is the next power of two.
+     *
+     * @param minimumLength Minimum length of the array.
+     *
+     * @return Array taken from the pool.
+     */
+    public int[] takeInts(int minimumLength) {
+        return ints.take(getBucketPower(minimumLength));
+    }
+
+    public void returnInts(int[] array) {
+        ints.give(array);
+    }
+
+    public long[] takeLongs(int minimumLength) {
+        return longs.take(getBucketPower(minimumLength));
+    }
+
+    public void returnLongs(long[] array) {
+        longs.give(array);
+    }
+
+    public double[] takeDoubles(int minimumLength) {
+        return doubles.take(getBucketPower(minimumLength));
+    }
+
+    public void returnDoubles(double[] array) {
+        doubles.give(array);
+    }
+
+    /**
+     * Takes a byte buffer with a capacity of at least the requested size. The buffer is cleared before it is handed out.
+     *
+     * @param minimumLength Minimum capacity of the buffer in bytes.
+     *
+     * @return Buffer taken from the pool.
+     */
+    public ByteBuffer takeBytes(int minimumLength) {
+        return bytes.take(getBucketPower(minimumLength)).clear();
+    }
+
+    public void returnBytes(ByteBuffer buffer) {
+        bytes.give(buffer);
+    }
+
+    /**
+     * Drops every pooled buffer, letting the garbage collector reclaim them.
+     */
+    public void clear() {
+        ints.clear();
+        longs.clear();
+        doubles.clear();
+        bytes.clear();
+    }
+
+    private static final class Buckets<T> {
+        private final IntFunction<T> factory;
+        private final ToIntFunction<T> length;
+        private final Object[][] stacks = new Object[31][];
+        private final int[] counts = new int[31];
+
+        Buckets(IntFunction<T> factory, ToIntFunction<T> length) {
+            this.factory = factory;
+            this.length = length;
+        }
+
+        @SuppressWarnings("unchecked")
+        T take(int power) {
+            int count = counts[power];
+            if (count > 0) {
+                Object[] stack = stacks[power];
+                counts[power] = --count;
+                T buffer = (T) stack[count];
+                stack[count] = null;
+                return buffer;
+            }
+            return factory.apply(1 << power);
+        }
+
+        void give(T buffer) {
+            int bufferLength = length.applyAsInt(buffer);
+            assert Integer.bitCount(bufferLength) == 1 : "Only buffers taken from a pool can be returned to it.";
+            int power = Integer.numberOfTrailingZeros(bufferLength);
+            Object[] stack = stacks[power];
+            int count = counts[power];
+            if (stack == null) {
+                stacks[power] = stack = new Object[8];
+            } else if (count == stack.length) {
+                Object[] newStack = new Object[count * 2];
+                System.arraycopy(stack, 0, newStack, 0, count);
+                stacks[power] = stack = newStack;
+            }
+            stack[count] = buffer;
+            counts[power] = count + 1;
+        }
+
+        void clear() {
+            for (int i = 0; i < stacks.length; i++) {
+                if (stacks[i] != null) {
+                    java.util.Arrays.fill(stacks[i], 0, counts[i], null);
+                }
+                counts[i] = 0;
+            }
+        }
+    }
+}
@@ -53,6 +53,51 @@ public class IdPool {
         return nextIndex++;
     }
 
+    /**
+     * Takes several ids at once. Previously returned ids are handed out first, then fresh ids in increasing order.
+     *
+     * @param count Number of ids to take.
+     * @param ids Array receiving the ids in its first count elements.
+     */
+    public void take(int count, int[] ids) {
+        assert availableIds.hasArray();
+        assert ids.length >= count : "Target array must be able to hold every taken id.";
+        int recycledCount = Math.min(count, availableIdCount);
+        for (int i = 0; i < recycledCount; i++) {
+            ids[i] = availableIds.get(--availableIdCount);
+        }
+        for (int i = recycledCount; i < count; i++) {
+            ids[i] = nextIndex++;
+        }
+    }
+
+    /**
+     * Returns several ids to the pool, resizing the available id stack at most once.
+     *
+     * @param ids Ids to return.
+     */
+    public void release(int[] ids) {
+        release(ids, 0, ids.length);
+    }
+
+    /**
+     * Returns several ids to the pool, resizing the available id stack at most once. Ids are pushed in order, so the last id in the range
+     * is the first one handed out again; releasing ids in descending order makes later takes return them in ascending order.
+     *
+     * @param ids Array containing the ids to return.
+     * @param start Index of the first id to return.
+     * @param count Number of ids to return.
+     */
+    public void release(int[] ids, int start, int count) {
+        assert availableIds.hasArray();
+        if (availableIdCount + count > availableIds.capacity()) {
+            internalResize(Math.max(availableIdCount + count, availableIds.capacity() * 2));
+        }
+        for (int i = start; i < start + count; i++) {
+            releaseUnsafely(ids[i]);
+        }
+    }
+
     public void release(int id) {
         assert availableIds.hasArray();
         if (availableIdCount == availableIds.capacity()) {
@@ -78,9 +123,8 @@ public class IdPool {
     private void internalResize(int newSize){
         assert newSize != availableIds.capacity() : "Did you really mean to resize this? Nothing changed!";
         IntBuffer newArray = IntBuffer.allocate(newSize);
-        availableIds.flip();
-        newArray.put(availableIds);
-        availableIds.clear();
+        //Ids are stored with absolute indexing, so the buffer's position says nothing about how many ids must be kept.
+        newArray.put(0, availableIds, 0, Math.min(availableIdCount, newSize));
         availableIds = newArray;
     }
 
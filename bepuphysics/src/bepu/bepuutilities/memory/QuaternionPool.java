@@ -18,6 +18,15 @@ public class QuaternionPool extends ManagedPool<QuaternionDouble>{
         super(16);
     }
 
+    /**
+     * Creates a pool separate from the shared instance. Each worker thread needs its own pool since pools are not thread safe.
+     *
+     * @param initialCapacity Number of released objects the pool can hold before resizing.
+     */
+    public QuaternionPool(int initialCapacity) {
+        super(initialCapacity);
+    }
+
     @Override
     protected QuaternionDouble getNewObject() {
         return new QuaternionDouble();
@@ -18,6 +18,15 @@ public class Vector3Pool extends ManagedPool<Vector3Double>{
         super(16);
     }
 
+    /**
+     * Creates a pool separate from the shared instance. Each worker thread needs its own pool since pools are not thread safe.
+     *
+     * @param initialCapacity Number of released objects the pool can hold before resizing.
+     */
+    public Vector3Pool(int initialCapacity) {
+        super(initialCapacity);
+    }
+
     @Override
     protected Vector3Double getNewObject() {
         return new Vector3Double();
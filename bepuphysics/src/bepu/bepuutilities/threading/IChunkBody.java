@@ -0,0 +1,15 @@
+package bepu.bepuutilities.threading;
+
+/**
+ * Function executed on each chunk of a {@link IThreadDispatcher#forEachChunk(int, int, IChunkBody)} dispatch.
+ */
+public interface IChunkBody {
+    /**
+     * Processes the elements of a chunk.
+     *
+     * @param start Index of the first element in the chunk.
+     * @param end Exclusive end index of the chunk.
+     * @param workerIndex Index of the executing worker, in [0, threadCount).
+     */
+    void execute(int start, int end, int workerIndex);
+}
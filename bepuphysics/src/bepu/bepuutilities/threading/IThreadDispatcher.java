@@ -0,0 +1,38 @@
+package bepu.bepuutilities.threading;
+
+/**
+ * Provides multithreading for stages that can be split across workers. The calling thread always takes part in a dispatch as worker 0.
+ */
+public interface IThreadDispatcher {
+    /**
+     * Gets the number of workers available, including the calling thread.
+     *
+     * @return Number of workers.
+     */
+    int getThreadCount();
+
+    /**
+     * Runs the body once on every worker and returns once all of them have finished.
+     *
+     * @param workerBody Body to execute.
+     */
+    void dispatchWorkers(IWorkerBody workerBody);
+
+    /**
+     * Splits [0, count) into chunks and hands them out to workers until none remain. Returns once every chunk has been processed.
+     *
+     * @param count Number of elements to process.
+     * @param chunkSize Number of elements in each chunk. The last chunk may be smaller.
+     * @param chunkBody Body to execute on each chunk.
+     */
+    void forEachChunk(int count, int chunkSize, IChunkBody chunkBody);
+
+    /**
+     * Gets the memory owned by a worker.
+     *
+     * @param workerIndex Index of the worker.
+     *
+     * @return Pools owned by the worker.
+     */
+    WorkerPools getWorkerPools(int workerIndex);
+}
@@ -0,0 +1,13 @@
+package bepu.bepuutilities.threading;
+
+/**
+ * Function executed by every worker of a dispatch.
+ */
+public interface IWorkerBody {
+    /**
+     * Executes the worker's share of a dispatch.
+     *
+     * @param workerIndex Index of the executing worker, in [0, threadCount).
+     */
+    void execute(int workerIndex);
+}
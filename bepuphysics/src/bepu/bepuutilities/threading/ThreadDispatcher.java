@@ -0,0 +1,235 @@
+package bepu.bepuutilities.threading;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Default thread dispatcher backed by a fixed set of daemon workers. Between dispatches, workers spin for a while so that the
+ * back to back dispatches of a time step are picked up without any thread wake up cost, then park so that an idle simulation does not burn cores.
+ * <p>
+ * Dispatches must be started from a single thread at a time and cannot be nested.
+ */
+public class ThreadDispatcher implements IThreadDispatcher {
+    private static final int DEFAULT_SPIN_ITERATIONS = 1 << 16;
+    private static final int YIELD_THRESHOLD = 1 << 10;
+
+    private final int threadCount;
+    private final int spinIterations;
+    private final Thread[] workers;
+    private final WorkerPools[] workerPools;
+    private final AtomicIntegerArray parked;
+
+    //Job description. Written by the dispatching thread before the generation is bumped, read by workers after they observe the new generation.
+    private IWorkerBody workerBody;
+    private IChunkBody chunkBody;
+    private int chunkCount;
+    private int chunkSize;
+    private int elementCount;
+    private final AtomicInteger nextChunk = new AtomicInteger();
+
+    private volatile int generation;
+    private volatile boolean disposed;
+    private final AtomicInteger remainingWorkers = new AtomicInteger();
+    private volatile Throwable workerFailure;
+
+    /**
+     * Creates a dispatcher with one worker per available processor.
+     */
+    public ThreadDispatcher() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ThreadDispatcher(int threadCount) {
+        this(threadCount, DEFAULT_SPIN_ITERATIONS);
+    }
+
+    /**
+     * Creates a dispatcher.
+     *
+     * @param threadCount Number of workers, including the thread that calls the dispatch functions.
+     * @param spinIterations Number of times an idle worker checks for new work before parking.
+     */
+    public ThreadDispatcher(int threadCount, int spinIterations) {
+        assert threadCount > 0 : "A dispatcher needs at least one worker.";
+        this.threadCount = threadCount;
+        this.spinIterations = spinIterations;
+        workerPools = new WorkerPools[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workerPools[i] = new WorkerPools();
+        }
+        parked = new AtomicIntegerArray(threadCount);
+        //Worker 0 is whichever thread dispatches, so only threadCount - 1 background threads are needed.
+        workers = new Thread[threadCount];
+        for (int i = 1; i < threadCount; i++) {
+            int workerIndex = i;
+            Thread worker = new Thread(() -> workerLoop(workerIndex), "bepu-worker-" + i);
+            worker.setDaemon(true);
+            workers[i] = worker;
+            worker.start();
+        }
+    }
+
+    @Override
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Gets the id of the background thread running a worker.
+     *
+     * @param workerIndex Index of the worker, from 1 to {@link #getThreadCount()} - 1. Worker 0 is whichever thread dispatches.
+     *
+     * @return Id of the worker's thread.
+     */
+    public long getWorkerThreadId(int workerIndex) {
+        assert workerIndex > 0 && workerIndex < threadCount : "Worker 0 runs on the dispatching thread and has no thread of its own.";
+        return workers[workerIndex].threadId();
+    }
+
+    @Override
+    public WorkerPools getWorkerPools(int workerIndex) {
+        return workerPools[workerIndex];
+    }
+
+    @Override
+    public void dispatchWorkers(IWorkerBody workerBody) {
+        if (threadCount == 1) {
+            workerBody.execute(0);
+            return;
+        }
+        this.workerBody = workerBody;
+        this.chunkBody = null;
+        run();
+        this.workerBody = null;
+    }
+
+    @Override
+    public void forEachChunk(int count, int chunkSize, IChunkBody chunkBody) {
+        assert chunkSize > 0 : "Chunks must contain at least one element.";
+        if (count <= 0) {
+            return;
+        }
+        int chunks = (count + chunkSize - 1) / chunkSize;
+        if (threadCount == 1 || chunks == 1) {
+            //Nothing to share; skip the fork and join entirely.
+            chunkBody.execute(0, count, 0);
+            return;
+        }
+        this.chunkBody = chunkBody;
+        this.workerBody = null;
+        this.chunkCount = chunks;
+        this.chunkSize = chunkSize;
+        this.elementCount = count;
+        nextChunk.set(0);
+        run();
+        this.chunkBody = null;
+    }
+
+    private void run() {
+        assert !disposed : "Cannot dispatch on a disposed dispatcher.";
+        assert remainingWorkers.get() == 0 : "Dispatches cannot be nested.";
+        remainingWorkers.set(threadCount - 1);
+        //The volatile write publishes the job fields written above.
+        generation++;
+        for (int i = 1; i < threadCount; i++) {
+            if (parked.get(i) != 0) {
+                LockSupport.unpark(workers[i]);
+            }
+        }
+        Throwable failure = null;
+        try {
+            execute(0);
+        } catch (Throwable throwable) {
+            failure = throwable;
+            //No point in handing out the remaining chunks; the workers only need to finish the ones they already took.
+            nextChunk.set(chunkCount);
+        }
+        //Workers must be done with the job before returning, even on failure; otherwise the next dispatch would overwrite a job still running.
+        int spins = 0;
+        while (remainingWorkers.get() != 0) {
+            //If the machine is oversubscribed, the workers we're waiting on may need this core.
+            if (++spins < YIELD_THRESHOLD) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        Throwable workerFailure = this.workerFailure;
+        if (workerFailure != null) {
+            this.workerFailure = null;
+            if (failure == null) {
+                failure = workerFailure;
+            } else {
+                failure.addSuppressed(workerFailure);
+            }
+        }
+        if (failure != null) {
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (failure instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(failure);
+        }
+    }
+
+    private void execute(int workerIndex) {
+        IChunkBody chunks = chunkBody;
+        if (chunks != null) {
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                int start = chunk * chunkSize;
+                chunks.execute(start, Math.min(start + chunkSize, elementCount), workerIndex);
+            }
+        } else {
+            workerBody.execute(workerIndex);
+        }
+    }
+
+    private void workerLoop(int workerIndex) {
+        int seenGeneration = 0;
+        while (true) {
+            int spins = 0;
+            int currentGeneration;
+            while ((currentGeneration = generation) == seenGeneration) {
+                if (disposed) {
+                    return;
+                }
+                if (spins < spinIterations) {
+                    if (++spins % YIELD_THRESHOLD == 0) {
+                        Thread.yield();
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                } else {
+                    parked.set(workerIndex, 1);
+                    //Recheck after publishing the parked flag; the dispatcher bumps the generation before it reads the flag, so no wake up can be lost.
+                    if (generation == seenGeneration && !disposed) {
+                        LockSupport.park(this);
+                    }
+                    parked.set(workerIndex, 0);
+                }
+            }
+            seenGeneration = currentGeneration;
+            try {
+                execute(workerIndex);
+            } catch (Throwable throwable) {
+                workerFailure = throwable;
+                nextChunk.set(chunkCount);
+            }
+            remainingWorkers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops the workers. The dispatcher cannot be used afterwards.
+     */
+    public void dispose() {
+        disposed = true;
+        for (int i = 1; i < threadCount; i++) {
+            LockSupport.unpark(workers[i]);
+        }
+    }
+}
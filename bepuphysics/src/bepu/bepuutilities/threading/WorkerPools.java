@@ -0,0 +1,27 @@
+package bepu.bepuutilities.threading;
+
+import bepu.bepuutilities.memory.BufferPool;
+import bepu.bepuutilities.memory.QuaternionPool;
+import bepu.bepuutilities.memory.Vector3Pool;
+
+/**
+ * Memory owned by a single worker. Code running on a worker must take its temporaries from here rather than from the shared pool instances,
+ * which are only safe to use from one thread.
+ */
+public class WorkerPools {
+    private final Vector3Pool vector3Pool = new Vector3Pool(16);
+    private final QuaternionPool quaternionPool = new QuaternionPool(16);
+    private final BufferPool bufferPool = new BufferPool();
+
+    public Vector3Pool getVector3Pool() {
+        return vector3Pool;
+    }
+
+    public QuaternionPool getQuaternionPool() {
+        return quaternionPool;
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+}